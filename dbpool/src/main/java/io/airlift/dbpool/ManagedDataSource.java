@@ -15,11 +15,15 @@
  */
 package io.airlift.dbpool;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.units.Duration;
 import org.weakref.jmx.Flatten;
 import org.weakref.jmx.Managed;
 
+import javax.annotation.PreDestroy;
 import javax.sql.ConnectionEvent;
 import javax.sql.ConnectionEventListener;
 import javax.sql.DataSource;
@@ -29,6 +33,11 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,15 +45,49 @@ import java.util.logging.Logger;
 
 import static io.airlift.units.Duration.nanosSince;
 import static java.lang.Math.ceil;
-
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Pools the physical connections created by {@link #createConnectionInternal()}.
+ * <p>
+ * Callers wait in a fair queue for one of {@link #getMaxConnections()} slots and
+ * are handed the most recently returned idle connection, or a new connection when
+ * none is idle.  A background thread closes connections that are past their
+ * lifetime or idle timeout, validates the remaining idle connections, and keeps
+ * the minimum number of idle connections open.
+ */
 public abstract class ManagedDataSource
         implements DataSource
 {
+    private static final long MAINTENANCE_INTERVAL_SECONDS = 30;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
     private final ManagedSemaphore semaphore;
     private final AtomicInteger maxConnectionWaitMillis = new AtomicInteger(100);
     private final ManagedDataSourceStats stats = new ManagedDataSourceStats();
+    private final int minIdleConnections;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+
+    // most recently returned connections are at the end
+    private final BlockingDeque<PoolEntry> idleConnections = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService maintenanceExecutor;
+    private final AtomicBoolean maintenanceStarted = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     protected ManagedDataSource(int maxConnections, Duration maxConnectionWait)
+    {
+        this(maxConnections, maxConnectionWait, 0, new Duration(10, MINUTES), new Duration(30, MINUTES));
+    }
+
+    protected ManagedDataSource(ManagedDataSourceConfig<?> config)
+    {
+        this(config.getMaxConnections(), config.getMaxConnectionWait(), config.getMinIdleConnections(), config.getIdleTimeout(), config.getMaxLifetime());
+    }
+
+    protected ManagedDataSource(int maxConnections, Duration maxConnectionWait, int minIdleConnections, Duration idleTimeout, Duration maxLifetime)
     {
         if (maxConnections < 1) {
             throw new IllegalArgumentException("maxConnections must be at least 1: maxConnections=" + maxConnections);
@@ -52,8 +95,22 @@ public abstract class ManagedDataSource
         if (maxConnectionWait == null) {
             throw new NullPointerException("maxConnectionWait is null");
         }
-        semaphore = new ManagedSemaphore(maxConnections);
+        if (minIdleConnections < 0) {
+            throw new IllegalArgumentException("minIdleConnections is negative: minIdleConnections=" + minIdleConnections);
+        }
+        semaphore = new ManagedSemaphore(maxConnections, true);
         maxConnectionWaitMillis.set(Ints.checkedCast(maxConnectionWait.toMillis()));
+        this.minIdleConnections = minIdleConnections;
+        this.idleTimeoutNanos = requireNonNull(idleTimeout, "idleTimeout is null").roundTo(TimeUnit.NANOSECONDS);
+        this.maxLifetimeNanos = requireNonNull(maxLifetime, "maxLifetime is null").roundTo(TimeUnit.NANOSECONDS);
+
+        // the thread is not started until the first connection is requested
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat(getClass().getSimpleName() + "-maintenance-%s")
+                .setDaemon(true)
+                .build());
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        maintenanceExecutor = executor;
     }
 
     @Override
@@ -62,11 +119,13 @@ public abstract class ManagedDataSource
     {
         long start = System.nanoTime();
         try {
+            assertNotClosed();
+            startMaintenance();
             acquirePermit();
 
             boolean checkedOut = false;
             try {
-                Connection connection = createConnection();
+                Connection connection = checkOut();
                 checkedOut = true;
                 return connection;
             }
@@ -81,20 +140,56 @@ public abstract class ManagedDataSource
         }
     }
 
-    protected Connection createConnection()
+    private Connection checkOut()
+            throws SQLException
+    {
+        // prefer the most recently used connection, which is the most likely to still be alive
+        for (PoolEntry entry = idleConnections.pollLast(); entry != null; entry = idleConnections.pollLast()) {
+            if (isExpired(entry, System.nanoTime())) {
+                evict(entry);
+                continue;
+            }
+            try {
+                Connection connection = entry.getPooledConnection().getConnection();
+                if (!connection.getAutoCommit()) {
+                    // do not leak a transaction from the previous user
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                entry.getPooledConnection().addConnectionEventListener(new PoolEntryListener(entry));
+                stats.connectionReused();
+                return connection;
+            }
+            catch (SQLException | RuntimeException e) {
+                evict(entry);
+            }
+        }
+
+        PoolEntry entry = createEntry();
+        try {
+            Connection connection = entry.getPooledConnection().getConnection();
+            entry.getPooledConnection().addConnectionEventListener(new PoolEntryListener(entry));
+            return connection;
+        }
+        catch (SQLException | RuntimeException e) {
+            stats.creationErrorOccurred();
+            closeInBackground(entry);
+            throw e;
+        }
+    }
+
+    private PoolEntry createEntry()
             throws SQLException
     {
         boolean success = false;
         try {
-            // todo do not create on caller's thread
             long start = System.nanoTime();
             PooledConnection pooledConnection = createConnectionInternal();
-            Connection connection = prepareConnection(pooledConnection);
             stats.connectionCreated(nanosSince(start));
 
             success = true;
 
-            return connection;
+            return new PoolEntry(pooledConnection, start);
         }
         finally {
             if (!success) {
@@ -106,27 +201,141 @@ public abstract class ManagedDataSource
     protected abstract PooledConnection createConnectionInternal()
             throws SQLException;
 
-    protected Connection prepareConnection(PooledConnection pooledConnection)
-            throws SQLException
+    private void connectionReturned(PoolEntry entry)
     {
-        Connection connection = pooledConnection.getConnection();
-        pooledConnection.addConnectionEventListener(new NoPoolConnectionEventListener());
-        return connection;
+        long now = System.nanoTime();
+        // the returned connection still holds its permit, so it is counted as active here
+        if (closed.get() || isExpired(entry, now) || idleConnections.size() + getConnectionsActive() > getMaxConnections()) {
+            closeInBackground(entry);
+            return;
+        }
+
+        entry.setLastReturnedTime(now);
+        idleConnections.addLast(entry);
+
+        // close may have drained the pool before the connection was added
+        if (closed.get()) {
+            closeIdleConnections();
+        }
     }
 
-    protected void connectionReturned(PooledConnection pooledConnection, long checkoutTime)
+    /**
+     * Closes connections that are past their lifetime or idle timeout, validates
+     * the remaining idle connections, and opens new connections until the minimum
+     * number of idle connections is reached.
+     */
+    @VisibleForTesting
+    synchronized void runMaintenance()
+    {
+        if (closed.get()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        int idleCount = idleConnections.size();
+        // walk from the most recently used, so adding back at the front keeps the order
+        for (PoolEntry entry : ImmutableList.copyOf(idleConnections).reverse()) {
+            if (!idleConnections.remove(entry)) {
+                // checked out in the meantime
+                continue;
+            }
+            boolean idleTooLong = idleCount > minIdleConnections && now - entry.getLastReturnedTime() >= idleTimeoutNanos;
+            if (isExpired(entry, now) || idleTooLong || !isValid(entry)) {
+                idleCount--;
+                evict(entry);
+            }
+            else {
+                idleConnections.addFirst(entry);
+            }
+        }
+
+        while (!closed.get() && idleConnections.size() < minIdleConnections && idleConnections.size() + getConnectionsActive() < getMaxConnections()) {
+            PoolEntry entry;
+            try {
+                entry = createEntry();
+            }
+            catch (SQLException | RuntimeException e) {
+                // try again on the next run
+                return;
+            }
+            entry.setLastReturnedTime(System.nanoTime());
+            idleConnections.addFirst(entry);
+        }
+
+        if (closed.get()) {
+            closeIdleConnections();
+        }
+    }
+
+    private boolean isExpired(PoolEntry entry, long now)
+    {
+        return now - entry.getCreateTime() >= maxLifetimeNanos;
+    }
+
+    private static boolean isValid(PoolEntry entry)
     {
         try {
-            // todo do not close on caller's thread
-            pooledConnection.close();
+            Connection connection = entry.getPooledConnection().getConnection();
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            }
+            finally {
+                connection.close();
+            }
         }
-        catch (SQLException ignored) {
-            // hey we tried
+        catch (SQLException | RuntimeException e) {
+            return false;
         }
     }
 
-    protected void connectionDestroyed(PooledConnection pooledConnection, long checkoutTime)
+    private void startMaintenance()
     {
+        if (maintenanceStarted.compareAndSet(false, true)) {
+            try {
+                // open the minimum idle connections right away, otherwise there is nothing to do yet
+                long initialDelay = minIdleConnections > 0 ? 0 : MAINTENANCE_INTERVAL_SECONDS;
+                maintenanceExecutor.scheduleWithFixedDelay(this::runMaintenance, initialDelay, MAINTENANCE_INTERVAL_SECONDS, SECONDS);
+            }
+            catch (RejectedExecutionException ignored) {
+                // closed concurrently
+            }
+        }
+    }
+
+    private void evict(PoolEntry entry)
+    {
+        stats.connectionEvicted();
+        closeInBackground(entry);
+    }
+
+    private void closeInBackground(PoolEntry entry)
+    {
+        try {
+            maintenanceExecutor.execute(entry::close);
+        }
+        catch (RejectedExecutionException e) {
+            entry.close();
+        }
+    }
+
+    private void closeIdleConnections()
+    {
+        for (PoolEntry entry = idleConnections.poll(); entry != null; entry = idleConnections.poll()) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Closes the idle connections and stops the background thread.  Connections
+     * that are in use are closed when they are returned.
+     */
+    @PreDestroy
+    public void close()
+    {
+        if (closed.compareAndSet(false, true)) {
+            maintenanceExecutor.shutdownNow();
+            closeIdleConnections();
+        }
     }
 
     @Managed
@@ -156,6 +365,12 @@ public abstract class ManagedDataSource
         return semaphore.getActivePermits();
     }
 
+    @Managed
+    public int getConnectionsIdle()
+    {
+        return idleConnections.size();
+    }
+
     @Managed
     public int getMaxConnections()
     {
@@ -248,12 +463,22 @@ public abstract class ManagedDataSource
         throw new UnsupportedOperationException();
     }
 
+    private void assertNotClosed()
+            throws SQLException
+    {
+        if (closed.get()) {
+            throw new SQLException(getClass().getSimpleName() + " has been closed");
+        }
+    }
+
     private void acquirePermit()
             throws SQLException
     {
+        long start = System.nanoTime();
         int timeout = maxConnectionWaitMillis.get();
         try {
             if (!semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                stats.waitTimedOut();
                 throw new SqlTimeoutException("Could not acquire a connection within " + timeout + " msec");
             }
         }
@@ -261,14 +486,64 @@ public abstract class ManagedDataSource
             Thread.currentThread().interrupt();
             throw new SqlTimeoutException("Interrupted while waiting for connection", e);
         }
+        stats.waited(nanosSince(start));
+    }
+
+    private static class PoolEntry
+    {
+        private final PooledConnection pooledConnection;
+        private final long createTime;
+        private volatile long lastReturnedTime;
+
+        private PoolEntry(PooledConnection pooledConnection, long createTime)
+        {
+            this.pooledConnection = pooledConnection;
+            this.createTime = createTime;
+        }
+
+        public PooledConnection getPooledConnection()
+        {
+            return pooledConnection;
+        }
+
+        public long getCreateTime()
+        {
+            return createTime;
+        }
+
+        public long getLastReturnedTime()
+        {
+            return lastReturnedTime;
+        }
+
+        public void setLastReturnedTime(long lastReturnedTime)
+        {
+            this.lastReturnedTime = lastReturnedTime;
+        }
+
+        public void close()
+        {
+            try {
+                pooledConnection.close();
+            }
+            catch (SQLException | RuntimeException ignored) {
+                // hey we tried
+            }
+        }
     }
 
-    protected class NoPoolConnectionEventListener
+    private class PoolEntryListener
             implements ConnectionEventListener
     {
+        private final PoolEntry entry;
         private final long checkoutTime = System.nanoTime();
         private final AtomicBoolean returned = new AtomicBoolean();
 
+        private PoolEntryListener(PoolEntry entry)
+        {
+            this.entry = entry;
+        }
+
         @Override
         public void connectionClosed(ConnectionEvent event)
         {
@@ -277,18 +552,18 @@ public abstract class ManagedDataSource
                 return;
             }
 
-            PooledConnection pooledConnection = null;
             try {
-                pooledConnection = (PooledConnection) event.getSource();
-                pooledConnection.removeConnectionEventListener(this);
+                entry.getPooledConnection().removeConnectionEventListener(this);
 
                 stats.connectionReturned(nanosSince(checkoutTime));
             }
             finally {
-                semaphore.release();
-
-                if (pooledConnection != null) {
-                    connectionReturned(pooledConnection, checkoutTime);
+                // make the connection available before waking up a waiter
+                try {
+                    connectionReturned(entry);
+                }
+                finally {
+                    semaphore.release();
                 }
             }
         }
@@ -301,19 +576,14 @@ public abstract class ManagedDataSource
                 return;
             }
 
-            PooledConnection pooledConnection = null;
             try {
-                pooledConnection = (PooledConnection) event.getSource();
-                pooledConnection.removeConnectionEventListener(this);
+                entry.getPooledConnection().removeConnectionEventListener(this);
 
                 stats.connectionErrorOccurred();
             }
             finally {
                 semaphore.release();
-
-                if (pooledConnection != null) {
-                    connectionDestroyed(pooledConnection, checkoutTime);
-                }
+                closeInBackground(entry);
             }
         }
     }
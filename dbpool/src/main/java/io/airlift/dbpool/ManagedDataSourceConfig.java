@@ -45,6 +45,9 @@ public class ManagedDataSourceConfig<T extends ManagedDataSourceConfig<T>>
 {
     private int maxConnections = 10;
     private Duration maxConnectionWait = new Duration(500, TimeUnit.MILLISECONDS);
+    private int minIdleConnections;
+    private Duration idleTimeout = new Duration(10, TimeUnit.MINUTES);
+    private Duration maxLifetime = new Duration(30, TimeUnit.MINUTES);
 
     /**
      * Gets the maximum number of concurrent connections allowed by the data
@@ -94,6 +97,70 @@ public class ManagedDataSourceConfig<T extends ManagedDataSourceConfig<T>>
         return self();
     }
 
+    /**
+     * Gets the number of idle connections the data source keeps open in the
+     * background, so callers do not have to wait for a new connection.
+     */
+    public int getMinIdleConnections()
+    {
+        return minIdleConnections;
+    }
+
+    /**
+     * Sets the number of idle connections the data source keeps open in the
+     * background, so callers do not have to wait for a new connection.
+     */
+    @Config("db.connections.min-idle")
+    public T setMinIdleConnections(int minIdleConnections)
+    {
+        this.minIdleConnections = minIdleConnections;
+        return self();
+    }
+
+    /**
+     * Gets the time a connection may sit unused in the pool before it is
+     * closed.  Connections needed to keep the minimum idle count are never
+     * closed for being idle.
+     */
+    public Duration getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time a connection may sit unused in the pool before it is
+     * closed.  Connections needed to keep the minimum idle count are never
+     * closed for being idle.
+     */
+    @Config("db.connections.idle-timeout")
+    public T setIdleTimeout(Duration idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+        return self();
+    }
+
+    /**
+     * Gets the maximum age of a connection.  Older connections are closed
+     * when they are returned or found idle in the pool, and are never
+     * closed while in use.
+     */
+    public Duration getMaxLifetime()
+    {
+        return maxLifetime;
+    }
+
+    /**
+     * Sets the maximum age of a connection.  Older connections are closed
+     * when they are returned or found idle in the pool, and are never
+     * closed while in use.
+     */
+    @Config("db.connections.max-lifetime")
+    public T setMaxLifetime(Duration maxLifetime)
+    {
+        this.maxLifetime = maxLifetime;
+        return self();
+    }
+
     @SuppressWarnings("unchecked")
     private T self()
     {
@@ -25,10 +25,14 @@ import java.util.concurrent.atomic.AtomicLong;
 public final class ManagedDataSourceStats
 {
     private final TimeStat checkout = new TimeStat();
+    private final TimeStat wait = new TimeStat();
     private final TimeStat create = new TimeStat();
     private final TimeStat held = new TimeStat();
     private final AtomicLong connectionErrorCount = new AtomicLong();
     private final AtomicLong creationErrorCount = new AtomicLong();
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+    private final AtomicLong connectionReusedCount = new AtomicLong();
+    private final AtomicLong connectionEvictedCount = new AtomicLong();
 
     @Managed
     @Nested
@@ -37,6 +41,16 @@ public final class ManagedDataSourceStats
         return checkout;
     }
 
+    /**
+     * Time spent waiting for a free connection slot, excluding connection creation.
+     */
+    @Managed
+    @Nested
+    public TimeStat getWait()
+    {
+        return wait;
+    }
+
     @Managed
     @Nested
     public TimeStat getCreate()
@@ -63,11 +77,49 @@ public final class ManagedDataSourceStats
         return creationErrorCount.get();
     }
 
+    @Managed
+    public long getWaitTimeoutCount()
+    {
+        return waitTimeoutCount.get();
+    }
+
+    @Managed
+    public long getConnectionReusedCount()
+    {
+        return connectionReusedCount.get();
+    }
+
+    @Managed
+    public long getConnectionEvictedCount()
+    {
+        return connectionEvictedCount.get();
+    }
+
     void connectionCheckedOut(Duration elapsedTime)
     {
         checkout.add(elapsedTime);
     }
 
+    void waited(Duration elapsedTime)
+    {
+        wait.add(elapsedTime);
+    }
+
+    void waitTimedOut()
+    {
+        waitTimeoutCount.incrementAndGet();
+    }
+
+    void connectionReused()
+    {
+        connectionReusedCount.incrementAndGet();
+    }
+
+    void connectionEvicted()
+    {
+        connectionEvictedCount.incrementAndGet();
+    }
+
     void connectionCreated(Duration elapsedTime)
     {
         create.add(elapsedTime);
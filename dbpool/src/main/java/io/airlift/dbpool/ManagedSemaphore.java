@@ -29,7 +29,12 @@ class ManagedSemaphore
 
     public ManagedSemaphore(int permits)
     {
-        super(permits);
+        this(permits, false);
+    }
+
+    public ManagedSemaphore(int permits, boolean fair)
+    {
+        super(permits, fair);
         this.permits = permits;
     }
 
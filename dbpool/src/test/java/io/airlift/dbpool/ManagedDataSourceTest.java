@@ -16,6 +16,7 @@
 package io.airlift.dbpool;
 
 import io.airlift.dbpool.MockConnectionPoolDataSource.MockConnection;
+import io.airlift.dbpool.MockConnectionPoolDataSource.MockPooledConnection;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
@@ -38,11 +39,13 @@ import java.util.concurrent.atomic.AtomicReference;
 import static io.airlift.testing.Assertions.assertGreaterThan;
 import static io.airlift.testing.Assertions.assertInstanceOf;
 import static io.airlift.units.Duration.nanosSince;
+import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -490,4 +493,213 @@ public class ManagedDataSourceTest
         catch (UnsupportedOperationException expected) {
         }
     }
+
+    @Test
+    public void testConnectionReused()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(2, new Duration(10, MILLISECONDS));
+        try {
+            MockConnection connection = (MockConnection) dataSource.getConnection();
+            MockPooledConnection pooledConnection = connection.getMockPooledConnection();
+            connection.close();
+            assertEquals(dataSource.getConnectionsIdle(), 1);
+
+            connection = (MockConnection) dataSource.getConnection();
+            assertSame(connection.getMockPooledConnection(), pooledConnection);
+            assertEquals(dataSource.getConnectionsIdle(), 0);
+            assertEquals(dataSource.getStats().getCreate().getAllTime().getCount(), 1.0);
+            assertEquals(dataSource.getStats().getConnectionReusedCount(), 1);
+            assertEquals(dataSource.getStats().getWait().getAllTime().getCount(), 2.0);
+
+            connection.close();
+            assertFalse(pooledConnection.isClosed());
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testTransactionRolledBackOnReuse()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(1, new Duration(10, MILLISECONDS));
+        try {
+            MockConnection connection = (MockConnection) dataSource.getConnection();
+            connection.setAutoCommit(false);
+            connection.close();
+
+            connection = (MockConnection) dataSource.getConnection();
+            assertTrue(connection.getAutoCommit());
+            assertEquals(connection.getMockPooledConnection().rollbackCount, 1);
+            connection.close();
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testErrorConnectionNotReused()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(1, new Duration(10, MILLISECONDS));
+        try {
+            MockConnection connection = (MockConnection) dataSource.getConnection();
+            MockPooledConnection pooledConnection = connection.getMockPooledConnection();
+            connection.errorOccurred();
+            assertEquals(dataSource.getConnectionsIdle(), 0);
+
+            connection = (MockConnection) dataSource.getConnection();
+            assertNotSame(connection.getMockPooledConnection(), pooledConnection);
+            connection.close();
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testMaxLifetime()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(new MockConnectionPoolDataSource(), 1, new Duration(10, MILLISECONDS), 0, new Duration(1, HOURS), new Duration(1, MILLISECONDS));
+        try {
+            MockConnection connection = (MockConnection) dataSource.getConnection();
+            MILLISECONDS.sleep(5);
+            connection.close();
+
+            assertEquals(dataSource.getConnectionsIdle(), 0);
+            assertEventuallyClosed(connection.getMockPooledConnection());
+            assertEquals(dataSource.getConnectionsActive(), 0);
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testIdleTimeoutKeepsMinIdle()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(new MockConnectionPoolDataSource(), 3, new Duration(10, MILLISECONDS), 1, new Duration(1, MILLISECONDS), new Duration(1, HOURS));
+        try {
+            Connection first = dataSource.getConnection();
+            Connection second = dataSource.getConnection();
+            first.close();
+            second.close();
+            MILLISECONDS.sleep(5);
+
+            dataSource.runMaintenance();
+            assertEquals(dataSource.getConnectionsIdle(), 1);
+            assertEquals(dataSource.getStats().getConnectionEvictedCount(), 1);
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testInvalidIdleConnectionEvicted()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(1, new Duration(10, MILLISECONDS));
+        try {
+            MockConnection connection = (MockConnection) dataSource.getConnection();
+            connection.close();
+            connection.getMockPooledConnection().valid = false;
+
+            dataSource.runMaintenance();
+            assertEquals(dataSource.getConnectionsIdle(), 0);
+            assertEquals(dataSource.getStats().getConnectionEvictedCount(), 1);
+            assertEventuallyClosed(connection.getMockPooledConnection());
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testMinIdleConnectionsCreated()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(new MockConnectionPoolDataSource(), 3, new Duration(10, MILLISECONDS), 2, new Duration(1, HOURS), new Duration(1, HOURS));
+        try {
+            dataSource.runMaintenance();
+            assertEquals(dataSource.getConnectionsIdle(), 2);
+            assertEquals(dataSource.getStats().getCreate().getAllTime().getCount(), 2.0);
+
+            // never exceeds max connections
+            List<Connection> connections = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                connections.add(dataSource.getConnection());
+            }
+            dataSource.runMaintenance();
+            assertEquals(dataSource.getConnectionsIdle(), 0);
+            for (Connection connection : connections) {
+                connection.close();
+            }
+            assertEquals(dataSource.getConnectionsIdle(), 3);
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testClose()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(2, new Duration(10, MILLISECONDS));
+        MockConnection idle = (MockConnection) dataSource.getConnection();
+        MockConnection inUse = (MockConnection) dataSource.getConnection();
+        idle.close();
+
+        dataSource.close();
+        assertTrue(idle.getMockPooledConnection().isClosed());
+        assertEquals(dataSource.getConnectionsIdle(), 0);
+        try {
+            dataSource.getConnection();
+            fail("Expected SQLException");
+        }
+        catch (SQLException expected) {
+        }
+
+        inUse.close();
+        assertTrue(inUse.getMockPooledConnection().isClosed());
+        assertEquals(dataSource.getConnectionsActive(), 0);
+    }
+
+    @Test
+    public void testWaitTimeoutCounted()
+            throws Exception
+    {
+        ManagedDataSource dataSource = new MockManagedDataSource(1, new Duration(1, MILLISECONDS));
+        try {
+            Connection connection = dataSource.getConnection();
+            try {
+                dataSource.getConnection();
+                fail("Expected SQLException from timeout");
+            }
+            catch (SqlTimeoutException expected) {
+            }
+            assertEquals(dataSource.getStats().getWaitTimeoutCount(), 1);
+            assertEquals(dataSource.getStats().getWait().getAllTime().getCount(), 1.0);
+            connection.close();
+        }
+        finally {
+            dataSource.close();
+        }
+    }
+
+    private static void assertEventuallyClosed(MockPooledConnection pooledConnection)
+            throws InterruptedException
+    {
+        long start = System.nanoTime();
+        while (!pooledConnection.isClosed()) {
+            assertTrue(nanosSince(start).compareTo(new Duration(10, SECONDS)) < 0, "connection was not closed");
+            MILLISECONDS.sleep(1);
+        }
+    }
 }
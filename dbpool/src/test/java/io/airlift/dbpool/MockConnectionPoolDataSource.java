@@ -118,7 +118,10 @@ public class MockConnectionPoolDataSource
             implements PooledConnection
     {
         private final MockConnectionPoolDataSource dataSource;
-        private boolean closed;
+        private volatile boolean closed;
+        boolean valid = true;
+        boolean autoCommit = true;
+        int rollbackCount;
         private List<ConnectionEventListener> connectionEventListeners = new CopyOnWriteArrayList<>();
 
         public MockPooledConnection(MockConnectionPoolDataSource dataSource)
@@ -146,6 +149,11 @@ public class MockConnectionPoolDataSource
             }
         }
 
+        public boolean isClosed()
+        {
+            return closed;
+        }
+
         public void closeOccurred()
         {
             for (ConnectionEventListener connectionEventListener : connectionEventListeners) {
@@ -197,6 +205,11 @@ public class MockConnectionPoolDataSource
             this.mockPooledConnection = mockPooledConnection;
         }
 
+        public MockPooledConnection getMockPooledConnection()
+        {
+            return mockPooledConnection;
+        }
+
         @Override
         public void close()
                 throws SQLException
@@ -285,14 +298,14 @@ public class MockConnectionPoolDataSource
         public void setAutoCommit(boolean autoCommit)
                 throws SQLException
         {
-            throw new UnsupportedOperationException();
+            mockPooledConnection.autoCommit = autoCommit;
         }
 
         @Override
         public boolean getAutoCommit()
                 throws SQLException
         {
-            throw new UnsupportedOperationException();
+            return mockPooledConnection.autoCommit;
         }
 
         @Override
@@ -306,7 +319,7 @@ public class MockConnectionPoolDataSource
         public void rollback()
                 throws SQLException
         {
-            throw new UnsupportedOperationException();
+            mockPooledConnection.rollbackCount++;
         }
 
         @Override
@@ -530,7 +543,7 @@ public class MockConnectionPoolDataSource
         public boolean isValid(int timeout)
                 throws SQLException
         {
-            throw new UnsupportedOperationException();
+            return mockPooledConnection.valid;
         }
 
         @Override
@@ -37,6 +37,12 @@ public class MockManagedDataSource
         this.poolDataSource = poolDataSource;
     }
 
+    public MockManagedDataSource(MockConnectionPoolDataSource poolDataSource, int maxConnections, Duration maxConnectionWait, int minIdleConnections, Duration idleTimeout, Duration maxLifetime)
+    {
+        super(maxConnections, maxConnectionWait, minIdleConnections, idleTimeout, maxLifetime);
+        this.poolDataSource = poolDataSource;
+    }
+
     @Override
     protected PooledConnection createConnectionInternal()
             throws SQLException
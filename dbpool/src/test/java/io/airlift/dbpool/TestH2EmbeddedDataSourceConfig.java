@@ -31,7 +31,10 @@ public class TestH2EmbeddedDataSourceConfig
                 .setMaxLengthInplaceLob(1024)
                 .setMaxMemoryRows(10000)
                 .setMaxConnections(10)
-                .setMaxConnectionWait(new Duration(500, TimeUnit.MILLISECONDS)));
+                .setMaxConnectionWait(new Duration(500, TimeUnit.MILLISECONDS))
+                .setMinIdleConnections(0)
+                .setIdleTimeout(new Duration(10, TimeUnit.MINUTES))
+                .setMaxLifetime(new Duration(30, TimeUnit.MINUTES)));
     }
 
     @Test
@@ -49,6 +52,9 @@ public class TestH2EmbeddedDataSourceConfig
                 .put("db.rows.memory.max", "5000")
                 .put("db.connections.max", "12")
                 .put("db.connections.wait", "42s")
+                .put("db.connections.min-idle", "3")
+                .put("db.connections.idle-timeout", "5m")
+                .put("db.connections.max-lifetime", "1h")
                 .build();
 
         H2EmbeddedDataSourceConfig expected = new H2EmbeddedDataSourceConfig()
@@ -62,7 +68,10 @@ public class TestH2EmbeddedDataSourceConfig
                 .setMaxLengthInplaceLob(8192)
                 .setMaxMemoryRows(5000)
                 .setMaxConnections(12)
-                .setMaxConnectionWait(new Duration(42, TimeUnit.SECONDS));
+                .setMaxConnectionWait(new Duration(42, TimeUnit.SECONDS))
+                .setMinIdleConnections(3)
+                .setIdleTimeout(new Duration(5, TimeUnit.MINUTES))
+                .setMaxLifetime(new Duration(1, TimeUnit.HOURS));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
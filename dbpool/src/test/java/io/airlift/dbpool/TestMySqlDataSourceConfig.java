@@ -16,7 +16,10 @@ public class TestMySqlDataSourceConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(MySqlDataSourceConfig.class)
                 .setDefaultFetchSize(100)
                 .setMaxConnections(10)
-                .setMaxConnectionWait(new Duration(500, TimeUnit.MILLISECONDS)));
+                .setMaxConnectionWait(new Duration(500, TimeUnit.MILLISECONDS))
+                .setMinIdleConnections(0)
+                .setIdleTimeout(new Duration(10, TimeUnit.MINUTES))
+                .setMaxLifetime(new Duration(30, TimeUnit.MINUTES)));
     }
 
     @Test
@@ -26,12 +29,18 @@ public class TestMySqlDataSourceConfig
                 .put("db.fetch-size", "500")
                 .put("db.connections.max", "12")
                 .put("db.connections.wait", "42s")
+                .put("db.connections.min-idle", "3")
+                .put("db.connections.idle-timeout", "5m")
+                .put("db.connections.max-lifetime", "1h")
                 .build();
 
         MySqlDataSourceConfig expected = new MySqlDataSourceConfig()
                 .setDefaultFetchSize(500)
                 .setMaxConnections(12)
-                .setMaxConnectionWait(new Duration(42, TimeUnit.SECONDS));
+                .setMaxConnectionWait(new Duration(42, TimeUnit.SECONDS))
+                .setMinIdleConnections(3)
+                .setIdleTimeout(new Duration(5, TimeUnit.MINUTES))
+                .setMaxLifetime(new Duration(1, TimeUnit.HOURS));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
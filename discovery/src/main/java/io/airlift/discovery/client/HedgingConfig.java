@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.discovery.client;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class HedgingConfig
+{
+    private double delayQuantile = 0.95;
+    private Duration minDelay = new Duration(10, MILLISECONDS);
+    private Duration maxDelay = new Duration(1, SECONDS);
+
+    @DecimalMin("0.5")
+    @DecimalMax("1.0")
+    public double getDelayQuantile()
+    {
+        return delayQuantile;
+    }
+
+    @Config("hedging.delay-quantile")
+    @ConfigDescription("Latency quantile after which a hedged request is sent to another service")
+    public HedgingConfig setDelayQuantile(double delayQuantile)
+    {
+        this.delayQuantile = delayQuantile;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0ms")
+    public Duration getMinDelay()
+    {
+        return minDelay;
+    }
+
+    @Config("hedging.min-delay")
+    @ConfigDescription("Lower bound for the delay before a hedged request is sent")
+    public HedgingConfig setMinDelay(Duration minDelay)
+    {
+        this.minDelay = minDelay;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0ms")
+    public Duration getMaxDelay()
+    {
+        return maxDelay;
+    }
+
+    @Config("hedging.max-delay")
+    @ConfigDescription("Hedging delay used until enough latencies have been observed, and upper bound for the delay")
+    public HedgingConfig setMaxDelay(Duration maxDelay)
+    {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    @AssertTrue(message = "hedging.max-delay must be at least hedging.min-delay")
+    public boolean isMaxDelayValid()
+    {
+        return minDelay == null || maxDelay == null || maxDelay.compareTo(minDelay) >= 0;
+    }
+}
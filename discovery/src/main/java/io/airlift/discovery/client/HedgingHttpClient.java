@@ -0,0 +1,324 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.discovery.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.DecayTDigest;
+import io.airlift.stats.ExponentialDecay;
+import io.airlift.stats.TDigest;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Futures.addCallback;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.round;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Sends idempotent requests to a service from a {@link HttpServiceSelector}, and sends the same
+ * request to a second service if no response arrived within the recent latency quantile
+ * (by default the p95). The first attempt to succeed provides the result, and the other
+ * attempt is canceled. If the first request fails before the hedge was sent, the hedge is sent
+ * immediately, and the request only fails when both attempts fail.
+ * <p>
+ * The hedge goes to the first selected service on a different host than the primary, since a
+ * selector may return the same node once per scheme. The scheme, host and port of the request
+ * URI are replaced with those of the selected services; the path and query are kept. Requests
+ * that are not idempotent, or that have no service on a second host, are sent once.
+ */
+@ThreadSafe
+public class HedgingHttpClient
+{
+    private static final Set<String> IDEMPOTENT_METHODS = ImmutableSet.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+    // the delay is only derived from the latency distribution once it holds this many recent samples
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final HttpClient httpClient;
+    private final HttpServiceSelector serviceSelector;
+    private final ScheduledExecutorService executor;
+    private final double delayQuantile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final Ticker ticker;
+
+    @GuardedBy("this")
+    private final DecayTDigest latencies;
+
+    private final CounterStat hedgesSent = new CounterStat();
+    private final CounterStat hedgeWins = new CounterStat();
+    private final CounterStat hedgeLosses = new CounterStat();
+
+    public HedgingHttpClient(HttpClient httpClient, HttpServiceSelector serviceSelector, ScheduledExecutorService executor, HedgingConfig config)
+    {
+        this(httpClient, serviceSelector, executor, config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    HedgingHttpClient(HttpClient httpClient, HttpServiceSelector serviceSelector, ScheduledExecutorService executor, HedgingConfig config, Ticker ticker)
+    {
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.serviceSelector = requireNonNull(serviceSelector, "serviceSelector is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        requireNonNull(config, "config is null");
+        this.delayQuantile = config.getDelayQuantile();
+        this.minDelayNanos = config.getMinDelay().roundTo(NANOSECONDS);
+        this.maxDelayNanos = config.getMaxDelay().roundTo(NANOSECONDS);
+        checkArgument(minDelayNanos <= maxDelayNanos, "minDelay is greater than maxDelay");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.latencies = new DecayTDigest(TDigest.DEFAULT_COMPRESSION, ExponentialDecay.oneMinute(), ticker);
+    }
+
+    public <T, E extends Exception> ListenableFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        requireNonNull(request, "request is null");
+        requireNonNull(responseHandler, "responseHandler is null");
+
+        List<URI> services = serviceSelector.selectHttpService();
+        if (services.isEmpty()) {
+            return immediateFailedFuture(new DiscoveryException(String.format("No %s services from pool %s available", serviceSelector.getType(), serviceSelector.getPool())));
+        }
+
+        URI primaryService = services.get(0);
+        Attempt<T> primary = new Attempt<>();
+        Optional<URI> hedgeService = selectHedgeService(services, primaryService);
+        if (!hedgeService.isPresent() || !IDEMPOTENT_METHODS.contains(request.getMethod().toUpperCase(ENGLISH))) {
+            primary.start(withService(request, primaryService), responseHandler);
+            return primary.future;
+        }
+
+        Attempt<T> hedge = new Attempt<>();
+        Request hedgeRequest = withService(request, hedgeService.get());
+        Runnable sendHedge = () -> {
+            if (hedge.markStarted()) {
+                hedgesSent.update(1);
+                hedge.send(hedgeRequest, responseHandler);
+            }
+        };
+
+        SettableFuture<T> result = SettableFuture.create();
+        // set by the attempt that provides the result, so the stats are updated before the result is visible
+        AtomicBoolean completed = new AtomicBoolean();
+        ScheduledFuture<?> hedgeTask = executor.schedule(sendHedge, getHedgeDelayNanos(), NANOSECONDS);
+
+        addCallback(primary.future, new FutureCallback<T>()
+        {
+            @Override
+            public void onSuccess(T value)
+            {
+                if (completed.compareAndSet(false, true)) {
+                    result.set(value);
+                    hedge.future.cancel(true);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable throwable)
+            {
+                if (result.isDone()) {
+                    return;
+                }
+                if (!hedge.started.get()) {
+                    hedgeTask.cancel(false);
+                    sendHedge.run();
+                }
+                else if (hedge.future.isDone()) {
+                    // both attempts failed
+                    if (completed.compareAndSet(false, true)) {
+                        result.setException(throwable);
+                    }
+                }
+            }
+        }, directExecutor());
+
+        addCallback(hedge.future, new FutureCallback<T>()
+        {
+            @Override
+            public void onSuccess(T value)
+            {
+                if (completed.compareAndSet(false, true)) {
+                    hedgeWins.update(1);
+                    result.set(value);
+                    primary.future.cancel(true);
+                }
+                else {
+                    hedgeLosses.update(1);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable throwable)
+            {
+                if (!hedge.started.get()) {
+                    // canceled before it was sent
+                    return;
+                }
+                hedgeLosses.update(1);
+                if (primary.future.isDone() && completed.compareAndSet(false, true)) {
+                    // both attempts failed
+                    result.setException(throwable);
+                }
+            }
+        }, directExecutor());
+
+        result.addListener(
+                () -> {
+                    hedgeTask.cancel(false);
+                    if (result.isCancelled()) {
+                        primary.future.cancel(true);
+                        hedge.future.cancel(true);
+                    }
+                },
+                directExecutor());
+
+        primary.start(withService(request, primaryService), responseHandler);
+        return result;
+    }
+
+    private static Optional<URI> selectHedgeService(List<URI> services, URI primary)
+    {
+        return services.stream()
+                .filter(service -> !isSameHost(service, primary))
+                .findFirst();
+    }
+
+    private static boolean isSameHost(URI first, URI second)
+    {
+        return first.getHost() == null ? second.getHost() == null : first.getHost().equalsIgnoreCase(second.getHost());
+    }
+
+    @VisibleForTesting
+    synchronized long getHedgeDelayNanos()
+    {
+        if (latencies.getCount() < MIN_LATENCY_SAMPLES) {
+            return maxDelayNanos;
+        }
+        return max(minDelayNanos, min(maxDelayNanos, round(latencies.valueAt(delayQuantile))));
+    }
+
+    private synchronized void recordLatency(long nanos)
+    {
+        latencies.add(nanos);
+    }
+
+    private static Request withService(Request request, URI service)
+    {
+        URI uri = request.getUri();
+        String pathAndQuery = uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        return Request.Builder.fromRequest(request)
+                .setUri(service.resolve(pathAndQuery))
+                .build();
+    }
+
+    @Managed
+    public double getHedgeDelayMillis()
+    {
+        return new Duration(getHedgeDelayNanos(), NANOSECONDS).getValue(MILLISECONDS);
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHedgesSent()
+    {
+        return hedgesSent;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHedgeWins()
+    {
+        return hedgeWins;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHedgeLosses()
+    {
+        return hedgeLosses;
+    }
+
+    /**
+     * A single attempt. The future exists before the request is sent, so the hedge can be
+     * canceled before it starts.
+     */
+    private class Attempt<T>
+    {
+        private final SettableFuture<T> future = SettableFuture.create();
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * Returns true if the caller should send this attempt, which happens at most once,
+         * and not after the attempt was canceled.
+         */
+        public boolean markStarted()
+        {
+            return !future.isDone() && started.compareAndSet(false, true);
+        }
+
+        public <E extends Exception> void start(Request request, ResponseHandler<T, E> responseHandler)
+        {
+            if (markStarted()) {
+                send(request, responseHandler);
+            }
+        }
+
+        public <E extends Exception> void send(Request request, ResponseHandler<T, E> responseHandler)
+        {
+            long start = ticker.read();
+            ListenableFuture<T> response = httpClient.executeAsync(request, responseHandler);
+            addCallback(response, new FutureCallback<T>()
+            {
+                @Override
+                public void onSuccess(T result)
+                {
+                    recordLatency(ticker.read() - start);
+                }
+
+                @Override
+                public void onFailure(Throwable throwable)
+                {
+                }
+            }, directExecutor());
+            // canceling the attempt cancels the response future
+            future.setFuture(response);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.discovery.client;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import javax.validation.constraints.AssertTrue;
+
+import java.util.Map;
+
+import static io.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
+import static io.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static io.airlift.configuration.testing.ConfigAssertions.recordDefaults;
+import static io.airlift.testing.ValidationAssertions.assertFailsValidation;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TestHedgingConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(HedgingConfig.class)
+                .setDelayQuantile(0.95)
+                .setMinDelay(new Duration(10, MILLISECONDS))
+                .setMaxDelay(new Duration(1, SECONDS)));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+                .put("hedging.delay-quantile", "0.99")
+                .put("hedging.min-delay", "5ms")
+                .put("hedging.max-delay", "2s")
+                .build();
+
+        HedgingConfig expected = new HedgingConfig()
+                .setDelayQuantile(0.99)
+                .setMinDelay(new Duration(5, MILLISECONDS))
+                .setMaxDelay(new Duration(2, SECONDS));
+
+        assertFullMapping(properties, expected);
+    }
+
+    @Test
+    public void testValidation()
+    {
+        assertFailsValidation(
+                new HedgingConfig()
+                        .setMinDelay(new Duration(2, SECONDS))
+                        .setMaxDelay(new Duration(1, SECONDS)),
+                "maxDelayValid",
+                "hedging.max-delay must be at least hedging.min-delay",
+                AssertTrue.class);
+    }
+}
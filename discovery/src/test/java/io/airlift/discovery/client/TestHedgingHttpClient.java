@@ -0,0 +1,347 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.discovery.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.StringResponseHandler.StringResponse;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.testing.TestingTicker;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.Request.Builder.preparePost;
+import static io.airlift.http.client.StringResponseHandler.createStringResponseHandler;
+import static io.airlift.testing.Assertions.assertInstanceOf;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestHedgingHttpClient
+{
+    private static final URI SLOW = URI.create("http://slow.example.com:8080");
+    private static final URI FAST = URI.create("http://fast.example.com:8080");
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = Executors.newCachedThreadPool(daemonThreadsNamed("test-hedging-%s"));
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor(daemonThreadsNamed("test-hedging-scheduler-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testHedgeWins()
+            throws Exception
+    {
+        CountDownLatch slowCanceled = new CountDownLatch(1);
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            if (request.getUri().getHost().equals(SLOW.getHost())) {
+                try {
+                    Thread.sleep(SECONDS.toMillis(10));
+                }
+                catch (InterruptedException e) {
+                    slowCanceled.countDown();
+                    throw e;
+                }
+            }
+            return response(request.getUri().getHost());
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient, SLOW, FAST);
+        StringResponse response = client.executeAsync(prepareGet().setUri(URI.create("http://unused/v1/resource?x=1")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        assertEquals(response.getBody(), FAST.getHost());
+        assertEquals(requested, ImmutableList.of(SLOW.resolve("/v1/resource?x=1"), FAST.resolve("/v1/resource?x=1")));
+        assertTrue(slowCanceled.await(5, SECONDS));
+        assertEquals(client.getHedgesSent().getTotalCount(), 1);
+        assertEquals(client.getHedgeWins().getTotalCount(), 1);
+        assertEquals(client.getHedgeLosses().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testPrimaryWinsWithoutHedge()
+            throws Exception
+    {
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            return response(request.getUri().getHost());
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient, FAST, SLOW);
+        StringResponse response = client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        assertEquals(response.getBody(), FAST.getHost());
+        // give a hedge that was wrongly scheduled a chance to be sent
+        Thread.sleep(200);
+        assertEquals(requested, ImmutableList.of(FAST.resolve("/")));
+        assertEquals(client.getHedgesSent().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testPrimaryFailureSendsHedge()
+            throws Exception
+    {
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            if (request.getUri().getHost().equals(SLOW.getHost())) {
+                throw new IOException("primary failed");
+            }
+            return response(request.getUri().getHost());
+        }, executor);
+
+        HedgingHttpClient client = new HedgingHttpClient(
+                httpClient,
+                new StaticServiceSelector(ImmutableList.of(SLOW, FAST)),
+                scheduledExecutor,
+                new HedgingConfig()
+                        .setMinDelay(new Duration(10, SECONDS))
+                        .setMaxDelay(new Duration(10, SECONDS)));
+        StringResponse response = client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        // the hedge is sent as soon as the primary fails, rather than after the hedge delay
+        assertEquals(response.getBody(), FAST.getHost());
+        assertEquals(requested, ImmutableList.of(SLOW.resolve("/"), FAST.resolve("/")));
+        assertEquals(client.getHedgesSent().getTotalCount(), 1);
+        assertEquals(client.getHedgeWins().getTotalCount(), 1);
+        assertEquals(client.getHedgeLosses().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testHedgeFailureWaitsForPrimary()
+            throws Exception
+    {
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            if (request.getUri().getHost().equals(SLOW.getHost())) {
+                Thread.sleep(300);
+                return response(request.getUri().getHost());
+            }
+            throw new IOException("hedge failed");
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient, SLOW, FAST);
+        StringResponse response = client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        assertEquals(response.getBody(), SLOW.getHost());
+        assertEquals(client.getHedgesSent().getTotalCount(), 1);
+        assertEquals(client.getHedgeWins().getTotalCount(), 0);
+        assertEquals(client.getHedgeLosses().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testBothAttemptsFail()
+            throws Exception
+    {
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            throw new IOException("failed");
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient, SLOW, FAST);
+        try {
+            client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler()).get(5, SECONDS);
+            fail("expected request to fail");
+        }
+        catch (ExecutionException e) {
+            assertEquals(requested.size(), 2);
+        }
+    }
+
+    @Test
+    public void testHedgeUsesDifferentHost()
+            throws Exception
+    {
+        URI slowHttps = URI.create("https://slow.example.com:8443");
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            if (request.getUri().getHost().equals(SLOW.getHost())) {
+                Thread.sleep(SECONDS.toMillis(10));
+            }
+            return response(request.getUri().getHost());
+        }, executor);
+
+        // the selector returns the https services before the http services, so a node appears once per scheme
+        HedgingHttpClient client = createClient(httpClient, slowHttps, SLOW, FAST);
+        StringResponse response = client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        assertEquals(response.getBody(), FAST.getHost());
+        assertEquals(requested, ImmutableList.of(slowHttps.resolve("/"), FAST.resolve("/")));
+    }
+
+    @Test
+    public void testSameHostNotHedged()
+            throws Exception
+    {
+        URI slowHttps = URI.create("https://slow.example.com:8443");
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            Thread.sleep(300);
+            return response(request.getUri().getHost());
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient, slowHttps, SLOW);
+        StringResponse response = client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        assertEquals(response.getBody(), SLOW.getHost());
+        assertEquals(requested, ImmutableList.of(slowHttps.resolve("/")));
+        assertEquals(client.getHedgesSent().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testNonIdempotentRequestNotHedged()
+            throws Exception
+    {
+        List<URI> requested = new CopyOnWriteArrayList<>();
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            requested.add(request.getUri());
+            Thread.sleep(300);
+            return response(request.getUri().getHost());
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient, SLOW, FAST);
+        StringResponse response = client.executeAsync(preparePost().setUri(URI.create("http://unused/")).build(), createStringResponseHandler())
+                .get(5, SECONDS);
+
+        assertEquals(response.getBody(), SLOW.getHost());
+        assertEquals(requested, ImmutableList.of(SLOW.resolve("/")));
+        assertEquals(client.getHedgesSent().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testNoServices()
+            throws Exception
+    {
+        TestingHttpClient httpClient = new TestingHttpClient(request -> {
+            throw new AssertionError("unexpected request");
+        }, executor);
+
+        HedgingHttpClient client = createClient(httpClient);
+        try {
+            client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler()).get();
+            fail("expected DiscoveryException");
+        }
+        catch (ExecutionException e) {
+            assertInstanceOf(e.getCause(), DiscoveryException.class);
+        }
+    }
+
+    @Test
+    public void testDelayFromLatencies()
+            throws Exception
+    {
+        TestingHttpClient httpClient = new TestingHttpClient(request -> response("ok"), executor);
+        TestingTicker ticker = new TestingTicker();
+        HedgingHttpClient client = new HedgingHttpClient(
+                httpClient,
+                new StaticServiceSelector(ImmutableList.of(FAST)),
+                scheduledExecutor,
+                new HedgingConfig()
+                        .setMinDelay(new Duration(10, MILLISECONDS))
+                        .setMaxDelay(new Duration(1, SECONDS)),
+                ticker);
+
+        assertEquals(client.getHedgeDelayNanos(), SECONDS.toNanos(1));
+        for (int i = 0; i < 100; i++) {
+            client.executeAsync(prepareGet().setUri(URI.create("http://unused/")).build(), createStringResponseHandler()).get(5, SECONDS);
+        }
+        // the ticker did not move, so every observed latency is zero and the delay is the minimum
+        assertEquals(client.getHedgeDelayNanos(), MILLISECONDS.toNanos(10));
+    }
+
+    private HedgingHttpClient createClient(TestingHttpClient httpClient, URI... services)
+    {
+        return new HedgingHttpClient(
+                httpClient,
+                new StaticServiceSelector(ImmutableList.copyOf(services)),
+                scheduledExecutor,
+                new HedgingConfig()
+                        .setMinDelay(new Duration(50, MILLISECONDS))
+                        .setMaxDelay(new Duration(50, MILLISECONDS)));
+    }
+
+    private static TestingResponse response(String body)
+    {
+        return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), body.getBytes(UTF_8));
+    }
+
+    private static class StaticServiceSelector
+            implements HttpServiceSelector
+    {
+        private final List<URI> services;
+
+        public StaticServiceSelector(List<URI> services)
+        {
+            this.services = ImmutableList.copyOf(services);
+        }
+
+        @Override
+        public String getType()
+        {
+            return "test";
+        }
+
+        @Override
+        public String getPool()
+        {
+            return "general";
+        }
+
+        @Override
+        public List<URI> selectHttpService()
+        {
+            return services;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.airlift.http.client;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Body made of the remaining bytes of a sequence of buffers, which may be direct
+ * or memory mapped. The Jetty client sends the buffers as they are, without copying
+ * them or writing them from another thread. The buffers must not be modified until
+ * the request completes.
+ */
+@Beta
+public class ByteBufferBodyGenerator
+        implements BodyGenerator
+{
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    public static ByteBufferBodyGenerator createByteBufferBodyGenerator(ByteBuffer... buffers)
+    {
+        return new ByteBufferBodyGenerator(ImmutableList.copyOf(buffers));
+    }
+
+    public static ByteBufferBodyGenerator createByteBufferBodyGenerator(List<ByteBuffer> buffers)
+    {
+        return new ByteBufferBodyGenerator(buffers);
+    }
+
+    private final List<ByteBuffer> buffers;
+
+    private ByteBufferBodyGenerator(List<ByteBuffer> buffers)
+    {
+        requireNonNull(buffers, "buffers is null");
+        // capture the current positions, so the body can be sent more than once
+        this.buffers = buffers.stream()
+                .map(ByteBuffer::asReadOnlyBuffer)
+                .collect(toImmutableList());
+    }
+
+    /**
+     * Returns new views of the body buffers, positioned at the start of the body.
+     */
+    public List<ByteBuffer> getBuffers()
+    {
+        return buffers.stream()
+                .map(ByteBuffer::duplicate)
+                .collect(toImmutableList());
+    }
+
+    public long getLength()
+    {
+        return buffers.stream()
+                .mapToLong(ByteBuffer::remaining)
+                .sum();
+    }
+
+    @Override
+    public void write(OutputStream out)
+            throws Exception
+    {
+        // the buffers are read only views, so their arrays are not accessible
+        byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+        for (ByteBuffer buffer : getBuffers()) {
+            while (buffer.hasRemaining()) {
+                int length = min(buffer.remaining(), copyBuffer.length);
+                buffer.get(copyBuffer, 0, length);
+                out.write(copyBuffer, 0, length);
+            }
+        }
+    }
+}
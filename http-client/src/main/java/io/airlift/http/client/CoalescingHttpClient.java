@@ -0,0 +1,337 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.util.concurrent.Futures.addCallback;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shares one request among concurrent identical asynchronous requests. While a GET or HEAD
+ * request without a body is in flight, an equal request with the same response handler
+ * instance does not go to the network; it completes with the value (or exception) of the
+ * request in flight. The value is shared by all callers, so it must not be modified.
+ * <p>
+ * The shared request is only canceled when every caller waiting on it has canceled.
+ * Synchronous requests are passed through unchanged.
+ */
+@Beta
+@ThreadSafe
+public class CoalescingHttpClient
+        implements HttpClient
+{
+    private static final Set<String> COALESCED_METHODS = ImmutableSet.of("GET", "HEAD");
+
+    private final HttpClient delegate;
+    private final ConcurrentMap<Key, SharedRequest<?>> inFlight = new ConcurrentHashMap<>();
+    private final CounterStat sharedRequests = new CounterStat();
+    private final CounterStat coalescedRequests = new CounterStat();
+
+    public CoalescingHttpClient(HttpClient delegate)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+    }
+
+    @Override
+    public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        return delegate.execute(request, responseHandler);
+    }
+
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        requireNonNull(request, "request is null");
+        requireNonNull(responseHandler, "responseHandler is null");
+
+        if (request.getBodyGenerator() != null || !COALESCED_METHODS.contains(request.getMethod().toUpperCase(ENGLISH))) {
+            return delegate.executeAsync(request, responseHandler);
+        }
+
+        Key key = new Key(request, responseHandler);
+        while (true) {
+            @SuppressWarnings("unchecked")
+            SharedRequest<T> shared = (SharedRequest<T>) inFlight.get(key);
+            if (shared == null) {
+                SharedRequest<T> newShared = new SharedRequest<>();
+                if (inFlight.putIfAbsent(key, newShared) != null) {
+                    continue;
+                }
+                // the entry is in the map before the request starts, so a request that
+                // completes immediately removes it
+                CoalescedResponseFuture<T> waiter = newShared.addWaiter();
+                sharedRequests.update(1);
+                HttpResponseFuture<T> future;
+                try {
+                    future = delegate.executeAsync(request, responseHandler);
+                }
+                catch (RuntimeException | Error e) {
+                    inFlight.remove(key, newShared);
+                    newShared.failed(e);
+                    throw e;
+                }
+                newShared.start(future, () -> inFlight.remove(key, newShared));
+                return waiter;
+            }
+
+            CoalescedResponseFuture<T> waiter = shared.addWaiter();
+            if (waiter != null) {
+                coalescedRequests.update(1);
+                return waiter;
+            }
+            // the shared request completed or was canceled; remove it and try again
+            inFlight.remove(key, shared);
+        }
+    }
+
+    @Override
+    public RequestStats getStats()
+    {
+        return delegate.getStats();
+    }
+
+    @Override
+    public long getMaxContentLength()
+    {
+        return delegate.getMaxContentLength();
+    }
+
+    @Override
+    public void close()
+    {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return delegate.isClosed();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getSharedRequests()
+    {
+        return sharedRequests;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCoalescedRequests()
+    {
+        return coalescedRequests;
+    }
+
+    @Managed
+    public int getInFlightRequests()
+    {
+        return inFlight.size();
+    }
+
+    private static final class Key
+    {
+        private final Request request;
+        private final ResponseHandler<?, ?> responseHandler;
+
+        public Key(Request request, ResponseHandler<?, ?> responseHandler)
+        {
+            this.request = request;
+            this.responseHandler = responseHandler;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            // handlers are compared by identity, since few of them implement equals
+            return request.equals(other.request) && responseHandler == other.responseHandler;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(request, System.identityHashCode(responseHandler));
+        }
+    }
+
+    @ThreadSafe
+    private static class SharedRequest<T>
+    {
+        // completed from the response future with a listener rather than setFuture, so canceling
+        // one caller does not cancel the request for the others
+        private final SettableFuture<T> result = SettableFuture.create();
+
+        @GuardedBy("this")
+        private HttpResponseFuture<T> future;
+        @GuardedBy("this")
+        private int waiters;
+        @GuardedBy("this")
+        private boolean done;
+
+        /**
+         * Returns a future for a new caller, or null if the shared request is done.
+         */
+        public CoalescedResponseFuture<T> addWaiter()
+        {
+            synchronized (this) {
+                if (done) {
+                    return null;
+                }
+                waiters++;
+            }
+            CoalescedResponseFuture<T> waiter = new CoalescedResponseFuture<>(this);
+            addCallback(result, new FutureCallback<T>()
+            {
+                @Override
+                public void onSuccess(T value)
+                {
+                    waiter.set(value);
+                }
+
+                @Override
+                public void onFailure(Throwable throwable)
+                {
+                    if (throwable instanceof CancellationException) {
+                        waiter.cancel(false);
+                    }
+                    else {
+                        waiter.setException(throwable);
+                    }
+                }
+            }, directExecutor());
+            return waiter;
+        }
+
+        public void start(HttpResponseFuture<T> future, Runnable onDone)
+        {
+            synchronized (this) {
+                this.future = future;
+            }
+            future.addListener(
+                    () -> {
+                        synchronized (this) {
+                            done = true;
+                        }
+                        onDone.run();
+                        try {
+                            result.set(getDone(future));
+                        }
+                        catch (ExecutionException e) {
+                            result.setException(e.getCause());
+                        }
+                        catch (CancellationException e) {
+                            result.cancel(false);
+                        }
+                    },
+                    directExecutor());
+        }
+
+        public void failed(Throwable throwable)
+        {
+            synchronized (this) {
+                done = true;
+            }
+            result.setException(throwable);
+        }
+
+        public void waiterCanceled()
+        {
+            HttpResponseFuture<T> future;
+            synchronized (this) {
+                waiters--;
+                if (waiters > 0 || done) {
+                    return;
+                }
+                done = true;
+                future = this.future;
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        public synchronized String getState()
+        {
+            return future == null ? "SENDING_REQUEST" : future.getState();
+        }
+    }
+
+    private static class CoalescedResponseFuture<T>
+            extends AbstractFuture<T>
+            implements HttpResponseFuture<T>
+    {
+        private final SharedRequest<T> shared;
+
+        public CoalescedResponseFuture(SharedRequest<T> shared)
+        {
+            this.shared = shared;
+        }
+
+        @Override
+        protected boolean set(T value)
+        {
+            return super.set(value);
+        }
+
+        @Override
+        protected boolean setException(Throwable throwable)
+        {
+            return super.setException(throwable);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            if (!super.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            shared.waiterCanceled();
+            return true;
+        }
+
+        @Override
+        public String getState()
+        {
+            return shared.getState();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSortedMap;
+import io.airlift.units.Duration;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Request time and size histograms for each destination (host and port), covering the last one
+ * to two minutes. At most {@code maxDestinations} destinations are tracked; requests to any
+ * further destinations are recorded under {@value #OTHER_DESTINATIONS}.
+ */
+@Beta
+@ThreadSafe
+public class DestinationStats
+{
+    public static final String OTHER_DESTINATIONS = "other";
+
+    private static final long INTERVAL_NANOS = MINUTES.toNanos(1);
+
+    private final int maxDestinations;
+    private final Ticker ticker;
+    private final ConcurrentMap<String, Destination> destinations = new ConcurrentHashMap<>();
+    private final AtomicInteger destinationCount = new AtomicInteger();
+    private final Destination otherDestinations;
+
+    public DestinationStats(int maxDestinations)
+    {
+        this(maxDestinations, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DestinationStats(int maxDestinations, Ticker ticker)
+    {
+        checkArgument(maxDestinations >= 0, "maxDestinations is negative");
+        this.maxDestinations = maxDestinations;
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.otherDestinations = new Destination(ticker);
+    }
+
+    public void record(URI uri, long requestSizeInBytes, long responseSizeInBytes, Duration requestProcessingTime)
+    {
+        if (maxDestinations == 0 || uri == null || uri.getHost() == null) {
+            return;
+        }
+        Destination destination = getDestination(destinationKey(uri));
+        destination.requestTime.add((long) requestProcessingTime.getValue(MICROSECONDS));
+        destination.readBytes.add(responseSizeInBytes);
+        destination.writtenBytes.add(requestSizeInBytes);
+    }
+
+    private Destination getDestination(String key)
+    {
+        Destination destination = destinations.get(key);
+        if (destination != null) {
+            return destination;
+        }
+        destination = destinations.computeIfAbsent(key, ignored -> {
+            if (destinationCount.incrementAndGet() > maxDestinations) {
+                destinationCount.decrementAndGet();
+                return null;
+            }
+            return new Destination(ticker);
+        });
+        return destination == null ? otherDestinations : destination;
+    }
+
+    private static String destinationKey(URI uri)
+    {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getHost().toLowerCase(ENGLISH) + ":" + port;
+    }
+
+    @Managed
+    public int getTrackedDestinations()
+    {
+        return destinationCount.get();
+    }
+
+    @Managed
+    public Map<String, Long> getRequestCountPerDestination()
+    {
+        ImmutableSortedMap.Builder<String, Long> result = ImmutableSortedMap.naturalOrder();
+        forEachDestination((key, destination) -> {
+            long count = destination.requestTime.snapshot().getCount();
+            if (count > 0) {
+                result.put(key, count);
+            }
+        });
+        return result.build();
+    }
+
+    @Managed
+    public Map<String, Double> getRequestTimeP50PerDestination()
+    {
+        return requestTimeMillis(snapshot -> snapshot.getQuantile(0.5));
+    }
+
+    @Managed
+    public Map<String, Double> getRequestTimeP90PerDestination()
+    {
+        return requestTimeMillis(snapshot -> snapshot.getQuantile(0.9));
+    }
+
+    @Managed
+    public Map<String, Double> getRequestTimeP99PerDestination()
+    {
+        return requestTimeMillis(snapshot -> snapshot.getQuantile(0.99));
+    }
+
+    @Managed
+    public Map<String, Double> getRequestTimeMaxPerDestination()
+    {
+        return requestTimeMillis(RollingHistogram.Snapshot::getMax);
+    }
+
+    @Managed
+    public Map<String, Double> getReadBytesAvgPerDestination()
+    {
+        return collect(destination -> destination.readBytes, RollingHistogram.Snapshot::getAvg);
+    }
+
+    @Managed
+    public Map<String, Double> getReadBytesP99PerDestination()
+    {
+        return collect(destination -> destination.readBytes, snapshot -> snapshot.getQuantile(0.99));
+    }
+
+    @Managed
+    public Map<String, Double> getWrittenBytesAvgPerDestination()
+    {
+        return collect(destination -> destination.writtenBytes, RollingHistogram.Snapshot::getAvg);
+    }
+
+    @Managed
+    public Map<String, Double> getWrittenBytesP99PerDestination()
+    {
+        return collect(destination -> destination.writtenBytes, snapshot -> snapshot.getQuantile(0.99));
+    }
+
+    private Map<String, Double> requestTimeMillis(ToDoubleFunction<RollingHistogram.Snapshot> statistic)
+    {
+        double microsPerMilli = MILLISECONDS.toMicros(1);
+        return collect(destination -> destination.requestTime, snapshot -> statistic.applyAsDouble(snapshot) / microsPerMilli);
+    }
+
+    private Map<String, Double> collect(Function<Destination, RollingHistogram> histogram, ToDoubleFunction<RollingHistogram.Snapshot> statistic)
+    {
+        ImmutableSortedMap.Builder<String, Double> result = ImmutableSortedMap.naturalOrder();
+        forEachDestination((key, destination) -> {
+            RollingHistogram.Snapshot snapshot = histogram.apply(destination).snapshot();
+            if (snapshot.getCount() > 0) {
+                result.put(key, statistic.applyAsDouble(snapshot));
+            }
+        });
+        return result.build();
+    }
+
+    private void forEachDestination(BiConsumer<String, Destination> consumer)
+    {
+        destinations.forEach(consumer);
+        consumer.accept(OTHER_DESTINATIONS, otherDestinations);
+    }
+
+    private static class Destination
+    {
+        // request time is recorded in microseconds
+        private final RollingHistogram requestTime;
+        private final RollingHistogram readBytes;
+        private final RollingHistogram writtenBytes;
+
+        public Destination(Ticker ticker)
+        {
+            requestTime = new RollingHistogram(INTERVAL_NANOS, ticker);
+            readBytes = new RollingHistogram(INTERVAL_NANOS, ticker);
+            writtenBytes = new RollingHistogram(INTERVAL_NANOS, ticker);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package io.airlift.http.client;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.io.InputStream;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkPositionIndexes;
@@ -18,8 +20,11 @@ import static java.util.Objects.requireNonNull;
 public class GatheringByteArrayInputStream
         extends InputStream
 {
+    @GuardedBy("this")
+    private final List<byte[]> bufferList;
     @GuardedBy("this")
     private final Iterator<byte[]> buffers;
+    private final Consumer<byte[]> bufferReleaser;
     @GuardedBy("this")
     private final byte[] singleByte = new byte[1];
     @GuardedBy("this")
@@ -28,13 +33,27 @@ public class GatheringByteArrayInputStream
     private int currentBufferPosition;
     @GuardedBy("this")
     private long remainingBytes;
+    @GuardedBy("this")
+    private boolean closed;
 
     public GatheringByteArrayInputStream(List<byte[]> buffers, long totalBytes)
+    {
+        this(buffers, totalBytes, null);
+    }
+
+    /**
+     * Creates a stream that hands each buffer to {@code bufferReleaser} when it is closed.
+     * Reading a closed stream throws an {@link IllegalStateException}, so the buffers may be
+     * reused immediately.
+     */
+    public GatheringByteArrayInputStream(List<byte[]> buffers, long totalBytes, @Nullable Consumer<byte[]> bufferReleaser)
     {
         checkArgument(totalBytes >= 0, "totalBytes should equal to or greater than 0");
 
-        this.buffers = requireNonNull(buffers, "buffers is null").iterator();
+        this.bufferList = requireNonNull(buffers, "buffers is null");
+        this.buffers = buffers.iterator();
         this.remainingBytes = totalBytes;
+        this.bufferReleaser = bufferReleaser;
     }
 
     @Override
@@ -56,6 +75,7 @@ public class GatheringByteArrayInputStream
     @Override
     public synchronized long skip(long n)
     {
+        checkNotReleased();
         if (n < 0) {
             return 0;
         }
@@ -78,6 +98,7 @@ public class GatheringByteArrayInputStream
     @Override
     public synchronized int read(byte[] buffer, int offset, int length)
     {
+        checkNotReleased();
         requireNonNull(buffer, "buffer is null");
         checkPositionIndexes(offset, offset + length, buffer.length);
 
@@ -103,7 +124,25 @@ public class GatheringByteArrayInputStream
     }
 
     @Override
-    public void close() {}
+    public synchronized void close()
+    {
+        // without a releaser the buffers are owned by this stream and can still be read after close
+        if (bufferReleaser == null || closed) {
+            return;
+        }
+        closed = true;
+
+        remainingBytes = 0;
+        currentBuffer = new byte[0];
+        currentBufferPosition = 0;
+        bufferList.forEach(bufferReleaser);
+    }
+
+    private void checkNotReleased()
+    {
+        // the released buffers may already hold the content of another response
+        checkState(!closed, "Content was read after the stream was closed and its buffers were released");
+    }
 
     private synchronized void advanceCurrentBuffer()
     {
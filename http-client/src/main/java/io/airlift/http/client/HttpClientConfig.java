@@ -29,6 +29,7 @@ import io.airlift.units.MaxDataSize;
 import io.airlift.units.MinDataSize;
 import io.airlift.units.MinDuration;
 
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
@@ -57,6 +58,8 @@ public class HttpClientConfig
     private int maxConnections = 200;
     private int maxConnectionsPerServer = 20;
     private int maxRequestsQueuedPerDestination = 1024;
+    private int warmConnectionsPerServer;
+    private int minIdleConnectionsPerServer;
     private DataSize maxContentLength = new DataSize(16, MEGABYTE);
     private DataSize requestBufferSize = new DataSize(4, KILOBYTE);
     private DataSize responseBufferSize = new DataSize(16, KILOBYTE);
@@ -83,6 +86,14 @@ public class HttpClientConfig
     private int selectorCount = 2;
     private boolean recordRequestComplete = true;
     private boolean connectBlocking;
+    private boolean responseBufferPoolEnabled;
+    private DataSize responseBufferPoolMaxSize = new DataSize(32, MEGABYTE);
+    private boolean responseCacheEnabled;
+    private DataSize responseCacheMaxSize = new DataSize(32, MEGABYTE);
+    private boolean adaptiveConcurrencyLimitEnabled;
+    private int adaptiveConcurrencyInitialLimit = 20;
+    private int adaptiveConcurrencyMaxLimit = 1000;
+    private int adaptiveConcurrencyMaxDestinations = 1000;
 
     private int maxThreads = 200;
     private int minThreads = 8;
@@ -102,6 +113,7 @@ public class HttpClientConfig
     private DataSize logBufferSize = new DataSize(1, MEGABYTE);
     private Duration logFlushInterval = new Duration(10, SECONDS);
     private boolean logCompressionEnabled = true;
+    private int maxStatsDestinations = RequestStats.DEFAULT_MAX_DESTINATIONS;
     private boolean verifyHostname = true;
 
     public boolean isVerifyHostname()
@@ -226,6 +238,34 @@ public class HttpClientConfig
         return this;
     }
 
+    @Min(0)
+    public int getWarmConnectionsPerServer()
+    {
+        return warmConnectionsPerServer;
+    }
+
+    @Config("http-client.warm-connections-per-server")
+    @ConfigDescription("Number of connections opened to each server when the client is asked to warm connections")
+    public HttpClientConfig setWarmConnectionsPerServer(int warmConnectionsPerServer)
+    {
+        this.warmConnectionsPerServer = warmConnectionsPerServer;
+        return this;
+    }
+
+    @Min(0)
+    public int getMinIdleConnectionsPerServer()
+    {
+        return minIdleConnectionsPerServer;
+    }
+
+    @Config("http-client.min-idle-connections-per-server")
+    @ConfigDescription("Number of idle connections kept open to each server the client has used")
+    public HttpClientConfig setMinIdleConnectionsPerServer(int minIdleConnectionsPerServer)
+    {
+        this.minIdleConnectionsPerServer = minIdleConnectionsPerServer;
+        return this;
+    }
+
     @NotNull
     public DataSize getMaxContentLength()
     {
@@ -524,6 +564,121 @@ public class HttpClientConfig
         return this;
     }
 
+    public boolean isResponseBufferPoolEnabled()
+    {
+        return responseBufferPoolEnabled;
+    }
+
+    @Config("http-client.response-buffer-pool.enabled")
+    @ConfigDescription("Buffer async responses in pooled buffers, which are reused once the response handler returns")
+    public HttpClientConfig setResponseBufferPoolEnabled(boolean responseBufferPoolEnabled)
+    {
+        this.responseBufferPoolEnabled = responseBufferPoolEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getResponseBufferPoolMaxSize()
+    {
+        return responseBufferPoolMaxSize;
+    }
+
+    @Config("http-client.response-buffer-pool.max-size")
+    @ConfigDescription("Maximum total size of the idle buffers retained by the response buffer pool")
+    public HttpClientConfig setResponseBufferPoolMaxSize(DataSize responseBufferPoolMaxSize)
+    {
+        this.responseBufferPoolMaxSize = responseBufferPoolMaxSize;
+        return this;
+    }
+
+    public boolean isResponseCacheEnabled()
+    {
+        return responseCacheEnabled;
+    }
+
+    @Config("http-client.response-cache.enabled")
+    @ConfigDescription("Cache responses to GET requests according to their Cache-Control, ETag and Vary headers")
+    public HttpClientConfig setResponseCacheEnabled(boolean responseCacheEnabled)
+    {
+        this.responseCacheEnabled = responseCacheEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getResponseCacheMaxSize()
+    {
+        return responseCacheMaxSize;
+    }
+
+    @Config("http-client.response-cache.max-size")
+    @ConfigDescription("Maximum total size of the responses held by the response cache")
+    public HttpClientConfig setResponseCacheMaxSize(DataSize responseCacheMaxSize)
+    {
+        this.responseCacheMaxSize = responseCacheMaxSize;
+        return this;
+    }
+
+    public boolean isAdaptiveConcurrencyLimitEnabled()
+    {
+        return adaptiveConcurrencyLimitEnabled;
+    }
+
+    @Config("http-client.adaptive-concurrency-limit.enabled")
+    @ConfigDescription("Limit requests in flight per destination based on observed latency, and reject requests over the limit")
+    public HttpClientConfig setAdaptiveConcurrencyLimitEnabled(boolean adaptiveConcurrencyLimitEnabled)
+    {
+        this.adaptiveConcurrencyLimitEnabled = adaptiveConcurrencyLimitEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getAdaptiveConcurrencyInitialLimit()
+    {
+        return adaptiveConcurrencyInitialLimit;
+    }
+
+    @Config("http-client.adaptive-concurrency-limit.initial-limit")
+    @ConfigDescription("Requests in flight allowed to a destination before any latency has been observed")
+    public HttpClientConfig setAdaptiveConcurrencyInitialLimit(int adaptiveConcurrencyInitialLimit)
+    {
+        this.adaptiveConcurrencyInitialLimit = adaptiveConcurrencyInitialLimit;
+        return this;
+    }
+
+    @Min(1)
+    public int getAdaptiveConcurrencyMaxLimit()
+    {
+        return adaptiveConcurrencyMaxLimit;
+    }
+
+    @Config("http-client.adaptive-concurrency-limit.max-limit")
+    @ConfigDescription("Upper bound for the requests in flight allowed to a destination")
+    public HttpClientConfig setAdaptiveConcurrencyMaxLimit(int adaptiveConcurrencyMaxLimit)
+    {
+        this.adaptiveConcurrencyMaxLimit = adaptiveConcurrencyMaxLimit;
+        return this;
+    }
+
+    @Min(1)
+    public int getAdaptiveConcurrencyMaxDestinations()
+    {
+        return adaptiveConcurrencyMaxDestinations;
+    }
+
+    @Config("http-client.adaptive-concurrency-limit.max-destinations")
+    @ConfigDescription("Maximum number of destinations with their own concurrency limit; the least recently used are forgotten")
+    public HttpClientConfig setAdaptiveConcurrencyMaxDestinations(int adaptiveConcurrencyMaxDestinations)
+    {
+        this.adaptiveConcurrencyMaxDestinations = adaptiveConcurrencyMaxDestinations;
+        return this;
+    }
+
+    @AssertTrue(message = "http-client.adaptive-concurrency-limit.max-limit must be at least http-client.adaptive-concurrency-limit.initial-limit")
+    public boolean isAdaptiveConcurrencyMaxLimitValid()
+    {
+        return adaptiveConcurrencyMaxLimit >= adaptiveConcurrencyInitialLimit;
+    }
+
     @Min(1)
     public int getMaxThreads()
     {
@@ -578,6 +733,20 @@ public class HttpClientConfig
         return this;
     }
 
+    @Min(0)
+    public int getMaxStatsDestinations()
+    {
+        return maxStatsDestinations;
+    }
+
+    @Config("http-client.stats.max-destinations")
+    @ConfigDescription("Maximum number of destinations with their own request statistics, or 0 to disable them")
+    public HttpClientConfig setMaxStatsDestinations(int maxStatsDestinations)
+    {
+        this.maxStatsDestinations = maxStatsDestinations;
+        return this;
+    }
+
     public String getLogPath()
     {
         return logPath;
@@ -0,0 +1,22 @@
+package io.airlift.http.client;
+
+import com.google.common.annotations.Beta;
+
+import java.nio.file.Path;
+
+/**
+ * File body that the Jetty client sends as memory mapped regions of the file, so
+ * the content is not copied into the heap. Mapped regions are only released when
+ * they are garbage collected, and truncating the file while it is sent crashes the
+ * sending thread with an {@link InternalError}, so use this only for large files
+ * that do not change. Other clients send the file like a {@link FileBodyGenerator}.
+ */
+@Beta
+public class MappedFileBodyGenerator
+        extends FileBodyGenerator
+{
+    public MappedFileBodyGenerator(Path path)
+    {
+        super(path);
+    }
+}
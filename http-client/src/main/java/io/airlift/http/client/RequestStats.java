@@ -25,11 +25,15 @@ import org.weakref.jmx.Nested;
 
 import javax.inject.Inject;
 
+import java.net.URI;
+
 import static io.airlift.http.client.HttpStatus.familyForStatusCode;
 
 @Beta
 public class RequestStats
 {
+    public static final int DEFAULT_MAX_DESTINATIONS = 100;
+
     private final CounterStat allResponse = new CounterStat();
     private final CounterStat informationalResponse = new CounterStat();
     private final CounterStat successfulResponse = new CounterStat();
@@ -44,10 +48,32 @@ public class RequestStats
     private final TimeStat responseTime = new TimeStat();
     private final DistributionStat readBytes = new DistributionStat();
     private final DistributionStat writtenBytes = new DistributionStat();
+    private final DestinationStats destinations;
 
     @Inject
     public RequestStats()
     {
+        this(DEFAULT_MAX_DESTINATIONS);
+    }
+
+    public RequestStats(int maxDestinations)
+    {
+        this.destinations = new DestinationStats(maxDestinations);
+    }
+
+    /**
+     * Records a response, and also records it for the destination of the URI.
+     */
+    public void recordResponseReceived(URI uri,
+            String method,
+            int responseCode,
+            long requestSizeInBytes,
+            long responseSizeInBytes,
+            Duration requestProcessingTime,
+            Duration responseProcessingTime)
+    {
+        recordResponseReceived(method, responseCode, requestSizeInBytes, responseSizeInBytes, requestProcessingTime, responseProcessingTime);
+        destinations.record(uri, requestSizeInBytes, responseSizeInBytes, requestProcessingTime);
     }
 
     public void recordResponseReceived(String method,
@@ -175,4 +201,11 @@ public class RequestStats
     {
         return writtenBytes;
     }
+
+    @Managed
+    @Nested
+    public DestinationStats getDestinations()
+    {
+        return destinations;
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Histogram of non-negative values in logarithmic buckets, eight per power of two, so
+ * estimates are within about 6% of the recorded values. Recording does not lock or allocate.
+ * <p>
+ * Values are kept for between one and two intervals: samples go to the window of the current
+ * interval, and the window of the interval before that is reused. Samples recorded while a
+ * window is being reused may be lost, which is acceptable for monitoring.
+ */
+@ThreadSafe
+class RollingHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below 2^49 (over three days in microseconds, or 256TB) have their own buckets
+    private static final int MAX_MAGNITUDE = 48;
+    @VisibleForTesting
+    static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long intervalNanos;
+    private final Ticker ticker;
+    private final Window[] windows = {new Window(), new Window()};
+
+    public RollingHistogram(long intervalNanos, Ticker ticker)
+    {
+        checkArgument(intervalNanos > 0, "intervalNanos must be positive");
+        this.intervalNanos = intervalNanos;
+        this.ticker = requireNonNull(ticker, "ticker is null");
+    }
+
+    public void add(long value)
+    {
+        checkArgument(value >= 0, "value is negative");
+        long interval = ticker.read() / intervalNanos;
+        Window window = windows[(int) (interval & 1)];
+        long windowInterval = window.interval.get();
+        if (windowInterval < interval && window.interval.compareAndSet(windowInterval, interval)) {
+            window.clear();
+        }
+        window.add(value);
+    }
+
+    public Snapshot snapshot()
+    {
+        long interval = ticker.read() / intervalNanos;
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        long maxValue = 0;
+        for (Window window : windows) {
+            long windowInterval = window.interval.get();
+            if (windowInterval != interval && windowInterval != interval - 1) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long bucketCount = window.counts.get(i);
+                counts[i] += bucketCount;
+                count += bucketCount;
+            }
+            sum += window.sum.get();
+            maxValue = max(maxValue, window.max.get());
+        }
+        return new Snapshot(counts, count, sum, maxValue);
+    }
+
+    @VisibleForTesting
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    @VisibleForTesting
+    static long bucketLowerBound(int index)
+    {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS | (index % SUB_BUCKETS))) << shift;
+    }
+
+    private static class Window
+    {
+        private final AtomicLong interval = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void add(long value)
+        {
+            counts.incrementAndGet(bucketIndex(value));
+            sum.addAndGet(value);
+            if (value > max.get()) {
+                max.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        public void clear()
+        {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    public static class Snapshot
+    {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max)
+        {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getAvg()
+        {
+            return count == 0 ? Double.NaN : (double) sum / count;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        /**
+         * Returns the midpoint of the bucket holding the quantile, or NaN if there are no values.
+         * The largest value is known exactly, so estimates never exceed it.
+         */
+        public double getQuantile(double quantile)
+        {
+            checkArgument(quantile >= 0 && quantile <= 1, "quantile must be between 0 and 1");
+            if (count == 0) {
+                return Double.NaN;
+            }
+            long rank = max(1, (long) Math.ceil(quantile * count));
+            if (rank == count) {
+                return max;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    double lower = bucketLowerBound(i);
+                    double upper = i + 1 < BUCKETS ? bucketLowerBound(i + 1) - 1 : max;
+                    return min((lower + upper) / 2, max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.MediaType;
+import com.google.common.primitives.Ints;
+import io.airlift.json.IncrementalJsonDecoder;
+import io.airlift.json.JsonCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static io.airlift.http.client.ResponseHandlerUtils.propagate;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes a JSON response like {@link JsonResponseHandler}, but without gathering
+ * the body into a single byte array first. When used with the asynchronous Jetty
+ * client, the body is parsed chunk by chunk as it arrives from the network, and
+ * syntax errors abort the transfer.
+ * <p>
+ * Unlike {@link JsonResponseHandler}, the body is not included in the message of
+ * the exception thrown for invalid JSON, since it is never held in memory.
+ */
+public class StreamingJsonResponseHandler<T>
+        implements ResponseHandler<T, RuntimeException>
+{
+    private static final MediaType MEDIA_TYPE_JSON = MediaType.create("application", "json");
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    public static <T> StreamingJsonResponseHandler<T> createStreamingJsonResponseHandler(JsonCodec<T> jsonCodec)
+    {
+        return new StreamingJsonResponseHandler<>(jsonCodec, 200, 201, 202, 203, 204, 205, 206);
+    }
+
+    public static <T> StreamingJsonResponseHandler<T> createStreamingJsonResponseHandler(JsonCodec<T> jsonCodec, int firstSuccessfulResponseCode, int... otherSuccessfulResponseCodes)
+    {
+        return new StreamingJsonResponseHandler<>(jsonCodec, firstSuccessfulResponseCode, otherSuccessfulResponseCodes);
+    }
+
+    private final JsonCodec<T> jsonCodec;
+    private final Set<Integer> successfulResponseCodes;
+
+    private StreamingJsonResponseHandler(JsonCodec<T> jsonCodec, int firstSuccessfulResponseCode, int... otherSuccessfulResponseCodes)
+    {
+        this.jsonCodec = requireNonNull(jsonCodec, "jsonCodec is null");
+        this.successfulResponseCodes = ImmutableSet.<Integer>builder().add(firstSuccessfulResponseCode).addAll(Ints.asList(otherSuccessfulResponseCodes)).build();
+    }
+
+    /**
+     * Returns true if the body of a response with these headers would be decoded
+     * by {@link #handle}, rather than the response being rejected.
+     */
+    public boolean isDecodable(Response response)
+    {
+        if (!successfulResponseCodes.contains(response.getStatusCode())) {
+            return false;
+        }
+        String contentType = response.getHeader(CONTENT_TYPE);
+        return contentType != null && MediaType.parse(contentType).is(MEDIA_TYPE_JSON);
+    }
+
+    public IncrementalJsonDecoder<T> createDecoder()
+    {
+        return jsonCodec.createIncrementalDecoder();
+    }
+
+    @Override
+    public T handleException(Request request, Exception exception)
+    {
+        throw propagate(request, exception);
+    }
+
+    @Override
+    public T handle(Request request, Response response)
+    {
+        if (!successfulResponseCodes.contains(response.getStatusCode())) {
+            throw new UnexpectedResponseException(
+                    String.format("Expected response code to be %s, but was %d", successfulResponseCodes, response.getStatusCode()),
+                    request,
+                    response);
+        }
+        String contentType = response.getHeader(CONTENT_TYPE);
+        if (contentType == null) {
+            throw new UnexpectedResponseException("Content-Type is not set for response", request, response);
+        }
+        if (!MediaType.parse(contentType).is(MEDIA_TYPE_JSON)) {
+            throw new UnexpectedResponseException("Expected application/json response from server but got " + contentType, request, response);
+        }
+
+        IncrementalJsonDecoder<T> decoder = createDecoder();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try {
+            InputStream inputStream = response.getInputStream();
+            int length = inputStream.read(buffer);
+            while (length != -1) {
+                decoder.feed(buffer, 0, length);
+                length = inputStream.read(buffer);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Error reading response from server", e);
+        }
+        return decoder.finish();
+    }
+}
@@ -0,0 +1,241 @@
+package io.airlift.http.client.jetty;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSortedMap;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Limits the number of requests in flight to each destination, adjusting the
+ * limit from the time to first response byte (AIMD). The limit grows by one
+ * per limit's worth of fast responses while it is in use, and shrinks by
+ * {@link #BACKOFF_RATIO} when a response takes more than {@link #RTT_TOLERANCE}
+ * times the minimum observed round trip time (and by at least 10ms), or
+ * when the request times out.
+ * Requests over the limit are rejected immediately instead of queueing.
+ * <p>
+ * At most {@code maxDestinations} destinations are tracked, and destinations
+ * without requests for {@link #DESTINATION_IDLE_TIMEOUT_MINUTES} minutes are
+ * forgotten. A destination that is evicted starts again from the initial limit.
+ */
+@ThreadSafe
+public class AdaptiveConcurrencyLimiter
+{
+    @VisibleForTesting
+    static final double BACKOFF_RATIO = 0.9;
+    @VisibleForTesting
+    static final double RTT_TOLERANCE = 2.0;
+    // the minimum round trip time moves this fraction of the way toward each sample,
+    // so a permanent change in the latency of a destination is eventually accepted
+    private static final double MIN_RTT_DRIFT = 0.001;
+    // jitter below this is not taken as a sign of overload, which matters for destinations that respond in microseconds
+    private static final long MIN_RTT_INCREASE_NANOS = MILLISECONDS.toNanos(10);
+    private static final int MIN_LIMIT = 1;
+    @VisibleForTesting
+    static final long DESTINATION_IDLE_TIMEOUT_MINUTES = 10;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final LoadingCache<String, DestinationLimit> destinations;
+    private final CounterStat rejected = new CounterStat();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, int maxDestinations)
+    {
+        this(initialLimit, maxLimit, maxDestinations, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, int maxDestinations, Ticker ticker)
+    {
+        checkArgument(initialLimit >= MIN_LIMIT, "initialLimit must be at least %s", MIN_LIMIT);
+        checkArgument(maxLimit >= initialLimit, "maxLimit must be at least initialLimit");
+        checkArgument(maxDestinations >= 1, "maxDestinations must be at least 1");
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        // permits keep a reference to their destination, so evicting a destination with requests in flight is safe
+        this.destinations = CacheBuilder.newBuilder()
+                .maximumSize(maxDestinations)
+                .expireAfterAccess(DESTINATION_IDLE_TIMEOUT_MINUTES, MINUTES)
+                .ticker(requireNonNull(ticker, "ticker is null"))
+                .build(CacheLoader.from(key -> new DestinationLimit()));
+    }
+
+    /**
+     * Reserves a slot for a request to the destination of the URI, or returns
+     * empty if the destination is at its limit. The permit must be completed
+     * when the request finishes.
+     */
+    public Optional<Permit> tryAcquire(URI uri)
+    {
+        requireNonNull(uri, "uri is null");
+        DestinationLimit destination = destinations.getUnchecked(destinationKey(uri));
+        if (!destination.tryAcquire()) {
+            rejected.update(1);
+            return Optional.empty();
+        }
+        return Optional.of(new Permit(destination));
+    }
+
+    @VisibleForTesting
+    int getLimit(URI uri)
+    {
+        DestinationLimit destination = destinations.getIfPresent(destinationKey(uri));
+        return destination == null ? initialLimit : destination.getLimit();
+    }
+
+    @Managed
+    public Map<String, Integer> getLimitsPerDestination()
+    {
+        ImmutableSortedMap.Builder<String, Integer> limits = ImmutableSortedMap.naturalOrder();
+        destinations.asMap().forEach((key, destination) -> limits.put(key, destination.getLimit()));
+        return limits.build();
+    }
+
+    @Managed
+    public long getTrackedDestinations()
+    {
+        return destinations.size();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRejected()
+    {
+        return rejected;
+    }
+
+    private static String destinationKey(URI uri)
+    {
+        String scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase(ENGLISH);
+        int port = uri.getPort();
+        if (port == -1) {
+            port = scheme.equals("https") ? 443 : 80;
+        }
+        return scheme + "://" + String.valueOf(uri.getHost()).toLowerCase(ENGLISH) + ":" + port;
+    }
+
+    public static final class Permit
+    {
+        private final DestinationLimit destination;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Permit(DestinationLimit destination)
+        {
+            this.destination = destination;
+        }
+
+        /**
+         * The destination responded; the round trip time adjusts the limit.
+         */
+        public void success(long roundTripNanos)
+        {
+            if (completed.compareAndSet(false, true)) {
+                destination.release(roundTripNanos);
+            }
+        }
+
+        /**
+         * The request timed out, which is taken as a sign of overload.
+         */
+        public void dropped()
+        {
+            if (completed.compareAndSet(false, true)) {
+                destination.releaseDropped();
+            }
+        }
+
+        /**
+         * The request failed for a reason that says nothing about the load of the destination.
+         */
+        public void ignore()
+        {
+            if (completed.compareAndSet(false, true)) {
+                destination.releaseIgnored();
+            }
+        }
+    }
+
+    @ThreadSafe
+    private class DestinationLimit
+    {
+        @GuardedBy("this")
+        private double limit = initialLimit;
+        @GuardedBy("this")
+        private int inFlight;
+        @GuardedBy("this")
+        private double minRoundTripNanos = Double.NaN;
+
+        public synchronized int getLimit()
+        {
+            return (int) limit;
+        }
+
+        public synchronized boolean tryAcquire()
+        {
+            if (inFlight >= (int) limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        public synchronized void release(long roundTripNanos)
+        {
+            // only grow the limit when it is actually being used
+            boolean limited = inFlight * 2 >= (int) limit;
+            inFlight--;
+
+            if (Double.isNaN(minRoundTripNanos) || roundTripNanos < minRoundTripNanos) {
+                minRoundTripNanos = roundTripNanos;
+            }
+            else {
+                minRoundTripNanos += (roundTripNanos - minRoundTripNanos) * MIN_RTT_DRIFT;
+            }
+
+            if (roundTripNanos > max(minRoundTripNanos * RTT_TOLERANCE, minRoundTripNanos + MIN_RTT_INCREASE_NANOS)) {
+                backOff();
+            }
+            else if (limited) {
+                limit = min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        public synchronized void releaseDropped()
+        {
+            inFlight--;
+            backOff();
+        }
+
+        public synchronized void releaseIgnored()
+        {
+            inFlight--;
+        }
+
+        @GuardedBy("this")
+        private void backOff()
+        {
+            limit = max(MIN_LIMIT, limit * BACKOFF_RATIO);
+        }
+    }
+}
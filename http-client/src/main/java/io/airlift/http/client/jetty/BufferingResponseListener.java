@@ -13,6 +13,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -30,6 +31,7 @@ class BufferingResponseListener
     private static final long BUFFER_MIN_BYTES = new DataSize(1, KILOBYTE).toBytes();
     private final JettyResponseFuture<?, ?> future;
     private final int maxLength;
+    private final Optional<ResponseBufferPool> bufferPool;
 
     @GuardedBy("this")
     private byte[] currentBuffer = new byte[0];
@@ -41,10 +43,16 @@ class BufferingResponseListener
     private long size;
 
     public BufferingResponseListener(JettyResponseFuture<?, ?> future, int maxLength)
+    {
+        this(future, maxLength, Optional.empty());
+    }
+
+    public BufferingResponseListener(JettyResponseFuture<?, ?> future, int maxLength, Optional<ResponseBufferPool> bufferPool)
     {
         this.future = requireNonNull(future, "future is null");
         checkArgument(maxLength > 0, "maxLength must be greater than zero");
         this.maxLength = maxLength;
+        this.bufferPool = requireNonNull(bufferPool, "bufferPool is null");
     }
 
     @Override
@@ -80,24 +88,40 @@ class BufferingResponseListener
     @Override
     public synchronized void onComplete(Result result)
     {
+        currentBuffer = new byte[0];
+        currentBufferPosition = 0;
+
         Throwable throwable = result.getFailure();
         if (throwable != null) {
+            bufferPool.ifPresent(pool -> buffers.forEach(pool::release));
             future.failed(throwable);
         }
         else {
-            currentBuffer = new byte[0];
-            currentBufferPosition = 0;
-            future.completed(result.getResponse(), new GatheringByteArrayInputStream(buffers, size));
-            buffers = new ArrayList<>();
-            size = 0;
+            GatheringByteArrayInputStream content;
+            if (bufferPool.isPresent()) {
+                // buffers go back to the pool when the response handler is done with the content
+                content = new GatheringByteArrayInputStream(buffers, size, bufferPool.get()::release);
+            }
+            else {
+                content = new GatheringByteArrayInputStream(buffers, size);
+            }
+            future.completed(result.getResponse(), content);
         }
+        buffers = new ArrayList<>();
+        size = 0;
     }
 
     private synchronized void allocateCurrentBuffer()
     {
         checkState(currentBufferPosition >= currentBuffer.length, "there is still remaining space in currentBuffer");
 
-        currentBuffer = new byte[(int) min(BUFFER_MAX_BYTES, max(2 * currentBuffer.length, BUFFER_MIN_BYTES))];
+        int bufferSize = (int) min(BUFFER_MAX_BYTES, max(2 * currentBuffer.length, BUFFER_MIN_BYTES));
+        if (bufferPool.isPresent()) {
+            currentBuffer = bufferPool.get().acquire(bufferSize);
+        }
+        else {
+            currentBuffer = new byte[bufferSize];
+        }
         buffers.add(currentBuffer);
         currentBufferPosition = 0;
     }
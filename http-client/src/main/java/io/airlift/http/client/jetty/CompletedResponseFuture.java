@@ -0,0 +1,50 @@
+package io.airlift.http.client.jetty;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import io.airlift.http.client.HttpClient.HttpResponseFuture;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Future for a request that completes without being sent, such as one answered from the
+ * response cache or one rejected by the concurrency limiter.
+ */
+class CompletedResponseFuture<T>
+        extends AbstractFuture<T>
+        implements HttpResponseFuture<T>
+{
+    private final boolean failed;
+
+    private CompletedResponseFuture(Callable<T> handler)
+    {
+        boolean failed = false;
+        try {
+            set(handler.call());
+        }
+        catch (Throwable e) {
+            // this will be an instance of E from the response handler or an Error
+            setException(e);
+            failed = true;
+        }
+        this.failed = failed;
+    }
+
+    public static <T> CompletedResponseFuture<T> handleResponse(Request request, ResponseHandler<T, ?> responseHandler, Response response)
+    {
+        return new CompletedResponseFuture<>(() -> responseHandler.handle(request, response));
+    }
+
+    public static <T> CompletedResponseFuture<T> handleException(Request request, ResponseHandler<T, ?> responseHandler, Exception exception)
+    {
+        return new CompletedResponseFuture<>(() -> responseHandler.handleException(request, exception));
+    }
+
+    @Override
+    public String getState()
+    {
+        return failed ? "FAILED" : "DONE";
+    }
+}
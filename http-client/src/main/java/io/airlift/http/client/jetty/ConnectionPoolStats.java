@@ -0,0 +1,33 @@
+package io.airlift.http.client.jetty;
+
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+public class ConnectionPoolStats
+{
+    private final CounterStat warmedConnections = new CounterStat();
+    private final CounterStat warmAcquisitions = new CounterStat();
+    private final CounterStat coldAcquisitions = new CounterStat();
+
+    @Managed
+    @Nested
+    public CounterStat getWarmedConnections()
+    {
+        return warmedConnections;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getWarmAcquisitions()
+    {
+        return warmAcquisitions;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getColdAcquisitions()
+    {
+        return coldAcquisitions;
+    }
+}
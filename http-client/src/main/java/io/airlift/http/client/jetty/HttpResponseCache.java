@@ -0,0 +1,557 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client.jetty;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import io.airlift.http.client.HeaderName;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.net.HttpHeaders.AGE;
+import static com.google.common.net.HttpHeaders.AUTHORIZATION;
+import static com.google.common.net.HttpHeaders.CACHE_CONTROL;
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.google.common.net.HttpHeaders.VARY;
+import static java.lang.Math.max;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Size bounded in-memory cache for responses to GET requests. Responses are stored
+ * when they carry a positive {@code max-age} or an {@code ETag}. Stale entries with
+ * an {@code ETag} are revalidated with {@code If-None-Match}, and a {@code 304}
+ * response is answered from the cache. {@code Vary} is honored by storing the values
+ * of the listed request headers with each entry; a request with different values
+ * replaces the entry.
+ * <p>
+ * The cache is private to the client, so {@code private} responses are stored, but
+ * requests with credentials or their own validators bypass the cache entirely.
+ */
+@ThreadSafe
+public class HttpResponseCache
+{
+    private static final Splitter HEADER_VALUE_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    // entries are spread over the cache segments, so a single entry may only use a fraction of the space
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final Cache<URI, Entry> entries;
+    private final long maxEntrySize;
+    private final Ticker ticker;
+
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat revalidations = new CounterStat();
+    private final CounterStat notCacheable = new CounterStat();
+
+    public HttpResponseCache(long maxSizeInBytes)
+    {
+        this(maxSizeInBytes, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    HttpResponseCache(long maxSizeInBytes, Ticker ticker)
+    {
+        checkArgument(maxSizeInBytes >= 0, "maxSizeInBytes is negative");
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeInBytes)
+                .<URI, Entry>weigher((uri, entry) -> entry.getWeight())
+                .build();
+        this.maxEntrySize = maxSizeInBytes / MAX_ENTRY_FRACTION;
+        this.ticker = requireNonNull(ticker, "ticker is null");
+    }
+
+    /**
+     * Looks up the response for a request. The request and response handler of the
+     * returned lookup must be used to execute the request, unless the lookup has a
+     * fresh response.
+     */
+    Lookup lookup(Request request)
+    {
+        if (!isCacheable(request)) {
+            notCacheable.update(1);
+            return new Lookup(false, request, request, Optional.empty(), Optional.empty());
+        }
+
+        Optional<Entry> entry = Optional.ofNullable(entries.getIfPresent(request.getUri()))
+                .filter(candidate -> candidate.matches(request));
+        if (entry.isPresent() && entry.get().isFresh(ticker.read()) && !isNoCache(request)) {
+            hits.update(1);
+            return new Lookup(true, request, request, Optional.of(entry.get().toResponse()), Optional.empty());
+        }
+
+        misses.update(1);
+        Optional<Entry> revalidated = entry.filter(candidate -> candidate.getETag() != null);
+        Request remoteRequest = request;
+        if (revalidated.isPresent()) {
+            remoteRequest = Request.Builder.fromRequest(request)
+                    .setHeader(IF_NONE_MATCH, revalidated.get().getETag())
+                    .build();
+        }
+        return new Lookup(true, request, remoteRequest, Optional.empty(), revalidated);
+    }
+
+    private <T, E extends Exception> T handle(Request request, Response response, Optional<Entry> revalidated, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        if (response.getStatusCode() == 304 && revalidated.isPresent()) {
+            Entry entry = revalidated.get().refresh(response, ticker.read());
+            entries.put(request.getUri(), entry);
+            revalidations.update(1);
+            return responseHandler.handle(request, entry.toResponse());
+        }
+
+        if (!isStorable(response)) {
+            return responseHandler.handle(request, response);
+        }
+
+        byte[] body;
+        InputStream inputStream;
+        try {
+            inputStream = response.getInputStream();
+            body = ByteStreams.toByteArray(ByteStreams.limit(inputStream, maxEntrySize + 1));
+        }
+        catch (IOException e) {
+            return responseHandler.handleException(request, e);
+        }
+
+        if (body.length > maxEntrySize) {
+            // too large to cache, so hand over the remaining content unread
+            InputStream content = new SequenceInputStream(new ByteArrayInputStream(body), inputStream);
+            return responseHandler.handle(request, new CachedResponse(response.getStatusCode(), response.getHeaders(), content));
+        }
+
+        Entry entry = new Entry(request, response, body, ticker.read());
+        entries.put(request.getUri(), entry);
+        return responseHandler.handle(request, entry.toResponse());
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRevalidations()
+    {
+        return revalidations;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getNotCacheable()
+    {
+        return notCacheable;
+    }
+
+    @Managed
+    public long getEntryCount()
+    {
+        return entries.size();
+    }
+
+    @Managed
+    public void invalidateAll()
+    {
+        entries.invalidateAll();
+    }
+
+    private static boolean isCacheable(Request request)
+    {
+        if (!request.getMethod().equalsIgnoreCase("GET") || request.getBodyGenerator() != null) {
+            return false;
+        }
+        if (!requestHeaders(request, AUTHORIZATION).isEmpty() ||
+                !requestHeaders(request, IF_NONE_MATCH).isEmpty() ||
+                !requestHeaders(request, IF_MODIFIED_SINCE).isEmpty()) {
+            return false;
+        }
+        return !CacheDirectives.parse(requestHeaders(request, CACHE_CONTROL)).isNoStore();
+    }
+
+    private static boolean isNoCache(Request request)
+    {
+        return CacheDirectives.parse(requestHeaders(request, CACHE_CONTROL)).isNoCache();
+    }
+
+    private static boolean isStorable(Response response)
+    {
+        if (response.getStatusCode() != 200 || varyHeaderNames(response).contains("*")) {
+            return false;
+        }
+        CacheDirectives directives = CacheDirectives.parse(response.getHeaders(CACHE_CONTROL));
+        if (directives.isNoStore()) {
+            return false;
+        }
+        return directives.getMaxAgeSeconds() > 0 || response.getHeader(ETAG) != null;
+    }
+
+    private static long freshnessLifetimeNanos(Response response, long defaultLifetimeNanos)
+    {
+        List<String> cacheControlHeaders = response.getHeaders(CACHE_CONTROL);
+        if (cacheControlHeaders.isEmpty()) {
+            return defaultLifetimeNanos;
+        }
+        CacheDirectives directives = CacheDirectives.parse(cacheControlHeaders);
+        if (directives.isNoCache() || directives.getMaxAgeSeconds() <= 0) {
+            return 0;
+        }
+
+        long age = 0;
+        String ageHeader = response.getHeader(AGE);
+        if (ageHeader != null) {
+            try {
+                age = Long.parseLong(ageHeader.trim());
+            }
+            catch (NumberFormatException ignored) {
+                // an invalid age is treated as zero
+            }
+        }
+        return SECONDS.toNanos(max(0, directives.getMaxAgeSeconds() - age));
+    }
+
+    private static List<String> varyHeaderNames(Response response)
+    {
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (String value : response.getHeaders(VARY)) {
+            for (String name : HEADER_VALUE_SPLITTER.split(value)) {
+                names.add(name.toLowerCase(ENGLISH));
+            }
+        }
+        return names.build();
+    }
+
+    private static List<String> requestHeaders(Request request, String name)
+    {
+        ImmutableList.Builder<String> values = ImmutableList.builder();
+        for (Map.Entry<String, String> header : request.getHeaders().entries()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                values.add(header.getValue());
+            }
+        }
+        return values.build();
+    }
+
+    /**
+     * The request to send and the handler to use for a single exchange with the cache.
+     */
+    final class Lookup
+    {
+        private final boolean cacheable;
+        private final Request originalRequest;
+        private final Request request;
+        private final Optional<Response> freshResponse;
+        private final Optional<Entry> revalidated;
+
+        private Lookup(boolean cacheable, Request originalRequest, Request request, Optional<Response> freshResponse, Optional<Entry> revalidated)
+        {
+            this.cacheable = cacheable;
+            this.originalRequest = originalRequest;
+            this.request = request;
+            this.freshResponse = freshResponse;
+            this.revalidated = revalidated;
+        }
+
+        /**
+         * Returns the cached response, if it can be used without contacting the server.
+         */
+        public Optional<Response> getFreshResponse()
+        {
+            return freshResponse;
+        }
+
+        /**
+         * Returns the request to send to the server.
+         */
+        public Request getRequest()
+        {
+            return request;
+        }
+
+        /**
+         * Wraps a response handler so the response is stored in the cache, or answered from
+         * the cache if the server reports it is not modified. The wrapped handler is always
+         * passed the original request.
+         */
+        public <T, E extends Exception> ResponseHandler<T, E> wrap(ResponseHandler<T, E> responseHandler)
+        {
+            if (!cacheable) {
+                return responseHandler;
+            }
+            return new ResponseHandler<T, E>()
+            {
+                @Override
+                public T handleException(Request request, Exception exception)
+                        throws E
+                {
+                    return responseHandler.handleException(originalRequest, exception);
+                }
+
+                @Override
+                public T handle(Request request, Response response)
+                        throws E
+                {
+                    return HttpResponseCache.this.handle(originalRequest, response, revalidated, responseHandler);
+                }
+            };
+        }
+    }
+
+    /**
+     * The {@code Cache-Control} directives used by the cache. Parsing never fails, since the headers
+     * come from arbitrary servers and callers: unknown directives are ignored, an invalid {@code max-age}
+     * is treated as already expired, and a {@code max-age} that is too large is capped at 2^31 seconds.
+     */
+    private static final class CacheDirectives
+    {
+        private static final Splitter DIRECTIVE_SPLITTER = Splitter.on('=').trimResults().limit(2);
+        private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
+        // RFC 7234 section 1.2.1
+        private static final long MAX_DELTA_SECONDS = 1L << 31;
+
+        private final boolean noStore;
+        private final boolean noCache;
+        private final long maxAgeSeconds;
+
+        private CacheDirectives(boolean noStore, boolean noCache, long maxAgeSeconds)
+        {
+            this.noStore = noStore;
+            this.noCache = noCache;
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+
+        public static CacheDirectives parse(List<String> headers)
+        {
+            boolean noStore = false;
+            boolean noCache = false;
+            long maxAgeSeconds = -1;
+            for (String value : headers) {
+                for (String directive : HEADER_VALUE_SPLITTER.split(value)) {
+                    List<String> parts = DIRECTIVE_SPLITTER.splitToList(directive);
+                    String name = parts.get(0).toLowerCase(ENGLISH);
+                    if (name.equals("no-store")) {
+                        noStore = true;
+                    }
+                    else if (name.equals("no-cache")) {
+                        noCache = true;
+                    }
+                    else if (name.equals("max-age")) {
+                        maxAgeSeconds = parseDeltaSeconds(parts.size() == 2 ? parts.get(1) : "");
+                    }
+                }
+            }
+            return new CacheDirectives(noStore, noCache, maxAgeSeconds);
+        }
+
+        private static long parseDeltaSeconds(String value)
+        {
+            if (value.isEmpty() || !DIGITS.matchesAllOf(value)) {
+                return 0;
+            }
+            Long seconds = Longs.tryParse(value);
+            if (seconds == null || seconds > MAX_DELTA_SECONDS) {
+                return MAX_DELTA_SECONDS;
+            }
+            return seconds;
+        }
+
+        public boolean isNoStore()
+        {
+            return noStore;
+        }
+
+        public boolean isNoCache()
+        {
+            return noCache;
+        }
+
+        /**
+         * Returns the {@code max-age} in seconds, or {@code -1} if it is not present.
+         */
+        public long getMaxAgeSeconds()
+        {
+            return maxAgeSeconds;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final int statusCode;
+        private final ListMultimap<HeaderName, String> headers;
+        private final byte[] body;
+        private final ListMultimap<String, String> varyHeaders;
+        private final long lifetimeNanos;
+        private final long expiresAtNanos;
+        private final int weight;
+
+        public Entry(Request request, Response response, byte[] body, long now)
+        {
+            this.statusCode = response.getStatusCode();
+            this.headers = ImmutableListMultimap.copyOf(response.getHeaders());
+            this.body = body;
+
+            ImmutableListMultimap.Builder<String, String> varyHeaders = ImmutableListMultimap.builder();
+            for (String name : varyHeaderNames(response)) {
+                varyHeaders.putAll(name, requestHeaders(request, name));
+            }
+            this.varyHeaders = varyHeaders.build();
+
+            this.lifetimeNanos = freshnessLifetimeNanos(response, 0);
+            this.expiresAtNanos = now + lifetimeNanos;
+
+            long headerSize = 0;
+            for (Map.Entry<HeaderName, String> header : headers.entries()) {
+                headerSize += header.getKey().toString().length() + header.getValue().length();
+            }
+            this.weight = Ints.saturatedCast(body.length + headerSize);
+        }
+
+        private Entry(Entry entry, long lifetimeNanos, long now)
+        {
+            this.statusCode = entry.statusCode;
+            this.headers = entry.headers;
+            this.body = entry.body;
+            this.varyHeaders = entry.varyHeaders;
+            this.lifetimeNanos = lifetimeNanos;
+            this.expiresAtNanos = now + lifetimeNanos;
+            this.weight = entry.weight;
+        }
+
+        public Entry refresh(Response notModified, long now)
+        {
+            return new Entry(this, freshnessLifetimeNanos(notModified, lifetimeNanos), now);
+        }
+
+        public boolean matches(Request request)
+        {
+            for (String name : varyHeaders.keySet()) {
+                if (!varyHeaders.get(name).equals(requestHeaders(request, name))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean isFresh(long now)
+        {
+            return now - expiresAtNanos < 0;
+        }
+
+        public String getETag()
+        {
+            List<String> values = headers.get(HeaderName.of(ETAG));
+            return values.isEmpty() ? null : values.get(0);
+        }
+
+        public int getWeight()
+        {
+            return weight;
+        }
+
+        public Response toResponse()
+        {
+            return new CachedResponse(statusCode, headers, new ByteArrayInputStream(body));
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("statusCode", statusCode)
+                    .add("bodySize", body.length)
+                    .add("varyHeaders", varyHeaders)
+                    .add("lifetimeNanos", lifetimeNanos)
+                    .toString();
+        }
+    }
+
+    private static final class CachedResponse
+            implements Response
+    {
+        private final int statusCode;
+        private final ListMultimap<HeaderName, String> headers;
+        private final InputStream inputStream;
+
+        public CachedResponse(int statusCode, ListMultimap<HeaderName, String> headers, InputStream inputStream)
+        {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public int getStatusCode()
+        {
+            return statusCode;
+        }
+
+        @Override
+        public ListMultimap<HeaderName, String> getHeaders()
+        {
+            return headers;
+        }
+
+        @Override
+        public long getBytesRead()
+        {
+            return 0;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return inputStream;
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package io.airlift.http.client.jetty;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.net.HostAndPort;
 import com.google.common.primitives.Ints;
 import io.airlift.http.client.BodyGenerator;
+import io.airlift.http.client.ByteBufferBodyGenerator;
 import io.airlift.http.client.FileBodyGenerator;
 import io.airlift.http.client.HttpClientConfig;
 import io.airlift.http.client.HttpRequestFilter;
+import io.airlift.http.client.MappedFileBodyGenerator;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.RequestStats;
 import io.airlift.http.client.ResponseHandler;
 import io.airlift.http.client.StaticBodyGenerator;
+import io.airlift.http.client.StreamingJsonResponseHandler;
 import io.airlift.http.client.jetty.HttpClientLogger.RequestInfo;
 import io.airlift.http.client.jetty.HttpClientLogger.ResponseInfo;
 import io.airlift.http.client.spnego.KerberosConfig;
@@ -19,6 +23,7 @@ import io.airlift.http.client.spnego.SpnegoAuthenticationProtocolHandler;
 import io.airlift.http.client.spnego.SpnegoAuthenticationStore;
 import io.airlift.security.pem.PemReader;
 import io.airlift.units.Duration;
+import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.DuplexConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpClientTransport;
@@ -33,12 +38,12 @@ import org.eclipse.jetty.client.api.Destination;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
 import org.eclipse.jetty.client.http.HttpConnectionOverHTTP;
+import org.eclipse.jetty.client.util.ByteBufferContentProvider;
 import org.eclipse.jetty.client.util.BytesContentProvider;
 import org.eclipse.jetty.client.util.InputStreamResponseListener;
 import org.eclipse.jetty.client.util.PathContentProvider;
 import org.eclipse.jetty.http2.client.HTTP2Client;
 import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
-import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.ConnectionStatistics;
 import org.eclipse.jetty.io.MappedByteBufferPool;
 import org.eclipse.jetty.util.HttpCookieStore;
@@ -52,6 +57,7 @@ import org.weakref.jmx.Flatten;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
+import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
 
 import java.io.File;
@@ -106,7 +112,12 @@ public class JettyHttpClient
     private final boolean logEnabled;
     private final QueuedThreadPoolMBean queuedThreadPoolMBean;
     private final ConnectionStats connectionStats;
-    private final RequestStats stats = new RequestStats();
+    private final ConnectionPoolStats connectionPoolStats = new ConnectionPoolStats();
+    private final int warmConnectionsPerServer;
+    private final Optional<ResponseBufferPool> responseBufferPool;
+    private final Optional<HttpResponseCache> responseCache;
+    private final Optional<AdaptiveConcurrencyLimiter> concurrencyLimiter;
+    private final RequestStats stats;
     private final CachedDistribution queuedRequestsPerDestination;
     private final CachedDistribution activeConnectionsPerDestination;
     private final CachedDistribution idleConnectionsPerDestination;
@@ -160,10 +171,34 @@ public class JettyHttpClient
         requireNonNull(config, "config is null");
         requireNonNull(requestFilters, "requestFilters is null");
 
+        stats = new RequestStats(config.getMaxStatsDestinations());
+
         maxContentLength = config.getMaxContentLength().toBytes();
         requestTimeoutMillis = config.getRequestTimeout().toMillis();
         idleTimeoutMillis = config.getIdleTimeout().toMillis();
         recordRequestComplete = config.getRecordRequestComplete();
+        if (config.isResponseBufferPoolEnabled()) {
+            responseBufferPool = Optional.of(new ResponseBufferPool(config.getResponseBufferPoolMaxSize().toBytes()));
+        }
+        else {
+            responseBufferPool = Optional.empty();
+        }
+        if (config.isResponseCacheEnabled()) {
+            responseCache = Optional.of(new HttpResponseCache(config.getResponseCacheMaxSize().toBytes()));
+        }
+        else {
+            responseCache = Optional.empty();
+        }
+        if (config.isAdaptiveConcurrencyLimitEnabled()) {
+            concurrencyLimiter = Optional.of(new AdaptiveConcurrencyLimiter(
+                    config.getAdaptiveConcurrencyInitialLimit(),
+                    config.getAdaptiveConcurrencyMaxLimit(),
+                    config.getAdaptiveConcurrencyMaxDestinations()));
+        }
+        else {
+            concurrencyLimiter = Optional.empty();
+        }
+        warmConnectionsPerServer = config.getWarmConnectionsPerServer();
 
         creationLocation.fillInStackTrace();
 
@@ -180,6 +215,13 @@ public class JettyHttpClient
         }
         else {
             transport = new HttpClientTransportOverHTTP(config.getSelectorCount());
+            int minIdleConnections = config.getMinIdleConnectionsPerServer();
+            transport.setConnectionPoolFactory(destination -> new WarmingConnectionPool(
+                    destination,
+                    destination.getHttpClient().getMaxConnectionsPerDestination(),
+                    destination,
+                    minIdleConnections,
+                    connectionPoolStats));
         }
 
         httpClient = new AuthorizationPreservingHttpClient(transport, sslContextFactory);
@@ -481,9 +523,25 @@ public class JettyHttpClient
         // apply filters
         request = applyRequestFilters(request);
 
+        if (responseCache.isPresent()) {
+            HttpResponseCache.Lookup lookup = responseCache.get().lookup(request);
+            if (lookup.getFreshResponse().isPresent()) {
+                return responseHandler.handle(request, lookup.getFreshResponse().get());
+            }
+            request = lookup.getRequest();
+            responseHandler = lookup.wrap(responseHandler);
+        }
+
         // create jetty request and response listener
         JettyRequestListener requestListener = new JettyRequestListener(request.getUri());
         HttpRequest jettyRequest = buildJettyRequest(request, requestListener);
+        if (concurrencyLimiter.isPresent()) {
+            Optional<AdaptiveConcurrencyLimiter.Permit> permit = concurrencyLimiter.get().tryAcquire(request.getUri());
+            if (!permit.isPresent()) {
+                return responseHandler.handleException(request, concurrencyLimitExceeded(request));
+            }
+            completePermitOnComplete(jettyRequest, requestListener, permit.get());
+        }
         InputStreamResponseListener listener = new InputStreamResponseListener()
         {
             @Override
@@ -558,7 +616,7 @@ public class JettyHttpClient
                 }
             }
             if (recordRequestComplete) {
-                recordRequestComplete(stats, request, requestStart, jettyResponse, responseStart);
+                recordRequestComplete(stats, request, jettyRequest, requestStart, jettyResponse, responseStart);
             }
         }
         return value;
@@ -572,11 +630,34 @@ public class JettyHttpClient
 
         request = applyRequestFilters(request);
 
-        HttpRequest jettyRequest = buildJettyRequest(request, new JettyRequestListener(request.getUri()));
+        if (responseCache.isPresent()) {
+            HttpResponseCache.Lookup lookup = responseCache.get().lookup(request);
+            if (lookup.getFreshResponse().isPresent()) {
+                return CompletedResponseFuture.handleResponse(request, responseHandler, lookup.getFreshResponse().get());
+            }
+            request = lookup.getRequest();
+            responseHandler = lookup.wrap(responseHandler);
+        }
+
+        JettyRequestListener requestListener = new JettyRequestListener(request.getUri());
+        HttpRequest jettyRequest = buildJettyRequest(request, requestListener);
+
+        Optional<AdaptiveConcurrencyLimiter.Permit> permit = Optional.empty();
+        if (concurrencyLimiter.isPresent()) {
+            permit = concurrencyLimiter.get().tryAcquire(request.getUri());
+            if (!permit.isPresent()) {
+                return CompletedResponseFuture.handleException(request, responseHandler, concurrencyLimitExceeded(request));
+            }
+            completePermitOnComplete(jettyRequest, requestListener, permit.get());
+        }
 
         JettyResponseFuture<T, E> future = new JettyResponseFuture<>(request, jettyRequest, responseHandler, stats, recordRequestComplete);
 
-        BufferingResponseListener listener = new BufferingResponseListener(future, Ints.saturatedCast(maxContentLength));
+        BufferingResponseListener bufferingListener = new BufferingResponseListener(future, Ints.saturatedCast(maxContentLength), responseBufferPool);
+        Response.Listener listener = bufferingListener;
+        if (responseHandler instanceof StreamingJsonResponseHandler) {
+            listener = createStreamingJsonResponseListener(future, responseHandler, bufferingListener);
+        }
 
         long requestTimestamp = System.currentTimeMillis();
 
@@ -592,12 +673,45 @@ public class JettyHttpClient
                 e = new RejectedExecutionException(e);
             }
             // normally this is a rejected execution exception because the client has been closed
+            permit.ifPresent(AdaptiveConcurrencyLimiter.Permit::ignore);
             future.failed(e);
             requestLogger.log(RequestInfo.from(jettyRequest, requestTimestamp), ResponseInfo.failed(Optional.empty(), Optional.of(e)));
         }
         return future;
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> StreamingJsonResponseListener<T> createStreamingJsonResponseListener(
+            JettyResponseFuture<T, ?> future,
+            ResponseHandler<T, ?> responseHandler,
+            BufferingResponseListener bufferingListener)
+    {
+        // a streaming handler that produces T is a StreamingJsonResponseHandler<T>
+        return new StreamingJsonResponseListener<>(future, (StreamingJsonResponseHandler<T>) responseHandler, Ints.saturatedCast(maxContentLength), bufferingListener);
+    }
+
+    private static void completePermitOnComplete(HttpRequest jettyRequest, JettyRequestListener requestListener, AdaptiveConcurrencyLimiter.Permit permit)
+    {
+        // registered after the request listener, so the response timestamps are set
+        jettyRequest.onComplete(result -> {
+            if (!result.isFailed()) {
+                permit.success(requestListener.getResponseStarted() - requestListener.getRequestStarted());
+            }
+            else if (result.getFailure() instanceof TimeoutException) {
+                permit.dropped();
+            }
+            else {
+                permit.ignore();
+            }
+        });
+    }
+
+    private static RejectedExecutionException concurrencyLimitExceeded(Request request)
+    {
+        URI uri = request.getUri();
+        return new RejectedExecutionException(format("Concurrency limit exceeded for %s://%s:%s", uri.getScheme(), uri.getHost(), uri.getPort()));
+    }
+
     private void addLoggingListener(HttpRequest jettyRequest, long requestTimestamp)
     {
         HttpClientLoggingListener loggingListener = new HttpClientLoggingListener(jettyRequest, requestTimestamp, requestLogger);
@@ -641,6 +755,14 @@ public class JettyHttpClient
                 StaticBodyGenerator staticBodyGenerator = (StaticBodyGenerator) bodyGenerator;
                 jettyRequest.content(new BytesContentProvider(staticBodyGenerator.getBody()));
             }
+            else if (bodyGenerator instanceof ByteBufferBodyGenerator) {
+                List<ByteBuffer> buffers = ((ByteBufferBodyGenerator) bodyGenerator).getBuffers();
+                jettyRequest.content(new ByteBufferContentProvider(buffers.toArray(new ByteBuffer[0])));
+            }
+            else if (bodyGenerator instanceof MappedFileBodyGenerator) {
+                Path path = ((MappedFileBodyGenerator) bodyGenerator).getPath();
+                jettyRequest.content(new MappedFileContentProvider(path));
+            }
             else if (bodyGenerator instanceof FileBodyGenerator) {
                 Path path = ((FileBodyGenerator) bodyGenerator).getPath();
                 jettyRequest.content(fileContentProvider(path));
@@ -661,21 +783,49 @@ public class JettyHttpClient
         return jettyRequest;
     }
 
-    private static ContentProvider fileContentProvider(Path path)
+    /**
+     * Opens {@code http-client.warm-connections-per-server} connections to the server of
+     * each URI, such as the URIs returned by a service selector, so the first requests
+     * after startup do not pay for connection setup.
+     */
+    public void warmConnections(Iterable<URI> uris)
     {
-        try {
-            PathContentProvider provider = new PathContentProvider(null, path);
-            provider.setByteBufferPool(new ByteBufferPool()
-            {
-                @Override
-                public ByteBuffer acquire(int size, boolean direct)
-                {
-                    return ByteBuffer.allocate(size);
+        warmConnections(uris, warmConnectionsPerServer);
+    }
+
+    /**
+     * Opens connections to the server of each URI until the pool for that server has
+     * the specified number of connections. The connections are opened asynchronously.
+     * This has no effect when HTTP/2 is enabled.
+     */
+    public void warmConnections(Iterable<URI> uris, int connectionsPerServer)
+    {
+        requireNonNull(uris, "uris is null");
+        checkArgument(connectionsPerServer >= 0, "connectionsPerServer is negative");
+        for (URI uri : uris) {
+            Destination destination = httpClient.getDestination(uri.getScheme(), uri.getHost(), uri.getPort());
+            if (destination instanceof PoolingHttpDestination) {
+                ConnectionPool connectionPool = ((PoolingHttpDestination) destination).getConnectionPool();
+                if (connectionPool instanceof WarmingConnectionPool) {
+                    ((WarmingConnectionPool) connectionPool).warm(connectionsPerServer);
                 }
+            }
+        }
+    }
 
-                @Override
-                public void release(ByteBuffer buffer) {}
-            });
+    @VisibleForTesting
+    int getIdleConnectionCount(URI uri)
+    {
+        Destination destination = httpClient.getDestination(uri.getScheme(), uri.getHost(), uri.getPort());
+        return ((DuplexConnectionPool) ((PoolingHttpDestination) destination).getConnectionPool()).getIdleConnectionCount();
+    }
+
+    private ContentProvider fileContentProvider(Path path)
+    {
+        try {
+            PathContentProvider provider = new PathContentProvider(null, path);
+            // the read buffer is taken from the client pool and returned when the content is closed
+            provider.setByteBufferPool(httpClient.getByteBufferPool());
             return provider;
         }
         catch (IOException e) {
@@ -721,6 +871,40 @@ public class JettyHttpClient
         return connectionStats;
     }
 
+    @Managed
+    @Nested
+    public ConnectionPoolStats getConnectionPoolStats()
+    {
+        return connectionPoolStats;
+    }
+
+    @Managed
+    @Nested
+    @Nullable
+    public ResponseBufferPool getResponseBufferPool()
+    {
+        // not exported when pooling is disabled
+        return responseBufferPool.orElse(null);
+    }
+
+    @Managed
+    @Nested
+    @Nullable
+    public HttpResponseCache getResponseCache()
+    {
+        // not exported when the cache is disabled
+        return responseCache.orElse(null);
+    }
+
+    @Managed
+    @Nested
+    @Nullable
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter()
+    {
+        // not exported when the limit is disabled
+        return concurrencyLimiter.orElse(null);
+    }
+
     @Managed
     @Nested
     public CachedDistribution getActiveConnectionsPerDestination()
@@ -938,7 +1122,7 @@ public class JettyHttpClient
         return "anonymous" + NAME_COUNTER.incrementAndGet();
     }
 
-    static void recordRequestComplete(RequestStats requestStats, Request request, long requestStart, JettyResponse response, long responseStart)
+    static void recordRequestComplete(RequestStats requestStats, Request request, org.eclipse.jetty.client.api.Request jettyRequest, long requestStart, JettyResponse response, long responseStart)
     {
         if (response == null) {
             return;
@@ -947,11 +1131,22 @@ public class JettyHttpClient
         Duration responseProcessingTime = Duration.nanosSince(responseStart);
         Duration requestProcessingTime = new Duration(responseStart - requestStart, NANOSECONDS);
 
-        requestStats.recordResponseReceived(request.getMethod(),
+        requestStats.recordResponseReceived(request.getUri(),
+                request.getMethod(),
                 response.getStatusCode(),
-                response.getBytesRead(),
+                requestContentLength(jettyRequest),
                 response.getBytesRead(),
                 requestProcessingTime,
                 responseProcessingTime);
     }
+
+    private static long requestContentLength(org.eclipse.jetty.client.api.Request jettyRequest)
+    {
+        ContentProvider content = jettyRequest.getContent();
+        if (content == null) {
+            return 0;
+        }
+        // the length of a streamed body is not known in advance
+        return max(0, content.getLength());
+    }
 }
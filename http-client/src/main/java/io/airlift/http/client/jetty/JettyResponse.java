@@ -7,6 +7,7 @@ import io.airlift.http.client.HeaderName;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.http.HttpFields;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
@@ -16,12 +17,27 @@ class JettyResponse
 {
     private final Response response;
     private final CountingInputStream inputStream;
+    private final long decodedBytes;
     private final ListMultimap<HeaderName, String> headers;
 
     public JettyResponse(Response response, InputStream inputStream)
+    {
+        this(response, inputStream, 0);
+    }
+
+    /**
+     * Creates a response whose content was already decoded while it was received.
+     */
+    public JettyResponse(Response response, long decodedBytes)
+    {
+        this(response, new ByteArrayInputStream(new byte[0]), decodedBytes);
+    }
+
+    private JettyResponse(Response response, InputStream inputStream, long decodedBytes)
     {
         this.response = response;
         this.inputStream = new CountingInputStream(inputStream);
+        this.decodedBytes = decodedBytes;
         this.headers = toHeadersMap(response.getHeaders());
     }
 
@@ -40,7 +56,7 @@ class JettyResponse
     @Override
     public long getBytesRead()
     {
-        return inputStream.getCount();
+        return decodedBytes + inputStream.getCount();
     }
 
     @Override
@@ -7,9 +7,11 @@ import io.airlift.http.client.RequestStats;
 import io.airlift.http.client.ResponseHandler;
 import org.eclipse.jetty.client.api.Response;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static java.util.Objects.requireNonNull;
@@ -66,14 +68,28 @@ class JettyResponseFuture<T, E extends Exception>
     }
 
     void completed(Response response, InputStream content)
+    {
+        complete(new JettyResponse(response, content), jettyResponse -> responseHandler.handle(request, jettyResponse));
+    }
+
+    /**
+     * Completes the future with a value that was decoded as the response content arrived.
+     */
+    void decoded(Response response, long contentBytes, Supplier<T> decoder)
+    {
+        complete(new JettyResponse(response, contentBytes), jettyResponse -> decoder.get());
+    }
+
+    private void complete(JettyResponse jettyResponse, ResponseProcessor<T, E> processor)
     {
         if (state.get() == JettyAsyncHttpState.CANCELED) {
+            closeQuietly(jettyResponse.getInputStream());
             return;
         }
 
         T value;
         try {
-            value = processResponse(response, content);
+            value = processResponse(jettyResponse, processor);
         }
         catch (Throwable e) {
             // this will be an instance of E from the response handler or an Error
@@ -84,7 +100,7 @@ class JettyResponseFuture<T, E extends Exception>
         set(value);
     }
 
-    private T processResponse(Response response, InputStream content)
+    private T processResponse(JettyResponse jettyResponse, ResponseProcessor<T, E> processor)
             throws E
     {
         // this time will not include the data fetching portion of the response,
@@ -92,16 +108,15 @@ class JettyResponseFuture<T, E extends Exception>
         long responseStart = System.nanoTime();
 
         state.set(JettyAsyncHttpState.PROCESSING_RESPONSE);
-        JettyResponse jettyResponse = null;
         T value;
         try {
-            jettyResponse = new JettyResponse(response, content);
-            value = responseHandler.handle(request, jettyResponse);
+            value = processor.process(jettyResponse);
         }
         finally {
             if (recordRequestComplete) {
-                JettyHttpClient.recordRequestComplete(stats, request, requestStart, jettyResponse, responseStart);
+                JettyHttpClient.recordRequestComplete(stats, request, jettyRequest, requestStart, jettyResponse, responseStart);
             }
+            closeQuietly(jettyResponse.getInputStream());
         }
         return value;
     }
@@ -158,4 +173,21 @@ class JettyResponseFuture<T, E extends Exception>
                 .add("request", request)
                 .toString();
     }
+
+    private interface ResponseProcessor<T, E extends Exception>
+    {
+        T process(JettyResponse response)
+                throws E;
+    }
+
+    private static void closeQuietly(InputStream content)
+    {
+        // releases pooled response buffers; later reads of a pooled stream throw an IllegalStateException
+        try {
+            content.close();
+        }
+        catch (IOException ignored) {
+            // ignore errors closing the stream
+        }
+    }
 }
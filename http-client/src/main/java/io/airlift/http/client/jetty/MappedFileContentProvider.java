@@ -0,0 +1,121 @@
+package io.airlift.http.client.jetty;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import org.eclipse.jetty.client.api.ContentProvider;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.min;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends a file as a sequence of memory mapped regions, so the content goes from
+ * the page cache to the socket without being copied into the heap. Regions are
+ * mapped one at a time as Jetty asks for them, but a region stays mapped until its
+ * buffer is garbage collected, so the mapped size of a large upload is not bounded
+ * by the region size. Jetty closes the iterator when the content has been sent,
+ * which closes the file.
+ * <p>
+ * The file must not be truncated while it is sent: reading a mapped page past the
+ * new end of the file fails with an {@link InternalError} (SIGBUS) rather than an
+ * {@link IOException}. Used only for {@link io.airlift.http.client.MappedFileBodyGenerator}.
+ */
+class MappedFileContentProvider
+        implements ContentProvider
+{
+    private static final int DEFAULT_REGION_SIZE = 16 * 1024 * 1024;
+
+    private final Path path;
+    private final long length;
+    private final int regionSize;
+
+    public MappedFileContentProvider(Path path)
+    {
+        this(path, DEFAULT_REGION_SIZE);
+    }
+
+    @VisibleForTesting
+    MappedFileContentProvider(Path path, int regionSize)
+    {
+        this.path = requireNonNull(path, "path is null");
+        checkArgument(regionSize > 0, "regionSize must be greater than zero");
+        this.regionSize = regionSize;
+        try {
+            this.length = Files.size(path);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long getLength()
+    {
+        return length;
+    }
+
+    @Override
+    public boolean isReproducible()
+    {
+        return true;
+    }
+
+    @Override
+    public Iterator<ByteBuffer> iterator()
+    {
+        return new RegionIterator();
+    }
+
+    private class RegionIterator
+            extends AbstractIterator<ByteBuffer>
+            implements Closeable
+    {
+        private FileChannel channel;
+        private long position;
+
+        @Override
+        protected ByteBuffer computeNext()
+        {
+            if (position >= length) {
+                close();
+                return endOfData();
+            }
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(path, READ);
+                }
+                ByteBuffer region = channel.map(READ_ONLY, position, min(regionSize, length - position));
+                position += region.remaining();
+                return region;
+            }
+            catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException ignored) {
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client.jetty;
+
+import com.google.common.collect.ImmutableList;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Pool of response buffers with one size class per power of two between
+ * {@link #MIN_BUFFER_SIZE} and {@link #MAX_BUFFER_SIZE}, which are the sizes
+ * {@link BufferingResponseListener} allocates. The total size of the idle
+ * buffers is bounded; buffers released beyond the bound are left to the
+ * garbage collector.
+ */
+@ThreadSafe
+public class ResponseBufferPool
+{
+    static final int MIN_BUFFER_SIZE = 1024;
+    static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MIN_SIZE_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+
+    private final long maxRetainedBytes;
+    private final List<Queue<byte[]>> sizeClasses;
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    public ResponseBufferPool(long maxRetainedBytes)
+    {
+        checkArgument(maxRetainedBytes >= 0, "maxRetainedBytes is negative");
+        this.maxRetainedBytes = maxRetainedBytes;
+
+        ImmutableList.Builder<Queue<byte[]>> sizeClasses = ImmutableList.builder();
+        for (int size = MIN_BUFFER_SIZE; size <= MAX_BUFFER_SIZE; size <<= 1) {
+            sizeClasses.add(new ConcurrentLinkedQueue<>());
+        }
+        this.sizeClasses = sizeClasses.build();
+    }
+
+    /**
+     * Returns a buffer of exactly {@code size} bytes. The contents of the buffer are undefined.
+     */
+    public byte[] acquire(int size)
+    {
+        checkArgument(isPooledSize(size), "size is not a pooled buffer size: %s", size);
+
+        byte[] buffer = sizeClasses.get(sizeClass(size)).poll();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return new byte[size];
+        }
+        retainedBytes.addAndGet(-buffer.length);
+        hits.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use the buffer afterwards.
+     */
+    public void release(byte[] buffer)
+    {
+        if (!isPooledSize(buffer.length) || !reserve(buffer.length)) {
+            discarded.incrementAndGet();
+            return;
+        }
+        sizeClasses.get(sizeClass(buffer.length)).offer(buffer);
+        returned.incrementAndGet();
+    }
+
+    private boolean reserve(int bytes)
+    {
+        while (true) {
+            long current = retainedBytes.get();
+            if (current + bytes > maxRetainedBytes) {
+                return false;
+            }
+            if (retainedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    @Managed(description = "Buffers served from the pool")
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    @Managed(description = "Buffers allocated because the pool had none of the requested size")
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    @Managed(description = "Buffers returned to the pool")
+    public long getReturned()
+    {
+        return returned.get();
+    }
+
+    @Managed(description = "Buffers dropped because the pool was full")
+    public long getDiscarded()
+    {
+        return discarded.get();
+    }
+
+    @Managed(description = "Total size of the idle buffers held by the pool")
+    public long getRetainedBytes()
+    {
+        return retainedBytes.get();
+    }
+
+    private static boolean isPooledSize(int size)
+    {
+        return size >= MIN_BUFFER_SIZE && size <= MAX_BUFFER_SIZE && Integer.bitCount(size) == 1;
+    }
+
+    private static int sizeClass(int size)
+    {
+        return Integer.numberOfTrailingZeros(size) - MIN_SIZE_CLASS_SHIFT;
+    }
+}
@@ -0,0 +1,113 @@
+package io.airlift.http.client.jetty;
+
+import io.airlift.http.client.ResponseTooLargeException;
+import io.airlift.http.client.StreamingJsonResponseHandler;
+import io.airlift.json.IncrementalJsonDecoder;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Feeds the content of a JSON response to the decoder of a {@link StreamingJsonResponseHandler}
+ * as it arrives. Responses the handler would reject (unexpected status code or content type)
+ * are buffered instead, so the handler can report them with the complete response.
+ */
+@ThreadSafe
+class StreamingJsonResponseListener<T>
+        extends Response.Listener.Adapter
+{
+    private final JettyResponseFuture<T, ?> future;
+    private final StreamingJsonResponseHandler<T> responseHandler;
+    private final int maxLength;
+    private final BufferingResponseListener bufferingListener;
+
+    @GuardedBy("this")
+    private IncrementalJsonDecoder<T> decoder;
+    @GuardedBy("this")
+    private byte[] chunk = new byte[0];
+    @GuardedBy("this")
+    private long size;
+
+    public StreamingJsonResponseListener(
+            JettyResponseFuture<T, ?> future,
+            StreamingJsonResponseHandler<T> responseHandler,
+            int maxLength,
+            BufferingResponseListener bufferingListener)
+    {
+        this.future = requireNonNull(future, "future is null");
+        this.responseHandler = requireNonNull(responseHandler, "responseHandler is null");
+        checkArgument(maxLength > 0, "maxLength must be greater than zero");
+        this.maxLength = maxLength;
+        this.bufferingListener = requireNonNull(bufferingListener, "bufferingListener is null");
+    }
+
+    @Override
+    public synchronized void onHeaders(Response response)
+    {
+        if (responseHandler.isDecodable(new JettyResponse(response, new ByteArrayInputStream(new byte[0])))) {
+            decoder = responseHandler.createDecoder();
+        }
+        bufferingListener.onHeaders(response);
+    }
+
+    @Override
+    public synchronized void onContent(Response response, ByteBuffer content)
+    {
+        if (decoder == null) {
+            bufferingListener.onContent(response, content);
+            return;
+        }
+
+        int length = content.remaining();
+        size += length;
+        if (size > maxLength) {
+            response.abort(new ResponseTooLargeException());
+            return;
+        }
+
+        try {
+            if (content.hasArray()) {
+                decoder.feed(content.array(), content.arrayOffset() + content.position(), length);
+            }
+            else {
+                // the decoder is done with each chunk when feed returns, so one copy buffer is enough
+                if (chunk.length < length) {
+                    chunk = new byte[length];
+                }
+                content.get(chunk, 0, length);
+                decoder.feed(chunk, 0, length);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            // the rest of the content can not make the document valid
+            response.abort(e);
+        }
+    }
+
+    @Override
+    public synchronized void onComplete(Result result)
+    {
+        if (decoder == null) {
+            bufferingListener.onComplete(result);
+            return;
+        }
+
+        Throwable throwable = result.getFailure();
+        if (throwable != null) {
+            future.failed(throwable);
+        }
+        else {
+            future.decoded(result.getResponse(), size, decoder::finish);
+        }
+        decoder = null;
+        chunk = new byte[0];
+    }
+}
@@ -0,0 +1,136 @@
+package io.airlift.http.client.jetty;
+
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.http.HttpConnectionOverHTTP;
+import org.eclipse.jetty.util.Callback;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Connection pool that can open connections before requests need them, and that
+ * keeps at least a minimum number of connections idle by opening a replacement
+ * whenever an idle connection is taken by a request or closed.
+ * <p>
+ * A connection is warm when a request gets it after it was opened ahead of time
+ * or after it served an earlier request, and cold when the request that caused
+ * it to be opened is the first to use it.
+ */
+class WarmingConnectionPool
+        extends DuplexConnectionPool
+{
+    private final int minIdleConnections;
+    private final ConnectionPoolStats stats;
+    private final Set<Connection> warmConnections = ConcurrentHashMap.newKeySet();
+    // connections being opened ahead of time; Jetty does not say which attempt a new connection
+    // belongs to, so the next connections created are attributed to these attempts
+    private final AtomicInteger pendingWarmConnections = new AtomicInteger();
+
+    public WarmingConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int minIdleConnections, ConnectionPoolStats stats)
+    {
+        super(destination, maxConnections, requester);
+        checkArgument(minIdleConnections >= 0, "minIdleConnections is negative");
+        this.minIdleConnections = minIdleConnections;
+        this.stats = requireNonNull(stats, "stats is null");
+    }
+
+    /**
+     * Opens connections until the pool has the specified number of connections,
+     * counting those already being opened. The connections are opened asynchronously.
+     */
+    public synchronized void warm(int connections)
+    {
+        int missing = connections - getConnectionCount();
+        for (int i = 0; i < missing && !isClosed(); i++) {
+            tryCreateWarm();
+        }
+    }
+
+    @Override
+    protected void onCreated(Connection connection)
+    {
+        // attempts that failed are no longer pending in the pool, so they are dropped here
+        int pendingCount = getPendingConnectionCount() + 1;
+        boolean warm = pendingWarmConnections.getAndUpdate(pending -> max(0, min(pending, pendingCount) - 1)) > 0;
+        if (warm) {
+            warmConnections.add(connection);
+        }
+        super.onCreated(connection);
+        if (warm) {
+            // counted once the connection is idle, so a request that sees the count finds the connection
+            stats.getWarmedConnections().update(1);
+        }
+    }
+
+    @Override
+    protected void acquired(Connection connection)
+    {
+        super.acquired(connection);
+        if (getHttpDestination().getQueuedRequestCount() == 0) {
+            // the destination acquires each new connection to check for queued requests, and
+            // releases it right away when there are none
+            return;
+        }
+        if (warmConnections.add(connection)) {
+            stats.getColdAcquisitions().update(1);
+        }
+        else {
+            stats.getWarmAcquisitions().update(1);
+        }
+        replenish();
+    }
+
+    @Override
+    protected void removed(Connection connection)
+    {
+        super.removed(connection);
+        warmConnections.remove(connection);
+        replenish();
+    }
+
+    // synchronized with warm, so the attempts of one call are all counted by the next
+    private synchronized void replenish()
+    {
+        if (minIdleConnections == 0) {
+            return;
+        }
+        // read before the active connections: a request leaves the queue before its connection is assigned
+        int queuedRequests = getHttpDestination().getQueuedRequestCount();
+        // only connections opened ahead of time will be idle; pending connections opened for queued
+        // requests are taken as soon as they are created
+        int pendingWarm = min(pendingWarmConnections.get(), getPendingConnectionCount());
+        // active connections without an exchange are released to the pool unless a queued request takes
+        // them, as when a destination acquires a new connection for a request that another thread sends
+        int releasing = max(0, getUnassignedActiveConnectionCount() - queuedRequests);
+        int missing = minIdleConnections - getIdleConnectionCount() - pendingWarm - releasing;
+        for (int i = 0; i < missing && !isClosed(); i++) {
+            tryCreateWarm();
+        }
+    }
+
+    private int getUnassignedActiveConnectionCount()
+    {
+        return (int) getActiveConnections().stream()
+                .filter(connection -> !(connection instanceof HttpConnectionOverHTTP) || ((HttpConnectionOverHTTP) connection).getHttpChannel().getHttpExchange() == null)
+                .count();
+    }
+
+    private void tryCreateWarm()
+    {
+        int before = getConnectionCount();
+        pendingWarmConnections.incrementAndGet();
+        tryCreate(-1);
+        if (getConnectionCount() == before) {
+            // the pool is at its maximum size, so no connection was opened
+            pendingWarmConnections.decrementAndGet();
+        }
+    }
+}
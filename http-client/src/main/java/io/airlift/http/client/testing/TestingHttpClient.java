@@ -85,7 +85,8 @@ public class TestingHttpClient
                     return responseHandler.handleException(request, (Exception) e);
                 }
                 finally {
-                    stats.recordResponseReceived(request.getMethod(),
+                    stats.recordResponseReceived(request.getUri(),
+                            request.getMethod(),
                             0,
                             0,
                             0,
@@ -93,7 +94,8 @@ public class TestingHttpClient
                             Duration.nanosSince(responseStart));
                 }
             }
-            stats.recordResponseReceived(request.getMethod(),
+            stats.recordResponseReceived(request.getUri(),
+                    request.getMethod(),
                     0,
                     0,
                     0,
@@ -112,7 +114,8 @@ public class TestingHttpClient
         }
         finally {
             state.set("DONE");
-            stats.recordResponseReceived(request.getMethod(),
+            stats.recordResponseReceived(request.getUri(),
+                    request.getMethod(),
                     response.getStatusCode(),
                     response.getBytesRead(),
                     response.getBytesRead(),
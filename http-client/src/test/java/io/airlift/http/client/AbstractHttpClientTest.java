@@ -4,7 +4,9 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.http.client.HttpClient.HttpResponseFuture;
 import io.airlift.http.client.StatusResponseHandler.StatusResponse;
 import io.airlift.http.client.StringResponseHandler.StringResponse;
+import io.airlift.http.client.TestFullJsonResponseHandler.User;
 import io.airlift.http.client.jetty.JettyHttpClient;
+import io.airlift.json.JsonCodec;
 import io.airlift.log.Logging;
 import io.airlift.testing.Closeables;
 import io.airlift.units.Duration;
@@ -43,6 +45,7 @@ import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.UnresolvedAddressException;
 import java.nio.file.Files;
@@ -69,7 +72,10 @@ import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.Request.Builder.preparePost;
 import static io.airlift.http.client.Request.Builder.preparePut;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static io.airlift.http.client.StreamingJsonResponseHandler.createStreamingJsonResponseHandler;
 import static io.airlift.http.client.StringResponseHandler.createStringResponseHandler;
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static io.airlift.json.JsonCodec.listJsonCodec;
 import static io.airlift.testing.Assertions.assertBetweenInclusive;
 import static io.airlift.testing.Assertions.assertGreaterThanOrEqual;
 import static io.airlift.testing.Assertions.assertLessThan;
@@ -513,6 +519,30 @@ public abstract class AbstractHttpClientTest
         assertEquals(servlet.getRequestBytes(), new byte[] {1, 2, 5});
     }
 
+    @Test
+    public void testPutMethodWithByteBufferBodyGenerator()
+            throws Exception
+    {
+        URI uri = baseURI.resolve("/road/to/nowhere");
+        ByteBuffer direct = ByteBuffer.allocateDirect(3);
+        direct.put(new byte[] {3, 4, 5}).flip();
+        ByteBuffer heap = ByteBuffer.wrap(new byte[] {0, 0, 1, 2});
+        heap.position(2);
+        Request request = preparePut()
+                .setUri(uri)
+                .setBodyGenerator(ByteBufferBodyGenerator.createByteBufferBodyGenerator(heap, direct))
+                .build();
+
+        int statusCode = executeRequest(request, createStatusResponseHandler()).getStatusCode();
+        assertEquals(statusCode, 200);
+        assertEquals(servlet.getRequestMethod(), "PUT");
+        assertEquals(servlet.getRequestBytes(), new byte[] {1, 2, 3, 4, 5});
+
+        // the body can be sent again
+        executeRequest(request, createStatusResponseHandler());
+        assertEquals(servlet.getRequestBytes(), new byte[] {1, 2, 3, 4, 5});
+    }
+
     @Test
     public void testPutMethodWithFileBodyGenerator()
             throws Exception
@@ -539,6 +569,28 @@ public abstract class AbstractHttpClientTest
         assertTrue(testFile.delete());
     }
 
+    @Test
+    public void testPutMethodWithMappedFileBodyGenerator()
+            throws Exception
+    {
+        byte[] contents = "hello world".getBytes(UTF_8);
+        File testFile = File.createTempFile("test", null);
+        Files.write(testFile.toPath(), contents);
+
+        URI uri = baseURI.resolve("/road/to/nowhere");
+        Request request = preparePut()
+                .setUri(uri)
+                .setBodyGenerator(new MappedFileBodyGenerator(testFile.toPath()))
+                .build();
+
+        int statusCode = executeRequest(request, createStatusResponseHandler()).getStatusCode();
+        assertEquals(statusCode, 200);
+        assertEquals(servlet.getRequestHeaders(CONTENT_LENGTH), ImmutableList.of(String.valueOf(contents.length)));
+        assertEquals(servlet.getRequestBytes(), contents);
+
+        assertTrue(testFile.delete());
+    }
+
     @Test(expectedExceptions = {IOException.class, TimeoutException.class})
     public void testReadTimeout()
             throws Exception
@@ -581,6 +633,59 @@ public abstract class AbstractHttpClientTest
         assertEquals(body, "");
     }
 
+    @Test
+    public void testStreamingJsonResponse()
+            throws Exception
+    {
+        JsonCodec<List<User>> codec = listJsonCodec(User.class);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            users.add(new User("user " + i, i));
+        }
+        servlet.setResponseBody(codec.toJson(users));
+        servlet.addResponseHeader(CONTENT_TYPE, "application/json");
+
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        List<User> response = executeRequest(request, createStreamingJsonResponseHandler(codec));
+        assertEquals(response.size(), users.size());
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(response.get(i).getName(), users.get(i).getName());
+            assertEquals(response.get(i).getAge(), users.get(i).getAge());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testStreamingJsonResponseInvalidJson()
+            throws Exception
+    {
+        servlet.setResponseBody("[{\"name\": ]");
+        servlet.addResponseHeader(CONTENT_TYPE, "application/json");
+
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        executeRequest(request, createStreamingJsonResponseHandler(jsonCodec(User.class)));
+    }
+
+    @Test(expectedExceptions = UnexpectedResponseException.class)
+    public void testStreamingJsonResponseUnexpectedStatus()
+            throws Exception
+    {
+        servlet.setResponseStatusCode(500);
+        servlet.setResponseBody("{\"error\": true}");
+        servlet.addResponseHeader(CONTENT_TYPE, "application/json");
+
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        executeRequest(request, createStreamingJsonResponseHandler(jsonCodec(User.class)));
+    }
+
     @Test
     public void testResponseHeader()
             throws Exception
@@ -0,0 +1,45 @@
+package io.airlift.http.client;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static io.airlift.http.client.ByteBufferBodyGenerator.createByteBufferBodyGenerator;
+import static org.testng.Assert.assertEquals;
+
+public class TestByteBufferBodyGenerator
+{
+    @Test
+    public void testWrite()
+            throws Exception
+    {
+        ByteBuffer heap = ByteBuffer.wrap(new byte[] {9, 1, 2});
+        heap.position(1);
+        ByteBuffer direct = ByteBuffer.allocateDirect(3);
+        direct.put(new byte[] {3, 4, 5}).flip();
+        ByteBufferBodyGenerator generator = createByteBufferBodyGenerator(heap, direct);
+        assertEquals(generator.getLength(), 5);
+
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            generator.write(out);
+            assertEquals(out.toByteArray(), new byte[] {1, 2, 3, 4, 5});
+        }
+    }
+
+    @Test
+    public void testBuffersAreIndependent()
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {1, 2, 3});
+        ByteBufferBodyGenerator generator = createByteBufferBodyGenerator(buffer);
+
+        // moving the original buffer or a returned view does not change the body
+        buffer.position(3);
+        List<ByteBuffer> buffers = generator.getBuffers();
+        buffers.get(0).position(2);
+        assertEquals(generator.getBuffers().get(0).remaining(), 3);
+        assertEquals(generator.getLength(), 3);
+    }
+}
@@ -0,0 +1,218 @@
+package io.airlift.http.client;
+
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpClient.HttpResponseFuture;
+import io.airlift.http.client.StringResponseHandler.StringResponse;
+import io.airlift.http.client.testing.TestingHttpClient;
+import io.airlift.http.client.testing.TestingResponse;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.Request.Builder.preparePost;
+import static io.airlift.http.client.StringResponseHandler.createStringResponseHandler;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestCoalescingHttpClient
+{
+    private static final URI URI = java.net.URI.create("http://example.com/resource");
+
+    private ExecutorService executor;
+    private AtomicInteger sent;
+    private CountDownLatch started;
+    private CountDownLatch release;
+    private CountDownLatch interrupted;
+    private volatile boolean failRequests;
+
+    @BeforeClass
+    public void setUpExecutor()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-coalescing-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @BeforeMethod
+    public void setUp()
+    {
+        sent = new AtomicInteger();
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        interrupted = new CountDownLatch(1);
+        failRequests = false;
+    }
+
+    @Test
+    public void testCoalesce()
+            throws Exception
+    {
+        CoalescingHttpClient client = createClient();
+        ResponseHandler<StringResponse, RuntimeException> handler = createStringResponseHandler();
+        Request request = prepareGet().setUri(URI).setHeader("X-Test", "value").build();
+
+        HttpResponseFuture<StringResponse> first = client.executeAsync(request, handler);
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).setHeader("X-Test", "value").build(), handler);
+        HttpResponseFuture<StringResponse> third = client.executeAsync(request, handler);
+        assertEquals(client.getInFlightRequests(), 1);
+
+        release.countDown();
+        StringResponse response = first.get(10, SECONDS);
+        assertEquals(response.getBody(), "response 1");
+        assertSame(second.get(10, SECONDS), response);
+        assertSame(third.get(10, SECONDS), response);
+
+        assertEquals(sent.get(), 1);
+        assertEquals(client.getSharedRequests().getTotalCount(), 1);
+        assertEquals(client.getCoalescedRequests().getTotalCount(), 2);
+        assertEquals(client.getInFlightRequests(), 0);
+
+        // a request after completion is sent again
+        assertEquals(client.executeAsync(request, handler).get(10, SECONDS).getBody(), "response 2");
+    }
+
+    @Test
+    public void testNotCoalesced()
+            throws Exception
+    {
+        CoalescingHttpClient client = createClient();
+        ResponseHandler<StringResponse, RuntimeException> handler = createStringResponseHandler();
+
+        HttpResponseFuture<StringResponse> get = client.executeAsync(prepareGet().setUri(URI).build(), handler);
+        HttpResponseFuture<StringResponse> otherHeaders = client.executeAsync(prepareGet().setUri(URI).setHeader("X-Test", "value").build(), handler);
+        HttpResponseFuture<StringResponse> otherUri = client.executeAsync(prepareGet().setUri(URI.resolve("/other")).build(), handler);
+        HttpResponseFuture<StringResponse> otherHandler = client.executeAsync(prepareGet().setUri(URI).build(), new ForwardingStringResponseHandler());
+        HttpResponseFuture<StringResponse> post = client.executeAsync(preparePost().setUri(URI).build(), handler);
+        HttpResponseFuture<StringResponse> secondPost = client.executeAsync(preparePost().setUri(URI).build(), handler);
+
+        release.countDown();
+        for (HttpResponseFuture<StringResponse> future : new HttpResponseFuture[] {get, otherHeaders, otherUri, otherHandler, post, secondPost}) {
+            future.get(10, SECONDS);
+        }
+        assertEquals(sent.get(), 6);
+        assertEquals(client.getCoalescedRequests().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testCancelOneWaiter()
+            throws Exception
+    {
+        CoalescingHttpClient client = createClient();
+        ResponseHandler<StringResponse, RuntimeException> handler = createStringResponseHandler();
+        Request request = prepareGet().setUri(URI).build();
+
+        HttpResponseFuture<StringResponse> first = client.executeAsync(request, handler);
+        HttpResponseFuture<StringResponse> second = client.executeAsync(request, handler);
+        assertTrue(first.cancel(true));
+
+        release.countDown();
+        assertEquals(second.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(interrupted.getCount(), 1);
+    }
+
+    @Test
+    public void testCancelAllWaiters()
+            throws Exception
+    {
+        CoalescingHttpClient client = createClient();
+        ResponseHandler<StringResponse, RuntimeException> handler = createStringResponseHandler();
+        Request request = prepareGet().setUri(URI).build();
+
+        HttpResponseFuture<StringResponse> first = client.executeAsync(request, handler);
+        HttpResponseFuture<StringResponse> second = client.executeAsync(request, handler);
+        // the request must be running, or canceling it does not interrupt anything
+        assertTrue(started.await(10, SECONDS));
+        first.cancel(true);
+        second.cancel(true);
+
+        assertTrue(interrupted.await(10, SECONDS));
+        assertEquals(sent.get(), 1);
+
+        // the canceled request is not shared with later callers
+        HttpResponseFuture<StringResponse> third = client.executeAsync(request, handler);
+        release.countDown();
+        assertEquals(third.get(10, SECONDS).getBody(), "response 2");
+    }
+
+    @Test
+    public void testFailureShared()
+            throws Exception
+    {
+        CoalescingHttpClient client = createClient();
+        failRequests = true;
+        ResponseHandler<StringResponse, RuntimeException> handler = createStringResponseHandler();
+        Request request = prepareGet().setUri(URI).build();
+
+        HttpResponseFuture<StringResponse> first = client.executeAsync(request, handler);
+        HttpResponseFuture<StringResponse> second = client.executeAsync(request, handler);
+        release.countDown();
+
+        for (HttpResponseFuture<StringResponse> future : new HttpResponseFuture[] {first, second}) {
+            try {
+                future.get(10, SECONDS);
+                fail("expected exception");
+            }
+            catch (ExecutionException e) {
+                assertEquals(e.getCause().getMessage(), "test failure");
+            }
+        }
+        assertEquals(sent.get(), 1);
+    }
+
+    private CoalescingHttpClient createClient()
+    {
+        return new CoalescingHttpClient(new TestingHttpClient(
+                request -> {
+                    int count = sent.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await();
+                    }
+                    catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    if (failRequests) {
+                        throw new IllegalStateException("test failure");
+                    }
+                    return new TestingResponse(HttpStatus.OK, ImmutableListMultimap.of(), ("response " + count).getBytes(UTF_8));
+                },
+                executor));
+    }
+
+    private static class ForwardingStringResponseHandler
+            implements ResponseHandler<StringResponse, RuntimeException>
+    {
+        private final ResponseHandler<StringResponse, RuntimeException> delegate = createStringResponseHandler();
+
+        @Override
+        public StringResponse handleException(Request request, Exception exception)
+        {
+            return delegate.handleException(request, exception);
+        }
+
+        @Override
+        public StringResponse handle(Request request, Response response)
+        {
+            return delegate.handle(request, response);
+        }
+    }
+}
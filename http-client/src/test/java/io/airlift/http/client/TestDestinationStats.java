@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.testing.TestingTicker;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static io.airlift.http.client.DestinationStats.OTHER_DESTINATIONS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestDestinationStats
+{
+    @Test
+    public void testPerDestination()
+    {
+        DestinationStats stats = new DestinationStats(10, new TestingTicker());
+        for (int i = 0; i < 100; i++) {
+            stats.record(URI.create("http://fast.example.com:8080/a"), 10, 1000, new Duration(2, MILLISECONDS));
+            stats.record(URI.create("http://slow.example.com:8080/a?b"), 20, 2000, new Duration(800, MILLISECONDS));
+        }
+        stats.record(URI.create("https://FAST.example.com/"), 0, 0, new Duration(2, MILLISECONDS));
+
+        assertEquals(stats.getTrackedDestinations(), 3);
+        assertEquals(stats.getRequestCountPerDestination(), ImmutableMap.of(
+                "fast.example.com:443", 1L,
+                "fast.example.com:8080", 100L,
+                "slow.example.com:8080", 100L));
+        assertWithinError(stats.getRequestTimeP99PerDestination().get("fast.example.com:8080"), 2);
+        assertWithinError(stats.getRequestTimeP99PerDestination().get("slow.example.com:8080"), 800);
+        assertEquals(stats.getRequestTimeMaxPerDestination().get("slow.example.com:8080"), 800.0);
+        assertEquals(stats.getReadBytesAvgPerDestination().get("slow.example.com:8080"), 2000.0);
+        assertEquals(stats.getWrittenBytesAvgPerDestination().get("fast.example.com:8080"), 10.0);
+    }
+
+    @Test
+    public void testMaxDestinations()
+    {
+        DestinationStats stats = new DestinationStats(2, new TestingTicker());
+        for (int i = 0; i < 5; i++) {
+            stats.record(URI.create("http://host" + i + ":8080/"), 0, 0, new Duration(1, MILLISECONDS));
+        }
+
+        assertEquals(stats.getTrackedDestinations(), 2);
+        assertEquals(stats.getRequestCountPerDestination(), ImmutableMap.of(
+                "host0:8080", 1L,
+                "host1:8080", 1L,
+                OTHER_DESTINATIONS, 3L));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        DestinationStats stats = new DestinationStats(0, new TestingTicker());
+        stats.record(URI.create("http://example.com/"), 0, 0, new Duration(1, MILLISECONDS));
+        assertEquals(stats.getTrackedDestinations(), 0);
+        assertTrue(stats.getRequestCountPerDestination().isEmpty());
+    }
+
+    @Test
+    public void testExpiration()
+    {
+        TestingTicker ticker = new TestingTicker();
+        DestinationStats stats = new DestinationStats(10, ticker);
+        stats.record(URI.create("http://example.com/"), 0, 0, new Duration(1, MILLISECONDS));
+        assertEquals(stats.getRequestCountPerDestination(), ImmutableMap.of("example.com:80", 1L));
+
+        ticker.increment(3, MINUTES);
+        assertTrue(stats.getRequestCountPerDestination().isEmpty());
+        assertTrue(stats.getRequestTimeP50PerDestination().isEmpty());
+    }
+
+    private static void assertWithinError(double actual, double expected)
+    {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.07, "expected " + expected + " but was " + actual);
+    }
+}
@@ -11,6 +11,7 @@ import java.util.Random;
 import static java.lang.Math.min;
 import static java.lang.System.arraycopy;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
 
 public class TestGatheringByteArrayInputStream
 {
@@ -144,6 +145,26 @@ public class TestGatheringByteArrayInputStream
         }
     }
 
+    @Test
+    public void testCloseReleasesBuffers()
+    {
+        List<byte[]> buffers = ImmutableList.of("hello ".getBytes(), "world".getBytes());
+        List<byte[]> released = new ArrayList<>();
+
+        GatheringByteArrayInputStream in = new GatheringByteArrayInputStream(buffers, 11, released::add);
+        assertEquals(in.read(), 'h');
+        assertEquals(released.size(), 0);
+
+        in.close();
+        assertEquals(released, buffers);
+        assertThrows(IllegalStateException.class, in::read);
+        assertThrows(IllegalStateException.class, () -> in.skip(10));
+
+        // closing again must not release the buffers twice
+        in.close();
+        assertEquals(released.size(), 2);
+    }
+
     private static void assertByteArrayEquals(
             byte[] actual,
             int actualStart,
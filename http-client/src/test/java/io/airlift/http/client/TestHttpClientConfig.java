@@ -23,6 +23,7 @@ import io.airlift.units.Duration;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.testng.annotations.Test;
 
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.NotNull;
 
 import java.util.Arrays;
@@ -58,6 +59,8 @@ public class TestHttpClientConfig
                 .setMaxConnections(200)
                 .setMaxConnectionsPerServer(20)
                 .setMaxRequestsQueuedPerDestination(1024)
+                .setWarmConnectionsPerServer(0)
+                .setMinIdleConnectionsPerServer(0)
                 .setMaxContentLength(new DataSize(16, MEGABYTE))
                 .setRequestBufferSize(new DataSize(4, KILOBYTE))
                 .setResponseBufferSize(new DataSize(16, KILOBYTE))
@@ -80,10 +83,19 @@ public class TestHttpClientConfig
                 .setSelectorCount(2)
                 .setRecordRequestComplete(true)
                 .setConnectBlocking(false)
+                .setResponseBufferPoolEnabled(false)
+                .setResponseBufferPoolMaxSize(new DataSize(32, MEGABYTE))
+                .setResponseCacheEnabled(false)
+                .setResponseCacheMaxSize(new DataSize(32, MEGABYTE))
+                .setAdaptiveConcurrencyLimitEnabled(false)
+                .setAdaptiveConcurrencyInitialLimit(20)
+                .setAdaptiveConcurrencyMaxLimit(1000)
+                .setAdaptiveConcurrencyMaxDestinations(1000)
                 .setMaxThreads(200)
                 .setMinThreads(8)
                 .setTimeoutConcurrency(1)
                 .setTimeoutThreads(1)
+                .setMaxStatsDestinations(100)
                 .setLogEnabled(false)
                 .setLogHistory(15)
                 .setLogMaxFileSize(new DataSize(1, GIGABYTE))
@@ -107,6 +119,8 @@ public class TestHttpClientConfig
                 .put("http-client.max-connections", "12")
                 .put("http-client.max-connections-per-server", "3")
                 .put("http-client.max-requests-queued-per-destination", "10")
+                .put("http-client.warm-connections-per-server", "4")
+                .put("http-client.min-idle-connections-per-server", "2")
                 .put("http-client.max-content-length", "1MB")
                 .put("http-client.request-buffer-size", "42kB")
                 .put("http-client.response-buffer-size", "43kB")
@@ -129,10 +143,19 @@ public class TestHttpClientConfig
                 .put("http-client.selector-count", "16")
                 .put("http-client.record-request-complete", "false")
                 .put("http-client.use-blocking-connect", "true")
+                .put("http-client.response-buffer-pool.enabled", "true")
+                .put("http-client.response-buffer-pool.max-size", "64MB")
+                .put("http-client.response-cache.enabled", "true")
+                .put("http-client.response-cache.max-size", "128MB")
+                .put("http-client.adaptive-concurrency-limit.enabled", "true")
+                .put("http-client.adaptive-concurrency-limit.initial-limit", "10")
+                .put("http-client.adaptive-concurrency-limit.max-limit", "500")
+                .put("http-client.adaptive-concurrency-limit.max-destinations", "50")
                 .put("http-client.max-threads", "33")
                 .put("http-client.min-threads", "11")
                 .put("http-client.timeout-concurrency", "33")
                 .put("http-client.timeout-threads", "44")
+                .put("http-client.stats.max-destinations", "7")
                 .put("http-client.log.enabled", "true")
                 .put("http-client.log.max-history", "22")
                 .put("http-client.log.max-size", "2GB")
@@ -153,6 +176,8 @@ public class TestHttpClientConfig
                 .setMaxConnections(12)
                 .setMaxConnectionsPerServer(3)
                 .setMaxRequestsQueuedPerDestination(10)
+                .setWarmConnectionsPerServer(4)
+                .setMinIdleConnectionsPerServer(2)
                 .setMaxContentLength(new DataSize(1, MEGABYTE))
                 .setRequestBufferSize(new DataSize(42, KILOBYTE))
                 .setResponseBufferSize(new DataSize(43, KILOBYTE))
@@ -175,10 +200,19 @@ public class TestHttpClientConfig
                 .setSelectorCount(16)
                 .setRecordRequestComplete(false)
                 .setConnectBlocking(true)
+                .setResponseBufferPoolEnabled(true)
+                .setResponseBufferPoolMaxSize(new DataSize(64, MEGABYTE))
+                .setResponseCacheEnabled(true)
+                .setResponseCacheMaxSize(new DataSize(128, MEGABYTE))
+                .setAdaptiveConcurrencyLimitEnabled(true)
+                .setAdaptiveConcurrencyInitialLimit(10)
+                .setAdaptiveConcurrencyMaxLimit(500)
+                .setAdaptiveConcurrencyMaxDestinations(50)
                 .setMaxThreads(33)
                 .setMinThreads(11)
                 .setTimeoutConcurrency(33)
                 .setTimeoutThreads(44)
+                .setMaxStatsDestinations(7)
                 .setLogEnabled(true)
                 .setLogHistory(22)
                 .setLogMaxFileSize(new DataSize(2, GIGABYTE))
@@ -211,6 +245,11 @@ public class TestHttpClientConfig
         assertFailsValidation(new HttpClientConfig().setConnectTimeout(null), "connectTimeout", "may not be null", NotNull.class);
         assertFailsValidation(new HttpClientConfig().setRequestTimeout(null), "requestTimeout", "may not be null", NotNull.class);
         assertFailsValidation(new HttpClientConfig().setIdleTimeout(null), "idleTimeout", "may not be null", NotNull.class);
+        assertFailsValidation(
+                new HttpClientConfig().setAdaptiveConcurrencyInitialLimit(100).setAdaptiveConcurrencyMaxLimit(10),
+                "adaptiveConcurrencyMaxLimitValid",
+                "http-client.adaptive-concurrency-limit.max-limit must be at least http-client.adaptive-concurrency-limit.initial-limit",
+                AssertTrue.class);
     }
 
     private List<String> getJettyDefaultExcludedCiphers()
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.client;
+
+import io.airlift.testing.TestingTicker;
+import org.testng.annotations.Test;
+
+import static io.airlift.http.client.RollingHistogram.BUCKETS;
+import static io.airlift.http.client.RollingHistogram.bucketIndex;
+import static io.airlift.http.client.RollingHistogram.bucketLowerBound;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestRollingHistogram
+{
+    @Test
+    public void testBuckets()
+    {
+        for (int i = 0; i < BUCKETS; i++) {
+            long lower = bucketLowerBound(i);
+            assertEquals(bucketIndex(lower), i);
+            if (i > 0) {
+                assertEquals(bucketIndex(lower - 1), i - 1);
+            }
+        }
+        assertEquals(bucketIndex(Long.MAX_VALUE), BUCKETS - 1);
+    }
+
+    @Test
+    public void testQuantiles()
+    {
+        RollingHistogram histogram = new RollingHistogram(MINUTES.toNanos(1), new TestingTicker());
+        for (int value = 1; value <= 1000; value++) {
+            histogram.add(value);
+        }
+
+        RollingHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.getCount(), 1000);
+        assertEquals(snapshot.getAvg(), 500.5);
+        assertEquals(snapshot.getMax(), 1000);
+        assertWithinError(snapshot.getQuantile(0.5), 500);
+        assertWithinError(snapshot.getQuantile(0.99), 990);
+        assertEquals(snapshot.getQuantile(1), 1000.0);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        RollingHistogram.Snapshot snapshot = new RollingHistogram(MINUTES.toNanos(1), new TestingTicker()).snapshot();
+        assertEquals(snapshot.getCount(), 0);
+        assertTrue(Double.isNaN(snapshot.getAvg()));
+        assertTrue(Double.isNaN(snapshot.getQuantile(0.5)));
+    }
+
+    @Test
+    public void testRollover()
+    {
+        TestingTicker ticker = new TestingTicker();
+        RollingHistogram histogram = new RollingHistogram(MINUTES.toNanos(1), ticker);
+        histogram.add(10);
+
+        ticker.increment(70, SECONDS);
+        histogram.add(20);
+        assertEquals(histogram.snapshot().getCount(), 2);
+
+        // the first window is now more than one interval old
+        ticker.increment(60, SECONDS);
+        assertEquals(histogram.snapshot().getCount(), 1);
+        assertEquals(histogram.snapshot().getMax(), 20);
+
+        // the first window is reused
+        histogram.add(30);
+        RollingHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.getCount(), 2);
+        assertEquals(snapshot.getAvg(), 25.0);
+
+        ticker.increment(10, MINUTES);
+        assertEquals(histogram.snapshot().getCount(), 0);
+    }
+
+    private static void assertWithinError(double actual, double expected)
+    {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.07, "expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,73 @@
+package io.airlift.http.client;
+
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.json.JsonCodec;
+import org.testng.annotations.Test;
+
+import static com.google.common.net.MediaType.JSON_UTF_8;
+import static com.google.common.net.MediaType.PLAIN_TEXT_UTF_8;
+import static io.airlift.http.client.HttpStatus.INTERNAL_SERVER_ERROR;
+import static io.airlift.http.client.HttpStatus.OK;
+import static io.airlift.http.client.StreamingJsonResponseHandler.createStreamingJsonResponseHandler;
+import static io.airlift.http.client.TestFullJsonResponseHandler.User;
+import static io.airlift.http.client.testing.TestingResponse.mockResponse;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestStreamingJsonResponseHandler
+{
+    private final JsonCodec<User> codec = JsonCodec.jsonCodec(User.class);
+    private final StreamingJsonResponseHandler<User> handler = createStreamingJsonResponseHandler(codec);
+
+    @Test
+    public void testValidJson()
+    {
+        User user = new User("Joe", 25);
+        User response = handler.handle(null, mockResponse(OK, JSON_UTF_8, codec.toJson(user)));
+
+        assertEquals(response.getName(), user.getName());
+        assertEquals(response.getAge(), user.getAge());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Invalid JSON bytes for .*User\\]")
+    public void testInvalidJson()
+    {
+        handler.handle(null, mockResponse(OK, JSON_UTF_8, "{\"age\": \"foo\"}"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMalformedJson()
+    {
+        handler.handle(null, mockResponse(OK, JSON_UTF_8, "{\"age\": ]"));
+    }
+
+    @Test(expectedExceptions = UnexpectedResponseException.class, expectedExceptionsMessageRegExp = "Expected application/json response from server but got text/plain; charset=utf-8")
+    public void testNonJsonResponse()
+    {
+        handler.handle(null, mockResponse(OK, PLAIN_TEXT_UTF_8, "hello"));
+    }
+
+    @Test(expectedExceptions = UnexpectedResponseException.class, expectedExceptionsMessageRegExp = "Content-Type is not set for response")
+    public void testMissingContentType()
+    {
+        handler.handle(null, new TestingResponse(OK, ImmutableListMultimap.<String, String>of(), "hello".getBytes(UTF_8)));
+    }
+
+    @Test(expectedExceptions = UnexpectedResponseException.class)
+    public void testJsonErrorResponse()
+    {
+        handler.handle(null, mockResponse(INTERNAL_SERVER_ERROR, JSON_UTF_8, "{\"error\": true}"));
+    }
+
+    @Test
+    public void testIsDecodable()
+    {
+        assertTrue(handler.isDecodable(mockResponse(OK, JSON_UTF_8, "")));
+        assertFalse(handler.isDecodable(mockResponse(OK, PLAIN_TEXT_UTF_8, "")));
+        assertFalse(handler.isDecodable(mockResponse(INTERNAL_SERVER_ERROR, JSON_UTF_8, "")));
+        assertFalse(handler.isDecodable(new TestingResponse(OK, ImmutableListMultimap.<String, String>of(), new byte[0])));
+    }
+}
@@ -0,0 +1,169 @@
+package io.airlift.http.client.jetty;
+
+import com.google.common.collect.ImmutableSet;
+import io.airlift.http.client.jetty.AdaptiveConcurrencyLimiter.Permit;
+import io.airlift.testing.TestingTicker;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static io.airlift.http.client.jetty.AdaptiveConcurrencyLimiter.DESTINATION_IDLE_TIMEOUT_MINUTES;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestAdaptiveConcurrencyLimiter
+{
+    private static final URI SERVER = URI.create("http://example.com:8080/path");
+    private static final URI OTHER_SERVER = URI.create("http://example.com:9090/path");
+    private static final URI THIRD_SERVER = URI.create("http://example.org/path");
+
+    @Test
+    public void testRejectOverLimit()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10, 100);
+
+        Permit first = limiter.tryAcquire(SERVER).get();
+        Permit second = limiter.tryAcquire(SERVER).get();
+        assertFalse(limiter.tryAcquire(SERVER).isPresent());
+        assertEquals(limiter.getRejected().getTotalCount(), 1);
+
+        // destinations are limited separately
+        assertTrue(limiter.tryAcquire(OTHER_SERVER).isPresent());
+
+        first.ignore();
+        assertTrue(limiter.tryAcquire(SERVER).isPresent());
+        assertFalse(limiter.tryAcquire(SERVER).isPresent());
+
+        // completing a permit more than once releases it once
+        second.ignore();
+        second.ignore();
+        assertTrue(limiter.tryAcquire(SERVER).isPresent());
+        assertFalse(limiter.tryAcquire(SERVER).isPresent());
+    }
+
+    @Test
+    public void testIncreaseWhileLimited()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 10, 100);
+
+        // four fast responses at the limit add one
+        for (int i = 0; i < 4; i++) {
+            completeAll(acquireAll(limiter, 4), MILLISECONDS.toNanos(1));
+        }
+        assertEquals(limiter.getLimit(SERVER), 5);
+
+        // the limit only grows while it is in use
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(1));
+        }
+        assertEquals(limiter.getLimit(SERVER), 5);
+    }
+
+    @Test
+    public void testMaxLimit()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 5, 100);
+        for (int i = 0; i < 100; i++) {
+            completeAll(acquireAll(limiter, limiter.getLimit(SERVER)), MILLISECONDS.toNanos(1));
+        }
+        assertEquals(limiter.getLimit(SERVER), 5);
+    }
+
+    @Test
+    public void testBackOffOnLatency()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 10, 100);
+        limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(20));
+
+        // within the tolerance
+        limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(35));
+        assertEquals(limiter.getLimit(SERVER), 10);
+
+        limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(100));
+        assertEquals(limiter.getLimit(SERVER), 9);
+        limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(100));
+        assertEquals(limiter.getLimit(SERVER), 8);
+    }
+
+    @Test
+    public void testSmallLatencyJitterIgnored()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 10, 100);
+        limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(1));
+        limiter.tryAcquire(SERVER).get().success(MILLISECONDS.toNanos(5));
+        assertEquals(limiter.getLimit(SERVER), 10);
+    }
+
+    @Test
+    public void testBackOffOnTimeout()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10, 100);
+        limiter.tryAcquire(SERVER).get().dropped();
+        assertEquals(limiter.getLimit(SERVER), 1);
+
+        // never below one
+        limiter.tryAcquire(SERVER).get().dropped();
+        assertEquals(limiter.getLimit(SERVER), 1);
+        assertTrue(limiter.tryAcquire(SERVER).isPresent());
+        assertEquals(limiter.getLimitsPerDestination().get("http://example.com:8080"), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testMaxDestinations()
+    {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 10, 2);
+
+        Permit permit = limiter.tryAcquire(SERVER).get();
+        assertFalse(limiter.tryAcquire(SERVER).isPresent());
+        assertTrue(limiter.tryAcquire(OTHER_SERVER).isPresent());
+        assertTrue(limiter.tryAcquire(THIRD_SERVER).isPresent());
+
+        // the least recently used destination is forgotten
+        assertEquals(limiter.getTrackedDestinations(), 2);
+        assertEquals(limiter.getLimitsPerDestination().keySet(), ImmutableSet.of("http://example.com:9090", "http://example.org:80"));
+
+        // and starts again without the requests in flight before it was forgotten
+        assertTrue(limiter.tryAcquire(SERVER).isPresent());
+        permit.dropped();
+        assertEquals(limiter.getLimit(SERVER), 1);
+        assertEquals(limiter.getTrackedDestinations(), 2);
+    }
+
+    @Test
+    public void testIdleDestinationsExpire()
+    {
+        TestingTicker ticker = new TestingTicker();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10, 100, ticker);
+        limiter.tryAcquire(SERVER).get().dropped();
+        assertEquals(limiter.getLimit(SERVER), 1);
+
+        ticker.increment(DESTINATION_IDLE_TIMEOUT_MINUTES - 1, MINUTES);
+        assertEquals(limiter.getLimitsPerDestination().keySet(), ImmutableSet.of("http://example.com:8080"));
+
+        ticker.increment(1, MINUTES);
+        assertTrue(limiter.getLimitsPerDestination().isEmpty());
+        assertEquals(limiter.getLimit(SERVER), 2);
+    }
+
+    private static List<Permit> acquireAll(AdaptiveConcurrencyLimiter limiter, int count)
+    {
+        List<Permit> permits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Optional<Permit> permit = limiter.tryAcquire(SERVER);
+            assertTrue(permit.isPresent());
+            permits.add(permit.get());
+        }
+        return permits;
+    }
+
+    private static void completeAll(List<Permit> permits, long roundTripNanos)
+    {
+        permits.forEach(permit -> permit.success(roundTripNanos));
+    }
+}
@@ -2,6 +2,7 @@ package io.airlift.http.client.jetty;
 
 import com.google.common.collect.ImmutableList;
 import io.airlift.http.client.AbstractHttpClientTest;
+import io.airlift.http.client.DestinationStats;
 import io.airlift.http.client.HttpClientConfig;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.ResponseHandler;
@@ -9,8 +10,14 @@ import io.airlift.http.client.TestingRequestFilter;
 import io.airlift.http.client.spnego.KerberosConfig;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
 
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static io.airlift.http.client.Request.Builder.preparePut;
+import static io.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
+import static io.airlift.http.client.StringResponseHandler.createStringResponseHandler;
 import static io.airlift.testing.Closeables.closeQuietly;
+import static org.testng.Assert.assertEquals;
 
 public class TestAsyncJettyHttpClient
         extends AbstractHttpClientTest
@@ -53,4 +60,23 @@ public class TestAsyncJettyHttpClient
             return executeAsync(client, request, responseHandler);
         }
     }
+
+    @Test
+    public void testDestinationStatsRecordRequestSize()
+            throws Exception
+    {
+        servlet.setResponseBody("hello");
+        Request request = preparePut()
+                .setUri(baseURI)
+                .setBodyGenerator(createStaticBodyGenerator(new byte[] {1, 2, 5}))
+                .build();
+
+        try (JettyHttpClient client = new JettyHttpClient("test-private", createClientConfig(), new KerberosConfig(), ImmutableList.of(new TestingRequestFilter()))) {
+            executeAsync(client, request, createStringResponseHandler());
+
+            DestinationStats stats = client.getStats().getDestinations();
+            assertEquals(getOnlyElement(stats.getWrittenBytesAvgPerDestination().values()), 3.0);
+            assertEquals(getOnlyElement(stats.getReadBytesAvgPerDestination().values()), 5.0);
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package io.airlift.http.client.jetty;
+
+import io.airlift.http.client.HttpClientConfig;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+
+public class TestAsyncJettyHttpClientPooledBuffers
+        extends TestAsyncJettyHttpClient
+{
+    @Override
+    protected HttpClientConfig createClientConfig()
+    {
+        return super.createClientConfig()
+                .setResponseBufferPoolEnabled(true);
+    }
+
+    @Test
+    public void testRetainedContentCannotBeRead()
+            throws Exception
+    {
+        servlet.setResponseBody("hello");
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        InputStream content = executeRequest(request, new ResponseHandler<InputStream, IOException>()
+        {
+            @Override
+            public InputStream handleException(Request request, Exception exception)
+            {
+                throw new AssertionError(exception);
+            }
+
+            @Override
+            public InputStream handle(Request request, Response response)
+                    throws IOException
+            {
+                InputStream inputStream = response.getInputStream();
+                assertEquals(inputStream.read(), 'h');
+                return inputStream;
+            }
+        });
+
+        // the buffers went back to the pool when the handler returned
+        assertThrows(IllegalStateException.class, content::read);
+    }
+
+    @Test
+    public void testPoolExported()
+    {
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig())) {
+            assertNotNull(client.getResponseBufferPool());
+        }
+        try (JettyHttpClient client = new JettyHttpClient(new HttpClientConfig())) {
+            assertNull(client.getResponseBufferPool());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.airlift.http.client.jetty;
+
+import io.airlift.http.client.HttpClientConfig;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class TestAsyncJettyHttpClientResponseCache
+        extends TestAsyncJettyHttpClient
+{
+    @Override
+    protected HttpClientConfig createClientConfig()
+    {
+        return super.createClientConfig()
+                .setResponseCacheEnabled(true);
+    }
+
+    @Test
+    public void testCacheExported()
+    {
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig())) {
+            assertNotNull(client.getResponseCache());
+        }
+        try (JettyHttpClient client = new JettyHttpClient(new HttpClientConfig())) {
+            assertNull(client.getResponseCache());
+        }
+    }
+}
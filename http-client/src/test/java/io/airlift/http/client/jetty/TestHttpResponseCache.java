@@ -0,0 +1,266 @@
+package io.airlift.http.client.jetty;
+
+import com.google.common.collect.ImmutableListMultimap;
+import io.airlift.http.client.HttpStatus;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.StringResponseHandler.StringResponse;
+import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.testing.TestingTicker;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.net.HttpHeaders.ACCEPT_LANGUAGE;
+import static com.google.common.net.HttpHeaders.AUTHORIZATION;
+import static com.google.common.net.HttpHeaders.CACHE_CONTROL;
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.google.common.net.HttpHeaders.VARY;
+import static io.airlift.http.client.HttpStatus.NOT_MODIFIED;
+import static io.airlift.http.client.HttpStatus.OK;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.Request.Builder.preparePost;
+import static io.airlift.http.client.StringResponseHandler.createStringResponseHandler;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestHttpResponseCache
+{
+    private static final URI URI = java.net.URI.create("http://example.com/resource");
+
+    private final TestingTicker ticker = new TestingTicker();
+    private HttpResponseCache cache;
+    private List<Request> sentRequests;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        cache = new HttpResponseCache(1024 * 1024, ticker);
+        sentRequests = new ArrayList<>();
+    }
+
+    @Test
+    public void testMaxAge()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        assertEquals(execute(request, response(OK, "first", CACHE_CONTROL, "max-age=10")).getBody(), "first");
+        assertEquals(sentRequests.size(), 1);
+
+        ticker.increment(9, SECONDS);
+        assertEquals(execute(request, response(OK, "second", CACHE_CONTROL, "max-age=10")).getBody(), "first");
+        assertEquals(sentRequests.size(), 1);
+        assertEquals(cache.getHits().getTotalCount(), 1);
+
+        ticker.increment(1, SECONDS);
+        assertEquals(execute(request, response(OK, "second", CACHE_CONTROL, "max-age=10")).getBody(), "second");
+        assertEquals(sentRequests.size(), 2);
+        assertEquals(cache.getMisses().getTotalCount(), 2);
+    }
+
+    @Test
+    public void testAge()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "first", CACHE_CONTROL, "max-age=10", "Age", "8"));
+        ticker.increment(2, SECONDS);
+        assertEquals(execute(request, response(OK, "second")).getBody(), "second");
+    }
+
+    @Test
+    public void testETagRevalidation()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "first", ETAG, "\"v1\""));
+        assertNull(sentRequests.get(0).getHeader(IF_NONE_MATCH));
+
+        StringResponse response = execute(request, response(NOT_MODIFIED, "", ETAG, "\"v1\""));
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(), "first");
+        assertEquals(sentRequests.get(1).getHeader(IF_NONE_MATCH), "\"v1\"");
+        assertEquals(cache.getRevalidations().getTotalCount(), 1);
+
+        // a changed resource replaces the entry
+        assertEquals(execute(request, response(OK, "second", ETAG, "\"v2\"")).getBody(), "second");
+        execute(request, response(NOT_MODIFIED, "", ETAG, "\"v2\""));
+        assertEquals(sentRequests.get(3).getHeader(IF_NONE_MATCH), "\"v2\"");
+    }
+
+    @Test
+    public void testRevalidationRefreshesMaxAge()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "first", ETAG, "\"v1\"", CACHE_CONTROL, "max-age=10"));
+        ticker.increment(10, SECONDS);
+        execute(request, response(NOT_MODIFIED, "", CACHE_CONTROL, "max-age=20"));
+        assertEquals(sentRequests.size(), 2);
+
+        ticker.increment(19, SECONDS);
+        assertEquals(execute(request, response(OK, "second")).getBody(), "first");
+        assertEquals(sentRequests.size(), 2);
+    }
+
+    @Test
+    public void testVary()
+    {
+        Request english = prepareGet().setUri(URI).setHeader(ACCEPT_LANGUAGE, "en").build();
+        Request german = prepareGet().setUri(URI).setHeader(ACCEPT_LANGUAGE, "de").build();
+
+        execute(english, response(OK, "hello", CACHE_CONTROL, "max-age=10", VARY, "Accept-Language"));
+        assertEquals(execute(english, response(OK, "unused")).getBody(), "hello");
+        assertEquals(execute(german, response(OK, "hallo", CACHE_CONTROL, "max-age=10", VARY, "Accept-Language")).getBody(), "hallo");
+        assertEquals(execute(german, response(OK, "unused")).getBody(), "hallo");
+        assertEquals(sentRequests.size(), 2);
+
+        execute(english, response(OK, "everyone", CACHE_CONTROL, "max-age=10", VARY, "*"));
+        execute(english, response(OK, "again"));
+        assertEquals(sentRequests.size(), 4);
+    }
+
+    @Test
+    public void testNotStored()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "body"));
+        execute(request, response(OK, "body", CACHE_CONTROL, "no-store, max-age=10"));
+        execute(request, response(HttpStatus.INTERNAL_SERVER_ERROR, "body", CACHE_CONTROL, "max-age=10"));
+        execute(request, response(OK, "body"));
+        assertEquals(sentRequests.size(), 4);
+        assertEquals(cache.getEntryCount(), 0);
+    }
+
+    @Test
+    public void testNoCacheResponse()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "first", CACHE_CONTROL, "no-cache, max-age=10", ETAG, "\"v1\""));
+        assertEquals(execute(request, response(NOT_MODIFIED, "")).getBody(), "first");
+        assertEquals(sentRequests.size(), 2);
+    }
+
+    @Test
+    public void testInvalidResponseMaxAge()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "body", CACHE_CONTROL, "max-age=\"60\""));
+        execute(request, response(OK, "body", CACHE_CONTROL, "max-age=ten"));
+        execute(request, response(OK, "body", CACHE_CONTROL, "max-age"));
+        assertEquals(sentRequests.size(), 3);
+        assertEquals(cache.getEntryCount(), 0);
+
+        // an entry with a validator is stored, but has to be revalidated
+        execute(request, response(OK, "first", CACHE_CONTROL, "max-age=-1", ETAG, "\"v1\""));
+        assertEquals(execute(request, response(NOT_MODIFIED, "")).getBody(), "first");
+        assertEquals(sentRequests.size(), 5);
+        assertEquals(sentRequests.get(4).getHeader(IF_NONE_MATCH), "\"v1\"");
+    }
+
+    @Test
+    public void testOverflowingResponseMaxAge()
+    {
+        Request request = prepareGet().setUri(URI).build();
+
+        execute(request, response(OK, "first", CACHE_CONTROL, "max-age=99999999999999999999"));
+        ticker.increment(365, DAYS);
+        assertEquals(execute(request, response(OK, "second")).getBody(), "first");
+        assertEquals(sentRequests.size(), 1);
+    }
+
+    @Test
+    public void testInvalidRequestDirectivesIgnored()
+    {
+        execute(prepareGet().setUri(URI).build(), response(OK, "first", CACHE_CONTROL, "max-age=10"));
+
+        Request request = prepareGet().setUri(URI).setHeader(CACHE_CONTROL, "max-age=\"0\", max-stale=x, s-maxage=99999999999").build();
+        assertEquals(execute(request, response(OK, "second")).getBody(), "first");
+        assertEquals(sentRequests.size(), 1);
+    }
+
+    @Test
+    public void testRequestNotCacheable()
+    {
+        List<Request> requests = new ArrayList<>();
+        requests.add(preparePost().setUri(URI).build());
+        requests.add(prepareGet().setUri(URI).setHeader(AUTHORIZATION, "Basic dGVzdA==").build());
+        requests.add(prepareGet().setUri(URI).setHeader(IF_NONE_MATCH, "\"v1\"").build());
+        requests.add(prepareGet().setUri(URI).setHeader(CACHE_CONTROL, "no-store").build());
+
+        for (Request request : requests) {
+            execute(request, response(OK, "body", CACHE_CONTROL, "max-age=10", ETAG, "\"v1\""));
+            execute(request, response(OK, "body", CACHE_CONTROL, "max-age=10", ETAG, "\"v1\""));
+        }
+        assertEquals(sentRequests.size(), 8);
+        assertEquals(cache.getNotCacheable().getTotalCount(), 8);
+        assertEquals(cache.getEntryCount(), 0);
+    }
+
+    @Test
+    public void testRequestNoCache()
+    {
+        execute(prepareGet().setUri(URI).build(), response(OK, "first", CACHE_CONTROL, "max-age=10"));
+
+        Request noCache = prepareGet().setUri(URI).setHeader(CACHE_CONTROL, "no-cache").build();
+        assertEquals(execute(noCache, response(OK, "second", CACHE_CONTROL, "max-age=10")).getBody(), "second");
+        assertEquals(sentRequests.size(), 2);
+    }
+
+    @Test
+    public void testLargeResponseNotStored()
+    {
+        cache = new HttpResponseCache(80, ticker);
+        Request request = prepareGet().setUri(URI).build();
+
+        String body = "0123456789abcdef";
+        assertEquals(execute(request, response(OK, body, CACHE_CONTROL, "max-age=10")).getBody(), body);
+        assertFalse(cache.lookup(request).getFreshResponse().isPresent());
+    }
+
+    @Test
+    public void testFreshResponse()
+    {
+        Request request = prepareGet().setUri(URI).build();
+        execute(request, response(OK, "body", CACHE_CONTROL, "max-age=10"));
+
+        Optional<Response> fresh = cache.lookup(request).getFreshResponse();
+        assertTrue(fresh.isPresent());
+        assertEquals(fresh.get().getStatusCode(), 200);
+        assertEquals(fresh.get().getHeader(CACHE_CONTROL), "max-age=10");
+    }
+
+    private StringResponse execute(Request request, Response serverResponse)
+    {
+        ResponseHandler<StringResponse, RuntimeException> responseHandler = createStringResponseHandler();
+        HttpResponseCache.Lookup lookup = cache.lookup(request);
+        if (lookup.getFreshResponse().isPresent()) {
+            return responseHandler.handle(request, lookup.getFreshResponse().get());
+        }
+        sentRequests.add(lookup.getRequest());
+        return lookup.wrap(responseHandler).handle(lookup.getRequest(), serverResponse);
+    }
+
+    private static Response response(HttpStatus status, String body, String... headers)
+    {
+        ImmutableListMultimap.Builder<String, String> headerMap = ImmutableListMultimap.builder();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerMap.put(headers[i], headers[i + 1]);
+        }
+        return new TestingResponse(status, headerMap.build(), body.getBytes(UTF_8));
+    }
+}
@@ -10,8 +10,13 @@ import io.airlift.http.client.TestingRequestFilter;
 import io.airlift.http.client.spnego.KerberosConfig;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
 
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
 import static io.airlift.testing.Closeables.closeQuietly;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
 
 public class TestJettyHttpClient
         extends AbstractHttpClientTest
@@ -52,4 +57,71 @@ public class TestJettyHttpClient
             return client.execute(request, responseHandler);
         }
     }
+
+    @Test
+    public void testWarmConnections()
+            throws Exception
+    {
+        try (JettyHttpClient client = new JettyHttpClient("test-warm", createClientConfig().setWarmConnectionsPerServer(3))) {
+            client.warmConnections(ImmutableList.of(baseURI));
+            assertEventually(() -> assertEquals(client.getConnectionPoolStats().getWarmedConnections().getTotalCount(), 3));
+
+            // warming again does not open more connections
+            client.warmConnections(ImmutableList.of(baseURI));
+
+            client.execute(prepareGet().setUri(baseURI).build(), createStatusResponseHandler());
+            assertEquals(client.getConnectionPoolStats().getWarmAcquisitions().getTotalCount(), 1);
+            assertEquals(client.getConnectionPoolStats().getColdAcquisitions().getTotalCount(), 0);
+            assertEquals(client.getConnectionPoolStats().getWarmedConnections().getTotalCount(), 3);
+        }
+    }
+
+    @Test
+    public void testColdConnection()
+            throws Exception
+    {
+        try (JettyHttpClient client = new JettyHttpClient("test-cold", createClientConfig())) {
+            client.execute(prepareGet().setUri(baseURI).build(), createStatusResponseHandler());
+            assertEquals(client.getConnectionPoolStats().getColdAcquisitions().getTotalCount(), 1);
+
+            // the connection is reused once Jetty has returned it to the pool
+            assertEventually(() -> assertEquals(client.getIdleConnectionCount(baseURI), 1));
+            client.execute(prepareGet().setUri(baseURI).build(), createStatusResponseHandler());
+            assertEquals(client.getConnectionPoolStats().getColdAcquisitions().getTotalCount(), 1);
+            assertEquals(client.getConnectionPoolStats().getWarmAcquisitions().getTotalCount(), 1);
+            assertEquals(client.getConnectionPoolStats().getWarmedConnections().getTotalCount(), 0);
+        }
+    }
+
+    @Test
+    public void testMinIdleConnections()
+            throws Exception
+    {
+        try (JettyHttpClient client = new JettyHttpClient("test-min-idle", createClientConfig().setMinIdleConnectionsPerServer(2))) {
+            client.execute(prepareGet().setUri(baseURI).build(), createStatusResponseHandler());
+
+            // taking the first connection opens replacements
+            assertEventually(() -> assertEquals(client.getConnectionPoolStats().getWarmedConnections().getTotalCount(), 2));
+            assertEventually(() -> assertEquals(client.getIdleConnectionCount(baseURI), 3));
+            assertEquals(client.getConnectionPoolStats().getWarmedConnections().getTotalCount(), 2);
+        }
+    }
+
+    private static void assertEventually(Runnable assertion)
+            throws InterruptedException
+    {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (true) {
+            try {
+                assertion.run();
+                return;
+            }
+            catch (AssertionError e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package io.airlift.http.client.jetty;
 
 import io.airlift.http.client.HttpClientConfig;
+import org.testng.annotations.Test;
 
 public class TestJettyHttpClientHttp2
         extends TestJettyHttpClient
@@ -11,4 +12,29 @@ public class TestJettyHttpClientHttp2
         return super.createClientConfig()
                 .setHttp2Enabled(true);
     }
+
+    @Override
+    @Test(enabled = false)
+    public void testWarmConnections()
+            throws Exception
+    {
+        // HTTP/2 multiplexes requests over a connection, so connections are not warmed
+        super.testWarmConnections();
+    }
+
+    @Override
+    @Test(enabled = false)
+    public void testColdConnection()
+            throws Exception
+    {
+        super.testColdConnection();
+    }
+
+    @Override
+    @Test(enabled = false)
+    public void testMinIdleConnections()
+            throws Exception
+    {
+        super.testMinIdleConnections();
+    }
 }
@@ -0,0 +1,87 @@
+package io.airlift.http.client.jetty;
+
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestMappedFileContentProvider
+{
+    private Path file;
+
+    @BeforeMethod
+    public void setUp()
+            throws IOException
+    {
+        file = Files.createTempFile("test", null);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testRegions()
+            throws IOException
+    {
+        byte[] contents = new byte[10];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) i;
+        }
+        Files.write(file, contents);
+
+        MappedFileContentProvider provider = new MappedFileContentProvider(file, 4);
+        assertEquals(provider.getLength(), 10);
+        assertTrue(provider.isReproducible());
+
+        // the provider can be iterated more than once
+        for (int i = 0; i < 2; i++) {
+            List<Integer> regionSizes = new ArrayList<>();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (ByteBuffer region : provider) {
+                regionSizes.add(region.remaining());
+                while (region.hasRemaining()) {
+                    out.write(region.get());
+                }
+            }
+            assertEquals(regionSizes, ImmutableList.of(4, 4, 2));
+            assertEquals(out.toByteArray(), contents);
+        }
+    }
+
+    @Test
+    public void testEmptyFile()
+    {
+        MappedFileContentProvider provider = new MappedFileContentProvider(file);
+        assertEquals(provider.getLength(), 0);
+        assertFalse(provider.iterator().hasNext());
+    }
+
+    @Test
+    public void testCloseBeforeEnd()
+            throws IOException
+    {
+        Files.write(file, new byte[10]);
+        Iterator<ByteBuffer> iterator = new MappedFileContentProvider(file, 4).iterator();
+        assertEquals(iterator.next().remaining(), 4);
+        assertTrue(iterator instanceof Closeable);
+        ((Closeable) iterator).close();
+    }
+}
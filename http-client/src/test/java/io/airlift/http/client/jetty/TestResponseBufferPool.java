@@ -0,0 +1,64 @@
+package io.airlift.http.client.jetty;
+
+import org.testng.annotations.Test;
+
+import static io.airlift.http.client.jetty.ResponseBufferPool.MAX_BUFFER_SIZE;
+import static io.airlift.http.client.jetty.ResponseBufferPool.MIN_BUFFER_SIZE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class TestResponseBufferPool
+{
+    @Test
+    public void testReuse()
+    {
+        ResponseBufferPool pool = new ResponseBufferPool(MAX_BUFFER_SIZE);
+
+        byte[] buffer = pool.acquire(MIN_BUFFER_SIZE);
+        assertEquals(buffer.length, MIN_BUFFER_SIZE);
+        assertEquals(pool.getMisses(), 1);
+
+        pool.release(buffer);
+        assertEquals(pool.getReturned(), 1);
+        assertEquals(pool.getRetainedBytes(), MIN_BUFFER_SIZE);
+
+        // buffers are only reused for requests of the same size
+        assertNotSame(pool.acquire(MIN_BUFFER_SIZE * 2), buffer);
+        assertEquals(pool.getMisses(), 2);
+
+        assertSame(pool.acquire(MIN_BUFFER_SIZE), buffer);
+        assertEquals(pool.getHits(), 1);
+        assertEquals(pool.getRetainedBytes(), 0);
+    }
+
+    @Test
+    public void testRetainedBytesBound()
+    {
+        ResponseBufferPool pool = new ResponseBufferPool(MIN_BUFFER_SIZE * 3);
+
+        pool.release(new byte[MIN_BUFFER_SIZE * 2]);
+        pool.release(new byte[MIN_BUFFER_SIZE * 2]);
+        pool.release(new byte[MIN_BUFFER_SIZE]);
+        assertEquals(pool.getReturned(), 2);
+        assertEquals(pool.getDiscarded(), 1);
+        assertEquals(pool.getRetainedBytes(), MIN_BUFFER_SIZE * 3);
+    }
+
+    @Test
+    public void testUnpooledSizeDiscarded()
+    {
+        ResponseBufferPool pool = new ResponseBufferPool(MAX_BUFFER_SIZE * 4);
+
+        pool.release(new byte[MIN_BUFFER_SIZE + 1]);
+        pool.release(new byte[MAX_BUFFER_SIZE * 2]);
+        assertEquals(pool.getDiscarded(), 2);
+        assertEquals(pool.getRetainedBytes(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAcquireUnpooledSize()
+    {
+        new ResponseBufferPool(MAX_BUFFER_SIZE).acquire(MIN_BUFFER_SIZE + 1);
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.Duration;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.net.HttpHeaders.RETRY_AFTER;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+
+/**
+ * Limits the number of requests processed concurrently and rejects the excess
+ * with 503 and Retry-After. The filter runs on a server thread, so a rejected
+ * request has already been dispatched; the limit bounds the work in progress,
+ * and is kept below the max threads so that threads remain free to reject
+ * requests quickly when the application is slow.
+ * <p>
+ * The limit starts at the max concurrency and adapts to the observed latency:
+ * it is cut by 10% (at most once per target latency interval) when a request
+ * takes longer than the target latency, and grows by roughly one for every
+ * "limit" requests that complete in time while the limit is in use.
+ * Priority requests, selected by path prefix or header, are only subject to
+ * the max concurrency.
+ */
+@ThreadSafe
+class AdmissionControlFilter
+        implements Filter
+{
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long targetLatencyNanos;
+    private final List<String> priorityPaths;
+    @Nullable
+    private final String priorityHeader;
+    private final String retryAfterSeconds;
+    private final RequestStats stats;
+    private final Ticker ticker;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @GuardedBy("this")
+    private double limit;
+    @GuardedBy("this")
+    private long lastDecreaseNanos;
+    // copy of the limit that requests read without locking
+    private volatile int currentLimit;
+
+    public AdmissionControlFilter(HttpServerConfig config, RequestStats stats)
+    {
+        this(config.getAdmissionControlMinConcurrency(),
+                config.getAdmissionControlMaxConcurrency(),
+                config.getAdmissionControlTargetLatency(),
+                config.getAdmissionControlPriorityPaths(),
+                config.getAdmissionControlPriorityHeader(),
+                config.getAdmissionControlRetryAfter(),
+                stats,
+                Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    AdmissionControlFilter(
+            int minConcurrency,
+            int maxConcurrency,
+            Duration targetLatency,
+            List<String> priorityPaths,
+            @Nullable String priorityHeader,
+            Duration retryAfter,
+            RequestStats stats,
+            Ticker ticker)
+    {
+        checkArgument(minConcurrency >= 1, "minConcurrency must be at least 1");
+        checkArgument(minConcurrency <= maxConcurrency, "minConcurrency is greater than maxConcurrency");
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLatencyNanos = requireNonNull(targetLatency, "targetLatency is null").roundTo(NANOSECONDS);
+        this.priorityPaths = ImmutableList.copyOf(requireNonNull(priorityPaths, "priorityPaths is null"));
+        this.priorityHeader = priorityHeader;
+        this.retryAfterSeconds = String.valueOf((long) Math.ceil(requireNonNull(retryAfter, "retryAfter is null").getValue(SECONDS)));
+        this.stats = requireNonNull(stats, "stats is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+
+        synchronized (this) {
+            limit = maxConcurrency;
+            lastDecreaseNanos = ticker.read() - targetLatencyNanos;
+            currentLimit = maxConcurrency;
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig)
+    {
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException
+    {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+
+        int allowed = isPriority(request) ? maxConcurrency : currentLimit;
+        if (inFlight.incrementAndGet() > allowed) {
+            inFlight.decrementAndGet();
+            stats.recordShed();
+            HttpServletResponse response = (HttpServletResponse) servletResponse;
+            response.setStatus(SC_SERVICE_UNAVAILABLE);
+            response.setHeader(RETRY_AFTER, retryAfterSeconds);
+            response.setContentLength(0);
+            return;
+        }
+        stats.recordAdmitted();
+
+        long start = ticker.read();
+        boolean async = false;
+        try {
+            chain.doFilter(servletRequest, servletResponse);
+            if (request.isAsyncStarted()) {
+                // the request stays in flight until the async processing completes
+                request.getAsyncContext().addListener(new CompletionListener(start));
+                async = true;
+            }
+        }
+        finally {
+            if (!async) {
+                requestCompleted(start);
+            }
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+
+    @VisibleForTesting
+    int getLimit()
+    {
+        return currentLimit;
+    }
+
+    @VisibleForTesting
+    int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    private boolean isPriority(HttpServletRequest request)
+    {
+        if (priorityHeader != null && request.getHeader(priorityHeader) != null) {
+            return true;
+        }
+        if (!priorityPaths.isEmpty()) {
+            String uri = request.getRequestURI();
+            for (String path : priorityPaths) {
+                if (uri.startsWith(path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void requestCompleted(long start)
+    {
+        long now = ticker.read();
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        updateLimit(now - start, inFlightAtCompletion, now);
+    }
+
+    private synchronized void updateLimit(long latencyNanos, int inFlightAtCompletion, long now)
+    {
+        if (latencyNanos > targetLatencyNanos) {
+            // a burst of slow requests is one congestion signal, not one per request
+            if (now - lastDecreaseNanos >= targetLatencyNanos) {
+                limit = max(minConcurrency, limit * DECREASE_FACTOR);
+                lastDecreaseNanos = now;
+            }
+        }
+        else if (inFlightAtCompletion * 2 >= limit) {
+            // only grow while the limit is actually constraining concurrency
+            limit = min(maxConcurrency, limit + (1.0 / limit));
+        }
+        currentLimit = (int) limit;
+    }
+
+    private class CompletionListener
+            implements AsyncListener
+    {
+        private final long start;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        public CompletionListener(long start)
+        {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event)
+        {
+            complete();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event)
+        {
+            complete();
+        }
+
+        @Override
+        public void onError(AsyncEvent event)
+        {
+            complete();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event)
+        {
+            // listeners are cleared when the request is put into async mode again
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void complete()
+        {
+            if (completed.compareAndSet(false, true)) {
+                requestCompleted(start);
+            }
+        }
+    }
+}
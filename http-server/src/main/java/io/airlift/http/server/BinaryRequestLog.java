@@ -0,0 +1,611 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import com.google.common.math.LongMath;
+import io.airlift.event.client.EventClient;
+import io.airlift.log.Logger;
+import io.airlift.tracetoken.TraceTokenManager;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.http.server.HttpRequestEvent.createHttpRequestEvent;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the request log in a compact binary format, read with {@link BinaryRequestLogReader}.
+ * <p>
+ * Each file starts with a magic number and a version, followed by records that are each
+ * prefixed with their length. Strings that repeat, such as the path and the user agent,
+ * are written once per file in a definition record and referenced by id afterwards. The
+ * dictionary of a file is limited by the estimated heap size of its values; once it is full,
+ * new values are written inline.
+ * <p>
+ * Files are memory mapped at their maximum size. Writers reserve space for a record with a
+ * compare-and-set and copy it into the mapping from the request thread, so there is no queue
+ * or writer thread. The length prefix is written last, which makes a record visible to readers
+ * only once it is complete; a length of zero marks the end of the records. A file is closed
+ * and truncated to its records when it is full or the day changes.
+ */
+@ThreadSafe
+class BinaryRequestLog
+        implements RequestLogger
+{
+    private static final Logger log = Logger.get(BinaryRequestLog.class);
+
+    static final int MAGIC = 0x41524C42;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final String FILE_EXTENSION = ".bin";
+
+    static final byte DEFINITION_RECORD = 1;
+    static final byte EVENT_RECORD = 2;
+
+    // string fields start with a tag; tags from FIRST_DICTIONARY_TAG are dictionary ids
+    static final int NULL_STRING = 0;
+    static final int INLINE_STRING = 1;
+    static final int FIRST_DICTIONARY_TAG = 2;
+
+    private static final int RECORD_LENGTH_SIZE = Integer.BYTES;
+    private static final int SEGMENT_FULL = -1;
+    // values are only added to a file's dictionary until their estimated heap size reaches this limit
+    private static final long MAX_DICTIONARY_BYTES = 4 * 1024 * 1024;
+    private static final int DICTIONARY_ENTRY_OVERHEAD = 64;
+    private static final int MAX_DICTIONARY_VALUE_LENGTH = 1024;
+    private static final int MAX_APPEND_ATTEMPTS = 3;
+    private static final long ROLL_RETRY_MILLIS = 1000;
+
+    private final File directory;
+    private final String baseName;
+    private final Pattern fileNamePattern;
+    private final int maxHistory;
+    private final int maxFileSize;
+    private final long totalSizeCap;
+    private final TraceTokenManager traceTokenManager;
+    private final EventClient eventClient;
+    private final CurrentTimeMillisProvider currentTimeMillisProvider;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ThreadLocal<RecordBuffer> recordBuffers = ThreadLocal.withInitial(RecordBuffer::new);
+    private final ThreadLocal<RecordBuffer> definitionBuffers = ThreadLocal.withInitial(RecordBuffer::new);
+
+    // null once stopped
+    private volatile Segment current;
+    @GuardedBy("this")
+    private long nextRollAttemptMillis;
+
+    public BinaryRequestLog(
+            String filename,
+            int maxHistory,
+            long maxFileSizeInBytes,
+            TraceTokenManager traceTokenManager,
+            EventClient eventClient)
+            throws IOException
+    {
+        this(filename, maxHistory, maxFileSizeInBytes, traceTokenManager, eventClient, new SystemCurrentTimeMillisProvider());
+    }
+
+    public BinaryRequestLog(
+            String filename,
+            int maxHistory,
+            long maxFileSizeInBytes,
+            TraceTokenManager traceTokenManager,
+            EventClient eventClient,
+            CurrentTimeMillisProvider currentTimeMillisProvider)
+            throws IOException
+    {
+        requireNonNull(filename, "filename is null");
+        checkArgument(maxHistory > 0, "maxHistory must be positive");
+        File logFile = new File(filename).getAbsoluteFile();
+        this.directory = logFile.getParentFile();
+        this.baseName = logFile.getName();
+        this.fileNamePattern = Pattern.compile(Pattern.quote(baseName) + "-(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)" + Pattern.quote(FILE_EXTENSION));
+        this.maxHistory = maxHistory;
+        // a mapping is limited to 2GB
+        this.maxFileSize = (int) min(maxFileSizeInBytes, Integer.MAX_VALUE);
+        checkArgument(maxFileSize > FILE_HEADER_SIZE, "maxFileSizeInBytes is too small");
+        this.totalSizeCap = LongMath.saturatedMultiply(maxFileSizeInBytes, maxHistory);
+        this.traceTokenManager = traceTokenManager;
+        this.eventClient = requireNonNull(eventClient, "eventClient is null");
+        this.currentTimeMillisProvider = requireNonNull(currentTimeMillisProvider, "currentTimeMillisProvider is null");
+
+        synchronized (this) {
+            long now = currentTimeMillisProvider.getCurrentTimeMillis();
+            current = openSegment(now);
+            deleteOldFiles(now, current.getFile());
+        }
+    }
+
+    @Override
+    public void log(
+            Request request,
+            Response response,
+            long beginToDispatchMillis,
+            long beginToEndMillis,
+            long firstToLastContentTimeInMillis,
+            DoubleSummaryStats responseContentInterarrivalStats)
+    {
+        long now = currentTimeMillisProvider.getCurrentTimeMillis();
+        HttpRequestEvent event = createHttpRequestEvent(
+                request,
+                response,
+                traceTokenManager,
+                now,
+                beginToDispatchMillis,
+                beginToEndMillis,
+                firstToLastContentTimeInMillis,
+                responseContentInterarrivalStats);
+
+        append(event, now);
+
+        eventClient.post(event);
+    }
+
+    private void append(HttpRequestEvent event, long now)
+    {
+        // a record that does not fit in a new file is dropped rather than retried forever
+        for (int attempt = 0; attempt < MAX_APPEND_ATTEMPTS; attempt++) {
+            Segment segment = current;
+            if (segment == null) {
+                return;
+            }
+            if (now < segment.getRollTimeMillis() && segment.append(event, recordBuffers.get(), definitionBuffers.get())) {
+                return;
+            }
+            if (!roll(segment, now)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces the segment with a new one, unless another thread already did.
+     * Returns false if the log is stopped or a new file can not be opened.
+     */
+    private synchronized boolean roll(Segment segment, long now)
+    {
+        if (current != segment) {
+            return current != null;
+        }
+        if (now < nextRollAttemptMillis) {
+            return false;
+        }
+
+        Segment next;
+        try {
+            next = openSegment(now);
+        }
+        catch (IOException e) {
+            log.error(e, "Could not open request log file");
+            nextRollAttemptMillis = now + ROLL_RETRY_MILLIS;
+            return false;
+        }
+        current = next;
+        segment.close();
+        deleteOldFiles(now, next.getFile());
+        return true;
+    }
+
+    @Override
+    public synchronized void stop()
+    {
+        Segment segment = current;
+        current = null;
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    @Override
+    public int getQueueSize()
+    {
+        return 0;
+    }
+
+    @GuardedBy("this")
+    private Segment openSegment(long now)
+            throws IOException
+    {
+        LocalDate date = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        long rollTimeMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        int index = 0;
+        for (LogFile logFile : listLogFiles()) {
+            if (logFile.date.equals(date)) {
+                index = max(index, logFile.index + 1);
+            }
+        }
+        File file = new File(directory, baseName + "-" + date + "." + index + FILE_EXTENSION);
+        return Segment.create(file, maxFileSize, rollTimeMillis);
+    }
+
+    @GuardedBy("this")
+    private void deleteOldFiles(long now, File currentFile)
+    {
+        LocalDate oldestDate = Instant.ofEpochMilli(now).atZone(zone).toLocalDate().minusDays(maxHistory);
+        List<LogFile> logFiles = listLogFiles();
+        long totalSize = logFiles.stream()
+                .mapToLong(logFile -> logFile.file.length())
+                .sum();
+        for (LogFile logFile : logFiles) {
+            if (logFile.file.equals(currentFile)) {
+                continue;
+            }
+            if (logFile.date.isBefore(oldestDate) || totalSize > totalSizeCap) {
+                long length = logFile.file.length();
+                if (logFile.file.delete()) {
+                    totalSize -= length;
+                }
+                else {
+                    log.warn("Could not delete request log file %s", logFile.file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the log files in the directory, oldest first.
+     */
+    private List<LogFile> listLogFiles()
+    {
+        List<LogFile> logFiles = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = fileNamePattern.matcher(file.getName());
+                if (matcher.matches()) {
+                    logFiles.add(new LogFile(file, LocalDate.parse(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+                }
+            }
+        }
+        logFiles.sort(Comparator.<LogFile, LocalDate>comparing(logFile -> logFile.date).thenComparingInt(logFile -> logFile.index));
+        return logFiles;
+    }
+
+    private static class LogFile
+    {
+        private final File file;
+        private final LocalDate date;
+        private final int index;
+
+        public LogFile(File file, LocalDate date, int index)
+        {
+            this.file = file;
+            this.date = date;
+            this.index = index;
+        }
+    }
+
+    /**
+     * A memory mapped log file. Appends do not lock; closing waits for appends in progress.
+     */
+    @ThreadSafe
+    private static class Segment
+    {
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long rollTimeMillis;
+
+        private final AtomicInteger position = new AtomicInteger(FILE_HEADER_SIZE);
+        private final AtomicInteger writers = new AtomicInteger();
+        private volatile boolean closed;
+
+        private final ConcurrentMap<String, Integer> dictionary = new ConcurrentHashMap<>();
+        private final AtomicInteger nextDictionaryId = new AtomicInteger();
+        private final AtomicLong dictionaryBytes = new AtomicLong();
+
+        public static Segment create(File file, int size, long rollTimeMillis)
+                throws IOException
+        {
+            FileChannel channel = FileChannel.open(file.toPath(), CREATE_NEW, READ, WRITE);
+            try {
+                MappedByteBuffer buffer = channel.map(READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(Integer.BYTES, VERSION);
+                return new Segment(file, channel, buffer, rollTimeMillis);
+            }
+            catch (IOException | RuntimeException e) {
+                try {
+                    channel.close();
+                }
+                catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+                throw e;
+            }
+        }
+
+        private Segment(File file, FileChannel channel, MappedByteBuffer buffer, long rollTimeMillis)
+        {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.rollTimeMillis = rollTimeMillis;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        public long getRollTimeMillis()
+        {
+            return rollTimeMillis;
+        }
+
+        /**
+         * Returns false if the segment is closed or does not have room for the event.
+         */
+        public boolean append(HttpRequestEvent event, RecordBuffer record, RecordBuffer definition)
+        {
+            writers.incrementAndGet();
+            try {
+                if (closed) {
+                    return false;
+                }
+
+                String requestUri = event.getRequestUri();
+                String path = requestUri;
+                String query = null;
+                int queryStart = requestUri == null ? -1 : requestUri.indexOf('?');
+                if (queryStart >= 0) {
+                    path = requestUri.substring(0, queryStart);
+                    query = requestUri.substring(queryStart + 1);
+                }
+
+                record.reset();
+                record.writeByte(EVENT_RECORD);
+                record.writeLong(event.getTimeStamp().toEpochMilli());
+                boolean fits = writeString(event.getTraceToken(), false, record, definition) &&
+                        writeString(event.getClientAddress(), false, record, definition) &&
+                        writeString(event.getProtocol(), true, record, definition) &&
+                        writeString(event.getMethod(), true, record, definition) &&
+                        writeString(path, true, record, definition) &&
+                        writeString(query, false, record, definition) &&
+                        writeString(event.getUser(), false, record, definition) &&
+                        writeString(event.getAgent(), true, record, definition) &&
+                        writeString(event.getReferrer(), false, record, definition) &&
+                        writeString(event.getRequestContentType(), true, record, definition) &&
+                        writeString(event.getResponseContentType(), true, record, definition) &&
+                        writeString(event.getProtocolVersion(), true, record, definition);
+                if (!fits) {
+                    return false;
+                }
+                record.writeLong(event.getRequestSize());
+                record.writeLong(event.getResponseSize());
+                record.writeLong(event.getResponseCode());
+                record.writeLong(event.getTimeToDispatch());
+                if (event.getTimeToFirstByte() == null) {
+                    record.writeByte(0);
+                }
+                else {
+                    record.writeByte(1);
+                    record.writeLong(event.getTimeToFirstByte());
+                }
+                record.writeLong(event.getTimeToLastByte());
+                record.writeLong(event.getBeginToDispatchMillis());
+                record.writeLong(event.getBeginToEndMillis());
+                record.writeLong(event.getFirstToLastContentTimeInMillis());
+                DoubleSummaryStats stats = event.getResponseContentInterarrivalStats();
+                if (stats == null) {
+                    record.writeByte(0);
+                }
+                else {
+                    record.writeByte(1);
+                    record.writeLong(stats.getCount());
+                    record.writeDouble(stats.getMin());
+                    record.writeDouble(stats.getMax());
+                    record.writeDouble(stats.getAverage());
+                }
+                return write(record);
+            }
+            finally {
+                writers.decrementAndGet();
+            }
+        }
+
+        private boolean writeString(String value, boolean useDictionary, RecordBuffer record, RecordBuffer definition)
+        {
+            int tag;
+            if (value == null) {
+                tag = NULL_STRING;
+            }
+            else if (useDictionary) {
+                tag = dictionaryTag(value, definition);
+                if (tag == SEGMENT_FULL) {
+                    return false;
+                }
+            }
+            else {
+                tag = INLINE_STRING;
+            }
+            record.writeVarInt(tag);
+            if (tag == INLINE_STRING) {
+                record.writeString(value);
+            }
+            return true;
+        }
+
+        private int dictionaryTag(String value, RecordBuffer definition)
+        {
+            Integer id = dictionary.get(value);
+            if (id == null) {
+                // concurrent writers can each add one value past the limit
+                long entryBytes = DICTIONARY_ENTRY_OVERHEAD + 2L * value.length();
+                if (value.length() > MAX_DICTIONARY_VALUE_LENGTH || dictionaryBytes.get() + entryBytes > MAX_DICTIONARY_BYTES) {
+                    return INLINE_STRING;
+                }
+                // the definition is written while the new entry is locked, so any record that
+                // finds the entry is written after the definition
+                id = dictionary.computeIfAbsent(value, key -> {
+                    int newId = nextDictionaryId.getAndIncrement();
+                    dictionaryBytes.addAndGet(entryBytes);
+                    definition.reset();
+                    definition.writeByte(DEFINITION_RECORD);
+                    definition.writeVarInt(newId);
+                    definition.writeString(key);
+                    return write(definition) ? newId : null;
+                });
+                if (id == null) {
+                    return SEGMENT_FULL;
+                }
+            }
+            return FIRST_DICTIONARY_TAG + id;
+        }
+
+        private boolean write(RecordBuffer record)
+        {
+            int length = record.size();
+            int recordPosition;
+            while (true) {
+                recordPosition = position.get();
+                if (recordPosition + RECORD_LENGTH_SIZE + length > buffer.capacity()) {
+                    return false;
+                }
+                if (position.compareAndSet(recordPosition, recordPosition + RECORD_LENGTH_SIZE + length)) {
+                    break;
+                }
+            }
+            ByteBuffer target = buffer.duplicate();
+            target.position(recordPosition + RECORD_LENGTH_SIZE);
+            target.put(record.bytes(), 0, length);
+            buffer.putInt(recordPosition, length);
+            return true;
+        }
+
+        public void close()
+        {
+            closed = true;
+            while (writers.get() > 0) {
+                Thread.yield();
+            }
+            try {
+                // the mapping stays valid until it is garbage collected, but nothing reads past the records
+                channel.truncate(position.get());
+                channel.close();
+            }
+            catch (IOException e) {
+                log.warn(e, "Could not close request log file %s", file);
+            }
+        }
+    }
+
+    /**
+     * A growable buffer for encoding one record, reused by a thread.
+     */
+    private static class RecordBuffer
+    {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        public void reset()
+        {
+            size = 0;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        public byte[] bytes()
+        {
+            return bytes;
+        }
+
+        public void writeByte(int value)
+        {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        public void writeVarInt(int value)
+        {
+            writeVarLong(value & 0xFFFF_FFFFL);
+        }
+
+        /**
+         * Writes a signed value as a zigzag encoded variable length integer.
+         */
+        public void writeLong(long value)
+        {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        public void writeDouble(double value)
+        {
+            long bits = Double.doubleToLongBits(value);
+            ensureCapacity(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (bits >>> shift);
+            }
+        }
+
+        public void writeString(String value)
+        {
+            byte[] utf8 = value.getBytes(UTF_8);
+            writeVarInt(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        private void writeVarLong(long value)
+        {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int length)
+        {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, max(bytes.length * 2, size + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.airlift.http.server.BinaryRequestLog.DEFINITION_RECORD;
+import static io.airlift.http.server.BinaryRequestLog.EVENT_RECORD;
+import static io.airlift.http.server.BinaryRequestLog.FIRST_DICTIONARY_TAG;
+import static io.airlift.http.server.BinaryRequestLog.INLINE_STRING;
+import static io.airlift.http.server.BinaryRequestLog.MAGIC;
+import static io.airlift.http.server.BinaryRequestLog.NULL_STRING;
+import static io.airlift.http.server.BinaryRequestLog.VERSION;
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads a request log file written in the binary format. The file may still be in use:
+ * records that are not complete yet end the iteration.
+ * <p>
+ * Run as a program, it converts the files given as arguments to the tab-separated format
+ * of the text request log and writes them to standard output.
+ */
+public class BinaryRequestLogReader
+        extends AbstractIterator<HttpRequestEvent>
+{
+    private final File file;
+    private final ByteBuffer buffer;
+    private final List<String> dictionary = new ArrayList<>();
+
+    public BinaryRequestLogReader(File file)
+            throws IOException
+    {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            buffer = channel.map(READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < BinaryRequestLog.FILE_HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException(format("%s is not a binary request log", file));
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(format("%s has unsupported version %s", file, version));
+        }
+    }
+
+    @Override
+    protected HttpRequestEvent computeNext()
+    {
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                // unused space at the end of the file, or a record still being written
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            buffer.position(buffer.position() + length);
+
+            byte type = record.get();
+            if (type == DEFINITION_RECORD) {
+                int id = readVarInt(record);
+                String value = readUtf8(record);
+                while (dictionary.size() <= id) {
+                    dictionary.add(null);
+                }
+                dictionary.set(id, value);
+            }
+            else if (type == EVENT_RECORD) {
+                return readEvent(record);
+            }
+            // records of other types were added by later versions, and are skipped
+        }
+        return endOfData();
+    }
+
+    private HttpRequestEvent readEvent(ByteBuffer record)
+    {
+        Instant timeStamp = Instant.ofEpochMilli(readLong(record));
+        String traceToken = readString(record);
+        String clientAddress = readString(record);
+        String protocol = readString(record);
+        String method = readString(record);
+        String requestUri = readString(record);
+        String query = readString(record);
+        if (query != null) {
+            requestUri += "?" + query;
+        }
+        String user = readString(record);
+        String agent = readString(record);
+        String referrer = readString(record);
+        String requestContentType = readString(record);
+        String responseContentType = readString(record);
+        String protocolVersion = readString(record);
+        long requestSize = readLong(record);
+        long responseSize = readLong(record);
+        int responseCode = (int) readLong(record);
+        long timeToDispatch = readLong(record);
+        Long timeToFirstByte = null;
+        if (record.get() != 0) {
+            timeToFirstByte = readLong(record);
+        }
+        long timeToLastByte = readLong(record);
+        long beginToDispatchMillis = readLong(record);
+        long beginToEndMillis = readLong(record);
+        long firstToLastContentTimeInMillis = readLong(record);
+        DoubleSummaryStats responseContentInterarrivalStats = null;
+        if (record.get() != 0) {
+            long count = readLong(record);
+            double min = record.getDouble();
+            double max = record.getDouble();
+            double average = record.getDouble();
+            responseContentInterarrivalStats = new DoubleSummaryStats(min, max, average, count);
+        }
+
+        return new HttpRequestEvent(
+                timeStamp,
+                traceToken,
+                clientAddress,
+                protocol,
+                method,
+                requestUri,
+                user,
+                agent,
+                referrer,
+                requestSize,
+                requestContentType,
+                responseSize,
+                responseCode,
+                responseContentType,
+                timeToDispatch,
+                timeToFirstByte,
+                timeToLastByte,
+                beginToDispatchMillis,
+                beginToEndMillis,
+                firstToLastContentTimeInMillis,
+                responseContentInterarrivalStats,
+                protocolVersion);
+    }
+
+    private String readString(ByteBuffer record)
+    {
+        int tag = readVarInt(record);
+        if (tag == NULL_STRING) {
+            return null;
+        }
+        if (tag == INLINE_STRING) {
+            return readUtf8(record);
+        }
+        int id = tag - FIRST_DICTIONARY_TAG;
+        if (id >= dictionary.size() || dictionary.get(id) == null) {
+            throw new IllegalStateException(format("%s references undefined string %s", file, id));
+        }
+        return dictionary.get(id);
+    }
+
+    private static String readUtf8(ByteBuffer record)
+    {
+        int length = readVarInt(record);
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer record)
+    {
+        return (int) readVarLong(record);
+    }
+
+    private static long readLong(ByteBuffer record)
+    {
+        long value = readVarLong(record);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer record)
+    {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte next = record.get();
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    public static void main(String[] args)
+            throws IOException
+    {
+        if (args.length == 0) {
+            System.err.println("usage: BinaryRequestLogReader <file>...");
+            System.exit(1);
+        }
+
+        HttpLogEncoder encoder = new HttpLogEncoder();
+        OutputStream out = new BufferedOutputStream(System.out);
+        for (String fileName : args) {
+            BinaryRequestLogReader reader = new BinaryRequestLogReader(new File(fileName));
+            while (reader.hasNext()) {
+                encoder.encode(reader.next(), out);
+            }
+        }
+        out.flush();
+    }
+}
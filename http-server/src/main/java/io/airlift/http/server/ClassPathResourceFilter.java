@@ -15,36 +15,57 @@
  */
 package io.airlift.http.server;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 import com.google.common.net.HttpHeaders;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.HttpOutput;
 
 import javax.annotation.Nullable;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Serves files from a given folder on the classpath through jetty.
  * Intended to serve a couple of static files e.g. for javascript or HTML.
+ * Files are loaded once and kept in memory, with a precompressed gzip variant,
+ * and are served with a strong ETag and Last-Modified for conditional requests.
  */
 // Forked from https://github.com/NessComputing/components-ness-httpserver/
 public class ClassPathResourceFilter
         extends HttpFilter
 {
     private static final MimeTypes MIME_TYPES;
+    // larger resources are streamed from the classpath on every request
+    private static final int MAX_CACHED_RESOURCE_SIZE = 8 * 1024 * 1024;
+    // the gzip variant is kept if it saves at least a tenth of the size
+    private static final int MIN_GZIP_SAVING_DIVISOR = 10;
+    private static final int ETAG_HASH_LENGTH = 32;
+    private static final int COPY_BUFFER_SIZE = 8192;
 
     static {
         MIME_TYPES = new MimeTypes();
@@ -55,6 +76,8 @@ public class ClassPathResourceFilter
     private final String baseUri; // "" or "/foo"
     private final String classPathResourceBase;
     private final List<String> welcomeFiles;
+    // resources that were found, by request path; the classpath does not change, so entries never expire
+    private final ConcurrentMap<String, CachedResource> cache = new ConcurrentHashMap<>();
 
     public ClassPathResourceFilter(String baseUri, String classPathResourceBase, List<String> welcomeFiles)
     {
@@ -100,10 +123,14 @@ public class ClassPathResourceFilter
             return;
         }
 
-        URL resource = getResource(resourcePath);
-        if (resource == null) {
-            chain.doFilter(request, response);
-            return;
+        CachedResource cachedResource = cache.get(resourcePath);
+        URL resource = null;
+        if (cachedResource == null) {
+            resource = getResource(resourcePath);
+            if (resource == null) {
+                chain.doFilter(request, response);
+                return;
+            }
         }
 
         String method = request.getMethod();
@@ -118,6 +145,24 @@ public class ClassPathResourceFilter
             }
         }
 
+        if (cachedResource == null) {
+            cachedResource = loadResource(resource);
+            if (cachedResource == null) {
+                serveUncached(resource, response, skipContent);
+                return;
+            }
+            CachedResource existing = cache.putIfAbsent(resourcePath, cachedResource);
+            if (existing != null) {
+                cachedResource = existing;
+            }
+        }
+
+        cachedResource.serve(request, response, skipContent);
+    }
+
+    private static void serveUncached(URL resource, HttpServletResponse response, boolean skipContent)
+            throws IOException
+    {
         InputStream resourceStream = null;
         try {
             resourceStream = resource.openStream();
@@ -136,6 +181,55 @@ public class ClassPathResourceFilter
         }
     }
 
+    /**
+     * Loads the resource and compresses it, or returns null if it is too large to cache.
+     */
+    @Nullable
+    private static CachedResource loadResource(URL resource)
+            throws IOException
+    {
+        URLConnection connection = resource.openConnection();
+        if (connection.getContentLengthLong() > MAX_CACHED_RESOURCE_SIZE) {
+            return null;
+        }
+        long lastModified = connection.getLastModified();
+        byte[] content;
+        try (InputStream in = connection.getInputStream()) {
+            content = ByteStreams.toByteArray(ByteStreams.limit(in, MAX_CACHED_RESOURCE_SIZE + 1));
+        }
+        if (content.length > MAX_CACHED_RESOURCE_SIZE) {
+            return null;
+        }
+
+        byte[] gzipContent = gzip(content);
+        if (gzipContent.length > content.length - content.length / MIN_GZIP_SAVING_DIVISOR) {
+            // not worth a second copy, for example for images
+            gzipContent = null;
+        }
+
+        return new CachedResource(
+                MIME_TYPES.getMimeByExtension(resource.toString()),
+                Hashing.sha256().hashBytes(content).toString().substring(0, ETAG_HASH_LENGTH),
+                lastModified,
+                content,
+                gzipContent);
+    }
+
+    private static byte[] gzip(byte[] content)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)
+        {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+
     @Nullable
     private String getResourcePath(HttpServletRequest request)
     {
@@ -176,6 +270,155 @@ public class ClassPathResourceFilter
         return null;
     }
 
+    private static boolean acceptsGzip(HttpServletRequest request)
+    {
+        // an explicit gzip coding takes precedence over the wildcard
+        boolean wildcardAccepted = false;
+        for (Enumeration<String> values = request.getHeaders(HttpHeaders.ACCEPT_ENCODING); values != null && values.hasMoreElements(); ) {
+            for (String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(values.nextElement())) {
+                List<String> parts = Splitter.on(';').trimResults().splitToList(coding);
+                String name = parts.get(0);
+                if (name.equalsIgnoreCase("gzip")) {
+                    return isAccepted(parts);
+                }
+                if (name.equals("*")) {
+                    wildcardAccepted = isAccepted(parts);
+                }
+            }
+        }
+        return wildcardAccepted;
+    }
+
+    private static boolean isAccepted(List<String> codingParts)
+    {
+        for (String parameter : codingParts.subList(1, codingParts.size())) {
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) > 0;
+                }
+                catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag)
+    {
+        for (String value : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+            // If-None-Match uses the weak comparison
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A resource loaded into direct buffers, with a gzip variant if compression
+     * makes it meaningfully smaller. The variant is sent with a Content-Encoding,
+     * so the gzip handler of the server does not compress it again.
+     */
+    private static class CachedResource
+    {
+        private final String contentType;
+        private final String etag;
+        private final String gzipETag;
+        // in milliseconds, or 0 if unknown
+        private final long lastModified;
+        private final ByteBuffer content;
+        @Nullable
+        private final ByteBuffer gzipContent;
+
+        public CachedResource(String contentType, String hash, long lastModified, byte[] content, @Nullable byte[] gzipContent)
+        {
+            this.contentType = contentType;
+            this.etag = '"' + hash + '"';
+            this.gzipETag = '"' + hash + "-gzip\"";
+            this.lastModified = lastModified;
+            this.content = toDirectBuffer(content);
+            this.gzipContent = gzipContent == null ? null : toDirectBuffer(gzipContent);
+        }
+
+        public void serve(HttpServletRequest request, HttpServletResponse response, boolean skipContent)
+                throws IOException
+        {
+            boolean gzip = gzipContent != null && acceptsGzip(request);
+            String representationETag = gzip ? gzipETag : etag;
+
+            response.setHeader(HttpHeaders.ETAG, representationETag);
+            if (lastModified > 0) {
+                response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+            }
+            if (gzipContent != null) {
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+
+            if (isNotModified(request, representationETag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            response.setContentType(contentType);
+            ByteBuffer body = (gzip ? gzipContent : content).duplicate();
+            if (gzip) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            response.setContentLength(body.remaining());
+
+            if (skipContent) {
+                return;
+            }
+
+            ServletOutputStream out = response.getOutputStream();
+            if (out instanceof HttpOutput) {
+                // Jetty writes the direct buffer without copying it
+                ((HttpOutput) out).write(body);
+            }
+            else {
+                byte[] buffer = new byte[min(body.remaining(), COPY_BUFFER_SIZE)];
+                while (body.hasRemaining()) {
+                    int length = min(body.remaining(), buffer.length);
+                    body.get(buffer, 0, length);
+                    out.write(buffer, 0, length);
+                }
+            }
+        }
+
+        private boolean isNotModified(HttpServletRequest request, String representationETag)
+        {
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch != null) {
+                // If-Modified-Since is ignored when If-None-Match is present
+                return matchesETag(ifNoneMatch, representationETag);
+            }
+            if (lastModified <= 0) {
+                return false;
+            }
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            }
+            catch (IllegalArgumentException e) {
+                return false;
+            }
+            // HTTP dates have a resolution of one second
+            return ifModifiedSince >= 0 && ifModifiedSince >= lastModified - lastModified % 1000;
+        }
+
+        private static ByteBuffer toDirectBuffer(byte[] bytes)
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
     private static void closeQuietly(@Nullable InputStream in)
     {
         if (in != null) {
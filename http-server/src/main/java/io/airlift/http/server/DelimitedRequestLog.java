@@ -39,6 +39,7 @@ import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 class DelimitedRequestLog
+        implements RequestLogger
 {
     private static final Logger log = Logger.get(DelimitedRequestLog.class);
     private static final String TEMP_FILE_EXTENSION = ".tmp";
@@ -80,7 +81,7 @@ class DelimitedRequestLog
         this.currentTimeMillisProvider = currentTimeMillisProvider;
 
         ContextBase context = new ContextBase();
-        HttpLogLayout httpLogLayout = new HttpLogLayout();
+        HttpLogEncoder httpLogEncoder = new HttpLogEncoder();
 
         recoverTempFiles(filename);
 
@@ -104,11 +105,13 @@ class DelimitedRequestLog
         triggeringPolicy.setTimeBasedRollingPolicy(rollingPolicy);
         triggeringPolicy.setMaxFileSize(new FileSize(maxFileSizeInBytes));
 
+        httpLogEncoder.setContext(context);
+
         fileAppender.setContext(context);
         fileAppender.setFile(filename);
         fileAppender.setAppend(true);
         fileAppender.setBufferSize(BUFFER_SIZE_IN_BYTES);
-        fileAppender.setLayout(httpLogLayout);
+        fileAppender.setEncoder(httpLogEncoder);
         fileAppender.setRollingPolicy(rollingPolicy);
         fileAppender.setImmediateFlush(false);
 
@@ -117,12 +120,14 @@ class DelimitedRequestLog
         asyncAppender.setQueueSize(queueSize);
         asyncAppender.addAppender(fileAppender);
 
+        httpLogEncoder.start();
         rollingPolicy.start();
         triggeringPolicy.start();
         fileAppender.start();
         asyncAppender.start();
     }
 
+    @Override
     public void log(
             Request request,
             Response response,
@@ -146,11 +151,13 @@ class DelimitedRequestLog
         eventClient.post(event);
     }
 
+    @Override
     public void stop()
     {
         asyncAppender.stop();
     }
 
+    @Override
     public int getQueueSize()
     {
         return asyncAppender.getNumberOfElementsInQueue();
@@ -23,34 +23,49 @@ import static java.util.Objects.requireNonNull;
 @EventType
 public class DoubleSummaryStats
 {
-    private final DoubleSummaryStatistics stats;
+    private final double min;
+    private final double max;
+    private final double average;
+    private final long count;
 
     public DoubleSummaryStats(DoubleSummaryStatistics stats)
     {
-        this.stats = requireNonNull(stats, "stats is null");
+        requireNonNull(stats, "stats is null");
+        this.min = stats.getMin();
+        this.max = stats.getMax();
+        this.average = stats.getAverage();
+        this.count = stats.getCount();
+    }
+
+    DoubleSummaryStats(double min, double max, double average, long count)
+    {
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.count = count;
     }
 
     @EventField
     public double getMin()
     {
-        return stats.getMin();
+        return min;
     }
 
     @EventField
     public double getMax()
     {
-        return stats.getMax();
+        return max;
     }
 
     @EventField
     public double getAverage()
     {
-        return stats.getAverage();
+        return average;
     }
 
     @EventField
     public long getCount()
     {
-        return stats.getCount();
+        return count;
     }
 }
@@ -0,0 +1,321 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+/**
+ * Encodes {@link HttpRequestEvent} in the tab separated format of {@link HttpLogLayout},
+ * writing UTF-8 directly into a reusable per-thread buffer. The formatted timestamp is
+ * cached and only recomputed when the timestamp changes, which is at most once per
+ * millisecond for events created by the server.
+ * <p>
+ * String fields are escaped so a line always has the same number of columns: backslash,
+ * tab, carriage return and newline become {@code \\}, {@code \t}, {@code \r} and {@code \n},
+ * and other control characters become {@code \}{@code uXXXX}.
+ */
+public class HttpLogEncoder
+        extends EncoderBase<HttpRequestEvent>
+{
+    private static final DateTimeFormatter ISO_FORMATTER = ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private static final byte[] NULL = "null".getBytes(US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(US_ASCII);
+
+    private final ThreadLocal<LineBuffer> buffers = ThreadLocal.withInitial(LineBuffer::new);
+
+    @Override
+    public byte[] headerBytes()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the encoded line. The returned array is the only allocation.
+     */
+    @Override
+    public byte[] encode(HttpRequestEvent event)
+    {
+        LineBuffer buffer = encodeLine(event);
+        return Arrays.copyOf(buffer.bytes, buffer.size);
+    }
+
+    /**
+     * Writes the encoded line to the stream without allocating.
+     */
+    public void encode(HttpRequestEvent event, OutputStream out)
+            throws IOException
+    {
+        LineBuffer buffer = encodeLine(event);
+        out.write(buffer.bytes, 0, buffer.size);
+    }
+
+    @Override
+    public byte[] footerBytes()
+    {
+        return null;
+    }
+
+    private LineBuffer encodeLine(HttpRequestEvent event)
+    {
+        LineBuffer buffer = buffers.get();
+        buffer.reset();
+
+        buffer.appendTimestamp(event.getTimeStamp());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getClientAddress());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getMethod());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getRequestUri());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getUser());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getAgent());
+        buffer.appendTab();
+        buffer.appendLong(event.getResponseCode());
+        buffer.appendTab();
+        buffer.appendLong(event.getRequestSize());
+        buffer.appendTab();
+        buffer.appendLong(event.getResponseSize());
+        buffer.appendTab();
+        buffer.appendLong(event.getTimeToLastByte());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getTraceToken());
+        buffer.appendTab();
+        buffer.appendEscaped(event.getProtocolVersion());
+        buffer.appendTab();
+        buffer.appendLong(event.getBeginToDispatchMillis());
+        buffer.appendTab();
+        buffer.appendLong(event.getBeginToEndMillis());
+        buffer.appendTab();
+        buffer.appendLong(event.getFirstToLastContentTimeInMillis());
+        buffer.appendTab();
+
+        // content interarrival time [ms] stats
+        DoubleSummaryStats stats = event.getResponseContentInterarrivalStats();
+        if (stats == null) {
+            buffer.append(NULL);
+        }
+        else {
+            buffer.appendTwoDecimals(stats.getMin());
+            buffer.appendSeparator();
+            buffer.appendTwoDecimals(stats.getAverage());
+            buffer.appendSeparator();
+            buffer.appendTwoDecimals(stats.getMax());
+            buffer.appendSeparator();
+            buffer.appendLong(stats.getCount());
+        }
+        buffer.appendByte('\n');
+
+        return buffer;
+    }
+
+    private static class LineBuffer
+    {
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private int size;
+
+        private long timestampSeconds = Long.MIN_VALUE;
+        private int timestampNanos;
+        private byte[] timestamp;
+
+        public void reset()
+        {
+            size = 0;
+        }
+
+        public void appendTimestamp(Instant instant)
+        {
+            if (instant == null) {
+                append(NULL);
+                return;
+            }
+            if (timestamp == null || instant.getEpochSecond() != timestampSeconds || instant.getNano() != timestampNanos) {
+                timestamp = ISO_FORMATTER.format(instant).getBytes(US_ASCII);
+                timestampSeconds = instant.getEpochSecond();
+                timestampNanos = instant.getNano();
+            }
+            append(timestamp);
+        }
+
+        public void appendTab()
+        {
+            appendByte('\t');
+        }
+
+        public void appendSeparator()
+        {
+            ensureCapacity(2);
+            bytes[size++] = ',';
+            bytes[size++] = ' ';
+        }
+
+        public void append(byte[] value)
+        {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        public void appendByte(int value)
+        {
+            ensureCapacity(1);
+            bytes[size++] = (byte) value;
+        }
+
+        public void appendLong(long value)
+        {
+            if (value == Long.MIN_VALUE) {
+                appendAscii(String.valueOf(value));
+                return;
+            }
+            // 19 digits and a sign
+            ensureCapacity(20);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+                digits++;
+            }
+            int position = size + digits;
+            do {
+                bytes[--position] = (byte) ('0' + (value % 10));
+                value /= 10;
+            }
+            while (value > 0);
+            size += digits;
+        }
+
+        /**
+         * Like {@code String.format("%.2f", value)}, but rounds {@code value * 100} rather
+         * than the shortest decimal representation of the value, so the last digit can
+         * differ for ties: 1.005 (really 1.00499...) prints as 1.00 instead of 1.01.
+         * Values too large to round in a long fall back to String.format.
+         */
+        public void appendTwoDecimals(double value)
+        {
+            if (!(Math.abs(value) < 1.0e15)) {
+                appendAscii(format("%.2f", value));
+                return;
+            }
+            if (value < 0) {
+                appendByte('-');
+                value = -value;
+            }
+            long hundredths = Math.round(value * 100);
+            appendLong(hundredths / 100);
+            ensureCapacity(3);
+            int fraction = (int) (hundredths % 100);
+            bytes[size++] = '.';
+            bytes[size++] = (byte) ('0' + (fraction / 10));
+            bytes[size++] = (byte) ('0' + (fraction % 10));
+        }
+
+        public void appendEscaped(String value)
+        {
+            if (value == null) {
+                append(NULL);
+                return;
+            }
+            // worst case is six bytes per char for an escaped control character
+            ensureCapacity(value.length() * 6);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x7f) {
+                    if (c == '\\') {
+                        bytes[size++] = '\\';
+                    }
+                    bytes[size++] = (byte) c;
+                }
+                else if (c < 0x80) {
+                    appendControlCharacter(c);
+                }
+                else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xc0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+                else if (Character.isHighSurrogate(c) && (i + 1) < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+                    i++;
+                    bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+                }
+                else if (Character.isSurrogate(c)) {
+                    // unpaired surrogate, which is what String.getBytes(UTF_8) does
+                    bytes[size++] = '?';
+                }
+                else {
+                    bytes[size++] = (byte) (0xe0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        private void appendControlCharacter(char c)
+        {
+            bytes[size++] = '\\';
+            switch (c) {
+                case '\t':
+                    bytes[size++] = 't';
+                    break;
+                case '\n':
+                    bytes[size++] = 'n';
+                    break;
+                case '\r':
+                    bytes[size++] = 'r';
+                    break;
+                default:
+                    bytes[size++] = 'u';
+                    bytes[size++] = '0';
+                    bytes[size++] = '0';
+                    bytes[size++] = HEX_DIGITS[c >> 4];
+                    bytes[size++] = HEX_DIGITS[c & 0xf];
+            }
+        }
+
+        private void appendAscii(String value)
+        {
+            ensureCapacity(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        private void ensureCapacity(int length)
+        {
+            int required = size + length;
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -78,6 +78,7 @@ import java.util.concurrent.TimeoutException;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkState;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.http.server.HttpServerConfig.LogFormat.BINARY;
 import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -94,7 +95,7 @@ public class HttpServer
 
     private final Server server;
     private final boolean registerErrorHandler;
-    private final DelimitedRequestLog requestLog;
+    private final RequestLogger requestLog;
     private ConnectionStats httpConnectionStats;
     private ConnectionStats httpsConnectionStats;
     private ScheduledExecutorService scheduledExecutorService;
@@ -161,7 +162,7 @@ public class HttpServer
         // register a channel listener if logging is enabled
         HttpServerChannelListener channelListener = null;
         if (config.isLogEnabled()) {
-            this.requestLog = createDelimitedRequestLog(config, tokenManager, eventClient);
+            this.requestLog = createRequestLog(config, tokenManager, eventClient);
             channelListener = new HttpServerChannelListener(this.requestLog);
         }
         else {
@@ -303,6 +304,7 @@ public class HttpServer
          * server
          *    |--- statistics handler
          *           |--- context handler
+         *           |       |--- admission control filter (optional)
          *           |       |--- trace token filter
          *           |       |--- gzip response filter
          *           |       |--- gzip request filter
@@ -316,7 +318,11 @@ public class HttpServer
          */
         HandlerCollection handlers = new HandlerCollection();
 
-        handlers.addHandler(createServletContext(theServlet, resources, parameters, filters, tokenManager, loginService, "http", "https"));
+        AdmissionControlFilter admissionControl = null;
+        if (config.isAdmissionControlEnabled()) {
+            admissionControl = new AdmissionControlFilter(config, stats);
+        }
+        handlers.addHandler(createServletContext(theServlet, resources, parameters, filters, admissionControl, tokenManager, loginService, "http", "https"));
 
         RequestLogHandler statsRecorder = new RequestLogHandler();
         statsRecorder.setRequestLog(new StatsRecordingHandler(stats));
@@ -328,7 +334,7 @@ public class HttpServer
 
         HandlerList rootHandlers = new HandlerList();
         if (theAdminServlet != null && config.isAdminEnabled()) {
-            rootHandlers.addHandler(createServletContext(theAdminServlet, resources, adminParameters, adminFilters, tokenManager, loginService, "admin"));
+            rootHandlers.addHandler(createServletContext(theAdminServlet, resources, adminParameters, adminFilters, null, tokenManager, loginService, "admin"));
         }
         rootHandlers.addHandler(statsHandler);
         server.setHandler(rootHandlers);
@@ -338,12 +344,18 @@ public class HttpServer
             Set<HttpResourceBinding> resources,
             Map<String, String> parameters,
             Set<Filter> filters,
+            AdmissionControlFilter admissionControl,
             TraceTokenManager tokenManager,
             LoginService loginService,
             String... connectorNames)
     {
         ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
 
+        // -- admission control goes first so rejected requests are cheap
+        if (admissionControl != null) {
+            context.addFilter(new FilterHolder(admissionControl), "/*", null);
+        }
+
         context.addFilter(new FilterHolder(new TimingFilter()), "/*", null);
         if (tokenManager != null) {
             context.addFilter(new FilterHolder(new TraceTokenFilter(tokenManager)), "/*", null);
@@ -403,7 +415,7 @@ public class HttpServer
         return securityHandler;
     }
 
-    private static DelimitedRequestLog createDelimitedRequestLog(HttpServerConfig config, TraceTokenManager tokenManager, EventClient eventClient)
+    private static RequestLogger createRequestLog(HttpServerConfig config, TraceTokenManager tokenManager, EventClient eventClient)
             throws IOException
     {
         File logFile = new File(config.getLogPath());
@@ -416,6 +428,15 @@ public class HttpServer
             throw new IOException(format("Cannot create %s and path does not already exist", logPath.getAbsolutePath()));
         }
 
+        if (config.getLogFormat() == BINARY) {
+            return new BinaryRequestLog(
+                    config.getLogPath(),
+                    config.getLogHistory(),
+                    config.getLogMaxFileSize().toBytes(),
+                    tokenManager,
+                    eventClient);
+        }
+
         return new DelimitedRequestLog(
                 config.getLogPath(),
                 config.getLogHistory(),
@@ -19,24 +19,20 @@ import org.eclipse.jetty.server.Request;
 import javax.annotation.Nullable;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.DoubleSummaryStatistics;
-import java.util.List;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class HttpServerChannelListener
         implements Listener
 {
-    private static final String REQUEST_BEGIN_ATTRIBUTE = HttpServerChannelListener.class.getName() + ".begin";
-    private static final String REQUEST_BEGIN_TO_DISPATCH_ATTRIBUTE = HttpServerChannelListener.class.getName() + ".begin_to_dispatch";
-    private static final String REQUEST_BEGIN_TO_END_ATTRIBUTE = HttpServerChannelListener.class.getName() + ".begin_to_end";
-    private static final String RESPONSE_CONTENT_TIMESTAMPS_ATTRIBUTE = HttpServerChannelListener.class.getName() + ".response_content_timestamps";
+    private static final String REQUEST_TIMING_ATTRIBUTE = HttpServerChannelListener.class.getName() + ".timing";
 
-    private final DelimitedRequestLog logger;
+    private final RequestLogger logger;
 
-    public HttpServerChannelListener(DelimitedRequestLog logger)
+    public HttpServerChannelListener(RequestLogger logger)
     {
         this.logger = requireNonNull(logger, "logger is null");
     }
@@ -44,81 +40,143 @@ public class HttpServerChannelListener
     @Override
     public void onRequestBegin(Request request)
     {
-        request.setAttribute(REQUEST_BEGIN_ATTRIBUTE, System.nanoTime());
+        request.setAttribute(REQUEST_TIMING_ATTRIBUTE, new RequestTiming(System.nanoTime()));
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onBeforeDispatch(Request request)
     {
-        long requestBeginTime = (Long) request.getAttribute(REQUEST_BEGIN_ATTRIBUTE);
-        request.setAttribute(REQUEST_BEGIN_TO_DISPATCH_ATTRIBUTE, System.nanoTime() - requestBeginTime);
+        getTiming(request).dispatched(System.nanoTime());
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onRequestEnd(Request request)
     {
-        long requestBeginTime = (Long) request.getAttribute(REQUEST_BEGIN_ATTRIBUTE);
-        request.setAttribute(REQUEST_BEGIN_TO_END_ATTRIBUTE, System.nanoTime() - requestBeginTime);
+        getTiming(request).requestEnded(System.nanoTime());
     }
 
     @Override
     public void onResponseBegin(Request request)
     {
-        if (request.getAttribute(REQUEST_BEGIN_TO_END_ATTRIBUTE) == null) {
-            onRequestEnd(request);
-        }
-        request.setAttribute(RESPONSE_CONTENT_TIMESTAMPS_ATTRIBUTE, new ArrayList<Long>());
+        getTiming(request).responseBegun(System.nanoTime());
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onResponseContent(Request request, ByteBuffer content)
     {
-        List<Long> contentTimestamps = (List<Long>) request.getAttribute(RESPONSE_CONTENT_TIMESTAMPS_ATTRIBUTE);
-        contentTimestamps.add(System.nanoTime());
+        getTiming(request).responseContent(System.nanoTime());
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void onComplete(Request request)
     {
-        List<Long> contentTimestamps = (List<Long>) request.getAttribute(RESPONSE_CONTENT_TIMESTAMPS_ATTRIBUTE);
-        long firstToLastContentTimeInMillis = -1;
-        if (contentTimestamps.size() > 0) {
-            firstToLastContentTimeInMillis = NANOSECONDS.toMillis(contentTimestamps.get(contentTimestamps.size() - 1) - contentTimestamps.get(0));
-        }
-        long beginToDispatchMillis = NANOSECONDS.toMillis((Long) request.getAttribute(REQUEST_BEGIN_TO_DISPATCH_ATTRIBUTE));
-        long beginToEndMillis = NANOSECONDS.toMillis((Long) request.getAttribute(REQUEST_BEGIN_TO_END_ATTRIBUTE));
+        RequestTiming timing = getTiming(request);
         logger.log(request,
                 request.getResponse(),
-                beginToDispatchMillis,
-                beginToEndMillis,
-                firstToLastContentTimeInMillis,
-                processContentTimestamps(contentTimestamps));
+                NANOSECONDS.toMillis(timing.getBeginToDispatchNanos()),
+                NANOSECONDS.toMillis(timing.getBeginToEndNanos()),
+                timing.getFirstToLastContentTimeInMillis(),
+                timing.getResponseContentInterarrivalStats());
+    }
+
+    private static RequestTiming getTiming(Request request)
+    {
+        return (RequestTiming) request.getAttribute(REQUEST_TIMING_ATTRIBUTE);
     }
 
     /**
-     * Calculate the summary statistics for the interarrival time of the onResponseContent callbacks.
+     * Timing of one request. The inter-arrival times of the response content are summarized
+     * as they arrive, so a response with many chunks does not allocate per chunk.
+     * Jetty calls the listener for a request from one thread at a time.
      */
-    @Nullable
-    private static DoubleSummaryStats processContentTimestamps(List<Long> contentTimestamps)
+    private static class RequestTiming
     {
-        requireNonNull(contentTimestamps, "contentTimestamps is null");
+        private final long beginNanos;
+        private long beginToDispatchNanos;
+        private long beginToEndNanos = -1;
+
+        private long firstContentNanos;
+        private long lastContentNanos;
+        private long contentCount;
+        // inter-arrival times in milliseconds
+        private long interarrivalMinMillis;
+        private long interarrivalMaxMillis;
+        private long interarrivalSumMillis;
+
+        public RequestTiming(long beginNanos)
+        {
+            this.beginNanos = beginNanos;
+        }
+
+        public void dispatched(long now)
+        {
+            beginToDispatchNanos = now - beginNanos;
+        }
+
+        public void requestEnded(long now)
+        {
+            beginToEndNanos = now - beginNanos;
+        }
+
+        public void responseBegun(long now)
+        {
+            if (beginToEndNanos < 0) {
+                requestEnded(now);
+            }
+            contentCount = 0;
+        }
+
+        public void responseContent(long now)
+        {
+            if (contentCount > 0) {
+                long interarrivalMillis = NANOSECONDS.toMillis(now - lastContentNanos);
+                if (contentCount == 1) {
+                    interarrivalMinMillis = interarrivalMillis;
+                    interarrivalMaxMillis = interarrivalMillis;
+                    interarrivalSumMillis = interarrivalMillis;
+                }
+                else {
+                    interarrivalMinMillis = min(interarrivalMinMillis, interarrivalMillis);
+                    interarrivalMaxMillis = max(interarrivalMaxMillis, interarrivalMillis);
+                    interarrivalSumMillis += interarrivalMillis;
+                }
+            }
+            else {
+                firstContentNanos = now;
+            }
+            lastContentNanos = now;
+            contentCount++;
+        }
+
+        public long getBeginToDispatchNanos()
+        {
+            return beginToDispatchNanos;
+        }
+
+        public long getBeginToEndNanos()
+        {
+            return max(beginToEndNanos, 0);
+        }
 
-        // no content (HTTP 204) or there was a single response chunk (so no interarrival time)
-        if (contentTimestamps.size() == 0 || contentTimestamps.size() == 1) {
-            return null;
+        public long getFirstToLastContentTimeInMillis()
+        {
+            if (contentCount == 0) {
+                return -1;
+            }
+            return NANOSECONDS.toMillis(lastContentNanos - firstContentNanos);
         }
 
-        DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
-        long previousTimestamp = contentTimestamps.get(0);
-        for (int i = 1; i < contentTimestamps.size(); i++) {
-            long timestamp = contentTimestamps.get(i);
-            statistics.accept(NANOSECONDS.toMillis(timestamp - previousTimestamp));
-            previousTimestamp = timestamp;
+        /**
+         * Returns null if there was no content, or a single chunk (so no inter-arrival time).
+         */
+        @Nullable
+        public DoubleSummaryStats getResponseContentInterarrivalStats()
+        {
+            if (contentCount < 2) {
+                return null;
+            }
+            long intervals = contentCount - 1;
+            return new DoubleSummaryStats(interarrivalMinMillis, interarrivalMaxMillis, (double) interarrivalSumMillis / intervals, intervals);
         }
-        return new DoubleSummaryStats(statistics);
     }
 }
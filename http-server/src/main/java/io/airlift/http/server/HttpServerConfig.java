@@ -89,6 +89,7 @@ public class HttpServerConfig
     private int logQueueSize = 10_000;
     private DataSize logMaxFileSize = new DataSize(100, MEGABYTE);
     private boolean logCompressionEnabled = true;
+    private LogFormat logFormat = LogFormat.TEXT;
 
     private boolean processForwarded;
 
@@ -109,6 +110,14 @@ public class HttpServerConfig
     private DataSize http2InputBufferSize = new DataSize(8, KILOBYTE);
     private Duration http2StreamIdleTimeout = new Duration(15, SECONDS);
 
+    private boolean admissionControlEnabled;
+    private int admissionControlMinConcurrency = 10;
+    private int admissionControlMaxConcurrency = 150;
+    private Duration admissionControlTargetLatency = new Duration(1, SECONDS);
+    private List<String> admissionControlPriorityPaths = ImmutableList.of();
+    private String admissionControlPriorityHeader;
+    private Duration admissionControlRetryAfter = new Duration(1, SECONDS);
+
     private String userAuthFile;
 
     private boolean adminEnabled = true;
@@ -505,6 +514,20 @@ public class HttpServerConfig
         return this;
     }
 
+    @NotNull
+    public LogFormat getLogFormat()
+    {
+        return logFormat;
+    }
+
+    @Config("http-server.log.format")
+    @ConfigDescription("Format of the request log: TEXT, or BINARY for memory mapped files read with BinaryRequestLogReader (queue size and compression do not apply)")
+    public HttpServerConfig setLogFormat(LogFormat logFormat)
+    {
+        this.logFormat = logFormat;
+        return this;
+    }
+
     public String getUserAuthFile()
     {
         return userAuthFile;
@@ -688,4 +711,124 @@ public class HttpServerConfig
         this.http2StreamIdleTimeout = http2StreamIdleTimeout;
         return this;
     }
+
+    public boolean isAdmissionControlEnabled()
+    {
+        return admissionControlEnabled;
+    }
+
+    @Config("http-server.admission-control.enabled")
+    @ConfigDescription("Reject requests with 503 when too many are being processed, while server threads are still free to reject them")
+    public HttpServerConfig setAdmissionControlEnabled(boolean admissionControlEnabled)
+    {
+        this.admissionControlEnabled = admissionControlEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getAdmissionControlMinConcurrency()
+    {
+        return admissionControlMinConcurrency;
+    }
+
+    @Config("http-server.admission-control.min-concurrency")
+    @ConfigDescription("Lower bound of the adaptive concurrency limit")
+    public HttpServerConfig setAdmissionControlMinConcurrency(int admissionControlMinConcurrency)
+    {
+        this.admissionControlMinConcurrency = admissionControlMinConcurrency;
+        return this;
+    }
+
+    @Min(1)
+    public int getAdmissionControlMaxConcurrency()
+    {
+        return admissionControlMaxConcurrency;
+    }
+
+    @Config("http-server.admission-control.max-concurrency")
+    @ConfigDescription("Upper bound of the adaptive concurrency limit, and the limit for priority requests; must be less than http-server.threads.max")
+    public HttpServerConfig setAdmissionControlMaxConcurrency(int admissionControlMaxConcurrency)
+    {
+        this.admissionControlMaxConcurrency = admissionControlMaxConcurrency;
+        return this;
+    }
+
+    @AssertTrue(message = "Admission control min concurrency must not be greater than max concurrency")
+    public boolean isAdmissionControlConcurrencyValid()
+    {
+        return admissionControlMinConcurrency <= admissionControlMaxConcurrency;
+    }
+
+    // requests are admitted on server threads, so at the max threads there is no thread left to reject a request
+    @AssertTrue(message = "Admission control max concurrency must be less than the max threads")
+    public boolean isAdmissionControlMaxConcurrencyValid()
+    {
+        return !admissionControlEnabled || admissionControlMaxConcurrency < maxThreads;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getAdmissionControlTargetLatency()
+    {
+        return admissionControlTargetLatency;
+    }
+
+    @Config("http-server.admission-control.target-latency")
+    @ConfigDescription("The concurrency limit is lowered while requests take longer than this")
+    public HttpServerConfig setAdmissionControlTargetLatency(Duration admissionControlTargetLatency)
+    {
+        this.admissionControlTargetLatency = admissionControlTargetLatency;
+        return this;
+    }
+
+    public List<String> getAdmissionControlPriorityPaths()
+    {
+        return admissionControlPriorityPaths;
+    }
+
+    @Config("http-server.admission-control.priority-paths")
+    @ConfigDescription("Comma separated path prefixes of requests that are only limited by max concurrency")
+    public HttpServerConfig setAdmissionControlPriorityPaths(String admissionControlPriorityPaths)
+    {
+        this.admissionControlPriorityPaths = Splitter
+                .on(',')
+                .trimResults()
+                .omitEmptyStrings()
+                .splitToList(requireNonNull(admissionControlPriorityPaths, "admissionControlPriorityPaths is null"));
+        return this;
+    }
+
+    public String getAdmissionControlPriorityHeader()
+    {
+        return admissionControlPriorityHeader;
+    }
+
+    @Config("http-server.admission-control.priority-header")
+    @ConfigDescription("Requests carrying this header are only limited by max concurrency")
+    public HttpServerConfig setAdmissionControlPriorityHeader(String admissionControlPriorityHeader)
+    {
+        this.admissionControlPriorityHeader = admissionControlPriorityHeader;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1s")
+    public Duration getAdmissionControlRetryAfter()
+    {
+        return admissionControlRetryAfter;
+    }
+
+    @Config("http-server.admission-control.retry-after")
+    @ConfigDescription("Value of the Retry-After header sent with rejected requests")
+    public HttpServerConfig setAdmissionControlRetryAfter(Duration admissionControlRetryAfter)
+    {
+        this.admissionControlRetryAfter = admissionControlRetryAfter;
+        return this;
+    }
+
+    public enum LogFormat
+    {
+        TEXT,
+        BINARY,
+    }
 }
@@ -31,14 +31,19 @@ public class RequestStats
     private final TimeStat requestTime;
     private final DistributionStat readBytes;
     private final DistributionStat writtenBytes;
+    private final CounterStat admitted;
+    private final CounterStat shed;
 
     @Inject
     public RequestStats()
     {
         request = new CounterStat();
         requestTime = new TimeStat();
-        readBytes = new DistributionStat();
-        writtenBytes = new DistributionStat();
+        // recorded by every request thread, so use striped distributions to avoid lock contention
+        readBytes = new DistributionStat(true);
+        writtenBytes = new DistributionStat(true);
+        admitted = new CounterStat();
+        shed = new CounterStat();
     }
 
     public void record(long requestSizeInBytes, long responseSizeInBytes, Duration requestProcessingTime)
@@ -49,6 +54,16 @@ public class RequestStats
         writtenBytes.add(responseSizeInBytes);
     }
 
+    public void recordAdmitted()
+    {
+        admitted.update(1);
+    }
+
+    public void recordShed()
+    {
+        shed.update(1);
+    }
+
     @Managed
     @Flatten
     public CounterStat getRequest()
@@ -76,4 +91,18 @@ public class RequestStats
     {
         return writtenBytes;
     }
+
+    @Managed
+    @Nested
+    public CounterStat getAdmitted()
+    {
+        return admitted;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getShed()
+    {
+        return shed;
+    }
 }
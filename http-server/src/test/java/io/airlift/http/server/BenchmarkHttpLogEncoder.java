@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+public class BenchmarkHttpLogEncoder
+{
+    @State(Scope.Thread)
+    public static class Data
+    {
+        private final HttpLogEncoder encoder = new HttpLogEncoder();
+        private final HttpLogLayout layout = new HttpLogLayout();
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        private HttpRequestEvent event;
+
+        @Setup
+        public void setup()
+        {
+            event = new HttpRequestEvent(
+                    Instant.now(),
+                    "a1b2c3d4e5f6",
+                    "10.1.2.3",
+                    "http",
+                    "GET",
+                    "/v1/query/20200101_000000_00000_abcde?pretty=true",
+                    "user",
+                    "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko)",
+                    null,
+                    1234,
+                    "application/json",
+                    56789,
+                    200,
+                    "application/json",
+                    1,
+                    5L,
+                    25,
+                    1,
+                    20,
+                    15,
+                    new DoubleSummaryStats(0, 7, 1.25, 12),
+                    "HTTP/1.1");
+        }
+    }
+
+    @Benchmark
+    public byte[] benchmarkLayout(Data data)
+    {
+        // what logback's LayoutWrappingEncoder does with a layout
+        return data.layout.doLayout(data.event).getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public byte[] benchmarkEncode(Data data)
+    {
+        return data.encoder.encode(data.event);
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream benchmarkEncodeToStream(Data data)
+            throws IOException
+    {
+        data.out.reset();
+        data.encoder.encode(data.event, data.out);
+        return data.out;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*\\." + BenchmarkHttpLogEncoder.class.getSimpleName() + "\\..*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
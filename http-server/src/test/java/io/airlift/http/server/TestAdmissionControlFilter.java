@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.testing.TestingTicker;
+import io.airlift.units.Duration;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+import static com.google.common.net.HttpHeaders.RETRY_AFTER;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestAdmissionControlFilter
+{
+    private static final String PRIORITY_HEADER = "X-Priority";
+    private static final FilterChain NOOP = (request, response) -> {};
+
+    private TestingTicker ticker;
+    private RequestStats stats;
+
+    @BeforeMethod
+    public void setup()
+    {
+        ticker = new TestingTicker();
+        stats = new RequestStats();
+    }
+
+    @Test
+    public void testShedsAboveLimit()
+            throws Exception
+    {
+        AdmissionControlFilter filter = createFilter(1, 2);
+        HttpServletResponse rejected = mock(HttpServletResponse.class);
+
+        // each chain issues another request while the previous one is still in flight
+        FilterChain third = (request, response) -> filter.doFilter(request("/"), rejected, NOOP);
+        FilterChain second = (request, response) -> filter.doFilter(request("/"), mock(HttpServletResponse.class), third);
+        HttpServletResponse admitted = mock(HttpServletResponse.class);
+        filter.doFilter(request("/"), admitted, second);
+
+        verify(rejected).setStatus(SC_SERVICE_UNAVAILABLE);
+        verify(rejected).setHeader(RETRY_AFTER, "3");
+        verify(admitted, never()).setStatus(anyInt());
+        assertEquals(stats.getAdmitted().getTotalCount(), 2);
+        assertEquals(stats.getShed().getTotalCount(), 1);
+        assertEquals(filter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testLimitAdaptsToLatency()
+            throws Exception
+    {
+        AdmissionControlFilter filter = createFilter(2, 10);
+        assertEquals(filter.getLimit(), 10);
+
+        FilterChain slow = (request, response) -> ticker.increment(200, MILLISECONDS);
+        filter.doFilter(request("/"), mock(HttpServletResponse.class), slow);
+        assertEquals(filter.getLimit(), 9);
+
+        for (int i = 0; i < 50; i++) {
+            filter.doFilter(request("/"), mock(HttpServletResponse.class), slow);
+        }
+        assertEquals(filter.getLimit(), 2);
+
+        // sequential requests do not use the limit, so it does not grow
+        for (int i = 0; i < 10; i++) {
+            filter.doFilter(request("/"), mock(HttpServletResponse.class), NOOP);
+        }
+        assertEquals(filter.getLimit(), 2);
+
+        // fast requests that reach the limit let it grow again
+        FilterChain nested = (request, response) -> filter.doFilter(request("/"), mock(HttpServletResponse.class), NOOP);
+        for (int i = 0; i < 10; i++) {
+            filter.doFilter(request("/"), mock(HttpServletResponse.class), nested);
+        }
+        assertTrue(filter.getLimit() > 2);
+        assertEquals(stats.getShed().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testSlowBurstDecreasesOnce()
+            throws Exception
+    {
+        AdmissionControlFilter filter = createFilter(1, 10);
+
+        // both requests are slow but complete together
+        ticker.increment(1, SECONDS);
+        FilterChain nested = (request, response) -> {
+            ticker.increment(200, MILLISECONDS);
+            filter.doFilter(request("/"), mock(HttpServletResponse.class), NOOP);
+        };
+        filter.doFilter(request("/"), mock(HttpServletResponse.class), nested);
+
+        assertEquals(filter.getLimit(), 9);
+    }
+
+    @Test
+    public void testPriorityRequests()
+            throws Exception
+    {
+        AdmissionControlFilter filter = createFilter(1, 2);
+        filter.doFilter(request("/"), mock(HttpServletResponse.class), (request, response) -> ticker.increment(1, SECONDS));
+        assertEquals(filter.getLimit(), 1);
+
+        HttpServletResponse normal = mock(HttpServletResponse.class);
+        HttpServletResponse byPath = mock(HttpServletResponse.class);
+        HttpServletResponse byHeader = mock(HttpServletResponse.class);
+        HttpServletRequest priorityHeaderRequest = request("/");
+        when(priorityHeaderRequest.getHeader(PRIORITY_HEADER)).thenReturn("true");
+
+        filter.doFilter(request("/"), mock(HttpServletResponse.class), (request, response) -> {
+            filter.doFilter(request("/v1/query"), normal, NOOP);
+            filter.doFilter(request("/v1/status/ready"), byPath, NOOP);
+            filter.doFilter(priorityHeaderRequest, byHeader, NOOP);
+        });
+
+        verify(normal).setStatus(SC_SERVICE_UNAVAILABLE);
+        verify(byPath, never()).setStatus(anyInt());
+        verify(byHeader, never()).setStatus(anyInt());
+        assertEquals(stats.getShed().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testAsyncRequestStaysInFlight()
+            throws Exception
+    {
+        AdmissionControlFilter filter = createFilter(1, 1);
+        HttpServletRequest request = request("/");
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        when(request.isAsyncStarted()).thenReturn(true);
+        when(request.getAsyncContext()).thenReturn(asyncContext);
+
+        filter.doFilter(request, mock(HttpServletResponse.class), NOOP);
+        assertEquals(filter.getInFlight(), 1);
+
+        HttpServletResponse rejected = mock(HttpServletResponse.class);
+        filter.doFilter(request("/"), rejected, NOOP);
+        verify(rejected).setStatus(SC_SERVICE_UNAVAILABLE);
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onComplete(null);
+        assertEquals(filter.getInFlight(), 0);
+
+        // completion is only counted once
+        listener.getValue().onError(null);
+        assertEquals(filter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testExceptionReleasesRequest()
+            throws Exception
+    {
+        AdmissionControlFilter filter = createFilter(1, 1);
+        try {
+            filter.doFilter(request("/"), mock(HttpServletResponse.class), (request, response) -> {
+                throw new ServletException("failed");
+            });
+        }
+        catch (ServletException | IOException expected) {
+        }
+        assertEquals(filter.getInFlight(), 0);
+    }
+
+    private AdmissionControlFilter createFilter(int minConcurrency, int maxConcurrency)
+    {
+        return new AdmissionControlFilter(
+                minConcurrency,
+                maxConcurrency,
+                new Duration(100, MILLISECONDS),
+                ImmutableList.of("/v1/status"),
+                PRIORITY_HEADER,
+                new Duration(2500, MILLISECONDS),
+                stats,
+                ticker);
+    }
+
+    private static HttpServletRequest request(String uri)
+    {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRequestURI()).thenReturn(uri);
+        return request;
+    }
+}
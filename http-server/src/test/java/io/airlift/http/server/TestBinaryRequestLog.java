@@ -0,0 +1,331 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import io.airlift.event.client.InMemoryEventClient;
+import io.airlift.event.client.NullEventClient;
+import io.airlift.tracetoken.TraceTokenManager;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static org.eclipse.jetty.http.HttpVersion.HTTP_1_1;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestBinaryRequestLog
+{
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("http-request\\.log-(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)\\.bin");
+
+    private File tempDir;
+    private String logPath;
+
+    @BeforeMethod
+    public void setup()
+            throws IOException
+    {
+        tempDir = Files.createTempDir().getCanonicalFile();
+        logPath = new File(tempDir, "http-request.log").getPath();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        deleteRecursively(tempDir.toPath(), ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testRoundTrip()
+            throws Exception
+    {
+        Request request = mockRequest("/aaa+bbb/ccc", "param=hello%20there&other=true");
+        Response response = mock(Response.class);
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn("martin");
+        when(request.getUserPrincipal()).thenReturn(principal);
+        when(request.getTimeStamp()).thenReturn(1_500_000_000_000L);
+        when(request.getHeader("Referer")).thenReturn("http://www.google.com");
+        when(request.getRemoteAddr()).thenReturn("9.9.9.9");
+        when(request.getHeaders("X-FORWARDED-FOR")).thenReturn(Collections.enumeration(ImmutableList.of("1.1.1.1, 4.4.4.4")));
+        when(request.getAttribute(TimingFilter.FIRST_BYTE_TIME)).thenReturn(1_500_000_000_456L);
+        when(request.getContentRead()).thenReturn(5432L);
+        when(request.getHeader("Content-Type")).thenReturn("request/type");
+        when(response.getStatus()).thenReturn(200);
+        when(response.getContentCount()).thenReturn(32311L);
+        when(response.getHeader("Content-Type")).thenReturn("response/type");
+
+        DoubleSummaryStatistics stats = new DoubleSummaryStatistics();
+        stats.accept(1);
+        stats.accept(3);
+
+        TraceTokenManager tokenManager = new TraceTokenManager();
+        tokenManager.createAndRegisterNewRequestToken();
+        InMemoryEventClient eventClient = new InMemoryEventClient();
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 1, 1024 * 1024, tokenManager, eventClient, new MockCurrentTimeMillisProvider(1_500_000_003_453L));
+        logger.log(request, response, 333, 555, 444, new DoubleSummaryStats(stats));
+        logger.log(request, response, 1, 2, -1, null);
+        logger.stop();
+
+        List<HttpRequestEvent> events = readEvents();
+        assertEquals(events.size(), 2);
+        HttpLogLayout layout = new HttpLogLayout();
+        for (int i = 0; i < events.size(); i++) {
+            HttpRequestEvent expected = (HttpRequestEvent) eventClient.getEvents().get(i);
+            HttpRequestEvent actual = events.get(i);
+            assertEquals(layout.doLayout(actual), layout.doLayout(expected));
+            assertEquals(actual.getTimeStamp(), expected.getTimeStamp());
+            assertEquals(actual.getClientAddress(), expected.getClientAddress());
+            assertEquals(actual.getProtocol(), expected.getProtocol());
+            assertEquals(actual.getRequestUri(), "/aaa+bbb/ccc?param=hello%20there&other=true");
+            assertEquals(actual.getReferrer(), expected.getReferrer());
+            assertEquals(actual.getRequestContentType(), expected.getRequestContentType());
+            assertEquals(actual.getResponseContentType(), expected.getResponseContentType());
+            assertEquals(actual.getTimeToDispatch(), expected.getTimeToDispatch());
+            assertEquals(actual.getTimeToFirstByte(), (Long) 456L);
+            assertEquals(actual.getTimeToLastByte(), 3453);
+        }
+        assertEquals(events.get(0).getClientAddress(), "4.4.4.4");
+        assertEquals(events.get(1).getFirstToLastContentTimeInMillis(), -1);
+        assertNull(events.get(1).getResponseContentInterarrivalStats());
+    }
+
+    @Test
+    public void testNullValues()
+            throws Exception
+    {
+        Request request = mock(Request.class);
+        when(request.getHttpVersion()).thenReturn(HTTP_1_1);
+
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 1, 1024 * 1024, null, new NullEventClient());
+        logger.log(request, mock(Response.class), 0, 0, 0, null);
+        logger.stop();
+
+        HttpRequestEvent event = getOnlyElement(readEvents());
+        assertNull(event.getRequestUri());
+        assertNull(event.getMethod());
+        assertNull(event.getAgent());
+        assertNull(event.getTimeToFirstByte());
+    }
+
+    @Test
+    public void testRollBySize()
+            throws Exception
+    {
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 100, 4096, null, new NullEventClient());
+        Response response = mock(Response.class);
+        for (int i = 0; i < 500; i++) {
+            logger.log(mockRequest("/path/" + (i % 10), null), response, 0, 0, 0, null);
+        }
+        logger.stop();
+
+        assertTrue(listLogFiles().size() > 1);
+        for (File file : listLogFiles()) {
+            assertTrue(file.length() <= 4096);
+        }
+        List<HttpRequestEvent> events = readEvents();
+        assertEquals(events.size(), 500);
+        for (int i = 0; i < 500; i++) {
+            // each file defines the paths it uses again
+            assertEquals(events.get(i).getRequestUri(), "/path/" + (i % 10));
+        }
+    }
+
+    @Test
+    public void testRollByDay()
+            throws Exception
+    {
+        MockCurrentTimeMillisProvider currentTimeMillisProvider = new MockCurrentTimeMillisProvider(System.currentTimeMillis());
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 100, 1024 * 1024, null, new NullEventClient(), currentTimeMillisProvider);
+        Response response = mock(Response.class);
+        logger.log(mockRequest("/first", null), response, 0, 0, 0, null);
+        currentTimeMillisProvider.incrementTime(DAYS.toMillis(1));
+        logger.log(mockRequest("/second", null), response, 0, 0, 0, null);
+        logger.stop();
+
+        List<File> files = listLogFiles();
+        assertEquals(files.size(), 2);
+        assertEquals(getOnlyElement(readEvents(files.get(0))).getRequestUri(), "/first");
+        assertEquals(getOnlyElement(readEvents(files.get(1))).getRequestUri(), "/second");
+    }
+
+    @Test
+    public void testMaxHistory()
+            throws Exception
+    {
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 2, 4096, null, new NullEventClient());
+        Response response = mock(Response.class);
+        for (int i = 0; i < 2000; i++) {
+            logger.log(mockRequest("/path", null), response, 0, 0, 0, null);
+        }
+        logger.stop();
+
+        long totalSize = listLogFiles().stream()
+                .mapToLong(File::length)
+                .sum();
+        assertTrue(totalSize <= 3 * 4096, "total size is " + totalSize);
+    }
+
+    @Test
+    public void testMaxHistoryOnStart()
+            throws Exception
+    {
+        File old = new File(tempDir, "http-request.log-2000-01-01.0.bin");
+        assertTrue(old.createNewFile());
+
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 2, 4096, null, new NullEventClient());
+        logger.stop();
+
+        // files older than the history are deleted before the first roll
+        assertEquals(listLogFiles().size(), 1);
+        assertFalse(old.exists());
+    }
+
+    @Test
+    public void testDictionaryLimit()
+            throws Exception
+    {
+        // more distinct paths than the dictionary of one file can hold
+        int paths = 5000;
+        StringBuilder prefix = new StringBuilder("/");
+        for (int i = 0; i < 1000; i++) {
+            prefix.append('x');
+        }
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 1, 64 * 1024 * 1024, null, new NullEventClient());
+        Response response = mock(Response.class);
+        for (int i = 0; i < paths; i++) {
+            logger.log(mockRequest(prefix + "/" + i, null), response, 0, 0, 0, null);
+        }
+        logger.stop();
+
+        List<File> files = listLogFiles();
+        assertEquals(files.size(), 1);
+        List<HttpRequestEvent> events = readEvents(files.get(0));
+        assertEquals(events.size(), paths);
+        for (int i = 0; i < paths; i++) {
+            assertEquals(events.get(i).getRequestUri(), prefix + "/" + i);
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters()
+            throws Exception
+    {
+        int threads = 8;
+        int eventsPerThread = 1000;
+        BinaryRequestLog logger = new BinaryRequestLog(logPath, 1000, 64 * 1024, null, new NullEventClient());
+        Response response = mock(Response.class);
+        List<Request> requests = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            requests.add(mockRequest("/thread/" + thread, null));
+        }
+
+        ExecutorService executor = newFixedThreadPool(threads, daemonThreadsNamed("test-binary-request-log-%s"));
+        try {
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (Request request : requests) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < eventsPerThread; i++) {
+                        logger.log(request, response, 0, 0, 0, null);
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        logger.stop();
+
+        List<HttpRequestEvent> events = readEvents();
+        assertEquals(events.size(), threads * eventsPerThread);
+        for (int thread = 0; thread < threads; thread++) {
+            String uri = "/thread/" + thread;
+            assertEquals(events.stream().filter(event -> uri.equals(event.getRequestUri())).count(), eventsPerThread);
+        }
+    }
+
+    private static Request mockRequest(String path, String query)
+    {
+        Request request = mock(Request.class);
+        when(request.getHttpVersion()).thenReturn(HTTP_1_1);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getScheme()).thenReturn("http");
+        when(request.getRequestURI()).thenReturn(path);
+        when(request.getQueryString()).thenReturn(query);
+        when(request.getHeader("User-Agent")).thenReturn("HttpClient 4.0");
+        return request;
+    }
+
+    private List<File> listLogFiles()
+    {
+        // files are named after the day, and numbered within the day
+        return Arrays.stream(tempDir.listFiles((dir, name) -> name.endsWith(".bin")))
+                .sorted(Comparator.comparing((File file) -> fileNamePart(file, 1)).thenComparingInt(file -> Integer.parseInt(fileNamePart(file, 2))))
+                .collect(toImmutableList());
+    }
+
+    private static String fileNamePart(File file, int group)
+    {
+        Matcher matcher = FILE_NAME_PATTERN.matcher(file.getName());
+        assertTrue(matcher.matches(), file.getName());
+        return matcher.group(group);
+    }
+
+    private List<HttpRequestEvent> readEvents()
+            throws IOException
+    {
+        List<HttpRequestEvent> events = new ArrayList<>();
+        for (File file : listLogFiles()) {
+            events.addAll(readEvents(file));
+        }
+        return events;
+    }
+
+    private static List<HttpRequestEvent> readEvents(File file)
+            throws IOException
+    {
+        return ImmutableList.copyOf(new BinaryRequestLogReader(file));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.Request;
+import io.airlift.http.client.Response;
+import io.airlift.http.client.ResponseHandler;
+import io.airlift.http.client.jetty.JettyHttpClient;
+import io.airlift.http.server.HttpServer.ClientCertificate;
+import io.airlift.http.server.HttpServerBinder.HttpResourceBinding;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.airlift.node.NodeInfo;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.zip.GZIPInputStream;
+
+import static com.google.common.net.HttpHeaders.ACCEPT_ENCODING;
+import static com.google.common.net.HttpHeaders.CONTENT_ENCODING;
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.google.common.net.HttpHeaders.LAST_MODIFIED;
+import static com.google.common.net.HttpHeaders.VARY;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.Request.Builder.prepareHead;
+import static io.airlift.testing.Closeables.closeQuietly;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class TestClassPathResourceFilter
+{
+    private static final String REPEATED = "repeated.txt";
+
+    private TestingHttpServer server;
+    private HttpClient client;
+    private String repeatedContent;
+
+    @BeforeClass
+    public void setup()
+            throws Exception
+    {
+        NodeInfo nodeInfo = new NodeInfo("test");
+        HttpServerConfig config = new HttpServerConfig().setHttpPort(0);
+        HttpServerInfo httpServerInfo = new HttpServerInfo(config, nodeInfo);
+        server = new TestingHttpServer(
+                httpServerInfo,
+                nodeInfo,
+                config,
+                new DummyServlet(),
+                ImmutableMap.of(),
+                ImmutableSet.of(),
+                ImmutableSet.of(new HttpResourceBinding("/", "webapp/user")),
+                ClientCertificate.NONE);
+        server.start();
+        client = new JettyHttpClient();
+        repeatedContent = Resources.toString(Resources.getResource("webapp/user/" + REPEATED), UTF_8);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardown()
+            throws Exception
+    {
+        closeQuietly(client);
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testGzipVariant()
+    {
+        BytesResponse response = execute(prepareGet().setUri(uri(REPEATED)).addHeader(ACCEPT_ENCODING, "gzip, deflate").build());
+        assertEquals(response.statusCode, 200);
+        assertEquals(response.contentEncoding, "gzip");
+        assertEquals(response.vary, ACCEPT_ENCODING);
+        assertEquals(gunzip(response.body), repeatedContent);
+
+        BytesResponse identity = execute(prepareGet().setUri(uri(REPEATED)).build());
+        assertEquals(identity.statusCode, 200);
+        assertNull(identity.contentEncoding);
+        assertEquals(new String(identity.body, UTF_8), repeatedContent);
+        // each representation has its own strong ETag
+        assertNotEquals(identity.etag, response.etag);
+
+        BytesResponse refused = execute(prepareGet().setUri(uri(REPEATED)).addHeader(ACCEPT_ENCODING, "*, gzip;q=0").build());
+        assertNull(refused.contentEncoding);
+    }
+
+    @Test
+    public void testIfNoneMatch()
+    {
+        BytesResponse response = execute(prepareGet().setUri(uri(REPEATED)).build());
+        assertNotNull(response.etag);
+
+        BytesResponse notModified = execute(prepareGet().setUri(uri(REPEATED)).addHeader(IF_NONE_MATCH, "\"other\", " + response.etag).build());
+        assertEquals(notModified.statusCode, 304);
+        assertEquals(notModified.etag, response.etag);
+        assertEquals(notModified.body.length, 0);
+
+        BytesResponse weak = execute(prepareGet().setUri(uri(REPEATED)).addHeader(IF_NONE_MATCH, "W/" + response.etag).build());
+        assertEquals(weak.statusCode, 304);
+
+        BytesResponse changed = execute(prepareGet().setUri(uri(REPEATED)).addHeader(IF_NONE_MATCH, "\"other\"").build());
+        assertEquals(changed.statusCode, 200);
+        assertEquals(new String(changed.body, UTF_8), repeatedContent);
+    }
+
+    @Test
+    public void testIfModifiedSince()
+    {
+        BytesResponse response = execute(prepareGet().setUri(uri(REPEATED)).build());
+        assertNotNull(response.lastModified);
+
+        BytesResponse notModified = execute(prepareGet().setUri(uri(REPEATED)).addHeader(IF_MODIFIED_SINCE, response.lastModified).build());
+        assertEquals(notModified.statusCode, 304);
+
+        BytesResponse modified = execute(prepareGet().setUri(uri(REPEATED)).addHeader(IF_MODIFIED_SINCE, "Thu, 01 Jan 1970 00:00:00 GMT").build());
+        assertEquals(modified.statusCode, 200);
+    }
+
+    @Test
+    public void testSmallResource()
+    {
+        // compression does not make small files smaller, so there is no variant
+        BytesResponse response = execute(prepareGet().setUri(uri("user.txt")).addHeader(ACCEPT_ENCODING, "gzip").build());
+        assertEquals(response.statusCode, 200);
+        assertNull(response.contentEncoding);
+        assertEquals(new String(response.body, UTF_8).trim(), "user");
+    }
+
+    @Test
+    public void testHead()
+    {
+        BytesResponse response = execute(prepareHead().setUri(uri(REPEATED)).build());
+        assertEquals(response.statusCode, 200);
+        assertNotNull(response.etag);
+        assertEquals(response.body.length, 0);
+    }
+
+    private URI uri(String path)
+    {
+        return server.getBaseUrl().resolve("/" + path);
+    }
+
+    private BytesResponse execute(Request request)
+    {
+        return client.execute(request, new ResponseHandler<BytesResponse, RuntimeException>()
+        {
+            @Override
+            public BytesResponse handleException(Request request, Exception exception)
+            {
+                throw new RuntimeException(exception);
+            }
+
+            @Override
+            public BytesResponse handle(Request request, Response response)
+            {
+                try (InputStream in = response.getInputStream()) {
+                    return new BytesResponse(response, ByteStreams.toByteArray(in));
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+    }
+
+    private static String gunzip(byte[] bytes)
+    {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(ByteStreams.toByteArray(in), UTF_8);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class BytesResponse
+    {
+        private final int statusCode;
+        private final String contentEncoding;
+        private final String etag;
+        private final String lastModified;
+        private final String vary;
+        private final byte[] body;
+
+        public BytesResponse(Response response, byte[] body)
+        {
+            this.statusCode = response.getStatusCode();
+            this.contentEncoding = response.getHeader(CONTENT_ENCODING);
+            this.etag = response.getHeader(ETAG);
+            this.lastModified = response.getHeader(LAST_MODIFIED);
+            this.vary = response.getHeader(VARY);
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.format.DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+import static org.testng.Assert.assertEquals;
+
+public class TestHttpLogEncoder
+{
+    private static final DateTimeFormatter ISO_FORMATTER = ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
+
+    private final HttpLogEncoder encoder = new HttpLogEncoder();
+
+    @Test
+    public void testEncode()
+            throws Exception
+    {
+        Instant timestamp = Instant.ofEpochMilli(1_500_000_000_123L);
+        DoubleSummaryStats stats = new DoubleSummaryStats(1, 3, 2.0 / 3, 7);
+        HttpRequestEvent event = createEvent(timestamp, "/v1/query?q=hello%20there", "HttpClient 4.0", stats);
+
+        String expected = format("%s\t4.4.4.4\tGET\t/v1/query?q=hello%%20there\tmartin\tHttpClient 4.0\t200\t5432\t32311\t3453\ttoken\tHTTP/2.0\t333\t555\t-1\t1.00, 0.67, 3.00, 7\n",
+                ISO_FORMATTER.format(timestamp));
+        assertEquals(new String(encoder.encode(event), UTF_8), expected);
+        assertEquals(new HttpLogLayout().doLayout(event), expected);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(event, out);
+        encoder.encode(event, out);
+        assertEquals(out.toString("UTF-8"), expected + expected);
+    }
+
+    @Test
+    public void testNulls()
+    {
+        HttpRequestEvent event = new HttpRequestEvent(null, null, null, null, null, null, null, null, null, 0, null, 0, 0, null, 0, null, 0, 0, 0, 0, null, null);
+        assertEquals(new String(encoder.encode(event), UTF_8), "null\tnull\tnull\tnull\tnull\tnull\t0\t0\t0\t0\tnull\tnull\t0\t0\t0\tnull\n");
+    }
+
+    @Test
+    public void testEscaping()
+    {
+        HttpRequestEvent event = createEvent(Instant.now(), "/a\tb\nc\rd\\e\u0001f", "agent é€😀 \ud83d", null);
+        String[] columns = new String(encoder.encode(event), UTF_8).split("\t", -1);
+        assertEquals(columns.length, 16);
+        assertEquals(columns[3], "/a\\tb\\nc\\rd\\\\e\\u0001f");
+        assertEquals(columns[5], "agent é€😀 ?");
+        assertEquals(columns[15], "null\n");
+    }
+
+    @Test
+    public void testNumbers()
+    {
+        // constructor arguments are min, max, average, count
+        assertStats(new DoubleSummaryStats(0, 0, 0, 0), "0.00, 0.00, 0.00, 0");
+        assertStats(new DoubleSummaryStats(0.125, 99.999, 10.0051, Long.MAX_VALUE), format("%.2f, %.2f, %.2f, %d", 0.125, 10.0051, 99.999, Long.MAX_VALUE));
+        assertStats(new DoubleSummaryStats(-1.5, Double.NaN, 1.0e20, 1), format("%.2f, %.2f, %.2f, 1", -1.5, 1.0e20, Double.NaN));
+        assertStats(new DoubleSummaryStats(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 123456.789, 1), format("%.2f, %.2f, %.2f, 1", Double.NEGATIVE_INFINITY, 123456.789, Double.POSITIVE_INFINITY));
+        // String.format rounds the decimal tie up
+        assertStats(new DoubleSummaryStats(1.005, 2.5, 0.5, 3), "1.00, 0.50, 2.50, 3");
+    }
+
+    @Test
+    public void testTimestampChanges()
+    {
+        Instant first = Instant.ofEpochMilli(1_500_000_000_000L);
+        Instant second = first.plusMillis(1);
+        Instant third = second.plusNanos(1);
+        for (Instant timestamp : new Instant[] {first, first, second, third, first}) {
+            String line = new String(encoder.encode(createEvent(timestamp, "/", "agent", null)), UTF_8);
+            assertEquals(line.substring(0, line.indexOf('\t')), ISO_FORMATTER.format(timestamp));
+        }
+    }
+
+    private void assertStats(DoubleSummaryStats stats, String expected)
+    {
+        String line = new String(encoder.encode(createEvent(Instant.now(), "/", "agent", stats)), UTF_8);
+        assertEquals(line.substring(line.lastIndexOf('\t') + 1), expected + "\n");
+    }
+
+    private static HttpRequestEvent createEvent(Instant timestamp, String uri, String agent, DoubleSummaryStats stats)
+    {
+        return new HttpRequestEvent(
+                timestamp,
+                "token",
+                "4.4.4.4",
+                "http",
+                "GET",
+                uri,
+                "martin",
+                agent,
+                "http://www.google.com",
+                5432,
+                "request/type",
+                32311,
+                200,
+                "response/type",
+                10,
+                456L,
+                3453,
+                333,
+                555,
+                -1,
+                stats,
+                "HTTP/2.0");
+    }
+}
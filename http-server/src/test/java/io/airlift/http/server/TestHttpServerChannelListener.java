@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.http.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestHttpServerChannelListener
+{
+    @Test
+    public void testStreamingResponse()
+    {
+        CapturingRequestLogger logger = new CapturingRequestLogger();
+        HttpServerChannelListener listener = new HttpServerChannelListener(logger);
+        Request request = createRequest();
+
+        listener.onRequestBegin(request);
+        listener.onBeforeDispatch(request);
+        listener.onRequestEnd(request);
+        listener.onResponseBegin(request);
+        for (int i = 0; i < 1000; i++) {
+            listener.onResponseContent(request, ByteBuffer.allocate(0));
+        }
+        listener.onComplete(request);
+
+        assertTrue(logger.beginToDispatchMillis >= 0);
+        assertTrue(logger.beginToEndMillis >= logger.beginToDispatchMillis);
+        assertTrue(logger.firstToLastContentTimeInMillis >= 0);
+        DoubleSummaryStats stats = logger.responseContentInterarrivalStats;
+        assertNotNull(stats);
+        assertEquals(stats.getCount(), 999);
+        assertTrue(stats.getMin() >= 0);
+        assertTrue(stats.getMin() <= stats.getAverage());
+        assertTrue(stats.getAverage() <= stats.getMax());
+        assertTrue(stats.getMax() <= logger.firstToLastContentTimeInMillis);
+    }
+
+    @Test
+    public void testSingleChunk()
+    {
+        CapturingRequestLogger logger = new CapturingRequestLogger();
+        HttpServerChannelListener listener = new HttpServerChannelListener(logger);
+        Request request = createRequest();
+
+        listener.onRequestBegin(request);
+        listener.onBeforeDispatch(request);
+        listener.onResponseBegin(request);
+        listener.onResponseContent(request, ByteBuffer.allocate(0));
+        listener.onComplete(request);
+
+        assertEquals(logger.firstToLastContentTimeInMillis, 0);
+        assertNull(logger.responseContentInterarrivalStats);
+    }
+
+    @Test
+    public void testNoContent()
+    {
+        CapturingRequestLogger logger = new CapturingRequestLogger();
+        HttpServerChannelListener listener = new HttpServerChannelListener(logger);
+        Request request = createRequest();
+
+        listener.onRequestBegin(request);
+        listener.onBeforeDispatch(request);
+        listener.onResponseBegin(request);
+        listener.onComplete(request);
+
+        assertEquals(logger.firstToLastContentTimeInMillis, -1);
+        assertNull(logger.responseContentInterarrivalStats);
+    }
+
+    private static Request createRequest()
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        Request request = mock(Request.class);
+        doAnswer(invocation -> attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(request).setAttribute(anyString(), any());
+        when(request.getAttribute(anyString())).thenAnswer(invocation -> attributes.get((String) invocation.getArguments()[0]));
+        when(request.getResponse()).thenReturn(mock(Response.class));
+        return request;
+    }
+
+    private static class CapturingRequestLogger
+            implements RequestLogger
+    {
+        private long beginToDispatchMillis;
+        private long beginToEndMillis;
+        private long firstToLastContentTimeInMillis;
+        private DoubleSummaryStats responseContentInterarrivalStats;
+
+        @Override
+        public void log(
+                Request request,
+                Response response,
+                long beginToDispatchMillis,
+                long beginToEndMillis,
+                long firstToLastContentTimeInMillis,
+                DoubleSummaryStats responseContentInterarrivalStats)
+        {
+            this.beginToDispatchMillis = beginToDispatchMillis;
+            this.beginToEndMillis = beginToEndMillis;
+            this.firstToLastContentTimeInMillis = firstToLastContentTimeInMillis;
+            this.responseContentInterarrivalStats = responseContentInterarrivalStats;
+        }
+
+        @Override
+        public void stop()
+        {
+        }
+
+        @Override
+        public int getQueueSize()
+        {
+            return 0;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.airlift.http.server;
 
 import com.google.common.collect.ImmutableMap;
 import io.airlift.configuration.testing.ConfigAssertions;
+import io.airlift.http.server.HttpServerConfig.LogFormat;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
@@ -34,6 +35,7 @@ import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -66,6 +68,7 @@ public class TestHttpServerConfig
                 .setLogHistory(15)
                 .setLogQueueSize(10_000)
                 .setLogCompressionEnabled(true)
+                .setLogFormat(LogFormat.TEXT)
                 .setHttpAcceptorThreads(null)
                 .setHttpSelectorThreads(null)
                 .setHttpsAcceptorThreads(null)
@@ -86,7 +89,14 @@ public class TestHttpServerConfig
                 .setHttp2InitialSessionReceiveWindowSize(new DataSize(16, MEGABYTE))
                 .setHttp2InputBufferSize(new DataSize(8, KILOBYTE))
                 .setHttp2InitialStreamReceiveWindowSize(new DataSize(16, MEGABYTE))
-                .setHttp2StreamIdleTimeout(new Duration(15, SECONDS)));
+                .setHttp2StreamIdleTimeout(new Duration(15, SECONDS))
+                .setAdmissionControlEnabled(false)
+                .setAdmissionControlMinConcurrency(10)
+                .setAdmissionControlMaxConcurrency(150)
+                .setAdmissionControlTargetLatency(new Duration(1, SECONDS))
+                .setAdmissionControlPriorityPaths("")
+                .setAdmissionControlPriorityHeader(null)
+                .setAdmissionControlRetryAfter(new Duration(1, SECONDS)));
     }
 
     @Test
@@ -116,6 +126,7 @@ public class TestHttpServerConfig
                 .put("http-server.log.max-history", "1")
                 .put("http-server.log.queue-size", "1")
                 .put("http-server.log.compression.enabled", "false")
+                .put("http-server.log.format", "BINARY")
                 .put("http-server.http.acceptor-threads", "10")
                 .put("http-server.http.selector-threads", "11")
                 .put("http-server.https.acceptor-threads", "12")
@@ -137,6 +148,13 @@ public class TestHttpServerConfig
                 .put("http-server.http2.stream-receive-window-size", "4MB")
                 .put("http-server.http2.input-buffer-size", "4MB")
                 .put("http-server.http2.stream-idle-timeout", "23s")
+                .put("http-server.admission-control.enabled", "true")
+                .put("http-server.admission-control.min-concurrency", "5")
+                .put("http-server.admission-control.max-concurrency", "50")
+                .put("http-server.admission-control.target-latency", "250ms")
+                .put("http-server.admission-control.priority-paths", "/v1/status, /v1/info")
+                .put("http-server.admission-control.priority-header", "X-Priority")
+                .put("http-server.admission-control.retry-after", "5s")
                 .build();
 
         HttpServerConfig expected = new HttpServerConfig()
@@ -163,6 +181,7 @@ public class TestHttpServerConfig
                 .setLogHistory(1)
                 .setLogQueueSize(1)
                 .setLogCompressionEnabled(false)
+                .setLogFormat(LogFormat.BINARY)
                 .setHttpAcceptorThreads(10)
                 .setHttpSelectorThreads(11)
                 .setHttpsAcceptorThreads(12)
@@ -183,7 +202,14 @@ public class TestHttpServerConfig
                 .setHttp2InitialSessionReceiveWindowSize(new DataSize(4, MEGABYTE))
                 .setHttp2InitialStreamReceiveWindowSize(new DataSize(4, MEGABYTE))
                 .setHttp2InputBufferSize(new DataSize(4, MEGABYTE))
-                .setHttp2StreamIdleTimeout(new Duration(23, SECONDS));
+                .setHttp2StreamIdleTimeout(new Duration(23, SECONDS))
+                .setAdmissionControlEnabled(true)
+                .setAdmissionControlMinConcurrency(5)
+                .setAdmissionControlMaxConcurrency(50)
+                .setAdmissionControlTargetLatency(new Duration(250, MILLISECONDS))
+                .setAdmissionControlPriorityPaths("/v1/status,/v1/info")
+                .setAdmissionControlPriorityHeader("X-Priority")
+                .setAdmissionControlRetryAfter(new Duration(5, SECONDS));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -204,6 +230,41 @@ public class TestHttpServerConfig
                 AssertTrue.class);
     }
 
+    @Test
+    public void testAdmissionControlConcurrencyValidation()
+    {
+        assertValidates(new HttpServerConfig()
+                .setAdmissionControlMinConcurrency(10)
+                .setAdmissionControlMaxConcurrency(10));
+
+        assertFailsValidation(
+                new HttpServerConfig()
+                        .setAdmissionControlMinConcurrency(11)
+                        .setAdmissionControlMaxConcurrency(10),
+                "admissionControlConcurrencyValid",
+                "Admission control min concurrency must not be greater than max concurrency",
+                AssertTrue.class);
+
+        assertValidates(new HttpServerConfig()
+                .setAdmissionControlEnabled(true)
+                .setMaxThreads(200)
+                .setAdmissionControlMaxConcurrency(199));
+
+        // only checked when admission control is enabled
+        assertValidates(new HttpServerConfig()
+                .setMaxThreads(200)
+                .setAdmissionControlMaxConcurrency(200));
+
+        assertFailsValidation(
+                new HttpServerConfig()
+                        .setAdmissionControlEnabled(true)
+                        .setMaxThreads(200)
+                        .setAdmissionControlMaxConcurrency(200),
+                "admissionControlMaxConcurrencyValid",
+                "Admission control max concurrency must be less than the max threads",
+                AssertTrue.class);
+    }
+
     private static List<String> getJettyDefaultExcludedCiphers()
     {
         SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
@@ -0,0 +1,413 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx.http.rpc;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.jmx.http.rpc.BatchOperation.Type;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.airlift.jmx.http.rpc.HttpMBeanServerRpc.UTF_8;
+
+/**
+ * Encoding used by the batch call. Operations are encoded without Java serialization, so
+ * the server never deserializes objects from the request. Results of the common attribute
+ * types (primitives, strings, object names, primitive and string arrays, attribute lists
+ * and sets) are written in a tagged binary form, and anything else falls back to Java
+ * serialization.
+ */
+final class BatchCodec
+{
+    private static final int VERSION = 1;
+    private static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+    private static final int NULL = 0;
+    private static final int BOOLEAN = 1;
+    private static final int BYTE = 2;
+    private static final int SHORT = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int CHAR = 8;
+    private static final int STRING = 9;
+    private static final int OBJECT_NAME = 10;
+    private static final int STRING_ARRAY = 11;
+    private static final int INT_ARRAY = 12;
+    private static final int LONG_ARRAY = 13;
+    private static final int DOUBLE_ARRAY = 14;
+    private static final int SET = 15;
+    private static final int ATTRIBUTE_LIST = 16;
+    private static final int SERIALIZED = 127;
+
+    private static final int SUCCESS = 0;
+    private static final int FAILURE = 1;
+
+    private static final Type[] TYPES = Type.values();
+
+    private BatchCodec() {}
+
+    public static void writeOperations(List<BatchOperation> operations, DataOutputStream out)
+            throws IOException
+    {
+        out.writeByte(VERSION);
+        out.writeInt(operations.size());
+        for (BatchOperation operation : operations) {
+            out.writeByte(operation.getType().ordinal());
+            writeString(operation.getObjectName().getCanonicalName(), out);
+            out.writeInt(operation.getAttributes().size());
+            for (String attribute : operation.getAttributes()) {
+                writeString(attribute, out);
+            }
+        }
+    }
+
+    public static List<BatchOperation> readOperations(DataInputStream in)
+            throws IOException
+    {
+        checkVersion(in);
+        int count = readLength(in);
+        ImmutableList.Builder<BatchOperation> operations = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            int type = in.readUnsignedByte();
+            if (type >= TYPES.length) {
+                throw new IOException("Unknown operation type " + type);
+            }
+            ObjectName objectName = readObjectName(in);
+            int attributeCount = readLength(in);
+            ImmutableList.Builder<String> attributes = ImmutableList.builder();
+            for (int j = 0; j < attributeCount; j++) {
+                attributes.add(readString(in));
+            }
+            try {
+                operations.add(new BatchOperation(TYPES[type], objectName, attributes.build()));
+            }
+            catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        return operations.build();
+    }
+
+    public static void writeResults(List<BatchResult> results, DataOutputStream out)
+            throws IOException
+    {
+        out.writeByte(VERSION);
+        out.writeInt(results.size());
+        // each result is encoded before it is written, so a value that can not be encoded
+        // becomes a failed result instead of leaving a partial result in the response
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (BatchResult result : results) {
+            buffer.reset();
+            try {
+                writeResult(result, new DataOutputStream(buffer));
+            }
+            catch (IOException | RuntimeException e) {
+                buffer.reset();
+                writeResult(BatchResult.failure(new IOException("Could not encode result: " + e)), new DataOutputStream(buffer));
+            }
+            buffer.writeTo(out);
+        }
+    }
+
+    private static void writeResult(BatchResult result, DataOutputStream out)
+            throws IOException
+    {
+        if (result.isFailed()) {
+            out.writeByte(FAILURE);
+            writeValue(result.getException(), out);
+        }
+        else {
+            out.writeByte(SUCCESS);
+            writeValue(result.getValue(), out);
+        }
+    }
+
+    public static List<BatchResult> readResults(DataInputStream in)
+            throws IOException
+    {
+        checkVersion(in);
+        int count = readLength(in);
+        ImmutableList.Builder<BatchResult> results = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            int status = in.readUnsignedByte();
+            Object value = readValue(in);
+            if (status == SUCCESS) {
+                results.add(BatchResult.success(value));
+            }
+            else if (status == FAILURE && value instanceof Exception) {
+                results.add(BatchResult.failure((Exception) value));
+            }
+            else {
+                throw new IOException("Invalid result status " + status);
+            }
+        }
+        return results.build();
+    }
+
+    static void writeValue(Object value, DataOutputStream out)
+            throws IOException
+    {
+        if (value == null) {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        }
+        else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        }
+        else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        }
+        else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        }
+        else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        }
+        else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        }
+        else if (value instanceof ObjectName) {
+            out.writeByte(OBJECT_NAME);
+            writeString(((ObjectName) value).getCanonicalName(), out);
+        }
+        else if (value instanceof String[] && !containsNull((String[]) value)) {
+            String[] array = (String[]) value;
+            out.writeByte(STRING_ARRAY);
+            out.writeInt(array.length);
+            for (String element : array) {
+                writeString(element, out);
+            }
+        }
+        else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            out.writeByte(INT_ARRAY);
+            out.writeInt(array.length);
+            for (int element : array) {
+                out.writeInt(element);
+            }
+        }
+        else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            out.writeByte(LONG_ARRAY);
+            out.writeInt(array.length);
+            for (long element : array) {
+                out.writeLong(element);
+            }
+        }
+        else if (value instanceof double[]) {
+            double[] array = (double[]) value;
+            out.writeByte(DOUBLE_ARRAY);
+            out.writeInt(array.length);
+            for (double element : array) {
+                out.writeDouble(element);
+            }
+        }
+        else if (value instanceof AttributeList) {
+            List<Attribute> attributes = ((AttributeList) value).asList();
+            out.writeByte(ATTRIBUTE_LIST);
+            out.writeInt(attributes.size());
+            for (Attribute attribute : attributes) {
+                writeString(attribute.getName(), out);
+                writeValue(attribute.getValue(), out);
+            }
+        }
+        else if (value.getClass() == HashSet.class) {
+            // the set returned by queryNames
+            Collection<?> elements = (Collection<?>) value;
+            out.writeByte(SET);
+            out.writeInt(elements.size());
+            for (Object element : elements) {
+                writeValue(element, out);
+            }
+        }
+        else {
+            byte[] bytes = HttpMBeanServerRpc.serialize(value);
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static Object readValue(DataInputStream in)
+            throws IOException
+    {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case CHAR:
+                return in.readChar();
+            case STRING:
+                return readString(in);
+            case OBJECT_NAME:
+                return readObjectName(in);
+            case STRING_ARRAY: {
+                String[] array = new String[readLength(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readString(in);
+                }
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[readLength(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[readLength(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readLong();
+                }
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[readLength(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readDouble();
+                }
+                return array;
+            }
+            case SET: {
+                int size = readLength(in);
+                Set<Object> set = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    set.add(readValue(in));
+                }
+                return set;
+            }
+            case ATTRIBUTE_LIST: {
+                int size = readLength(in);
+                AttributeList attributes = new AttributeList(size);
+                for (int i = 0; i < size; i++) {
+                    String name = readString(in);
+                    attributes.add(new Attribute(name, readValue(in)));
+                }
+                return attributes;
+            }
+            case SERIALIZED: {
+                byte[] bytes = new byte[readLength(in)];
+                in.readFully(bytes);
+                return HttpMBeanServerRpc.deserialize(new ByteArrayInputStream(bytes));
+            }
+        }
+        throw new IOException("Unknown value tag " + tag);
+    }
+
+    private static boolean containsNull(String[] array)
+    {
+        for (String element : array) {
+            if (element == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkVersion(DataInputStream in)
+            throws IOException
+    {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported batch version " + version);
+        }
+    }
+
+    private static int readLength(DataInputStream in)
+            throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static void writeString(String value, DataOutputStream out)
+            throws IOException
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in)
+            throws IOException
+    {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static ObjectName readObjectName(DataInputStream in)
+            throws IOException
+    {
+        String name = readString(in);
+        try {
+            return new ObjectName(name);
+        }
+        catch (MalformedObjectNameException e) {
+            throw new IOException("Invalid object name " + name, e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx.http.rpc;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.util.List;
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only MBean server call that can be sent together with others in a single
+ * request with {@link HttpJmxConnector.HttpMBeanServerConnection#batch(List)}.
+ */
+public final class BatchOperation
+{
+    enum Type
+    {
+        GET_ATTRIBUTE,
+        GET_ATTRIBUTES,
+        QUERY_NAMES,
+    }
+
+    private final Type type;
+    private final ObjectName objectName;
+    private final List<String> attributes;
+
+    BatchOperation(Type type, ObjectName objectName, List<String> attributes)
+    {
+        this.type = requireNonNull(type, "type is null");
+        this.objectName = requireNonNull(objectName, "objectName is null");
+        this.attributes = ImmutableList.copyOf(requireNonNull(attributes, "attributes is null"));
+        checkArgument(type != Type.GET_ATTRIBUTE || this.attributes.size() == 1, "getAttribute requires exactly one attribute");
+        checkArgument(type != Type.QUERY_NAMES || this.attributes.isEmpty(), "queryNames does not take attributes");
+    }
+
+    public static BatchOperation getAttribute(ObjectName objectName, String attribute)
+    {
+        return new BatchOperation(Type.GET_ATTRIBUTE, objectName, ImmutableList.of(attribute));
+    }
+
+    public static BatchOperation getAttributes(ObjectName objectName, String... attributes)
+    {
+        return new BatchOperation(Type.GET_ATTRIBUTES, objectName, ImmutableList.copyOf(attributes));
+    }
+
+    /**
+     * Query expressions are not supported, as they can only be sent with Java serialization.
+     */
+    public static BatchOperation queryNames(ObjectName pattern)
+    {
+        return new BatchOperation(Type.QUERY_NAMES, pattern, ImmutableList.of());
+    }
+
+    Type getType()
+    {
+        return type;
+    }
+
+    public ObjectName getObjectName()
+    {
+        return objectName;
+    }
+
+    public List<String> getAttributes()
+    {
+        return attributes;
+    }
+
+    Object execute(MBeanServer mbeanServer)
+            throws JMException
+    {
+        switch (type) {
+            case GET_ATTRIBUTE:
+                return mbeanServer.getAttribute(objectName, attributes.get(0));
+            case GET_ATTRIBUTES:
+                return mbeanServer.getAttributes(objectName, attributes.toArray(new String[0]));
+            case QUERY_NAMES:
+                return mbeanServer.queryNames(objectName, null);
+        }
+        throw new AssertionError("Unknown type " + type);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BatchOperation that = (BatchOperation) o;
+        return type == that.type &&
+                objectName.equals(that.objectName) &&
+                attributes.equals(that.attributes);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(type, objectName, attributes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("type", type)
+                .add("objectName", objectName)
+                .add("attributes", attributes)
+                .toString();
+    }
+}
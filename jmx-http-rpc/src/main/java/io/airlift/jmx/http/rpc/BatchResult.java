@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx.http.rpc;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The outcome of one {@link BatchOperation}. A failed operation does not fail the
+ * rest of the batch.
+ */
+public final class BatchResult
+{
+    private final Object value;
+    private final Exception exception;
+
+    private BatchResult(Object value, Exception exception)
+    {
+        this.value = value;
+        this.exception = exception;
+    }
+
+    public static BatchResult success(Object value)
+    {
+        return new BatchResult(value, null);
+    }
+
+    public static BatchResult failure(Exception exception)
+    {
+        return new BatchResult(null, requireNonNull(exception, "exception is null"));
+    }
+
+    public boolean isFailed()
+    {
+        return exception != null;
+    }
+
+    /**
+     * @throws IllegalStateException if the operation failed
+     */
+    public Object getValue()
+    {
+        if (exception != null) {
+            throw new IllegalStateException("Operation failed", exception);
+        }
+        return value;
+    }
+
+    public Exception getException()
+    {
+        return exception;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .omitNullValues()
+                .add("value", value)
+                .add("exception", exception)
+                .toString();
+    }
+}
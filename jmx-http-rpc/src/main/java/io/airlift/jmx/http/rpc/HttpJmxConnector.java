@@ -35,6 +35,10 @@ import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXServiceURL;
 import javax.security.auth.Subject;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -43,6 +47,7 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -171,8 +176,36 @@ public class HttpJmxConnector
             this.credentials = credentials;
         }
 
+        /**
+         * Sends all of the operations in a single request. The operations are executed in
+         * order, and the failure of one does not affect the others.
+         */
+        public List<BatchResult> batch(List<BatchOperation> operations)
+                throws IOException
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            BatchCodec.writeOperations(operations, out);
+            out.flush();
+
+            try {
+                return execute("batch", bytes.toByteArray(), inputStream -> BatchCodec.readResults(new DataInputStream(new BufferedInputStream(inputStream))));
+            }
+            catch (Exception e) {
+                propagateIfInstanceOf(e, IOException.class);
+                propagateIfPossible(e);
+                throw new IOException(e);
+            }
+        }
+
         private Object invoke(String method, Object... args)
                 throws Exception
+        {
+            return execute(method, HttpMBeanServerRpc.serialize(args), HttpMBeanServerRpc::deserialize);
+        }
+
+        private <T> T execute(String method, byte[] body, ResponseReader<T> responseReader)
+                throws Exception
         {
             OutputStream outputStream = null;
             InputStream inputStream = null;
@@ -186,7 +219,7 @@ public class HttpJmxConnector
                 urlConnection.setDoOutput(true);
                 urlConnection.setChunkedStreamingMode(4096);
                 outputStream = urlConnection.getOutputStream();
-                outputStream.write(HttpMBeanServerRpc.serialize(args));
+                outputStream.write(body);
                 outputStream.close();
 
                 // stupid URL client just throws away response when response is 401
@@ -195,19 +228,11 @@ public class HttpJmxConnector
                     throw new SecurityException("Unauthorized");
                 }
 
-                // get correct response stream (Yes, java.net.URL is dumb)
-                if (statusCode < 400) {
-                    inputStream = urlConnection.getInputStream();
-                }
-                else {
-                    inputStream = urlConnection.getErrorStream();
-                }
-
-                // deserialize response
-                Object result = HttpMBeanServerRpc.deserialize(inputStream);
-
                 // any non-200 response must contain a serialized exception
                 if (statusCode / 100 != 2) {
+                    // get correct response stream (Yes, java.net.URL is dumb)
+                    inputStream = statusCode < 400 ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+                    Object result = HttpMBeanServerRpc.deserialize(inputStream);
                     if (result instanceof Exception) {
                         throw (Exception) result;
                     }
@@ -215,7 +240,9 @@ public class HttpJmxConnector
                             statusCode,
                             result.getClass().getName()));
                 }
-                return result;
+
+                inputStream = urlConnection.getInputStream();
+                return responseReader.read(inputStream);
             }
             finally {
                 if (outputStream != null) {
@@ -235,6 +262,12 @@ public class HttpJmxConnector
             }
         }
 
+        private interface ResponseReader<T>
+        {
+            T read(InputStream inputStream)
+                    throws IOException;
+        }
+
         @Override
         public ObjectInstance getObjectInstance(ObjectName name)
                 throws InstanceNotFoundException, IOException
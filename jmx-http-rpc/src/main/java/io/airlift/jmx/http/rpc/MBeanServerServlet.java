@@ -15,6 +15,8 @@
  */
 package io.airlift.jmx.http.rpc;
 
+import com.google.common.collect.ImmutableList;
+
 import javax.inject.Inject;
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -27,8 +29,13 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.List;
 
 import static io.airlift.jmx.http.rpc.HttpMBeanServerRpc.createExceptionResponse;
 import static io.airlift.jmx.http.rpc.HttpMBeanServerRpc.createSuccessResponse;
@@ -67,6 +74,11 @@ public class MBeanServerServlet
             return;
         }
 
+        if ("batch".equals(method)) {
+            batch(request, response);
+            return;
+        }
+
         Object[] args;
         try {
             args = (Object[]) new ObjectInputStream(request.getInputStream()).readObject();
@@ -135,6 +147,36 @@ public class MBeanServerServlet
         }
     }
 
+    private void batch(HttpServletRequest request, HttpServletResponse response)
+            throws IOException
+    {
+        List<BatchOperation> operations;
+        try {
+            operations = BatchCodec.readOperations(new DataInputStream(new BufferedInputStream(request.getInputStream())));
+        }
+        catch (IOException e) {
+            sendErrorResponse(response, SC_BAD_REQUEST, new IllegalArgumentException("Request does not contain a valid batch", e));
+            return;
+        }
+
+        ImmutableList.Builder<BatchResult> results = ImmutableList.builder();
+        for (BatchOperation operation : operations) {
+            try {
+                results.add(BatchResult.success(operation.execute(mbeanServer)));
+            }
+            catch (Exception e) {
+                results.add(BatchResult.failure(e));
+            }
+            catch (Error e) {
+                results.add(BatchResult.failure(new JMXServerErrorException("Internal error", e)));
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+        BatchCodec.writeResults(results.build(), out);
+        out.flush();
+    }
+
     private String extractJmxMethodFromPath(HttpServletRequest request)
     {
         String path = request.getRequestURI();
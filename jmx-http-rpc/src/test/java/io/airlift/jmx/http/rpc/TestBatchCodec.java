@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx.http.rpc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.ObjectName;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestBatchCodec
+{
+    @Test
+    public void testOperationsRoundTrip()
+            throws Exception
+    {
+        List<BatchOperation> operations = ImmutableList.of(
+                BatchOperation.getAttribute(new ObjectName("java.lang:type=Runtime"), "Uptime"),
+                BatchOperation.getAttributes(new ObjectName("java.lang:type=Memory"), "HeapMemoryUsage", "ObjectPendingFinalizationCount"),
+                BatchOperation.queryNames(new ObjectName("java.lang:*")));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchCodec.writeOperations(operations, new DataOutputStream(bytes));
+
+        assertEquals(BatchCodec.readOperations(input(bytes.toByteArray())), operations);
+    }
+
+    @Test
+    public void testValuesRoundTrip()
+            throws Exception
+    {
+        assertRoundTrip(null);
+        assertRoundTrip(true);
+        assertRoundTrip((byte) 7);
+        assertRoundTrip((short) -300);
+        assertRoundTrip(42);
+        assertRoundTrip(Long.MAX_VALUE);
+        assertRoundTrip(1.5f);
+        assertRoundTrip(Double.NaN);
+        assertRoundTrip('x');
+        assertRoundTrip("café 😀");
+        assertRoundTrip(new ObjectName("a:type=b,name=c"));
+        assertRoundTrip(ImmutableSet.of(new ObjectName("a:type=b"), new ObjectName("a:type=c")));
+        assertRoundTrip(new AttributeList(ImmutableList.of(new Attribute("A", 1L), new Attribute("B", null))));
+        assertRoundTrip(UUID.randomUUID());
+
+        assertEquals((String[]) roundTrip(new String[] {"a", "b"}), new String[] {"a", "b"});
+        assertEquals((String[]) roundTrip(new String[] {"a", null}), new String[] {"a", null});
+        assertEquals((int[]) roundTrip(new int[] {1, -2}), new int[] {1, -2});
+        assertEquals((long[]) roundTrip(new long[] {3, -4}), new long[] {3, -4});
+        assertEquals((double[]) roundTrip(new double[] {0.5, -1}), new double[] {0.5, -1});
+    }
+
+    @Test
+    public void testCompactEncoding()
+            throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchCodec.writeValue(123L, new DataOutputStream(bytes));
+        assertEquals(bytes.size(), 9);
+    }
+
+    @Test
+    public void testResultsRoundTrip()
+            throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchCodec.writeResults(
+                ImmutableList.of(BatchResult.success(10), BatchResult.failure(new InstanceNotFoundException("missing"))),
+                new DataOutputStream(bytes));
+
+        List<BatchResult> results = BatchCodec.readResults(input(bytes.toByteArray()));
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(0).getValue(), 10);
+        assertTrue(results.get(1).getException() instanceof InstanceNotFoundException);
+        assertEquals(results.get(1).getException().getMessage(), "missing");
+    }
+
+    @Test
+    public void testResultNotSerializable()
+            throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchCodec.writeResults(
+                ImmutableList.of(BatchResult.success(1), BatchResult.success(new Object()), BatchResult.success(3)),
+                new DataOutputStream(bytes));
+
+        List<BatchResult> results = BatchCodec.readResults(input(bytes.toByteArray()));
+        assertEquals(results.size(), 3);
+        assertEquals(results.get(0).getValue(), 1);
+        assertTrue(results.get(1).getException() instanceof IOException);
+        assertEquals(results.get(1).getException().getMessage(), "Could not encode result: java.io.NotSerializableException: java.lang.Object");
+        assertEquals(results.get(2).getValue(), 3);
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Unsupported batch version 99")
+    public void testUnknownVersion()
+            throws Exception
+    {
+        BatchCodec.readOperations(input(new byte[] {99, 0, 0, 0, 0}));
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Invalid length -1")
+    public void testNegativeLength()
+            throws Exception
+    {
+        BatchCodec.readOperations(input(new byte[] {1, -1, -1, -1, -1}));
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Unknown operation type 9")
+    public void testUnknownOperation()
+            throws Exception
+    {
+        BatchCodec.readOperations(input(new byte[] {1, 0, 0, 0, 1, 9}));
+    }
+
+    private static void assertRoundTrip(Object value)
+            throws IOException
+    {
+        assertEquals(roundTrip(value), value);
+    }
+
+    private static Object roundTrip(Object value)
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchCodec.writeValue(value, new DataOutputStream(bytes));
+        return BatchCodec.readValue(input(bytes.toByteArray()));
+    }
+
+    private static DataInputStream input(byte[] bytes)
+    {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
@@ -17,6 +17,7 @@ package io.airlift.jmx.http.rpc;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Injector;
 import com.google.inject.Scopes;
 import io.airlift.bootstrap.Bootstrap;
@@ -24,6 +25,7 @@ import io.airlift.bootstrap.LifeCycleManager;
 import io.airlift.http.server.TheServlet;
 import io.airlift.http.server.testing.TestingHttpServer;
 import io.airlift.http.server.testing.TestingHttpServerModule;
+import io.airlift.jmx.http.rpc.HttpJmxConnector.HttpMBeanServerConnection;
 import io.airlift.json.JsonModule;
 import io.airlift.node.testing.TestingNodeModule;
 import org.testng.annotations.AfterMethod;
@@ -34,6 +36,7 @@ import org.weakref.jmx.Managed;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
 import javax.management.MBeanException;
 import javax.management.MBeanServer;
 import javax.management.MBeanServerConnection;
@@ -43,6 +46,7 @@ import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
 import java.lang.management.ManagementFactory;
+import java.util.List;
 import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
@@ -253,6 +257,55 @@ public class TestMBeanServerResource
         }
     }
 
+    @Test
+    public void testBatch()
+            throws Exception
+    {
+        testMBean.setValue("FOO");
+        ObjectName missing = new ObjectName("fake", "fake", "fake");
+
+        List<BatchResult> results = ((HttpMBeanServerConnection) mbeanServerConnection).batch(ImmutableList.of(
+                BatchOperation.getAttribute(testMBeanName, "Value"),
+                BatchOperation.getAttribute(missing, "Value"),
+                BatchOperation.getAttributes(testMBeanName, "Value", "ObjectValue"),
+                BatchOperation.queryNames(testMBeanName)));
+
+        assertEquals(results.size(), 4);
+        assertEquals(results.get(0).getValue(), "FOO");
+        assertTrue(results.get(1).isFailed());
+        assertTrue(results.get(1).getException() instanceof InstanceNotFoundException);
+        assertEquals(results.get(2).getValue(), new AttributeList(ImmutableList.of(new Attribute("Value", "FOO"), new Attribute("ObjectValue", null))));
+        assertEquals(results.get(3).getValue(), ImmutableSet.of(testMBeanName));
+    }
+
+    @Test
+    public void testBatchNotSerializableValue()
+            throws Exception
+    {
+        testMBean.setValue("FOO");
+        testMBean.setObjectValue(new Object());
+        try {
+            List<BatchResult> results = ((HttpMBeanServerConnection) mbeanServerConnection).batch(ImmutableList.of(
+                    BatchOperation.getAttribute(testMBeanName, "ObjectValue"),
+                    BatchOperation.getAttribute(testMBeanName, "Value")));
+
+            assertEquals(results.size(), 2);
+            assertTrue(results.get(0).isFailed());
+            assertTrue(results.get(0).getException().getMessage().contains("NotSerializableException"), results.get(0).getException().getMessage());
+            assertEquals(results.get(1).getValue(), "FOO");
+        }
+        finally {
+            testMBean.setObjectValue(null);
+        }
+    }
+
+    @Test
+    public void testEmptyBatch()
+            throws Exception
+    {
+        assertEquals(((HttpMBeanServerConnection) mbeanServerConnection).batch(ImmutableList.of()), ImmutableList.of());
+    }
+
     public static class TestMBean
     {
         private String value;
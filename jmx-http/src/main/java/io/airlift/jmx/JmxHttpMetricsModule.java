@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx;
+
+import com.google.common.annotations.Beta;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+
+import static io.airlift.jaxrs.JaxrsBinder.jaxrsBinder;
+
+/**
+ * Serves the objects exported through jmxutils at /v1/metrics in the Prometheus
+ * text format. Requires the {@code MBeanExporter} bound by {@code MBeanModule}.
+ */
+@Beta
+public class JmxHttpMetricsModule
+        implements Module
+{
+    @Override
+    public void configure(Binder binder)
+    {
+        jaxrsBinder(binder).bind(MetricsResource.class);
+        binder.bind(PrometheusCollector.class).in(Scopes.SINGLETON);
+    }
+}
@@ -34,6 +34,7 @@ import javax.management.ObjectName;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import static com.google.common.io.ByteStreams.nullOutputStream;
 
@@ -50,9 +51,17 @@ public class MBeanRepresentation
     public MBeanRepresentation(MBeanServer mbeanServer, ObjectName objectName, ObjectMapper objectMapper)
             throws JMException
     {
-        this.objectName = objectName;
+        this(mbeanServer, objectName, mbeanServer.getMBeanInfo(objectName), attributeName -> true, objectMapper);
+    }
 
-        MBeanInfo mbeanInfo = mbeanServer.getMBeanInfo(objectName);
+    /**
+     * Creates the representation from previously fetched {@code MBeanInfo}, reading
+     * only the values of the attributes accepted by {@code attributeFilter}.
+     */
+    public MBeanRepresentation(MBeanServer mbeanServer, ObjectName objectName, MBeanInfo mbeanInfo, Predicate<String> attributeFilter, ObjectMapper objectMapper)
+            throws JMException
+    {
+        this.objectName = objectName;
 
         className = mbeanInfo.getClassName();
         description = mbeanInfo.getDescription();
@@ -63,12 +72,18 @@ public class MBeanRepresentation
         //
         LinkedHashMap<String, MBeanAttributeInfo> attributeInfos = new LinkedHashMap<>();
         for (MBeanAttributeInfo attributeInfo : mbeanInfo.getAttributes()) {
-            attributeInfos.put(attributeInfo.getName(), attributeInfo);
+            if (attributeFilter.test(attributeInfo.getName())) {
+                attributeInfos.put(attributeInfo.getName(), attributeInfo);
+            }
         }
 
         String[] attributeNames = attributeInfos.keySet().toArray(new String[0]);
         ImmutableList.Builder<AttributeRepresentation> attributes = ImmutableList.builder();
-        for (Attribute attribute : mbeanServer.getAttributes(objectName, attributeNames).asList()) {
+        List<Attribute> attributeValues = ImmutableList.of();
+        if (attributeNames.length > 0) {
+            attributeValues = mbeanServer.getAttributes(objectName, attributeNames).asList();
+        }
+        for (Attribute attribute : attributeValues) {
             String attributeName = attribute.getName();
 
             // use remove so we only include one value for each attribute
@@ -15,31 +15,57 @@
  */
 package io.airlift.jmx;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.ImmutableList;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Resources;
 
 import javax.inject.Inject;
+import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
+import javax.management.MBeanInfo;
 import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
 
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.io.Resources.getResource;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 
 @Path("/v1/jmx")
 public class MBeanResource
 {
+    // MBeanInfo rarely changes, but some MBeans build it on every call
+    private static final long MBEAN_INFO_CACHE_SECONDS = 10;
+
     private final MBeanServer mbeanServer;
     private final ObjectMapper objectMapper;
+    private final Cache<ObjectName, MBeanInfo> mbeanInfoCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(MBEAN_INFO_CACHE_SECONDS, SECONDS)
+            .build();
 
     @Inject
     public MBeanResource(MBeanServer mbeanServer, ObjectMapper objectMapper)
@@ -56,28 +82,37 @@ public class MBeanResource
         return Resources.toString(getResource(getClass(), "mbeans.html"), UTF_8);
     }
 
+    /**
+     * Returns the MBeans matching the optional object name pattern {@code query}. When
+     * {@code attribute} parameters are given, only the values of those attributes are read.
+     * The response is written one MBean at a time.
+     */
     @GET
     @Path("mbean")
     @Produces(MediaType.APPLICATION_JSON)
-    public List<MBeanRepresentation> getMBeans()
-            throws JMException
+    public JsonSerializable getMBeans(@QueryParam("query") String query, @QueryParam("attribute") List<String> attributes)
     {
-        ImmutableList.Builder<MBeanRepresentation> mbeans = ImmutableList.builder();
-        for (ObjectName objectName : mbeanServer.queryNames(ObjectName.WILDCARD, null)) {
-            mbeans.add(new MBeanRepresentation(mbeanServer, objectName, objectMapper));
+        ObjectName pattern = ObjectName.WILDCARD;
+        if (query != null) {
+            try {
+                pattern = new ObjectName(query);
+            }
+            catch (MalformedObjectNameException e) {
+                throw new WebApplicationException(e, BAD_REQUEST);
+            }
         }
-
-        return mbeans.build();
+        Set<ObjectName> objectNames = mbeanServer.queryNames(pattern, null);
+        return new MBeans(objectNames, attributeFilter(attributes));
     }
 
     @GET
     @Path("mbean/{objectName}")
     @Produces(MediaType.APPLICATION_JSON)
-    public MBeanRepresentation getMBean(@PathParam("objectName") ObjectName objectName)
+    public MBeanRepresentation getMBean(@PathParam("objectName") ObjectName objectName, @QueryParam("attribute") List<String> attributes)
             throws JMException
     {
         requireNonNull(objectName, "objectName is null");
-        return new MBeanRepresentation(mbeanServer, objectName, objectMapper);
+        return createMBeanRepresentation(objectName, attributeFilter(attributes));
     }
 
     @GET
@@ -89,4 +124,77 @@ public class MBeanResource
         requireNonNull(objectName, "objectName is null");
         return mbeanServer.getAttribute(objectName, attributeName);
     }
+
+    private MBeanRepresentation createMBeanRepresentation(ObjectName objectName, Predicate<String> attributeFilter)
+            throws JMException
+    {
+        MBeanInfo mbeanInfo;
+        try {
+            mbeanInfo = mbeanInfoCache.get(objectName, () -> mbeanServer.getMBeanInfo(objectName));
+        }
+        catch (ExecutionException e) {
+            throwIfInstanceOf(e.getCause(), JMException.class);
+            throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+
+        try {
+            return new MBeanRepresentation(mbeanServer, objectName, mbeanInfo, attributeFilter, objectMapper);
+        }
+        catch (JMException | RuntimeException e) {
+            // the MBean may have been replaced since its info was cached
+            mbeanInfoCache.invalidate(objectName);
+            throw e;
+        }
+    }
+
+    private static Predicate<String> attributeFilter(List<String> attributes)
+    {
+        if (attributes == null || attributes.isEmpty()) {
+            return attributeName -> true;
+        }
+        return ImmutableSet.copyOf(attributes)::contains;
+    }
+
+    private class MBeans
+            extends JsonSerializable.Base
+    {
+        private final Set<ObjectName> objectNames;
+        private final Predicate<String> attributeFilter;
+
+        public MBeans(Set<ObjectName> objectNames, Predicate<String> attributeFilter)
+        {
+            this.objectNames = objectNames;
+            this.attributeFilter = attributeFilter;
+        }
+
+        @Override
+        public void serialize(JsonGenerator generator, SerializerProvider provider)
+                throws IOException
+        {
+            generator.writeStartArray();
+            for (ObjectName objectName : objectNames) {
+                MBeanRepresentation mbean;
+                try {
+                    mbean = createMBeanRepresentation(objectName, attributeFilter);
+                }
+                catch (InstanceNotFoundException e) {
+                    // unregistered after the query
+                    continue;
+                }
+                catch (JMException e) {
+                    throw JsonMappingException.from(generator, "Could not read MBean " + objectName, e);
+                }
+                provider.defaultSerializeValue(mbean, generator);
+            }
+            generator.writeEndArray();
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator generator, SerializerProvider provider, TypeSerializer typeSerializer)
+                throws IOException
+        {
+            serialize(generator, provider);
+        }
+    }
 }
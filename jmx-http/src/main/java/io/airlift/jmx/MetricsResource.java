@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx;
+
+import com.google.common.annotations.Beta;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+@Beta
+@Path("/v1/metrics")
+public class MetricsResource
+{
+    public static final String PROMETHEUS_TEXT_FORMAT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PrometheusCollector collector;
+
+    @Inject
+    public MetricsResource(PrometheusCollector collector)
+    {
+        this.collector = requireNonNull(collector, "collector is null");
+    }
+
+    @GET
+    @Produces(PROMETHEUS_TEXT_FORMAT)
+    public StreamingOutput getMetrics()
+    {
+        return output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+            collector.write(writer);
+            writer.flush();
+        };
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.Distribution;
+import io.airlift.stats.Distribution.DistributionSnapshot;
+import io.airlift.stats.DistributionStat;
+import io.airlift.stats.TimeDistribution;
+import io.airlift.stats.TimeDistribution.TimeDistributionSnapshot;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Flatten;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the stats objects exported through jmxutils in the Prometheus text exposition
+ * format (version 0.0.4).
+ * <p>
+ * The exported objects are inspected with reflection only when the set of exported objects
+ * changes. The resulting metric families, including their label strings, are cached, and a
+ * scrape only reads the stats objects and formats numbers.
+ * <ul>
+ * <li>{@link CounterStat} is a counter named {@code <attribute>_total}</li>
+ * <li>{@link TimeStat} is a summary in seconds named {@code <attribute>_seconds} with the
+ * quantiles of the one minute distribution and the all time sum and count</li>
+ * <li>{@link DistributionStat} is a summary with the quantiles of the one minute distribution
+ * and the all time sum and count</li>
+ * <li>other numeric or boolean {@code @Managed} attributes are gauges</li>
+ * </ul>
+ * Metric names are the object name domain, the {@code name} (or {@code type}) key and the
+ * attribute path, joined with underscores. The remaining object name keys become labels.
+ */
+@Beta
+@ThreadSafe
+public class PrometheusCollector
+{
+    private static final int MAX_NESTING_DEPTH = 8;
+    private static final double[] QUANTILES = {0.5, 0.75, 0.9, 0.95, 0.99};
+
+    private final MBeanExporter exporter;
+    private volatile Metrics metrics = new Metrics(ImmutableMap.of(), ImmutableList.of());
+
+    @Inject
+    public PrometheusCollector(MBeanExporter exporter)
+    {
+        this.exporter = requireNonNull(exporter, "exporter is null");
+    }
+
+    public void write(Writer writer)
+            throws IOException
+    {
+        Map<String, Object> exported = exporter.getExportedObjects();
+        Metrics current = metrics;
+        if (!current.isFor(exported)) {
+            current = new Metrics(ImmutableMap.copyOf(exported), createFamilies(exported));
+            metrics = current;
+        }
+        for (Family family : current.families) {
+            family.write(writer);
+        }
+    }
+
+    private static List<Family> createFamilies(Map<String, Object> exported)
+    {
+        Map<String, Family> families = new TreeMap<>();
+        // sorted so samples within a family have a stable order
+        for (Entry<String, Object> entry : new TreeMap<>(exported).entrySet()) {
+            ObjectName objectName;
+            try {
+                objectName = ObjectName.getInstance(entry.getKey());
+            }
+            catch (MalformedObjectNameException e) {
+                continue;
+            }
+            String nameKey = objectName.getKeyProperty("name") != null ? "name" : "type";
+            String prefix = objectName.getDomain();
+            if (objectName.getKeyProperty(nameKey) != null) {
+                prefix += "_" + objectName.getKeyProperty(nameKey);
+            }
+            List<String> labels = new ArrayList<>();
+            for (Entry<String, String> property : new TreeMap<>(objectName.getKeyPropertyList()).entrySet()) {
+                if (!property.getKey().equals(nameKey)) {
+                    labels.add(sanitizeLabelName(property.getKey()) + "=\"" + escapeLabelValue(unquote(property.getValue())) + "\"");
+                }
+            }
+            collect(entry.getValue(), prefix, labels, families, 0);
+        }
+        return ImmutableList.copyOf(families.values());
+    }
+
+    private static void collect(Object object, String prefix, List<String> labels, Map<String, Family> families, int depth)
+    {
+        if (depth > MAX_NESTING_DEPTH) {
+            return;
+        }
+
+        Method[] methods = object.getClass().getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::getName));
+        for (Method method : methods) {
+            boolean nested = method.isAnnotationPresent(Nested.class);
+            boolean flatten = method.isAnnotationPresent(Flatten.class);
+            if (!(method.isAnnotationPresent(Managed.class) || nested || flatten) || method.getParameterCount() != 0) {
+                continue;
+            }
+            String attribute = attributeName(method);
+            if (attribute == null) {
+                continue;
+            }
+            String name = prefix + "_" + attribute;
+            Class<?> type = method.getReturnType();
+
+            if (CounterStat.class.isAssignableFrom(type)) {
+                CounterStat counter = (CounterStat) invoke(method, object);
+                if (counter != null) {
+                    add(families, sanitizeMetricName(name + "_total"), "counter", new CounterSource(counter, labels));
+                }
+            }
+            else if (TimeStat.class.isAssignableFrom(type)) {
+                TimeStat time = (TimeStat) invoke(method, object);
+                if (time != null) {
+                    add(families, sanitizeMetricName(name + "_seconds"), "summary", new TimeStatSource(time, labels));
+                }
+            }
+            else if (DistributionStat.class.isAssignableFrom(type)) {
+                DistributionStat distribution = (DistributionStat) invoke(method, object);
+                if (distribution != null) {
+                    add(families, sanitizeMetricName(name), "summary", new DistributionStatSource(distribution, labels));
+                }
+            }
+            else if (isGaugeType(type)) {
+                if (method.isAnnotationPresent(Managed.class)) {
+                    MethodHandle getter = unreflect(method);
+                    if (getter != null) {
+                        add(families, sanitizeMetricName(name), "gauge", new GaugeSource(getter.bindTo(object), labels));
+                    }
+                }
+            }
+            else if (nested || flatten) {
+                Object child = invoke(method, object);
+                if (child != null) {
+                    collect(child, flatten ? prefix : name, labels, families, depth + 1);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<String, Family> families, String name, String type, Source source)
+    {
+        Family family = families.computeIfAbsent(name, key -> new Family(key, type));
+        // a name can only have one type, so later conflicting attributes are dropped
+        if (family.type.equals(type)) {
+            family.sources.add(source);
+        }
+    }
+
+    private static String attributeName(Method method)
+    {
+        String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3) {
+            return name.substring(3);
+        }
+        if (name.startsWith("is") && name.length() > 2 && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+            return name.substring(2);
+        }
+        return null;
+    }
+
+    private static boolean isGaugeType(Class<?> type)
+    {
+        return (type.isPrimitive() && type != void.class && type != char.class) ||
+                Number.class.isAssignableFrom(type) ||
+                type == Boolean.class;
+    }
+
+    private static Object invoke(Method method, Object target)
+    {
+        try {
+            method.setAccessible(true);
+            return method.invoke(target);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflect(Method method)
+    {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String unquote(String value)
+    {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return ObjectName.unquote(value);
+        }
+        return value;
+    }
+
+    static String sanitizeMetricName(String name)
+    {
+        StringBuilder builder = new StringBuilder(name.length() + 1);
+        if (!name.isEmpty() && Character.isDigit(name.charAt(0))) {
+            builder.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            builder.append(isAsciiLetterOrDigit(c) || c == '_' || c == ':' ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    private static String sanitizeLabelName(String name)
+    {
+        return sanitizeMetricName(name).replace(':', '_');
+    }
+
+    static String escapeLabelValue(String value)
+    {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static String formatLabels(List<String> labels, String extra)
+    {
+        List<String> all = new ArrayList<>(labels);
+        if (extra != null) {
+            all.add(extra);
+        }
+        if (all.isEmpty()) {
+            return "";
+        }
+        return "{" + String.join(",", all) + "}";
+    }
+
+    private static void writeSample(Writer writer, String name, String suffix, String labels, long value)
+            throws IOException
+    {
+        writer.write(name);
+        writer.write(suffix);
+        writer.write(labels);
+        writer.write(' ');
+        writer.write(Long.toString(value));
+        writer.write('\n');
+    }
+
+    private static void writeSample(Writer writer, String name, String suffix, String labels, double value)
+            throws IOException
+    {
+        writer.write(name);
+        writer.write(suffix);
+        writer.write(labels);
+        writer.write(' ');
+        if (Double.isNaN(value)) {
+            writer.write("NaN");
+        }
+        else if (Double.isInfinite(value)) {
+            writer.write(value > 0 ? "+Inf" : "-Inf");
+        }
+        else if (value == Math.rint(value) && Math.abs(value) < 1.0e15) {
+            writer.write(Long.toString((long) value));
+        }
+        else {
+            writer.write(Double.toString(value));
+        }
+        writer.write('\n');
+    }
+
+    private static class Metrics
+    {
+        private final Map<String, Object> exported;
+        private final List<Family> families;
+
+        public Metrics(Map<String, Object> exported, List<Family> families)
+        {
+            this.exported = exported;
+            this.families = families;
+        }
+
+        public boolean isFor(Map<String, Object> currentlyExported)
+        {
+            if (exported.size() != currentlyExported.size()) {
+                return false;
+            }
+            for (Entry<String, Object> entry : currentlyExported.entrySet()) {
+                if (exported.get(entry.getKey()) != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Family
+    {
+        private final String name;
+        private final String type;
+        private final String typeLine;
+        private final List<Source> sources = new ArrayList<>();
+
+        public Family(String name, String type)
+        {
+            this.name = name;
+            this.type = type;
+            this.typeLine = "# TYPE " + name + " " + type + "\n";
+        }
+
+        public void write(Writer writer)
+                throws IOException
+        {
+            writer.write(typeLine);
+            for (Source source : sources) {
+                source.write(writer, name);
+            }
+        }
+    }
+
+    private abstract static class Source
+    {
+        protected final String labels;
+
+        protected Source(List<String> labels)
+        {
+            this.labels = formatLabels(labels, null);
+        }
+
+        public abstract void write(Writer writer, String name)
+                throws IOException;
+    }
+
+    private abstract static class SummarySource
+            extends Source
+    {
+        private final String[] quantileLabels;
+
+        protected SummarySource(List<String> labels)
+        {
+            super(labels);
+            quantileLabels = new String[QUANTILES.length];
+            for (int i = 0; i < QUANTILES.length; i++) {
+                quantileLabels[i] = formatLabels(labels, "quantile=\"" + QUANTILES[i] + "\"");
+            }
+        }
+
+        protected void writeSummary(Writer writer, String name, double[] quantiles, double sum, double count)
+                throws IOException
+        {
+            for (int i = 0; i < quantiles.length; i++) {
+                writeSample(writer, name, "", quantileLabels[i], quantiles[i]);
+            }
+            writeSample(writer, name, "_sum", labels, sum);
+            writeSample(writer, name, "_count", labels, count);
+        }
+    }
+
+    private static class CounterSource
+            extends Source
+    {
+        private final CounterStat counter;
+
+        public CounterSource(CounterStat counter, List<String> labels)
+        {
+            super(labels);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(Writer writer, String name)
+                throws IOException
+        {
+            writeSample(writer, name, "", labels, counter.getTotalCount());
+        }
+    }
+
+    private static class TimeStatSource
+            extends SummarySource
+    {
+        private final TimeStat time;
+
+        public TimeStatSource(TimeStat time, List<String> labels)
+        {
+            super(labels);
+            this.time = time;
+        }
+
+        @Override
+        public void write(Writer writer, String name)
+                throws IOException
+        {
+            TimeDistributionSnapshot oneMinute = time.getOneMinute().snapshot();
+            double toSeconds = oneMinute.unit().toNanos(1) / 1.0e9;
+            double[] quantiles = {
+                    oneMinute.getP50() * toSeconds,
+                    oneMinute.getP75() * toSeconds,
+                    oneMinute.getP90() * toSeconds,
+                    oneMinute.getP95() * toSeconds,
+                    oneMinute.getP99() * toSeconds};
+
+            TimeDistribution allTime = time.getAllTime();
+            double count = allTime.getCount();
+            double sum = count == 0 ? 0 : allTime.getAvg() * count * (allTime.getUnit().toNanos(1) / 1.0e9);
+            writeSummary(writer, name, quantiles, sum, count);
+        }
+    }
+
+    private static class DistributionStatSource
+            extends SummarySource
+    {
+        private final DistributionStat distribution;
+
+        public DistributionStatSource(DistributionStat distribution, List<String> labels)
+        {
+            super(labels);
+            this.distribution = distribution;
+        }
+
+        @Override
+        public void write(Writer writer, String name)
+                throws IOException
+        {
+            DistributionSnapshot oneMinute = distribution.getOneMinute().snapshot();
+            double[] quantiles = {
+                    oneMinute.getP50(),
+                    oneMinute.getP75(),
+                    oneMinute.getP90(),
+                    oneMinute.getP95(),
+                    oneMinute.getP99()};
+
+            Distribution allTime = distribution.getAllTime();
+            writeSummary(writer, name, quantiles, allTime.getTotal(), allTime.getCount());
+        }
+    }
+
+    private static class GaugeSource
+            extends Source
+    {
+        private final MethodHandle getter;
+
+        public GaugeSource(MethodHandle getter, List<String> labels)
+        {
+            super(labels);
+            this.getter = getter;
+        }
+
+        @Override
+        public void write(Writer writer, String name)
+                throws IOException
+        {
+            Object value;
+            try {
+                value = getter.invoke();
+            }
+            catch (Error e) {
+                throw e;
+            }
+            catch (Throwable t) {
+                // an attribute that fails is left out, as in the JMX view
+                return;
+            }
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                writeSample(writer, name, "", labels, ((Number) value).longValue());
+            }
+            else if (value instanceof Number) {
+                writeSample(writer, name, "", labels, ((Number) value).doubleValue());
+            }
+            else if (value instanceof Boolean) {
+                writeSample(writer, name, "", labels, ((Boolean) value) ? 1 : 0);
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.airlift.jmx;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.net.MediaType;
 import com.google.inject.Injector;
 import io.airlift.bootstrap.Bootstrap;
@@ -30,6 +31,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static com.google.common.net.MediaType.HTML_UTF_8;
@@ -123,6 +125,68 @@ public class TestMBeanResource
         assertMBeansResponse(jsonpRequest(uriFor("/v1/jmx/mbean")));
     }
 
+    @Test
+    public void testGetMBeansQuery()
+            throws Exception
+    {
+        URI uri = uriBuilderFrom(uriFor("/v1/jmx/mbean"))
+                .addParameter("query", "java.lang:type=Memory")
+                .build();
+        JsonNode mbeans = jsonRequest(uri);
+
+        assertEquals(mbeans.size(), 1);
+        assertEquals(mbeans.get(0).get("objectName").asText(), MEMORY_MXBEAN_NAME);
+    }
+
+    @Test
+    public void testGetMBeansAttributeFilter()
+            throws Exception
+    {
+        URI uri = uriBuilderFrom(uriFor("/v1/jmx/mbean"))
+                .addParameter("query", RUNTIME_MXBEAN_NAME)
+                .addParameter("attribute", "Uptime")
+                .addParameter("attribute", "VmName")
+                .build();
+        JsonNode mbeans = jsonRequest(uri);
+
+        assertEquals(mbeans.size(), 1);
+        assertEquals(getAttributeNames(mbeans.get(0)), ImmutableSet.of("Uptime", "VmName"));
+    }
+
+    @Test
+    public void testGetMBeanAttributeFilter()
+            throws Exception
+    {
+        URI uri = uriBuilderFrom(uriFor("/v1/jmx/mbean"))
+                .appendPath(RUNTIME_MXBEAN_NAME)
+                .addParameter("attribute", "VmName")
+                .build();
+        JsonNode mbean = jsonRequest(uri);
+
+        assertEquals(mbean.get("objectName").asText(), RUNTIME_MXBEAN_NAME);
+        assertEquals(getAttributeNames(mbean), ImmutableSet.of("VmName"));
+    }
+
+    @Test
+    public void testGetMBeansInvalidQuery()
+    {
+        URI uri = uriBuilderFrom(uriFor("/v1/jmx/mbean"))
+                .addParameter("query", "no-domain-separator")
+                .build();
+        StringResponse response = client.execute(prepareGet().setUri(uri).build(), createStringResponseHandler());
+
+        assertEquals(response.getStatusCode(), 400);
+    }
+
+    private static Set<String> getAttributeNames(JsonNode mbean)
+    {
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        for (JsonNode attribute : mbean.get("attributes")) {
+            names.add(attribute.get("name").asText());
+        }
+        return names.build();
+    }
+
     private void assertMBeansResponse(JsonNode mbeans)
     {
         List<String> names = new ArrayList<>();
@@ -0,0 +1,118 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx;
+
+import com.google.common.net.MediaType;
+import com.google.inject.Injector;
+import io.airlift.bootstrap.Bootstrap;
+import io.airlift.bootstrap.LifeCycleManager;
+import io.airlift.http.client.HttpClient;
+import io.airlift.http.client.jetty.JettyHttpClient;
+import io.airlift.http.server.testing.TestingHttpServer;
+import io.airlift.http.server.testing.TestingHttpServerModule;
+import io.airlift.jaxrs.JaxrsModule;
+import io.airlift.json.JsonModule;
+import io.airlift.node.testing.TestingNodeModule;
+import io.airlift.stats.CounterStat;
+import io.airlift.testing.Closeables;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+import org.weakref.jmx.guice.MBeanModule;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static io.airlift.http.client.Request.Builder.prepareGet;
+import static io.airlift.http.client.StringResponseHandler.StringResponse;
+import static io.airlift.http.client.StringResponseHandler.createStringResponseHandler;
+import static io.airlift.testing.Assertions.assertContains;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestMetricsResource
+{
+    private LifeCycleManager lifeCycleManager;
+    private TestingHttpServer server;
+    private HttpClient client;
+
+    @BeforeClass
+    public void setup()
+    {
+        Bootstrap app = new Bootstrap(
+                new TestingNodeModule(),
+                new TestingHttpServerModule(),
+                new JsonModule(),
+                new JaxrsModule(),
+                new JmxHttpMetricsModule(),
+                new MBeanModule(),
+                binder -> binder.bind(MBeanServer.class).toInstance(MBeanServerFactory.newMBeanServer()));
+
+        Injector injector = app
+                .quiet()
+                .strictConfig()
+                .initialize();
+
+        lifeCycleManager = injector.getInstance(LifeCycleManager.class);
+        server = injector.getInstance(TestingHttpServer.class);
+        client = new JettyHttpClient();
+
+        TestingStats stats = new TestingStats();
+        stats.getRequests().update(1);
+        injector.getInstance(MBeanExporter.class).export("io.airlift.test:name=TestingStats", stats);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardown()
+    {
+        try {
+            if (lifeCycleManager != null) {
+                lifeCycleManager.stop();
+            }
+        }
+        finally {
+            Closeables.closeQuietly(client);
+        }
+    }
+
+    @Test
+    public void testGetMetrics()
+    {
+        StringResponse response = client.execute(
+                prepareGet().setUri(server.getBaseUrl().resolve("/v1/metrics")).build(),
+                createStringResponseHandler());
+
+        assertEquals(response.getStatusCode(), 200);
+        String contentType = response.getHeader(CONTENT_TYPE);
+        assertTrue(MediaType.parse(contentType).is(MediaType.PLAIN_TEXT_UTF_8.withoutParameters()), contentType);
+        assertContains(contentType, "version=0.0.4");
+        assertContains(response.getBody(), "io_airlift_test_TestingStats_Requests_total 1\n");
+    }
+
+    public static class TestingStats
+    {
+        private final CounterStat requests = new CounterStat();
+
+        @Managed
+        @Nested
+        public CounterStat getRequests()
+        {
+            return requests;
+        }
+    }
+}
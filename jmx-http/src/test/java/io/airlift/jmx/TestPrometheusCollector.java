@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.jmx;
+
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.DistributionStat;
+import io.airlift.stats.TimeStat;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.management.MBeanServerFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static io.airlift.testing.Assertions.assertContains;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class TestPrometheusCollector
+{
+    private MBeanExporter exporter;
+    private PrometheusCollector collector;
+
+    @BeforeMethod
+    public void setup()
+    {
+        exporter = new MBeanExporter(MBeanServerFactory.newMBeanServer());
+        collector = new PrometheusCollector(exporter);
+    }
+
+    @Test
+    public void testStats()
+            throws Exception
+    {
+        TestingStats stats = new TestingStats();
+        stats.requests.update(3);
+        stats.time.add(250, MILLISECONDS);
+        stats.time.add(250, MILLISECONDS);
+        stats.sizes.add(10);
+        stats.sizes.add(30);
+        exporter.export("io.airlift.test:name=TestingStats", stats);
+
+        String output = scrape();
+        assertContains(output, "# TYPE io_airlift_test_TestingStats_Requests_total counter\n" +
+                "io_airlift_test_TestingStats_Requests_total 3\n");
+        assertContains(output, "# TYPE io_airlift_test_TestingStats_Time_seconds summary\n" +
+                "io_airlift_test_TestingStats_Time_seconds{quantile=\"0.5\"} 0.25\n");
+        assertContains(output, "io_airlift_test_TestingStats_Time_seconds_sum 0.5\n" +
+                "io_airlift_test_TestingStats_Time_seconds_count 2\n");
+        assertContains(output, "# TYPE io_airlift_test_TestingStats_Sizes summary\n");
+        assertContains(output, "io_airlift_test_TestingStats_Sizes_sum 40\n" +
+                "io_airlift_test_TestingStats_Sizes_count 2\n");
+        assertContains(output, "# TYPE io_airlift_test_TestingStats_QueueSize gauge\n" +
+                "io_airlift_test_TestingStats_QueueSize 42\n");
+        assertContains(output, "io_airlift_test_TestingStats_Ratio 0.125\n");
+        assertContains(output, "io_airlift_test_TestingStats_Enabled 1\n");
+        assertContains(output, "io_airlift_test_TestingStats_Inner_Count 7\n");
+        assertFalse(output.contains("TestingStats_Name"), output);
+        assertFalse(output.contains("\nio_airlift_test_TestingStats_Failing "), output);
+
+        // values are read on every scrape
+        stats.requests.update(1);
+        stats.queueSize = 43;
+        output = scrape();
+        assertContains(output, "io_airlift_test_TestingStats_Requests_total 4\n");
+        assertContains(output, "io_airlift_test_TestingStats_QueueSize 43\n");
+    }
+
+    @Test
+    public void testLabels()
+            throws Exception
+    {
+        TestingStats first = new TestingStats();
+        first.queueSize = 1;
+        TestingStats second = new TestingStats();
+        second.queueSize = 2;
+        exporter.export("io.airlift.test:name=TestingStats,scope=\"a \\\"b\\\"\"", first);
+        exporter.export("io.airlift.test:name=TestingStats,scope=second", second);
+
+        String output = scrape();
+        // both objects are in one family, under a single TYPE line
+        assertContains(output, "# TYPE io_airlift_test_TestingStats_QueueSize gauge\n" +
+                "io_airlift_test_TestingStats_QueueSize{scope=\"a \\\"b\\\"\"} 1\n" +
+                "io_airlift_test_TestingStats_QueueSize{scope=\"second\"} 2\n");
+
+        exporter.export("io.airlift.test:type=Other,scope=x-y", new TestingStats());
+        output = scrape();
+        assertContains(output, "io_airlift_test_Other_QueueSize{scope=\"x-y\"} 42\n");
+    }
+
+    @Test
+    public void testExportChanges()
+            throws Exception
+    {
+        exporter.export("io.airlift.test:name=First", new TestingStats());
+        assertContains(scrape(), "io_airlift_test_First_QueueSize");
+
+        exporter.export("io.airlift.test:name=Second", new TestingStats());
+        assertContains(scrape(), "io_airlift_test_Second_QueueSize");
+
+        exporter.unexport("io.airlift.test:name=First");
+        String output = scrape();
+        assertFalse(output.contains("io_airlift_test_First_QueueSize"), output);
+        assertContains(output, "io_airlift_test_Second_QueueSize");
+    }
+
+    @Test
+    public void testNames()
+    {
+        assertEquals(PrometheusCollector.sanitizeMetricName("io.airlift:a-b_c"), "io_airlift:a_b_c");
+        assertEquals(PrometheusCollector.sanitizeMetricName("1abc"), "_1abc");
+        assertEquals(PrometheusCollector.escapeLabelValue("a\\b\"c\nd"), "a\\\\b\\\"c\\nd");
+    }
+
+    private String scrape()
+            throws IOException
+    {
+        StringWriter writer = new StringWriter();
+        collector.write(writer);
+        return writer.toString();
+    }
+
+    public static class TestingStats
+    {
+        private final CounterStat requests = new CounterStat();
+        private final TimeStat time = new TimeStat(MILLISECONDS);
+        private final DistributionStat sizes = new DistributionStat();
+        private final Inner inner = new Inner();
+        private volatile long queueSize = 42;
+
+        @Managed
+        @Nested
+        public CounterStat getRequests()
+        {
+            return requests;
+        }
+
+        @Managed
+        @Nested
+        public TimeStat getTime()
+        {
+            return time;
+        }
+
+        @Managed
+        @Nested
+        public DistributionStat getSizes()
+        {
+            return sizes;
+        }
+
+        @Managed
+        @Nested
+        public Inner getInner()
+        {
+            return inner;
+        }
+
+        @Managed
+        public long getQueueSize()
+        {
+            return queueSize;
+        }
+
+        @Managed
+        public double getRatio()
+        {
+            return 0.125;
+        }
+
+        @Managed
+        public boolean isEnabled()
+        {
+            return true;
+        }
+
+        @Managed
+        public String getName()
+        {
+            return "name";
+        }
+
+        @Managed
+        public int getFailing()
+        {
+            throw new IllegalStateException("failing");
+        }
+    }
+
+    public static class Inner
+    {
+        @Managed
+        public int getCount()
+        {
+            return 7;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+
+/**
+ * Decodes a JSON document (UTF-8) that arrives in chunks. Each chunk is tokenized
+ * by a non-blocking parser as soon as it is fed, so the raw bytes never need to be
+ * gathered into a single array. Instances are not thread safe.
+ */
+public class IncrementalJsonDecoder<T>
+{
+    private final ObjectMapper mapper;
+    private final JavaType javaType;
+    private final JsonParser parser;
+    private final TokenBuffer tokens;
+    private boolean finished;
+
+    IncrementalJsonDecoder(ObjectMapper mapper, JavaType javaType)
+    {
+        this.mapper = mapper;
+        this.javaType = javaType;
+        try {
+            this.parser = mapper.getFactory().createNonBlockingByteArrayParser();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.tokens = new TokenBuffer(parser);
+    }
+
+    /**
+     * Parses the next chunk of the document. The chunk is not retained once this method returns.
+     *
+     * @throws IllegalArgumentException if the chunk is not valid JSON
+     */
+    public void feed(byte[] bytes, int offset, int length)
+            throws IllegalArgumentException
+    {
+        checkPositionIndexes(offset, offset + length, bytes.length);
+        checkState(!finished, "decoder is finished");
+        if (length == 0) {
+            return;
+        }
+
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, offset, offset + length);
+            copyAvailableTokens();
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(format("Invalid JSON bytes for %s", javaType), e);
+        }
+    }
+
+    /**
+     * Signals the end of the document and converts it into an instance of type T.
+     *
+     * @return parsed document; never null
+     * @throws IllegalArgumentException if the document can not be converted to the type T
+     */
+    public T finish()
+            throws IllegalArgumentException
+    {
+        checkState(!finished, "decoder is finished");
+        finished = true;
+
+        try {
+            parser.getNonBlockingInputFeeder().endOfInput();
+            copyAvailableTokens();
+            parser.close();
+            return mapper.readerFor(javaType).readValue(tokens.asParser());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException(format("Invalid JSON bytes for %s", javaType), e);
+        }
+    }
+
+    private void copyAvailableTokens()
+            throws IOException
+    {
+        JsonToken token = parser.nextToken();
+        while (token != null && token != JsonToken.NOT_AVAILABLE) {
+            tokens.copyCurrentEvent(parser);
+            token = parser.nextToken();
+        }
+    }
+}
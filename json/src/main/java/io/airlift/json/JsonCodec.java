@@ -215,6 +215,14 @@ public class JsonCodec<T>
         }
     }
 
+    /**
+     * Creates a decoder for a single json document (UTF-8) that is supplied in chunks.
+     */
+    public IncrementalJsonDecoder<T> createIncrementalDecoder()
+    {
+        return new IncrementalJsonDecoder<>(mapper, javaType);
+    }
+
     @SuppressWarnings("unchecked")
     TypeToken<T> getTypeToken()
     {
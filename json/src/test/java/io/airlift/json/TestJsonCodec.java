@@ -28,6 +28,7 @@ import java.util.Map;
 import static io.airlift.json.JsonCodec.jsonCodec;
 import static io.airlift.json.JsonCodec.listJsonCodec;
 import static io.airlift.json.JsonCodec.mapJsonCodec;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
@@ -258,4 +259,40 @@ public class TestJsonCodec
         assertFalse(jsonCodec.toJsonWithLengthLimit(people, 10381).isPresent());
         assertTrue(jsonCodec.toJsonWithLengthLimit(people, 10382).isPresent());
     }
+
+    @Test
+    public void testIncrementalDecoder()
+    {
+        JsonCodec<List<Vehicle>> jsonCodec = listJsonCodec(Vehicle.class);
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            vehicles.add(i % 2 == 0 ? new Car("bmw \u0158" + i) : new Truck("volvo " + i));
+        }
+        byte[] json = jsonCodec.toJsonBytes(vehicles);
+
+        // chunk boundaries fall inside tokens and multi-byte characters
+        for (int chunkSize : new int[] {1, 7, json.length}) {
+            IncrementalJsonDecoder<List<Vehicle>> decoder = jsonCodec.createIncrementalDecoder();
+            for (int offset = 0; offset < json.length; offset += chunkSize) {
+                decoder.feed(json, offset, Math.min(chunkSize, json.length - offset));
+            }
+            assertEquals(decoder.finish(), vehicles);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testIncrementalDecoderInvalidJson()
+    {
+        byte[] json = "{\"name\": ]".getBytes(UTF_8);
+        jsonCodec(Person.class).createIncrementalDecoder().feed(json, 0, json.length);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testIncrementalDecoderTruncatedJson()
+    {
+        byte[] json = "{\"name\": \"dain\"".getBytes(UTF_8);
+        IncrementalJsonDecoder<Person> decoder = jsonCodec(Person.class).createIncrementalDecoder();
+        decoder.feed(json, 0, json.length);
+        decoder.finish();
+    }
 }
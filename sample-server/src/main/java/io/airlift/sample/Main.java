@@ -22,6 +22,7 @@ import io.airlift.discovery.client.DiscoveryModule;
 import io.airlift.event.client.http.HttpEventModule;
 import io.airlift.http.server.HttpServerModule;
 import io.airlift.jaxrs.JaxrsModule;
+import io.airlift.jmx.JmxHttpMetricsModule;
 import io.airlift.jmx.JmxHttpModule;
 import io.airlift.jmx.JmxModule;
 import io.airlift.jmx.http.rpc.JmxHttpRpcModule;
@@ -49,6 +50,7 @@ public final class Main
                 new MBeanModule(),
                 new JmxModule(),
                 new JmxHttpModule(),
+                new JmxHttpMetricsModule(),
                 new JmxHttpRpcModule(),
                 new LogJmxModule(),
                 new HttpEventModule(),
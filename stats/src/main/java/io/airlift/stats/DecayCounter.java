@@ -5,9 +5,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Ticker;
 import org.weakref.jmx.Managed;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -21,6 +23,10 @@ import static java.util.Objects.requireNonNull;
  * The implementation is based on the ideas from
  * http://dimacs.rutgers.edu/~graham/pubs/papers/fwddecay.pdf
  * to not have to rely on a timer that decays the value periodically
+ *
+ * Values are accumulated without locking into a striped adder for the current landmark,
+ * and the forward-decay weight is computed at most once per second. The lock is only
+ * taken when the landmark moves, and when the counter is read.
  */
 @ThreadSafe
 public final class DecayCounter
@@ -31,8 +37,19 @@ public final class DecayCounter
     private final double alpha;
     private final Ticker ticker;
 
-    private long landmarkInSeconds;
-    private double count;
+    // receives all new values, replaced when the landmark moves
+    private volatile Landmark current;
+
+    // the landmark replaced by current, kept until the next rescale because
+    // writers that raced with the rescale may still be adding to it
+    @GuardedBy("this")
+    private Landmark previous;
+
+    // the count of all landmarks before previous, relative to retiredLandmarkInSeconds
+    @GuardedBy("this")
+    private double retiredCount;
+    @GuardedBy("this")
+    private long retiredLandmarkInSeconds;
 
     public DecayCounter(double alpha)
     {
@@ -46,59 +63,77 @@ public final class DecayCounter
 
     private DecayCounter(double count, double alpha, Ticker ticker, long landmarkInSeconds)
     {
-        this.count = count;
         this.alpha = alpha;
         this.ticker = ticker;
-        this.landmarkInSeconds = landmarkInSeconds;
+        this.retiredCount = count;
+        this.retiredLandmarkInSeconds = landmarkInSeconds;
+        this.current = new Landmark(landmarkInSeconds);
     }
 
-    public DecayCounter duplicate()
+    public synchronized DecayCounter duplicate()
     {
-        return new DecayCounter(count, alpha, ticker, landmarkInSeconds);
+        long nowInSeconds = getTickInSeconds();
+        return new DecayCounter(getCount(nowInSeconds), alpha, ticker, nowInSeconds);
     }
 
-    public synchronized void add(long value)
+    public void add(long value)
     {
-        long nowInSeconds = getTickInSeconds();
+        add(value, getTickInSeconds());
+    }
 
-        if (nowInSeconds - landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
-            rescaleToNewLandmark(nowInSeconds);
-        }
-        count += value * weight(alpha, nowInSeconds, landmarkInSeconds);
+    /**
+     * Adds a value that was observed at the given time, which must not be in the future.
+     */
+    void add(long value, long timestampInSeconds)
+    {
+        currentLandmark(timestampInSeconds).add(value, timestampInSeconds);
     }
 
-    public synchronized void merge(DecayCounter decayCounter)
+    public void merge(DecayCounter decayCounter)
     {
         requireNonNull(decayCounter, "decayCounter is null");
         checkArgument(decayCounter.alpha == alpha, "Expected decayCounter to have alpha %s, but was %s", alpha, decayCounter.alpha);
 
+        long nowInSeconds = getTickInSeconds();
+        double otherCount;
         synchronized (decayCounter) {
-            // if the landmark this counter is behind the other counter
-            if (landmarkInSeconds < decayCounter.landmarkInSeconds) {
-                // rescale this counter to the other counter, and add
-                rescaleToNewLandmark(decayCounter.landmarkInSeconds);
-                count += decayCounter.count;
-            }
-            else {
-                // rescale the other counter and add
-                double otherRescaledCount = decayCounter.count / weight(alpha, landmarkInSeconds, decayCounter.landmarkInSeconds);
-                count += otherRescaledCount;
-            }
+            otherCount = decayCounter.getCount(nowInSeconds);
         }
+
+        Landmark landmark = currentLandmark(nowInSeconds);
+        landmark.count.add(otherCount * weight(alpha, nowInSeconds, landmark.landmarkInSeconds));
+    }
+
+    private Landmark currentLandmark(long nowInSeconds)
+    {
+        Landmark landmark = current;
+        if (nowInSeconds - landmark.landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
+            landmark = rescaleToNewLandmark(nowInSeconds);
+        }
+        return landmark;
     }
 
-    private void rescaleToNewLandmark(long newLandMarkInSeconds)
+    private synchronized Landmark rescaleToNewLandmark(long newLandMarkInSeconds)
     {
+        // another writer may have already moved the landmark
+        if (newLandMarkInSeconds - current.landmarkInSeconds < RESCALE_THRESHOLD_SECONDS) {
+            return current;
+        }
+
         // rescale the count based on a new landmark to avoid numerical overflow issues
-        count = count / weight(alpha, newLandMarkInSeconds, landmarkInSeconds);
-        landmarkInSeconds = newLandMarkInSeconds;
+        if (previous != null) {
+            retiredCount = retiredCount / weight(alpha, previous.landmarkInSeconds, retiredLandmarkInSeconds) + previous.count.sum();
+            retiredLandmarkInSeconds = previous.landmarkInSeconds;
+        }
+        previous = current;
+        current = new Landmark(newLandMarkInSeconds);
+        return current;
     }
 
     @Managed
     public synchronized void reset()
     {
-        landmarkInSeconds = getTickInSeconds();
-        count = 0;
+        resetTo(0, getTickInSeconds());
     }
 
     /**
@@ -107,17 +142,35 @@ public final class DecayCounter
     @Deprecated
     public synchronized void resetTo(DecayCounter counter)
     {
+        long nowInSeconds = getTickInSeconds();
         synchronized (counter) {
-            landmarkInSeconds = counter.landmarkInSeconds;
-            count = counter.count;
+            resetTo(counter.getCount(nowInSeconds), nowInSeconds);
         }
     }
 
+    @GuardedBy("this")
+    private void resetTo(double count, long landmarkInSeconds)
+    {
+        retiredCount = count;
+        retiredLandmarkInSeconds = landmarkInSeconds;
+        previous = null;
+        current = new Landmark(landmarkInSeconds);
+    }
+
     @Managed
     public synchronized double getCount()
     {
-        long nowInSeconds = getTickInSeconds();
-        return count / weight(alpha, nowInSeconds, landmarkInSeconds);
+        return getCount(getTickInSeconds());
+    }
+
+    @GuardedBy("this")
+    private double getCount(long nowInSeconds)
+    {
+        double count = retiredCount / weight(alpha, nowInSeconds, retiredLandmarkInSeconds);
+        if (previous != null) {
+            count += previous.getCount(nowInSeconds);
+        }
+        return count + current.getCount(nowInSeconds);
     }
 
     @Managed
@@ -152,6 +205,47 @@ public final class DecayCounter
         return alpha;
     }
 
+    private final class Landmark
+    {
+        private final long landmarkInSeconds;
+        private final DoubleAdder count = new DoubleAdder();
+
+        // the weight for the most recent second, so Math.exp is not computed on every add
+        private volatile Weight lastWeight;
+
+        public Landmark(long landmarkInSeconds)
+        {
+            this.landmarkInSeconds = landmarkInSeconds;
+        }
+
+        public void add(long value, long timestampInSeconds)
+        {
+            Weight weight = lastWeight;
+            if (weight == null || weight.timestampInSeconds != timestampInSeconds) {
+                weight = new Weight(timestampInSeconds, weight(alpha, timestampInSeconds, landmarkInSeconds));
+                lastWeight = weight;
+            }
+            count.add(value * weight.value);
+        }
+
+        public double getCount(long nowInSeconds)
+        {
+            return count.sum() / weight(alpha, nowInSeconds, landmarkInSeconds);
+        }
+    }
+
+    private static final class Weight
+    {
+        private final long timestampInSeconds;
+        private final double value;
+
+        public Weight(long timestampInSeconds, double value)
+        {
+            this.timestampInSeconds = timestampInSeconds;
+            this.value = value;
+        }
+    }
+
     public static class DecayCounterSnapshot
     {
         private final double count;
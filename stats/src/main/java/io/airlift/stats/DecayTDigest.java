@@ -103,10 +103,18 @@ public class DecayTDigest
 
     public void add(double value, double weight)
     {
-        rescaleIfNeeded();
+        add(value, weight, nowInSeconds());
+    }
+
+    /**
+     * Adds a value that was observed at the given time, which must not be in the future.
+     */
+    void add(double value, double weight, long timestampInSeconds)
+    {
+        rescaleIfNeeded(timestampInSeconds);
 
         if (alpha > 0.0) {
-            weight *= weight(alpha, nowInSeconds(), landmarkInSeconds) * SCALE_FACTOR;
+            weight *= weight(alpha, timestampInSeconds, landmarkInSeconds) * SCALE_FACTOR;
         }
 
         digest.add(value, weight);
@@ -114,11 +122,13 @@ public class DecayTDigest
 
     private void rescaleIfNeeded()
     {
-        if (alpha > 0.0) {
-            long nowInSeconds = nowInSeconds();
-            if (nowInSeconds - landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
-                rescale(nowInSeconds);
-            }
+        rescaleIfNeeded(nowInSeconds());
+    }
+
+    private void rescaleIfNeeded(long nowInSeconds)
+    {
+        if (alpha > 0.0 && nowInSeconds - landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
+            rescale(nowInSeconds);
         }
     }
 
@@ -165,7 +175,7 @@ public class DecayTDigest
         landmarkInSeconds = newLandmarkInSeconds;
     }
 
-    private long nowInSeconds()
+    long nowInSeconds()
     {
         return TimeUnit.NANOSECONDS.toSeconds(ticker.read());
     }
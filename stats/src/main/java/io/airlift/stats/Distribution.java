@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 import org.weakref.jmx.Managed;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -24,6 +25,9 @@ public class Distribution
 
     private final DecayCounter total;
 
+    @Nullable
+    private final StripedSampleBuffer buffer;
+
     public Distribution()
     {
         this(0);
@@ -31,113 +35,166 @@ public class Distribution
 
     public Distribution(double alpha)
     {
-        this(new DecayTDigest(TDigest.DEFAULT_COMPRESSION, alpha), new DecayCounter(alpha));
+        this(alpha, false);
+    }
+
+    /**
+     * @param striped if true, samples are recorded into per-thread buffers which are merged
+     * into the digest in batches and whenever the distribution is read. This avoids contention
+     * between concurrent writers at the cost of some memory per distribution.
+     */
+    public Distribution(double alpha, boolean striped)
+    {
+        this(new DecayTDigest(TDigest.DEFAULT_COMPRESSION, alpha), new DecayCounter(alpha), striped ? new StripedSampleBuffer() : null);
     }
 
-    private Distribution(DecayTDigest digest, DecayCounter total)
+    private Distribution(DecayTDigest digest, DecayCounter total, @Nullable StripedSampleBuffer buffer)
     {
         this.digest = requireNonNull(digest, "digest is null");
         this.total = requireNonNull(total, "total is null");
+        this.buffer = buffer;
+    }
+
+    public void add(long value)
+    {
+        add(value, 1);
+    }
+
+    public void add(long value, long count)
+    {
+        if (buffer == null) {
+            synchronized (this) {
+                digest.add(value, count);
+                total.add(value * count);
+            }
+            return;
+        }
+
+        // reading the time does not require the lock
+        long nowInSeconds = digest.nowInSeconds();
+        while (!buffer.tryAdd(value, count, nowInSeconds)) {
+            synchronized (this) {
+                buffer.drainCurrentStripe(this::record);
+            }
+        }
     }
 
-    public synchronized void add(long value)
+    @GuardedBy("this")
+    private void record(double value, double count, long timestampInSeconds)
     {
-        digest.add(value);
-        total.add(value);
+        digest.add(value, count, timestampInSeconds);
+        total.add((long) (value * count), timestampInSeconds);
     }
 
-    public synchronized void add(long value, long count)
+    @GuardedBy("this")
+    private void drainBuffer()
     {
-        digest.add(value, count);
-        total.add(value * count);
+        if (buffer != null) {
+            buffer.drain(this::record);
+        }
     }
 
     public synchronized Distribution duplicate()
     {
-        return new Distribution(digest.duplicate(), total.duplicate());
+        drainBuffer();
+        return new Distribution(digest.duplicate(), total.duplicate(), buffer == null ? null : new StripedSampleBuffer());
     }
 
     @Managed
     public synchronized double getCount()
     {
+        drainBuffer();
         return digest.getCount();
     }
 
     @Managed
     public synchronized double getTotal()
     {
+        drainBuffer();
         return total.getCount();
     }
 
     @Managed
     public synchronized double getP01()
     {
+        drainBuffer();
         return digest.valueAt(0.01);
     }
 
     @Managed
     public synchronized double getP05()
     {
+        drainBuffer();
         return digest.valueAt(0.05);
     }
 
     @Managed
     public synchronized double getP10()
     {
+        drainBuffer();
         return digest.valueAt(0.10);
     }
 
     @Managed
     public synchronized double getP25()
     {
+        drainBuffer();
         return digest.valueAt(0.25);
     }
 
     @Managed
     public synchronized double getP50()
     {
+        drainBuffer();
         return digest.valueAt(0.5);
     }
 
     @Managed
     public synchronized double getP75()
     {
+        drainBuffer();
         return digest.valueAt(0.75);
     }
 
     @Managed
     public synchronized double getP90()
     {
+        drainBuffer();
         return digest.valueAt(0.90);
     }
 
     @Managed
     public synchronized double getP95()
     {
+        drainBuffer();
         return digest.valueAt(0.95);
     }
 
     @Managed
     public synchronized double getP99()
     {
+        drainBuffer();
         return digest.valueAt(0.99);
     }
 
     @Managed
     public synchronized double getMin()
     {
+        drainBuffer();
         return digest.getMin();
     }
 
     @Managed
     public synchronized double getMax()
     {
+        drainBuffer();
         return digest.getMax();
     }
 
     @Managed
     public synchronized double getAvg()
     {
+        drainBuffer();
         return getTotal() / getCount();
     }
 
@@ -151,6 +208,7 @@ public class Distribution
 
         List<Double> values;
         synchronized (this) {
+            drainBuffer();
             values = digest.valuesAt(percentiles);
         }
 
@@ -164,11 +222,13 @@ public class Distribution
 
     public synchronized List<Double> getPercentiles(List<Double> percentiles)
     {
+        drainBuffer();
         return digest.valuesAt(percentiles);
     }
 
     public synchronized DistributionSnapshot snapshot()
     {
+        drainBuffer();
         List<Double> quantiles = digest.valuesAt(ImmutableList.of(0.01, 0.05, 0.10, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99));
         return new DistributionSnapshot(
                 getCount(),
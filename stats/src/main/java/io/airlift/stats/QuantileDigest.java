@@ -1216,7 +1216,7 @@ public class QuantileDigest
         return lower + (upper - lower) / 2;
     }
 
-    private static Ticker noOpTicker()
+    static Ticker noOpTicker()
     {
         return new Ticker()
         {
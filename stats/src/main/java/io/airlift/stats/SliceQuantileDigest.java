@@ -0,0 +1,553 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.stats;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import io.airlift.slice.SizeOf;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.stats.ExponentialDecay.weight;
+import static io.airlift.stats.QuantileDigest.RESCALE_THRESHOLD_SECONDS;
+import static io.airlift.stats.QuantileDigest.ZERO_WEIGHT_THRESHOLD;
+import static io.airlift.stats.QuantileDigest.noOpTicker;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A read-only {@link QuantileDigest} that operates directly on its serialized form, which
+ * may live off-heap or in a memory-mapped file. Queries and merges walk the nodes in place,
+ * so no tree needs to be materialized on the heap.
+ * <p>
+ * The serialized nodes are in post-order, which is the same as ordering them by the upper
+ * bound of the range they cover and then by level. That allows two digests to be merged
+ * in a single pass over both, producing the same tree as {@link QuantileDigest#merge} does for
+ * the deserialized digests.
+ */
+@ThreadSafe
+public final class SliceQuantileDigest
+{
+    private static final int MAX_BITS = 64;
+
+    private static final int HAS_LEFT = 1 << 0;
+    private static final int HAS_RIGHT = 1 << 1;
+    private static final byte FORMAT = 0;
+
+    private static final int FORMAT_OFFSET = 0;
+    private static final int MAX_ERROR_OFFSET = FORMAT_OFFSET + SizeOf.SIZE_OF_BYTE;
+    private static final int ALPHA_OFFSET = MAX_ERROR_OFFSET + SizeOf.SIZE_OF_DOUBLE;
+    private static final int LANDMARK_OFFSET = ALPHA_OFFSET + SizeOf.SIZE_OF_DOUBLE;
+    private static final int MIN_OFFSET = LANDMARK_OFFSET + SizeOf.SIZE_OF_LONG;
+    private static final int MAX_OFFSET = MIN_OFFSET + SizeOf.SIZE_OF_LONG;
+    private static final int NODE_COUNT_OFFSET = MAX_OFFSET + SizeOf.SIZE_OF_LONG;
+    private static final int HEADER_SIZE = NODE_COUNT_OFFSET + SizeOf.SIZE_OF_INT;
+
+    private static final int NODE_STRUCTURE_OFFSET = 0;
+    private static final int NODE_COUNT_VALUE_OFFSET = NODE_STRUCTURE_OFFSET + SizeOf.SIZE_OF_BYTE;
+    private static final int NODE_VALUE_OFFSET = NODE_COUNT_VALUE_OFFSET + SizeOf.SIZE_OF_DOUBLE;
+    private static final int NODE_SIZE = NODE_VALUE_OFFSET + SizeOf.SIZE_OF_LONG;
+
+    private final Slice slice;
+    private final Ticker ticker;
+    private final int nodeCount;
+
+    public SliceQuantileDigest(Slice serialized)
+    {
+        this(serialized, readAlpha(serialized) == 0.0 ? noOpTicker() : Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    SliceQuantileDigest(Slice serialized, Ticker ticker)
+    {
+        this.slice = requireNonNull(serialized, "serialized is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+
+        checkArgument(slice.length() >= HEADER_SIZE, "Serialized digest is too short");
+        checkArgument(slice.getByte(FORMAT_OFFSET) == FORMAT, "Invalid format");
+
+        nodeCount = slice.getInt(NODE_COUNT_OFFSET);
+        checkArgument(nodeCount >= 0 && slice.length() == HEADER_SIZE + (long) nodeCount * NODE_SIZE, "Serialized digest size does not match node count");
+    }
+
+    public static SliceQuantileDigest copyOf(QuantileDigest digest)
+    {
+        return new SliceQuantileDigest(digest.serialize());
+    }
+
+    public QuantileDigest toQuantileDigest()
+    {
+        return new QuantileDigest(slice);
+    }
+
+    /**
+     * Returns the serialized digest, which is compatible with {@link QuantileDigest#QuantileDigest(Slice)}.
+     */
+    public Slice serialize()
+    {
+        return slice;
+    }
+
+    public double getMaxError()
+    {
+        return slice.getDouble(MAX_ERROR_OFFSET);
+    }
+
+    public double getAlpha()
+    {
+        return slice.getDouble(ALPHA_OFFSET);
+    }
+
+    /**
+     * Number (decayed) of elements added to this quantile digest
+     */
+    public double getCount()
+    {
+        return getWeightedCount() / weight(getAlpha(), TimeUnit.NANOSECONDS.toSeconds(ticker.read()), getLandmarkInSeconds());
+    }
+
+    public long getMin()
+    {
+        long min = slice.getLong(MIN_OFFSET);
+        // the first node in post-order with a non-zero count covers the smallest value
+        for (int node = 0; node < nodeCount; node++) {
+            if (count(node) >= ZERO_WEIGHT_THRESHOLD) {
+                return Math.max(min, bitsToLong(lowerBoundBits(value(node), level(node))));
+            }
+        }
+        return min;
+    }
+
+    public long getMax()
+    {
+        long max = slice.getLong(MAX_OFFSET);
+        // find the first node in reverse post-order (greatest lower bound, then lowest level) with a non-zero count
+        int chosen = -1;
+        for (int node = 0; node < nodeCount; node++) {
+            if (count(node) >= ZERO_WEIGHT_THRESHOLD) {
+                if (chosen == -1) {
+                    chosen = node;
+                    continue;
+                }
+                int comparison = Long.compareUnsigned(lowerBoundBits(value(node), level(node)), lowerBoundBits(value(chosen), level(chosen)));
+                if (comparison > 0 || (comparison == 0 && level(node) < level(chosen))) {
+                    chosen = node;
+                }
+            }
+        }
+
+        if (chosen == -1) {
+            return max;
+        }
+        return Math.min(max, bitsToLong(upperBoundBits(value(chosen), level(chosen))));
+    }
+
+    /**
+     * Gets the value at the specified quantile +/- maxError. The quantile must be in the range [0, 1]
+     */
+    public long getQuantile(double quantile)
+    {
+        return getQuantiles(ImmutableList.of(quantile)).get(0);
+    }
+
+    /**
+     * Equivalent to {@link QuantileDigest#getQuantilesUpperBound}.
+     */
+    public List<Long> getQuantiles(List<Double> quantiles)
+    {
+        checkArgument(Ordering.natural().isOrdered(quantiles), "quantiles must be sorted in increasing order");
+        for (double quantile : quantiles) {
+            checkArgument(quantile >= 0 && quantile <= 1, "quantile must be between [0,1]");
+        }
+
+        long max = slice.getLong(MAX_OFFSET);
+        double weightedCount = getWeightedCount();
+
+        ImmutableList.Builder<Long> builder = ImmutableList.builder();
+        int index = 0;
+        double sum = 0;
+        for (int node = 0; node < nodeCount && index < quantiles.size(); node++) {
+            sum += count(node);
+
+            while (index < quantiles.size() && sum > quantiles.get(index) * weightedCount) {
+                // we know the max value ever seen, so cap the percentile to provide better error
+                // bounds in this case
+                builder.add(Math.min(bitsToLong(upperBoundBits(value(node), level(node))), max));
+                index++;
+            }
+        }
+
+        // the remaining quantiles correspond to the max known value
+        for (; index < quantiles.size(); index++) {
+            builder.add(max);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Merges this digest with another in a single pass, without materializing either tree.
+     * The result is equivalent to {@link QuantileDigest#merge}, and uses the max error of this digest.
+     */
+    public SliceQuantileDigest merge(SliceQuantileDigest other)
+    {
+        requireNonNull(other, "other is null");
+        checkArgument(getAlpha() == other.getAlpha(), "Expected digest to have alpha %s, but was %s", getAlpha(), other.getAlpha());
+
+        double alpha = getAlpha();
+        double maxError = getMaxError();
+
+        // rescale both digests to a common landmark
+        long nowInSeconds = TimeUnit.NANOSECONDS.toSeconds(ticker.read());
+        long landmarkInSeconds = Math.max(getLandmarkInSeconds(), other.getLandmarkInSeconds());
+        if (nowInSeconds - landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
+            landmarkInSeconds = nowInSeconds;
+        }
+        double scale = 1 / weight(alpha, landmarkInSeconds, getLandmarkInSeconds());
+        double otherScale = 1 / weight(alpha, landmarkInSeconds, other.getLandmarkInSeconds());
+
+        // the compression bound depends on the total count and the height of the merged tree
+        double weightedCount = getWeightedCount() * scale + other.getWeightedCount() * otherScale;
+        int compressionFactor = 1;
+        if (nodeCount > 0 || other.nodeCount > 0) {
+            int rootLevel;
+            if (nodeCount == 0) {
+                rootLevel = other.level(other.nodeCount - 1);
+            }
+            else if (other.nodeCount == 0) {
+                rootLevel = level(nodeCount - 1);
+            }
+            else {
+                long rootValue = value(nodeCount - 1);
+                long otherRootValue = other.value(other.nodeCount - 1);
+                rootLevel = Math.max(level(nodeCount - 1), other.level(other.nodeCount - 1));
+                if (!inSameSubtree(rootValue, otherRootValue, rootLevel)) {
+                    rootLevel = commonAncestorLevel(rootValue, otherRootValue);
+                }
+            }
+            compressionFactor = Math.max((int) ((rootLevel + 1) / maxError), 1);
+        }
+
+        TreeBuilder builder = new TreeBuilder(nodeCount + other.nodeCount, Math.floor(weightedCount / compressionFactor));
+
+        int node = 0;
+        int otherNode = 0;
+        while (node < nodeCount || otherNode < other.nodeCount) {
+            int comparison;
+            if (node == nodeCount) {
+                comparison = 1;
+            }
+            else if (otherNode == other.nodeCount) {
+                comparison = -1;
+            }
+            else {
+                comparison = compareNodes(value(node), level(node), other.value(otherNode), other.level(otherNode));
+            }
+
+            if (comparison < 0) {
+                builder.add(value(node), level(node), count(node) * scale);
+                node++;
+            }
+            else if (comparison > 0) {
+                builder.add(other.value(otherNode), other.level(otherNode), other.count(otherNode) * otherScale);
+                otherNode++;
+            }
+            else {
+                // same range in both digests
+                builder.add(value(node), level(node), count(node) * scale + other.count(otherNode) * otherScale);
+                node++;
+                otherNode++;
+            }
+        }
+
+        Slice merged = builder.build(
+                maxError,
+                alpha,
+                landmarkInSeconds,
+                Math.min(slice.getLong(MIN_OFFSET), other.slice.getLong(MIN_OFFSET)),
+                Math.max(slice.getLong(MAX_OFFSET), other.slice.getLong(MAX_OFFSET)));
+        return new SliceQuantileDigest(merged, ticker);
+    }
+
+    private long getLandmarkInSeconds()
+    {
+        return slice.getLong(LANDMARK_OFFSET);
+    }
+
+    private double getWeightedCount()
+    {
+        double weightedCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            weightedCount += count(node);
+        }
+        return weightedCount;
+    }
+
+    private int level(int node)
+    {
+        byte structure = slice.getByte(nodeOffset(node) + NODE_STRUCTURE_OFFSET);
+        int level = (structure >>> 2) & 0b111111;
+
+        // branch node levels are serialized as 0-indexed
+        if ((structure & (HAS_LEFT | HAS_RIGHT)) != 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private double count(int node)
+    {
+        return slice.getDouble(nodeOffset(node) + NODE_COUNT_VALUE_OFFSET);
+    }
+
+    private long value(int node)
+    {
+        return slice.getLong(nodeOffset(node) + NODE_VALUE_OFFSET);
+    }
+
+    private static int nodeOffset(int node)
+    {
+        return HEADER_SIZE + node * NODE_SIZE;
+    }
+
+    private static double readAlpha(Slice serialized)
+    {
+        checkArgument(serialized.length() >= HEADER_SIZE, "Serialized digest is too short");
+        return serialized.getDouble(ALPHA_OFFSET);
+    }
+
+    /**
+     * Orders nodes as they appear in a post-order traversal
+     */
+    private static int compareNodes(long value, int level, long otherValue, int otherLevel)
+    {
+        int comparison = Long.compareUnsigned(upperBoundBits(value, level), upperBoundBits(otherValue, otherLevel));
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Integer.compare(level, otherLevel);
+    }
+
+    private static boolean inSameSubtree(long bitsA, long bitsB, int level)
+    {
+        return level == MAX_BITS || (bitsA >>> level) == (bitsB >>> level);
+    }
+
+    private static int commonAncestorLevel(long bitsA, long bitsB)
+    {
+        return MAX_BITS - Long.numberOfLeadingZeros(bitsA ^ bitsB);
+    }
+
+    private static long upperBoundBits(long bits, int level)
+    {
+        return bits | lowBitsMask(level);
+    }
+
+    private static long lowerBoundBits(long bits, int level)
+    {
+        return bits & ~lowBitsMask(level);
+    }
+
+    private static long lowBitsMask(int level)
+    {
+        // need to special case when level == 0 because (value >> 64 really means value >> (64 % 64))
+        if (level == 0) {
+            return 0;
+        }
+        return 0xFFFF_FFFF_FFFF_FFFFL >>> (MAX_BITS - level);
+    }
+
+    private static long bitsToLong(long bits)
+    {
+        return bits ^ 0x8000_0000_0000_0000L;
+    }
+
+    /**
+     * Builds a compressed tree in serialized form from nodes supplied in post-order.
+     * <p>
+     * Completed subtrees are kept on a stack until the node that covers them arrives. Ancestors
+     * that exist in neither input are created once no later node can cover the same range.
+     * Compression is applied as each node is written, since all its descendants are final
+     * by then. Nodes removed by compression are marked with a NaN count and skipped when the
+     * result is copied out.
+     */
+    private static final class TreeBuilder
+    {
+        private final Slice nodes;
+        private final double compressionBound;
+        private int nodeCount;
+
+        private long[] stackValues = new long[MAX_BITS * 2 + 2];
+        private int[] stackLevels = new int[MAX_BITS * 2 + 2];
+        private int[] stackNodes = new int[MAX_BITS * 2 + 2];
+        private int top = -1;
+
+        public TreeBuilder(int inputNodes, double compressionBound)
+        {
+            // every created ancestor joins two subtrees, so there are fewer of them than input nodes
+            this.nodes = Slices.allocate(Math.max(inputNodes * 2, 1) * NODE_SIZE);
+            this.compressionBound = compressionBound;
+        }
+
+        public void add(long value, int level, double count)
+        {
+            // create ancestors for completed subtrees that this node, and every node after it, cannot cover
+            while (top >= 1) {
+                int ancestorLevel = commonAncestorLevel(stackValues[top - 1], stackValues[top]);
+                if (compareNodes(stackValues[top - 1], ancestorLevel, value, level) >= 0) {
+                    break;
+                }
+                write(stackValues[top - 1], ancestorLevel, 0);
+            }
+            write(value, level, count);
+        }
+
+        public Slice build(double maxError, double alpha, long landmarkInSeconds, long min, long max)
+        {
+            while (top >= 1) {
+                write(stackValues[top - 1], commonAncestorLevel(stackValues[top - 1], stackValues[top]), 0);
+            }
+
+            // root's count may have decayed to ~0
+            if (top == 0 && nodes.getDouble(countOffset(stackNodes[0])) < ZERO_WEIGHT_THRESHOLD) {
+                tryRemove(stackNodes[0]);
+            }
+
+            int liveNodes = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                if (!Double.isNaN(nodes.getDouble(countOffset(node)))) {
+                    liveNodes++;
+                }
+            }
+
+            Slice result = Slices.allocate(HEADER_SIZE + liveNodes * NODE_SIZE);
+            result.setByte(FORMAT_OFFSET, FORMAT);
+            result.setDouble(MAX_ERROR_OFFSET, maxError);
+            result.setDouble(ALPHA_OFFSET, alpha);
+            result.setLong(LANDMARK_OFFSET, landmarkInSeconds);
+            result.setLong(MIN_OFFSET, min);
+            result.setLong(MAX_OFFSET, max);
+            result.setInt(NODE_COUNT_OFFSET, liveNodes);
+
+            int position = HEADER_SIZE;
+            for (int node = 0; node < nodeCount; node++) {
+                if (!Double.isNaN(nodes.getDouble(countOffset(node)))) {
+                    result.setBytes(position, nodes, node * NODE_SIZE, NODE_SIZE);
+                    position += NODE_SIZE;
+                }
+            }
+            return result;
+        }
+
+        private void write(long value, int level, double count)
+        {
+            // the subtrees covered by this node are on top of the stack, at most one per branch
+            int left = -1;
+            int right = -1;
+            while (top >= 0 && stackLevels[top] < level && inSameSubtree(value, stackValues[top], level)) {
+                if ((stackValues[top] & (1L << (level - 1))) == 0) {
+                    left = stackNodes[top];
+                }
+                else {
+                    right = stackNodes[top];
+                }
+                top--;
+            }
+
+            boolean hasLeft = left != -1;
+            boolean hasRight = right != -1;
+            if (hasLeft || hasRight) {
+                // same as QuantileDigest.compress()
+                double leftCount = hasLeft ? nodes.getDouble(countOffset(left)) : 0.0;
+                double rightCount = hasRight ? nodes.getDouble(countOffset(right)) : 0.0;
+
+                boolean shouldCompress = (count + leftCount + rightCount) < compressionBound;
+
+                if (hasLeft && (shouldCompress || leftCount < ZERO_WEIGHT_THRESHOLD)) {
+                    hasLeft = tryRemove(left);
+                    count += leftCount;
+                }
+
+                if (hasRight && (shouldCompress || rightCount < ZERO_WEIGHT_THRESHOLD)) {
+                    hasRight = tryRemove(right);
+                    count += rightCount;
+                }
+            }
+
+            int node = nodeCount++;
+            int offset = node * NODE_SIZE;
+
+            // The max value for a level is 64. Non-leaf nodes are decremented by 1
+            // to save a bit, as in QuantileDigest.serialize()
+            int structure = Math.max(level - 1, 0) << 2;
+            if (hasLeft) {
+                structure |= HAS_LEFT;
+            }
+            if (hasRight) {
+                structure |= HAS_RIGHT;
+            }
+            nodes.setByte(offset + NODE_STRUCTURE_OFFSET, structure);
+            nodes.setDouble(offset + NODE_COUNT_VALUE_OFFSET, count);
+            nodes.setLong(offset + NODE_VALUE_OFFSET, value);
+
+            push(value, level, node);
+        }
+
+        /**
+         * Removes the node if possible or sets its count to 0 if it has children and
+         * needs to be kept around.
+         *
+         * @return true if a node remains in place of the removed node
+         */
+        private boolean tryRemove(int node)
+        {
+            int structure = nodes.getByte(node * NODE_SIZE + NODE_STRUCTURE_OFFSET) & (HAS_LEFT | HAS_RIGHT);
+            if (structure == (HAS_LEFT | HAS_RIGHT)) {
+                // node has both children so we can't physically remove it
+                nodes.setDouble(countOffset(node), 0);
+                return true;
+            }
+
+            // a leaf is removed, and a node with a single child is replaced by the child
+            nodes.setDouble(countOffset(node), Double.NaN);
+            return structure != 0;
+        }
+
+        private void push(long value, int level, int node)
+        {
+            top++;
+            if (top == stackValues.length) {
+                stackValues = Arrays.copyOf(stackValues, top * 2);
+                stackLevels = Arrays.copyOf(stackLevels, top * 2);
+                stackNodes = Arrays.copyOf(stackNodes, top * 2);
+            }
+            stackValues[top] = value;
+            stackLevels[top] = level;
+            stackNodes[top] = node;
+        }
+
+        private static int countOffset(int node)
+        {
+            return node * NODE_SIZE + NODE_COUNT_VALUE_OFFSET;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.stats;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Buffers (value, weight) samples in per-thread stripes so that concurrent writers
+ * do not contend on a single lock. All samples held by a stripe were recorded in the
+ * same second, so they can be drained into a decaying structure with their original
+ * timestamp.
+ * <p>
+ * The buffer does not synchronize with its consumer. Writers that find their stripe full
+ * (or holding samples from a different second) must drain it via {@link #drainCurrentStripe}
+ * and retry, and readers must drain all stripes via {@link #drain} before reading the consumer.
+ */
+@ThreadSafe
+final class StripedSampleBuffer
+{
+    @VisibleForTesting
+    static final int STRIPE_CAPACITY = 128;
+
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    StripedSampleBuffer()
+    {
+        this(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @VisibleForTesting
+    StripedSampleBuffer(int concurrency)
+    {
+        checkArgument(concurrency > 0, "concurrency must be greater than zero");
+
+        int stripeCount = concurrency == 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        mask = stripeCount - 1;
+    }
+
+    /**
+     * Records a sample in the stripe of the calling thread.
+     *
+     * @return false if the stripe must be drained before the sample can be recorded
+     */
+    boolean tryAdd(double value, double weight, long timestampInSeconds)
+    {
+        Stripe stripe = currentStripe();
+        synchronized (stripe) {
+            return stripe.tryAdd(value, weight, timestampInSeconds);
+        }
+    }
+
+    void drainCurrentStripe(SampleConsumer consumer)
+    {
+        Stripe stripe = currentStripe();
+        synchronized (stripe) {
+            stripe.drainTo(consumer);
+        }
+    }
+
+    void drain(SampleConsumer consumer)
+    {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.drainTo(consumer);
+            }
+        }
+    }
+
+    private Stripe currentStripe()
+    {
+        // thread ids are handed out sequentially, so masking spreads live threads evenly
+        return stripes[(int) Thread.currentThread().getId() & mask];
+    }
+
+    interface SampleConsumer
+    {
+        void accept(double value, double weight, long timestampInSeconds);
+    }
+
+    private static final class Stripe
+    {
+        // (value, weight) pairs, allocated on first use
+        @GuardedBy("this")
+        private double[] samples;
+        @GuardedBy("this")
+        private int size;
+        @GuardedBy("this")
+        private long timestampInSeconds;
+
+        public boolean tryAdd(double value, double weight, long timestampInSeconds)
+        {
+            if (size > 0 && (size == STRIPE_CAPACITY || timestampInSeconds != this.timestampInSeconds)) {
+                return false;
+            }
+
+            if (samples == null) {
+                samples = new double[STRIPE_CAPACITY * 2];
+            }
+
+            samples[size * 2] = value;
+            samples[size * 2 + 1] = weight;
+            size++;
+            this.timestampInSeconds = timestampInSeconds;
+            return true;
+        }
+
+        public void drainTo(SampleConsumer consumer)
+        {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(samples[i * 2], samples[i * 2 + 1], timestampInSeconds);
+            }
+            size = 0;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.util.Base64;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.lang.Double.isInfinite;
@@ -217,6 +218,105 @@ public class TDigest
         needsMerge = true;
     }
 
+    /**
+     * Adds {@code length} values with a weight of 1, starting at {@code offset}.
+     */
+    public void addAll(double[] values, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, values.length);
+
+        double newMin = min;
+        double newMax = max;
+        for (int i = offset; i < offset + length; i++) {
+            double value = values[i];
+            checkArgument(!isNaN(value), "value is NaN");
+            checkArgument(!isInfinite(value), "value must be finite");
+            newMin = Math.min(value, newMin);
+            newMax = Math.max(value, newMax);
+        }
+
+        int position = offset;
+        int end = offset + length;
+        while (position < end) {
+            if (centroidCount == means.length) {
+                if (means.length < maxSize) {
+                    ensureCapacity(Math.min(Math.max(means.length * 2, centroidCount + end - position), maxSize));
+                }
+                else {
+                    merge(internalCompressionFactor(compression));
+                    if (centroidCount >= means.length) {
+                        throw new AssertionError("Invalid size estimation for T-Digest: " + Base64.getEncoder().encodeToString(serializeInternal().getBytes()));
+                    }
+                }
+            }
+
+            int count = Math.min(end - position, means.length - centroidCount);
+            System.arraycopy(values, position, means, centroidCount, count);
+            Arrays.fill(weights, centroidCount, centroidCount + count, 1);
+            centroidCount += count;
+            totalWeight += count;
+            position += count;
+
+            needsMerge = true;
+        }
+
+        min = newMin;
+        max = newMax;
+    }
+
+    /**
+     * Merges all the digests in a single pass. The result has the compression
+     * factor of the first digest. The digests are not modified.
+     */
+    public static TDigest merge(List<TDigest> digests)
+    {
+        checkArgument(!digests.isEmpty(), "digests is empty");
+
+        int centroidCount = 0;
+        double totalWeight = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (TDigest digest : digests) {
+            centroidCount += digest.centroidCount;
+            totalWeight += digest.totalWeight;
+            min = Math.min(min, digest.min);
+            max = Math.max(max, digest.max);
+        }
+
+        double[] means = new double[Math.max(centroidCount, INITIAL_CAPACITY)];
+        double[] weights = new double[Math.max(centroidCount, INITIAL_CAPACITY)];
+        int position = 0;
+        for (TDigest digest : digests) {
+            System.arraycopy(digest.means, 0, means, position, digest.centroidCount);
+            System.arraycopy(digest.weights, 0, weights, position, digest.centroidCount);
+            position += digest.centroidCount;
+        }
+
+        TDigest result = new TDigest(
+                digests.get(0).compression,
+                min,
+                max,
+                totalWeight,
+                centroidCount,
+                means,
+                weights,
+                true,
+                false);
+
+        if (centroidCount > result.maxSize) {
+            // compress once, and release the oversized buffers
+            result.merge(internalCompressionFactor(result.compression));
+            int capacity = Math.max(result.centroidCount, result.maxSize);
+            result.means = Arrays.copyOf(result.means, capacity);
+            result.weights = Arrays.copyOf(result.weights, capacity);
+            result.indexes = null;
+            result.tempMeans = null;
+            result.tempWeights = null;
+        }
+
+        return result;
+    }
+
     public void mergeWith(TDigest other)
     {
         if (centroidCount + other.centroidCount > means.length) {
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.weakref.jmx.Managed;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.util.ArrayList;
@@ -18,11 +19,17 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class TimeDistribution
 {
-    @GuardedBy("this")
+    private final Object lock;
+    @GuardedBy("lock")
     private final DecayTDigest digest;
-    @GuardedBy("this")
+    @GuardedBy("lock")
     private final DecayCounter total;
     private final TimeUnit unit;
+    @Nullable
+    private final StripedSampleBuffer buffer;
+    // moves buffered samples into this distribution before it is read
+    @Nullable
+    private final Runnable drain;
 
     public TimeDistribution()
     {
@@ -31,11 +38,7 @@ public class TimeDistribution
 
     public TimeDistribution(TimeUnit unit)
     {
-        requireNonNull(unit, "unit is null");
-
-        digest = new DecayTDigest(TDigest.DEFAULT_COMPRESSION, 0);
-        total = new DecayCounter(0);
-        this.unit = unit;
+        this(0, unit);
     }
 
     public TimeDistribution(double alpha)
@@ -44,72 +47,159 @@ public class TimeDistribution
     }
 
     public TimeDistribution(double alpha, TimeUnit unit)
+    {
+        this(alpha, unit, false);
+    }
+
+    /**
+     * @param striped see {@link Distribution#Distribution(double, boolean)}
+     */
+    public TimeDistribution(double alpha, TimeUnit unit, boolean striped)
     {
         requireNonNull(unit, "unit is null");
 
+        lock = this;
         digest = new DecayTDigest(TDigest.DEFAULT_COMPRESSION, alpha);
         total = new DecayCounter(alpha);
         this.unit = unit;
+        if (striped) {
+            StripedSampleBuffer buffer = new StripedSampleBuffer();
+            this.buffer = buffer;
+            this.drain = () -> buffer.drain(this::record);
+        }
+        else {
+            this.buffer = null;
+            this.drain = null;
+        }
+    }
+
+    /**
+     * Creates a distribution that is fed by the owner of {@code lock} through {@link #record}.
+     * The {@code drain} callback is invoked with the lock held before every read.
+     */
+    TimeDistribution(double alpha, TimeUnit unit, Object lock, Runnable drain)
+    {
+        this.lock = requireNonNull(lock, "lock is null");
+        this.digest = new DecayTDigest(TDigest.DEFAULT_COMPRESSION, alpha);
+        this.total = new DecayCounter(alpha);
+        this.unit = requireNonNull(unit, "unit is null");
+        this.buffer = null;
+        this.drain = requireNonNull(drain, "drain is null");
+    }
+
+    public void add(long value)
+    {
+        if (buffer == null) {
+            synchronized (lock) {
+                drainBuffer();
+                record(value, 1, digest.nowInSeconds());
+            }
+            return;
+        }
+
+        // reading the time does not require the lock
+        long nowInSeconds = digest.nowInSeconds();
+        while (!buffer.tryAdd(value, 1, nowInSeconds)) {
+            synchronized (lock) {
+                buffer.drainCurrentStripe(this::record);
+            }
+        }
+    }
+
+    @GuardedBy("lock")
+    void record(double value, double weight, long timestampInSeconds)
+    {
+        digest.add(value, weight, timestampInSeconds);
+        total.add((long) (value * weight), timestampInSeconds);
     }
 
-    public synchronized void add(long value)
+    @GuardedBy("lock")
+    private void drainBuffer()
     {
-        digest.add(value);
-        total.add(value);
+        if (drain != null) {
+            drain.run();
+        }
     }
 
     @Managed
-    public synchronized double getCount()
+    public double getCount()
     {
-        return digest.getCount();
+        synchronized (lock) {
+            drainBuffer();
+            return digest.getCount();
+        }
     }
 
     @Managed
-    public synchronized double getP50()
+    public double getP50()
     {
-        return convertToUnit(digest.valueAt(0.5));
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.valueAt(0.5));
+        }
     }
 
     @Managed
-    public synchronized double getP75()
+    public double getP75()
     {
-        return convertToUnit(digest.valueAt(0.75));
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.valueAt(0.75));
+        }
     }
 
     @Managed
-    public synchronized double getP90()
+    public double getP90()
     {
-        return convertToUnit(digest.valueAt(0.90));
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.valueAt(0.90));
+        }
     }
 
     @Managed
-    public synchronized double getP95()
+    public double getP95()
     {
-        return convertToUnit(digest.valueAt(0.95));
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.valueAt(0.95));
+        }
     }
 
     @Managed
-    public synchronized double getP99()
+    public double getP99()
     {
-        return convertToUnit(digest.valueAt(0.99));
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.valueAt(0.99));
+        }
     }
 
     @Managed
-    public synchronized double getMin()
+    public double getMin()
     {
-        return convertToUnit(digest.getMin());
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.getMin());
+        }
     }
 
     @Managed
-    public synchronized double getMax()
+    public double getMax()
     {
-        return convertToUnit(digest.getMax());
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(digest.getMax());
+        }
     }
 
     @Managed
-    public synchronized double getAvg()
+    public double getAvg()
     {
-        return convertToUnit(total.getCount()) / getCount();
+        synchronized (lock) {
+            drainBuffer();
+            return convertToUnit(total.getCount()) / getCount();
+        }
     }
 
     @Managed
@@ -127,7 +217,8 @@ public class TimeDistribution
         }
 
         List<Double> values;
-        synchronized (this) {
+        synchronized (lock) {
+            drainBuffer();
             values = digest.valuesAt(percentiles);
         }
 
@@ -23,13 +23,21 @@ import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
+import javax.annotation.concurrent.GuardedBy;
+
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+/**
+ * Records each sample once into a buffer shared by all of the decay windows, and
+ * merges the buffered samples into the windows in batches and whenever one is read.
+ */
 public class TimeStat
 {
+    private final StripedSampleBuffer buffer = new StripedSampleBuffer();
     private final TimeDistribution oneMinute;
     private final TimeDistribution fiveMinutes;
     private final TimeDistribution fifteenMinutes;
@@ -54,10 +62,11 @@ public class TimeStat
     public TimeStat(Ticker ticker, TimeUnit unit)
     {
         this.ticker = ticker;
-        oneMinute = new TimeDistribution(ExponentialDecay.oneMinute(), unit);
-        fiveMinutes = new TimeDistribution(ExponentialDecay.fiveMinutes(), unit);
-        fifteenMinutes = new TimeDistribution(ExponentialDecay.fifteenMinutes(), unit);
-        allTime = new TimeDistribution(unit);
+        // all windows share this lock, which also guards draining the buffer
+        oneMinute = new TimeDistribution(ExponentialDecay.oneMinute(), unit, this, this::drainBuffer);
+        fiveMinutes = new TimeDistribution(ExponentialDecay.fiveMinutes(), unit, this, this::drainBuffer);
+        fifteenMinutes = new TimeDistribution(ExponentialDecay.fifteenMinutes(), unit, this, this::drainBuffer);
+        allTime = new TimeDistribution(0, unit, this, this::drainBuffer);
     }
 
     public void add(double value, TimeUnit timeUnit)
@@ -72,10 +81,28 @@ public class TimeStat
 
     private void add(long value)
     {
-        oneMinute.add(value);
-        fiveMinutes.add(value);
-        fifteenMinutes.add(value);
-        allTime.add(value);
+        // decay is based on the system time, independent of the ticker used for timing
+        long nowInSeconds = NANOSECONDS.toSeconds(System.nanoTime());
+        while (!buffer.tryAdd(value, 1, nowInSeconds)) {
+            synchronized (this) {
+                buffer.drainCurrentStripe(this::record);
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void drainBuffer()
+    {
+        buffer.drain(this::record);
+    }
+
+    @GuardedBy("this")
+    private void record(double value, double weight, long timestampInSeconds)
+    {
+        oneMinute.record(value, weight, timestampInSeconds);
+        fiveMinutes.record(value, weight, timestampInSeconds);
+        fifteenMinutes.record(value, weight, timestampInSeconds);
+        allTime.record(value, weight, timestampInSeconds);
     }
 
     public <T> T time(Callable<T> callable)
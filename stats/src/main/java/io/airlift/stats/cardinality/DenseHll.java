@@ -20,6 +20,7 @@ import io.airlift.slice.BasicSliceInput;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.SizeOf;
 import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import org.openjdk.jol.info.ClassLayout;
 
 import javax.annotation.concurrent.NotThreadSafe;
@@ -45,6 +46,22 @@ final class DenseHll
     private static final int BITS_PER_BUCKET = 4;
     private static final int MAX_DELTA = (1 << BITS_PER_BUCKET) - 1;
     private static final int BUCKET_MASK = (1 << BITS_PER_BUCKET) - 1;
+    private static final int BUCKETS_PER_WORD = Long.SIZE / BITS_PER_BUCKET;
+
+    // Word-at-a-time operations split the 16 deltas in a word into two sets of eight 8-bit
+    // lanes, so that each 4-bit delta has room to carry into the bits above it
+    private static final long LANE_LOW_NIBBLES = 0x0F0F_0F0F_0F0F_0F0FL;
+    private static final long LANE_CARRY_BITS = 0x1010_1010_1010_1010L;
+    private static final long LANE_ONES = 0x0101_0101_0101_0101L;
+
+    // sum of 2^-delta for the two buckets packed in each possible byte
+    private static final double[] INVERSE_POWERS_BY_SLOT = new double[256];
+
+    static {
+        for (int slot = 0; slot < INVERSE_POWERS_BY_SLOT.length; slot++) {
+            INVERSE_POWERS_BY_SLOT[slot] = Math.scalb(1.0, -(slot >>> BITS_PER_BUCKET)) + Math.scalb(1.0, -(slot & BUCKET_MASK));
+        }
+    }
 
     private static final int DENSE_INSTANCE_SIZE = ClassLayout.parseClass(DenseHll.class).instanceSize();
     private static final int OVERFLOW_GROW_INCREMENT = 5;
@@ -172,11 +189,16 @@ final class DenseHll
             return Math.round(linearCounting(baselineCount, numberOfBuckets));
         }
 
+        // sum 2^-value over all buckets, two buckets at a time, then
+        // account for the extra bits of the buckets that overflow
         double sum = 0;
-        for (int i = 0; i < numberOfBuckets; i++) {
-            int value = getValue(i);
-            sum += 1.0 / (1L << value);
+        for (byte slot : deltas) {
+            sum += INVERSE_POWERS_BY_SLOT[slot & 0xFF];
+        }
+        for (int i = 0; i < overflows; i++) {
+            sum += Math.scalb(1.0, -(MAX_DELTA + overflowValues[i])) - Math.scalb(1.0, -MAX_DELTA);
         }
+        sum = Math.scalb(sum, -baseline);
 
         double estimate = (alpha(indexBitLength) * numberOfBuckets * numberOfBuckets) / sum;
         estimate = correctBias(estimate);
@@ -425,47 +447,47 @@ final class DenseHll
         int newBaseline = Math.max(this.baseline, other.baseline);
         int baselineCount = 0;
 
-        int bucket = 0;
-        for (int i = 0; i < deltas.length; i++) {
-            int newSlot = 0;
+        // deltas are rebased to the new baseline, so they can only decrease
+        int shift = Math.min(newBaseline - this.baseline, MAX_DELTA);
+        int otherShift = Math.min(newBaseline - other.baseline, MAX_DELTA);
 
-            byte slot1 = deltas[i];
-            byte slot2 = other.deltas[i];
+        // without overflows, a delta of MAX_DELTA is the exact value of the bucket
+        boolean noOverflows = this.overflows == 0 && other.overflows == 0;
 
-            for (int shift = 4; shift >= 0; shift -= 4) {
-                int delta1 = (slot1 >>> shift) & 0b1111;
-                int delta2 = (slot2 >>> shift) & 0b1111;
+        Slice words = Slices.wrappedBuffer(deltas);
+        Slice otherWords = Slices.wrappedBuffer(other.deltas);
 
-                int value1 = this.baseline + delta1;
-                int value2 = other.baseline + delta2;
+        int offset = 0;
+        for (; offset + SizeOf.SIZE_OF_LONG <= deltas.length; offset += SizeOf.SIZE_OF_LONG) {
+            long word = words.getLong(offset);
+            long otherWord = otherWords.getLong(offset);
 
-                int overflowEntry = -1;
-                if (delta1 == MAX_DELTA) {
-                    overflowEntry = findOverflowEntry(bucket);
-                    if (overflowEntry != -1) {
-                        value1 += overflowValues[overflowEntry];
-                    }
-                }
+            if (noOverflows || !(hasMaxDelta(word) || hasMaxDelta(otherWord))) {
+                long high = maxLanes(
+                        subtractLanes((word >>> BITS_PER_BUCKET) & LANE_LOW_NIBBLES, shift),
+                        subtractLanes((otherWord >>> BITS_PER_BUCKET) & LANE_LOW_NIBBLES, otherShift));
+                long low = maxLanes(
+                        subtractLanes(word & LANE_LOW_NIBBLES, shift),
+                        subtractLanes(otherWord & LANE_LOW_NIBBLES, otherShift));
 
-                if (delta2 == MAX_DELTA) {
-                    value2 += other.getOverflow(bucket);
-                }
-
-                int newValue = Math.max(value1, value2);
-                int newDelta = newValue - newBaseline;
-
-                if (newDelta == 0) {
-                    baselineCount++;
+                words.setLong(offset, (high << BITS_PER_BUCKET) | low);
+                baselineCount += BUCKETS_PER_WORD - nonZeroLanes(high) - nonZeroLanes(low);
+            }
+            else {
+                int bucket = offset * 2;
+                for (int i = 0; i < BUCKETS_PER_WORD; i++) {
+                    if (mergeBucket(other, bucket + i, newBaseline) == 0) {
+                        baselineCount++;
+                    }
                 }
-
-                newDelta = updateOverflow(bucket, overflowEntry, newDelta);
-
-                newSlot <<= 4;
-                newSlot |= newDelta;
-                bucket++;
             }
+        }
 
-            this.deltas[i] = (byte) newSlot;
+        // HLLs with fewer buckets than fit in a word
+        for (int bucket = offset * 2; bucket < deltas.length * 2; bucket++) {
+            if (mergeBucket(other, bucket, newBaseline) == 0) {
+                baselineCount++;
+            }
         }
 
         this.baseline = (byte) newBaseline;
@@ -478,6 +500,36 @@ final class DenseHll
         return this;
     }
 
+    /**
+     * Merges a single bucket, taking overflows into account, and returns the new delta
+     */
+    private int mergeBucket(DenseHll other, int bucket, int newBaseline)
+    {
+        int delta1 = getDelta(bucket);
+        int delta2 = other.getDelta(bucket);
+
+        int value1 = this.baseline + delta1;
+        int value2 = other.baseline + delta2;
+
+        int overflowEntry = -1;
+        if (delta1 == MAX_DELTA) {
+            overflowEntry = findOverflowEntry(bucket);
+            if (overflowEntry != -1) {
+                value1 += overflowValues[overflowEntry];
+            }
+        }
+
+        if (delta2 == MAX_DELTA) {
+            value2 += other.getOverflow(bucket);
+        }
+
+        int newDelta = Math.max(value1, value2) - newBaseline;
+        newDelta = updateOverflow(bucket, overflowEntry, newDelta);
+        setDelta(bucket, newDelta);
+
+        return newDelta;
+    }
+
     /**
      * Returns "this" for chaining
      */
@@ -565,6 +617,44 @@ final class DenseHll
         return (int) (DENSE_INSTANCE_SIZE + SizeOf.sizeOfByteArray(numberOfBuckets(indexBitLength) / 2));
     }
 
+    /**
+     * Returns true if any of the 16 deltas packed in the word is MAX_DELTA
+     */
+    private static boolean hasMaxDelta(long word)
+    {
+        return (hasMaxDeltaLane(word & LANE_LOW_NIBBLES) | hasMaxDeltaLane((word >>> BITS_PER_BUCKET) & LANE_LOW_NIBBLES)) != 0;
+    }
+
+    private static long hasMaxDeltaLane(long lanes)
+    {
+        // only a lane holding MAX_DELTA carries into the bit above it
+        return (lanes + LANE_ONES) & LANE_CARRY_BITS;
+    }
+
+    /**
+     * Computes max(lane - amount, 0) for every lane, for an amount between 0 and MAX_DELTA
+     */
+    private static long subtractLanes(long lanes, int amount)
+    {
+        // the carry bit of a lane survives the subtraction iff lane >= amount
+        long difference = (lanes | LANE_CARRY_BITS) - LANE_ONES * amount;
+        long keep = ((difference >>> BITS_PER_BUCKET) & LANE_ONES) * BUCKET_MASK;
+        return difference & keep;
+    }
+
+    private static long maxLanes(long first, long second)
+    {
+        // the carry bit of a lane survives the subtraction iff first >= second
+        long difference = (first | LANE_CARRY_BITS) - second;
+        long firstIsGreater = ((difference >>> BITS_PER_BUCKET) & LANE_ONES) * BUCKET_MASK;
+        return (first & firstIsGreater) | (second & ~firstIsGreater);
+    }
+
+    private static int nonZeroLanes(long lanes)
+    {
+        return Long.bitCount((lanes + LANE_LOW_NIBBLES) & LANE_CARRY_BITS);
+    }
+
     private static int bucketToSlot(int bucket)
     {
         return bucket >> 1;
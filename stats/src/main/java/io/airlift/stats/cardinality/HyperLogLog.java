@@ -15,6 +15,7 @@ package io.airlift.stats.cardinality;
 
 import com.google.common.annotations.VisibleForTesting;
 import io.airlift.slice.Murmur3Hash128;
+import io.airlift.slice.SizeOf;
 import io.airlift.slice.Slice;
 import org.openjdk.jol.info.ClassLayout;
 
@@ -78,6 +79,32 @@ public class HyperLogLog
         }
     }
 
+    /**
+     * Adds a batch of values that have already been hashed, as with {@link #addHash(long)}.
+     * While this HyperLogLog is sparse, the hashes are sorted and merged in bulk, which is
+     * much cheaper than adding them one at a time.
+     */
+    public void addHashes(long[] hashes)
+    {
+        int position = 0;
+        while (position < hashes.length && instance instanceof SparseHll) {
+            SparseHll sparse = (SparseHll) instance;
+
+            // each hash adds at most one entry, so insert no more than it takes to outgrow the dense representation
+            int remaining = (DenseHll.estimatedInMemorySize(sparse.getIndexBitLength()) - sparse.estimatedInMemorySize()) / SizeOf.SIZE_OF_INT;
+            int batch = Math.min(hashes.length - position, Math.max(remaining, 1));
+
+            sparse.insertHashes(hashes, position, batch);
+            position += batch;
+
+            instance = makeDenseIfNecessary(sparse);
+        }
+
+        for (; position < hashes.length; position++) {
+            instance.insertHash(hashes[position]);
+        }
+    }
+
     public void mergeWith(HyperLogLog other)
     {
         if (instance instanceof SparseHll && other.instance instanceof SparseHll) {
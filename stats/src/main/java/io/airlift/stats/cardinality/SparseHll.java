@@ -27,6 +27,7 @@ import javax.annotation.concurrent.NotThreadSafe;
 import java.util.Arrays;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static com.google.common.base.Preconditions.checkState;
 import static io.airlift.slice.SizeOf.sizeOf;
 import static io.airlift.stats.cardinality.Utils.computeIndex;
@@ -86,8 +87,6 @@ final class SparseHll
 
     public void insertHash(long hash)
     {
-        // TODO: investigate whether accumulate, sort and merge results in better performance due to avoiding the shift+insert in every call
-
         int bucket = Utils.computeIndex(hash, EXTENDED_PREFIX_BITS);
         int position = searchBucket(bucket);
 
@@ -117,6 +116,37 @@ final class SparseHll
         }
     }
 
+    /**
+     * Inserts a batch of hashes by sorting them and merging them into the existing entries
+     * in a single pass, rather than shifting the entries for every new bucket.
+     */
+    public void insertHashes(long[] hashes, int offset, int length)
+    {
+        checkPositionIndexes(offset, offset + length, hashes.length);
+
+        // flip the sign bit so that sorting as signed ints orders by bucket index, then by value
+        int[] batch = new int[length];
+        for (int i = 0; i < length; i++) {
+            batch[i] = encode(hashes[offset + i]) ^ Integer.MIN_VALUE;
+        }
+        Arrays.sort(batch);
+
+        // keep the largest value for each bucket, which is the last one in sorted order
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            int entry = batch[i] ^ Integer.MIN_VALUE;
+            if (size > 0 && decodeBucketIndex(batch[size - 1]) == decodeBucketIndex(entry)) {
+                batch[size - 1] = entry;
+            }
+            else {
+                batch[size++] = entry;
+            }
+        }
+
+        entries = mergeEntries(entries, numberOfEntries, batch, size);
+        numberOfEntries = (short) entries.length;
+    }
+
     private int encode(long hash)
     {
         return encode(computeIndex(hash, EXTENDED_PREFIX_BITS), numberOfLeadingZeros(hash, EXTENDED_PREFIX_BITS));
@@ -144,7 +174,7 @@ final class SparseHll
 
     public void mergeWith(SparseHll other)
     {
-        entries = mergeEntries(other);
+        entries = mergeEntries(entries, numberOfEntries, other.entries, other.numberOfEntries);
         numberOfEntries = (short) entries.length;
     }
 
@@ -230,37 +260,37 @@ final class SparseHll
         return -(low + 1); // not found... return insertion point
     }
 
-    private int[] mergeEntries(SparseHll other)
+    private static int[] mergeEntries(int[] leftEntries, int leftCount, int[] rightEntries, int rightCount)
     {
-        int[] result = new int[numberOfEntries + other.numberOfEntries];
+        int[] result = new int[leftCount + rightCount];
         int leftIndex = 0;
         int rightIndex = 0;
 
         int index = 0;
-        while (leftIndex < numberOfEntries && rightIndex < other.numberOfEntries) {
-            int left = decodeBucketIndex(entries[leftIndex]);
-            int right = decodeBucketIndex(other.entries[rightIndex]);
+        while (leftIndex < leftCount && rightIndex < rightCount) {
+            int left = decodeBucketIndex(leftEntries[leftIndex]);
+            int right = decodeBucketIndex(rightEntries[rightIndex]);
 
             if (left < right) {
-                result[index++] = entries[leftIndex++];
+                result[index++] = leftEntries[leftIndex++];
             }
             else if (left > right) {
-                result[index++] = other.entries[rightIndex++];
+                result[index++] = rightEntries[rightIndex++];
             }
             else {
-                int value = Math.max(decodeBucketValue(entries[leftIndex]), decodeBucketValue(other.entries[rightIndex]));
+                int value = Math.max(decodeBucketValue(leftEntries[leftIndex]), decodeBucketValue(rightEntries[rightIndex]));
                 result[index++] = encode(left, value);
                 leftIndex++;
                 rightIndex++;
             }
         }
 
-        while (leftIndex < numberOfEntries) {
-            result[index++] = entries[leftIndex++];
+        while (leftIndex < leftCount) {
+            result[index++] = leftEntries[leftIndex++];
         }
 
-        while (rightIndex < other.numberOfEntries) {
-            result[index++] = other.entries[rightIndex++];
+        while (rightIndex < rightCount) {
+            result[index++] = rightEntries[rightIndex++];
         }
 
         return Arrays.copyOf(result, index);
@@ -62,6 +62,8 @@ public class BenchmarkQuantileDigest
         private QuantileDigest digest1;
         private QuantileDigest digest2;
         private Slice serializedDigest;
+        private SliceQuantileDigest sliceDigest1;
+        private SliceQuantileDigest sliceDigest2;
 
         @Setup
         public void setup(Data data)
@@ -69,6 +71,8 @@ public class BenchmarkQuantileDigest
             digest1 = makeDigest(data.values1);
             digest2 = makeDigest(data.values2);
             serializedDigest = digest1.serialize();
+            sliceDigest1 = new SliceQuantileDigest(serializedDigest);
+            sliceDigest2 = new SliceQuantileDigest(digest2.serialize());
         }
 
         private QuantileDigest makeDigest(long[] values)
@@ -108,6 +112,26 @@ public class BenchmarkQuantileDigest
         return merged;
     }
 
+    @Benchmark
+    public Slice benchmarkMergeSerialized(Digest data)
+    {
+        QuantileDigest merged = new QuantileDigest(data.sliceDigest1.serialize());
+        merged.merge(new QuantileDigest(data.sliceDigest2.serialize()));
+        return merged.serialize();
+    }
+
+    @Benchmark
+    public Slice benchmarkMergeSlice(Digest data)
+    {
+        return data.sliceDigest1.merge(data.sliceDigest2).serialize();
+    }
+
+    @Benchmark
+    public List<Long> benchmarkQuantilesSlice(Digest data)
+    {
+        return data.sliceDigest1.getQuantiles(ImmutableList.of(0.5, 0.75, 0.9, 0.99));
+    }
+
     @Benchmark
     public QuantileDigest benchmarkDeserialize(Digest data)
     {
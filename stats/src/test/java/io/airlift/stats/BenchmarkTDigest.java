@@ -17,6 +17,8 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.VerboseMode;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
@@ -27,18 +29,25 @@ import java.util.concurrent.TimeUnit;
 public class BenchmarkTDigest
 {
     private static final int NUMBER_OF_ENTRIES = 100_000;
+    private static final int NUMBER_OF_DIGESTS = 1_000;
 
     @State(Scope.Thread)
     public static class Data
     {
         private long[] values1;
         private long[] values2;
+        private double[] doubleValues;
 
         @Setup
         public void setup()
         {
             values1 = makeValues(NUMBER_OF_ENTRIES);
             values2 = makeValues(NUMBER_OF_ENTRIES);
+
+            doubleValues = new double[NUMBER_OF_ENTRIES];
+            for (int i = 0; i < NUMBER_OF_ENTRIES; i++) {
+                doubleValues[i] = values1[i];
+            }
         }
 
         private long[] makeValues(int size)
@@ -79,6 +88,26 @@ public class BenchmarkTDigest
         }
     }
 
+    @State(Scope.Thread)
+    public static class Digests
+    {
+        private List<TDigest> digests;
+
+        @Setup
+        public void setup()
+        {
+            digests = new ArrayList<>(NUMBER_OF_DIGESTS);
+            for (int i = 0; i < NUMBER_OF_DIGESTS; i++) {
+                TDigest digest = new TDigest();
+                for (int j = 0; j < NUMBER_OF_ENTRIES / NUMBER_OF_DIGESTS; j++) {
+                    digest.add(ThreadLocalRandom.current().nextGaussian() * 1_000_000);
+                }
+                // per-node digests arrive serialized, so they are fully compressed
+                digests.add(TDigest.deserialize(digest.serialize()));
+            }
+        }
+    }
+
     @Benchmark
     @OperationsPerInvocation(NUMBER_OF_ENTRIES)
     public TDigest benchmarkInserts(Data data)
@@ -92,6 +121,15 @@ public class BenchmarkTDigest
         return digest;
     }
 
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_ENTRIES)
+    public TDigest benchmarkAddAll(Data data)
+    {
+        TDigest digest = new TDigest();
+        digest.addAll(data.doubleValues, 0, data.doubleValues.length);
+        return digest;
+    }
+
     @Benchmark
     public TDigest benchmarkCopy(Digest data)
     {
@@ -106,6 +144,27 @@ public class BenchmarkTDigest
         return merged;
     }
 
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_DIGESTS)
+    public TDigest benchmarkPairwiseMergeMany(Digests data)
+    {
+        TDigest merged = new TDigest();
+        for (TDigest digest : data.digests) {
+            merged.mergeWith(digest);
+        }
+        merged.valueAt(0.5);
+        return merged;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_DIGESTS)
+    public TDigest benchmarkMergeMany(Digests data)
+    {
+        TDigest merged = TDigest.merge(data.digests);
+        merged.valueAt(0.5);
+        return merged;
+    }
+
     @Benchmark
     public TDigest benchmarkDeserialize(Digest data)
     {
@@ -3,8 +3,14 @@ package io.airlift.stats;
 import io.airlift.testing.TestingTicker;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import static io.airlift.stats.DecayCounter.RESCALE_THRESHOLD_SECONDS;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
@@ -49,4 +55,85 @@ public class TestDecayCounter
         assertEquals(copy.getCount(), counter.getCount());
         assertEquals(copy.getAlpha(), counter.getAlpha());
     }
+
+    @Test
+    public void testMultipleRescales()
+    {
+        TestingTicker ticker = new TestingTicker();
+
+        double alpha = ExponentialDecay.oneMinute();
+        DecayCounter counter = new DecayCounter(alpha, ticker);
+
+        double expected = 0;
+        for (int i = 0; i < 10; i++) {
+            counter.add(i);
+            ticker.increment(RESCALE_THRESHOLD_SECONDS / 2 + 1, TimeUnit.SECONDS);
+            expected = (expected + i) * Math.exp(-alpha * (RESCALE_THRESHOLD_SECONDS / 2 + 1));
+        }
+
+        assertEquals(counter.getCount(), expected, 1e-9);
+    }
+
+    @Test
+    public void testMerge()
+    {
+        TestingTicker ticker = new TestingTicker();
+
+        DecayCounter counter = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+        DecayCounter other = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+        counter.add(1);
+        other.add(2);
+        ticker.increment(1, TimeUnit.MINUTES);
+        other.add(3);
+
+        counter.merge(other);
+
+        assertEquals(counter.getCount(), 3 + 3 / Math.E, 1e-9);
+        assertEquals(other.getCount(), 3 + 2 / Math.E, 1e-9);
+    }
+
+    @Test
+    public void testReset()
+    {
+        TestingTicker ticker = new TestingTicker();
+
+        DecayCounter counter = new DecayCounter(ExponentialDecay.oneMinute(), ticker);
+        counter.add(1);
+        ticker.increment(1, TimeUnit.MINUTES);
+        counter.add(1);
+        counter.reset();
+        assertEquals(counter.getCount(), 0.0);
+
+        counter.add(5);
+        assertEquals(counter.getCount(), 5.0);
+    }
+
+    @Test
+    public void testConcurrentAdds()
+            throws Exception
+    {
+        int threads = 8;
+        int valuesPerThread = 100_000;
+
+        DecayCounter counter = new DecayCounter(ExponentialDecay.oneMinute(), new TestingTicker());
+        ExecutorService executor = newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int value = 0; value < valuesPerThread; value++) {
+                        counter.add(1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(counter.getCount(), (double) threads * valuesPerThread);
+    }
 }
@@ -2,6 +2,12 @@ package io.airlift.stats;
 
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.testng.Assert.assertEquals;
 
 public class TestDistribution
@@ -18,4 +24,65 @@ public class TestDistribution
         assertEquals(copy.getCount(), distribution.getCount());
         assertEquals(copy.getTotal(), distribution.getTotal());
     }
+
+    @Test
+    public void testStripedDuplicate()
+    {
+        Distribution distribution = new Distribution(0.1, true);
+
+        distribution.add(100);
+
+        Distribution copy = distribution.duplicate();
+
+        assertEquals(copy.getCount(), 1.0, 0.001);
+        assertEquals(copy.getTotal(), 100.0, 0.1);
+    }
+
+    @Test
+    public void testStriped()
+    {
+        Distribution striped = new Distribution(0, true);
+        Distribution regular = new Distribution(0);
+
+        for (int i = 0; i < StripedSampleBuffer.STRIPE_CAPACITY * 3 + 1; i++) {
+            striped.add(i);
+            regular.add(i);
+        }
+        striped.add(7, 5);
+        regular.add(7, 5);
+
+        assertEquals(striped.snapshot().toString(), regular.snapshot().toString());
+    }
+
+    @Test
+    public void testStripedConcurrentWriters()
+            throws Exception
+    {
+        int threads = 8;
+        int valuesPerThread = 10_000;
+
+        Distribution distribution = new Distribution(0, true);
+        ExecutorService executor = newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int value = 0; value < valuesPerThread; value++) {
+                        distribution.add(value);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(distribution.getCount(), (double) threads * valuesPerThread);
+        assertEquals(distribution.getTotal(), (double) threads * ((long) valuesPerThread * (valuesPerThread - 1) / 2));
+        assertEquals(distribution.getMin(), 0.0);
+        assertEquals(distribution.getMax(), valuesPerThread - 1.0);
+    }
 }
@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.airlift.stats;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.testing.TestingTicker;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceQuantileDigest
+{
+    private static final List<Double> QUANTILES = ImmutableList.of(0.0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1.0);
+
+    @Test
+    public void testEmpty()
+    {
+        QuantileDigest digest = new QuantileDigest(0.01);
+        SliceQuantileDigest sliceDigest = SliceQuantileDigest.copyOf(digest);
+
+        assertEquals(sliceDigest.getCount(), 0.0);
+        assertEquals(sliceDigest.getMin(), digest.getMin());
+        assertEquals(sliceDigest.getMax(), digest.getMax());
+        assertEquals(sliceDigest.getQuantiles(QUANTILES), digest.getQuantilesUpperBound(QUANTILES));
+    }
+
+    @Test
+    public void testQueries()
+    {
+        Random random = new Random(1);
+        for (int i = 0; i < 20; i++) {
+            Slice serialized = randomDigest(random, 0.01, 0).serialize();
+            SliceQuantileDigest sliceDigest = new SliceQuantileDigest(serialized);
+            QuantileDigest digest = new QuantileDigest(serialized);
+
+            assertEquals(sliceDigest.getMaxError(), digest.getMaxError());
+            assertEquals(sliceDigest.getAlpha(), digest.getAlpha());
+            assertEquals(sliceDigest.getCount(), digest.getCount(), 1e-9);
+            assertEquals(sliceDigest.getMin(), digest.getMin());
+            assertEquals(sliceDigest.getMax(), digest.getMax());
+            assertEquals(sliceDigest.getQuantiles(QUANTILES), digest.getQuantilesUpperBound(QUANTILES));
+            assertEquals(sliceDigest.getQuantile(0.5), digest.getQuantileUpperBound(0.5));
+        }
+    }
+
+    @Test
+    public void testOffHeap()
+    {
+        Slice serialized = randomDigest(new Random(2), 0.01, 0).serialize();
+        QuantileDigest digest = new QuantileDigest(serialized);
+
+        Slice offHeap = Slices.allocateDirect(serialized.length());
+        offHeap.setBytes(0, serialized);
+
+        SliceQuantileDigest sliceDigest = new SliceQuantileDigest(offHeap);
+        assertEquals(sliceDigest.getQuantiles(QUANTILES), digest.getQuantilesUpperBound(QUANTILES));
+        assertEquals(sliceDigest.merge(sliceDigest).getQuantiles(QUANTILES), digest.getQuantilesUpperBound(QUANTILES));
+    }
+
+    @Test
+    public void testMerge()
+    {
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            double maxError = random.nextBoolean() ? 0.01 : 0.1;
+            assertMergeEquivalent(randomDigest(random, maxError, 0), randomDigest(random, maxError, 0));
+        }
+    }
+
+    @Test
+    public void testMergeEmpty()
+    {
+        Random random = new Random(4);
+        QuantileDigest empty = new QuantileDigest(0.01);
+
+        assertMergeEquivalent(empty, new QuantileDigest(0.01));
+        assertMergeEquivalent(empty, randomDigest(random, 0.01, 0));
+        assertMergeEquivalent(randomDigest(random, 0.01, 0), empty);
+    }
+
+    @Test
+    public void testMergeDisjointRanges()
+    {
+        QuantileDigest first = new QuantileDigest(0.01);
+        QuantileDigest second = new QuantileDigest(0.01);
+        for (int i = 0; i < 1000; i++) {
+            first.add(i);
+            second.add(Long.MAX_VALUE - i);
+        }
+        second.add(Long.MIN_VALUE);
+
+        assertMergeEquivalent(first, second);
+        assertMergeEquivalent(second, first);
+    }
+
+    @Test
+    public void testMergeDecayed()
+    {
+        TestingTicker ticker = new TestingTicker();
+        Random random = new Random(5);
+
+        QuantileDigest first = new QuantileDigest(0.01, ExponentialDecay.computeAlpha(0.5, 60), ticker);
+        for (int i = 0; i < 1000; i++) {
+            first.add(random.nextInt(10_000));
+        }
+
+        ticker.increment(30, TimeUnit.SECONDS);
+        QuantileDigest second = new QuantileDigest(0.01, ExponentialDecay.computeAlpha(0.5, 60), ticker);
+        for (int i = 0; i < 1000; i++) {
+            second.add(random.nextInt(10_000));
+        }
+
+        ticker.increment(60, TimeUnit.SECONDS);
+        Slice firstSerialized = first.serialize();
+        Slice secondSerialized = second.serialize();
+        SliceQuantileDigest merged = new SliceQuantileDigest(firstSerialized, ticker)
+                .merge(new SliceQuantileDigest(secondSerialized, ticker));
+
+        // deserializing would lose the testing ticker, so merge the serialized digests in place
+        first.merge(second);
+
+        assertEquals(merged.getCount(), first.getCount(), 1e-9);
+        assertEquals(merged.toQuantileDigest().getNodeCount(), first.getNodeCount());
+
+        List<Long> quantiles = merged.getQuantiles(QUANTILES);
+        List<Long> upperBounds = first.getQuantilesUpperBound(QUANTILES);
+        for (int i = 0; i < QUANTILES.size(); i++) {
+            assertTrue(quantiles.get(i) <= upperBounds.get(i));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSize()
+    {
+        Slice serialized = randomDigest(new Random(6), 0.01, 0).serialize();
+        new SliceQuantileDigest(serialized.slice(0, serialized.length() - 1));
+    }
+
+    private static void assertMergeEquivalent(QuantileDigest first, QuantileDigest second)
+    {
+        // serialize only once, since serialization compresses the digest
+        Slice firstSerialized = first.serialize();
+        Slice secondSerialized = second.serialize();
+
+        SliceQuantileDigest merged = new SliceQuantileDigest(firstSerialized).merge(new SliceQuantileDigest(secondSerialized));
+
+        // deserialized copies are the reference, since deserialization may shorten childless branch nodes
+        QuantileDigest expected = new QuantileDigest(firstSerialized);
+        if (expected.getNodeCount() == 0) {
+            // a deserialized empty digest has no room to grow into
+            expected = new QuantileDigest(first.getMaxError(), first.getAlpha());
+        }
+        expected.merge(new QuantileDigest(secondSerialized));
+
+        assertEquivalent(merged, expected);
+    }
+
+    private static void assertEquivalent(SliceQuantileDigest actual, QuantileDigest expected)
+    {
+        QuantileDigest deserialized = actual.toQuantileDigest();
+        deserialized.validate();
+        assertTrue(deserialized.equivalent(expected));
+
+        assertEquals(actual.getCount(), expected.getCount(), 1e-9);
+        assertEquals(actual.getMin(), deserialized.getMin());
+        assertEquals(actual.getMax(), deserialized.getMax());
+
+        // serialization shortens childless branch nodes, which can only tighten the bounds
+        assertTrue(actual.getMin() >= expected.getMin());
+        assertTrue(actual.getMax() <= expected.getMax());
+        List<Long> quantiles = actual.getQuantiles(QUANTILES);
+        assertEquals(quantiles, deserialized.getQuantilesUpperBound(QUANTILES));
+        List<Long> upperBounds = expected.getQuantilesUpperBound(QUANTILES);
+        for (int i = 0; i < QUANTILES.size(); i++) {
+            assertTrue(quantiles.get(i) <= upperBounds.get(i));
+        }
+    }
+
+    private static QuantileDigest randomDigest(Random random, double maxError, double alpha)
+    {
+        QuantileDigest digest = new QuantileDigest(maxError, alpha);
+        int count = random.nextInt(5_000);
+        long range = 1L << random.nextInt(63);
+        boolean negative = random.nextBoolean();
+        for (int i = 0; i < count; i++) {
+            long value = (long) (random.nextDouble() * range);
+            digest.add(negative && random.nextBoolean() ? -value : value);
+        }
+        return digest;
+    }
+}
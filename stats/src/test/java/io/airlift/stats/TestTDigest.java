@@ -297,6 +297,92 @@ public class TestTDigest
         assertEquals(merged.valueAt(1), 8.0);
     }
 
+    @Test
+    public void testAddAll()
+    {
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ThreadLocalRandom.current().nextGaussian();
+        }
+
+        TDigest expected = new TDigest();
+        for (int i = 10; i < values.length - 10; i++) {
+            expected.add(values[i]);
+        }
+
+        TDigest actual = new TDigest();
+        actual.add(values[10]);
+        actual.addAll(values, 11, values.length - 21);
+
+        assertSimilar(actual, expected);
+        for (double quantile = 0; quantile <= 1; quantile += 0.01) {
+            assertEquals(actual.valueAt(quantile), expected.valueAt(quantile), 0.01);
+        }
+    }
+
+    @Test
+    public void testAddAllInvalid()
+    {
+        TDigest digest = new TDigest();
+
+        assertThrows(IllegalArgumentException.class, () -> digest.addAll(new double[] {1, Double.NaN}, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> digest.addAll(new double[] {1, Double.POSITIVE_INFINITY}, 0, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> digest.addAll(new double[] {1, 2}, 1, 2));
+        assertEquals(digest.getCount(), 0.0);
+    }
+
+    @Test
+    public void testMergeList()
+    {
+        List<TDigest> digests = new ArrayList<>();
+        TDigest expected = new TDigest();
+        for (int i = 0; i < 1000; i++) {
+            TDigest digest = new TDigest();
+            for (int j = 0; j < 100; j++) {
+                double value = ThreadLocalRandom.current().nextDouble();
+                digest.add(value);
+                expected.add(value);
+            }
+            digests.add(digest);
+        }
+        digests.add(new TDigest());
+
+        TDigest merged = TDigest.merge(digests);
+
+        assertSimilar(merged, expected);
+        for (double quantile = 0; quantile <= 1; quantile += 0.01) {
+            assertEquals(merged.valueAt(quantile), expected.valueAt(quantile), 0.01);
+        }
+
+        // the merged digest must remain usable
+        merged.add(0.5);
+        assertEquals(merged.getCount(), expected.getCount() + 1);
+    }
+
+    @Test
+    public void testMergeListSmall()
+    {
+        TDigest first = new TDigest();
+        addAll(first, Arrays.asList(1, 2, 3, 4, 5));
+
+        TDigest second = new TDigest();
+        addAll(second, Arrays.asList(4, 5, 6, 7, 8));
+
+        TDigest merged = TDigest.merge(ImmutableList.of(first, second));
+
+        assertEquals(merged.getMin(), 1.0);
+        assertEquals(merged.getMax(), 8.0);
+        assertEquals(merged.getCount(), 10.0);
+
+        assertEquals(merged.valueAt(0), 1.0);
+        assertEquals(merged.valueAt(0.5), 5.0);
+        assertEquals(merged.valueAt(1), 8.0);
+
+        // inputs are not modified
+        assertEquals(first.getCount(), 5.0);
+        assertEquals(second.getCount(), 5.0);
+    }
+
     @Test
     public void testUnmergeable()
             throws IOException
@@ -15,6 +15,7 @@
  */
 package io.airlift.stats;
 
+import com.google.common.collect.ImmutableList;
 import io.airlift.stats.TimeStat.BlockTimer;
 import io.airlift.testing.TestingTicker;
 import org.testng.annotations.BeforeMethod;
@@ -23,10 +24,13 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.math.DoubleMath.fuzzyEquals;
 import static java.lang.Math.min;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -126,6 +130,40 @@ public class TestTimeStat
         assertEquals(allTime.getMax(), 1000.0);
     }
 
+    @Test
+    public void testConcurrentAdds()
+            throws Exception
+    {
+        int threads = 8;
+        int valuesPerThread = 10_000;
+
+        TimeStat stat = new TimeStat(TimeUnit.NANOSECONDS);
+        ExecutorService executor = newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int value = 1; value <= valuesPerThread; value++) {
+                        stat.add(value, TimeUnit.NANOSECONDS);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        for (TimeDistribution distribution : ImmutableList.of(stat.getOneMinute(), stat.getFiveMinutes(), stat.getFifteenMinutes(), stat.getAllTime())) {
+            assertEquals(distribution.getCount(), (double) threads * valuesPerThread, 0.01);
+            assertEquals(distribution.getMin(), 1.0);
+            assertEquals(distribution.getMax(), (double) valuesPerThread);
+        }
+        assertEquals(stat.getAllTime().getAvg(), (valuesPerThread + 1) / 2.0, 0.001);
+    }
+
     private static void assertPercentile(String name, double value, List<Long> values, double percentile)
     {
         int index = (int) (values.size() * percentile);
@@ -60,6 +60,18 @@ public class BenchmarkDenseHll
         return data.base.mergeWith(data.toMerge);
     }
 
+    @Benchmark
+    public DenseHll benchmarkMergeLargeWithDense(MergeLargeWithDenseData data)
+    {
+        return data.base.mergeWith(data.toMerge);
+    }
+
+    @Benchmark
+    public long benchmarkCardinality(MergeLargeWithDenseData data)
+    {
+        return data.toMerge.cardinality();
+    }
+
     @Benchmark
     public DenseHll benchmarkMergeWithSparse(MergeWithSparseData data)
     {
@@ -105,6 +117,25 @@ public class BenchmarkDenseHll
         }
     }
 
+    @State(Scope.Thread)
+    public static class MergeLargeWithDenseData
+    {
+        public DenseHll base;
+        public DenseHll toMerge;
+
+        @Setup(Level.Iteration)
+        public void initialize()
+        {
+            // both sides past the point where the baseline moves, as in a rollup of many large HLLs
+            base = new DenseHll(12);
+            toMerge = new DenseHll(12);
+            for (int i = 0; i < LARGE_CARDINALITY; i++) {
+                base.insertHash(ThreadLocalRandom.current().nextLong());
+                toMerge.insertHash(ThreadLocalRandom.current().nextLong());
+            }
+        }
+    }
+
     @State(Scope.Thread)
     public static class MergeWithSparseData
     {
@@ -48,6 +48,24 @@ public class BenchmarkSparseHll
         return data.instance;
     }
 
+    @Benchmark
+    public HyperLogLog benchmarkAddHashes(BulkData data)
+    {
+        HyperLogLog hll = HyperLogLog.newInstance(2048);
+        hll.addHashes(data.hashes);
+        return hll;
+    }
+
+    @Benchmark
+    public HyperLogLog benchmarkAddHash(BulkData data)
+    {
+        HyperLogLog hll = HyperLogLog.newInstance(2048);
+        for (long hash : data.hashes) {
+            hll.addHash(hash);
+        }
+        return hll;
+    }
+
     @State(Scope.Thread)
     public static class Data
     {
@@ -63,6 +81,20 @@ public class BenchmarkSparseHll
         }
     }
 
+    @State(Scope.Thread)
+    public static class BulkData
+    {
+        public long[] hashes = new long[2_000_000];
+
+        @Setup(Level.Iteration)
+        public void initialize()
+        {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = ThreadLocalRandom.current().nextLong();
+            }
+        }
+    }
+
     public static void main(String[] args)
             throws RunnerException
     {
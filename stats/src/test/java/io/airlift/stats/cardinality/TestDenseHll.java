@@ -13,6 +13,7 @@
  */
 package io.airlift.stats.cardinality;
 
+import com.google.common.collect.ImmutableList;
 import io.airlift.slice.XxHash64;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -112,6 +113,24 @@ public class TestDenseHll
         assertSameBuckets(testingHll, hll1);
     }
 
+    @Test(dataProvider = "bits")
+    public void testMergeWithOverflowsAndDifferentBaselines(int prefixBitLength)
+    {
+        // 25130 and 227291 cause overflows
+        List<Long> small = ImmutableList.<Long>builder()
+                .add(25130L)
+                .addAll(sequence(0, 1000))
+                .build();
+        List<Long> large = ImmutableList.<Long>builder()
+                .add(227291L)
+                .addAll(sequence(500, 2_000_000))
+                .build();
+
+        verifyMerge(prefixBitLength, small, large);
+        verifyMerge(prefixBitLength, large, small);
+        verifyMerge(prefixBitLength, large, large);
+    }
+
     @Test(dataProvider = "bits")
     public void testMerge(int prefixBitLength)
             throws Exception
@@ -13,6 +13,7 @@
  */
 package io.airlift.stats.cardinality;
 
+import io.airlift.slice.Murmur3Hash128;
 import io.airlift.slice.Slice;
 import org.openjdk.jol.info.ClassLayout;
 import org.testng.annotations.Test;
@@ -127,6 +128,35 @@ public class TestHyperLogLog
         assertEquals(hll1.serialize(), expected.serialize());
     }
 
+    @Test
+    public void testAddHashes()
+    {
+        // stays sparse
+        verifyAddHashes(sequence(0, 100));
+
+        // converted to dense part way through the batch
+        verifyAddHashes(sequence(0, 20000));
+        verifyAddHashes(sequence(0, 1_000_000));
+    }
+
+    private void verifyAddHashes(List<Long> values)
+    {
+        HyperLogLog hll = HyperLogLog.newInstance(2048);
+        HyperLogLog expected = HyperLogLog.newInstance(2048);
+
+        long[] hashes = new long[values.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = Murmur3Hash128.hash64(values.get(i));
+            expected.addHash(hashes[i]);
+        }
+
+        hll.addHashes(hashes);
+        hll.verify();
+
+        assertEquals(hll.cardinality(), expected.cardinality());
+        assertSlicesEqual(hll.serialize(), expected.serialize());
+    }
+
     @Test
     public void testRoundtrip()
             throws Exception
@@ -50,6 +50,20 @@ public class TestSparseHll
         verifyMerge(prefixBitLength, ImmutableList.of(64034L, 20591L, 56987L), ImmutableList.of(29678L, 54004L));
     }
 
+    @Test(dataProvider = "bits")
+    public void testInsertHashes(int prefixBitLength)
+    {
+        // duplicates, and buckets with multiple values
+        verifyInsertHashes(prefixBitLength, sequence(0, 100), sequence(50, 150));
+        verifyInsertHashes(prefixBitLength, ImmutableList.of(29678L, 54004L, 29678L), ImmutableList.of(64034L, 20591L, 56987L));
+
+        // into an empty instance
+        verifyInsertHashes(prefixBitLength, ImmutableList.of(), sequence(0, 1000));
+
+        // empty batch
+        verifyInsertHashes(prefixBitLength, sequence(0, 1000), ImmutableList.of());
+    }
+
     @Test(dataProvider = "bits")
     public void testToDense(int prefixBitLength)
             throws Exception
@@ -108,6 +122,30 @@ public class TestSparseHll
         assertSlicesEqual(hll1.serialize(), expected.serialize());
     }
 
+    private static void verifyInsertHashes(int prefixBitLength, List<Long> initial, List<Long> batch)
+    {
+        SparseHll hll = new SparseHll(prefixBitLength);
+        SparseHll expected = new SparseHll(prefixBitLength);
+
+        for (long value : initial) {
+            long hash = Murmur3Hash128.hash64(value);
+            hll.insertHash(hash);
+            expected.insertHash(hash);
+        }
+
+        long[] hashes = new long[batch.size() + 2];
+        for (int i = 0; i < batch.size(); i++) {
+            hashes[i + 1] = Murmur3Hash128.hash64(batch.get(i));
+            expected.insertHash(hashes[i + 1]);
+        }
+
+        hll.insertHashes(hashes, 1, batch.size());
+        hll.verify();
+
+        assertEquals(hll.cardinality(), expected.cardinality());
+        assertSlicesEqual(hll.serialize(), expected.serialize());
+    }
+
     private static void verifyToDense(int prefixBitLength, List<Long> values)
     {
         DenseHll expected = new DenseHll(prefixBitLength);